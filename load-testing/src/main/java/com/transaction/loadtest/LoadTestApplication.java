@@ -18,6 +18,7 @@ public class LoadTestApplication {
         options.addOption("w", "warmup", true, "Warmup duration in seconds (default: 10)");
         options.addOption("p", "progressive", false, "Enable progressive load (ramp-up)");
         options.addOption("s", "stages", true, "Progressive stages: rps1:duration1,rps2:duration2,... (e.g., 1000:30,5000:60,10000:30)");
+        options.addOption("c", "server-cores", true, "CPU cores of the system under test, to report throughput per core");
         options.addOption("h", "help", false, "Show help");
 
         CommandLineParser parser = new DefaultParser();
@@ -38,6 +39,7 @@ public class LoadTestApplication {
                     .warmupSeconds(Integer.parseInt(cmd.getOptionValue("warmup", "10")))
                     .progressive(cmd.hasOption("progressive"))
                     .progressiveStages(cmd.getOptionValue("stages"))
+                    .serverCores(Integer.parseInt(cmd.getOptionValue("server-cores", "0")))
                     .build();
 
             System.out.println("=".repeat(80));
@@ -49,6 +51,9 @@ public class LoadTestApplication {
             System.out.println("  Duration:         " + config.getDurationSeconds() + "s");
             System.out.println("  Warmup:           " + config.getWarmupSeconds() + "s");
             System.out.println("  Progressive Load: " + (config.isProgressive() ? "YES" : "NO"));
+            if (config.getServerCores() > 0) {
+                System.out.println("  Server Cores:     " + config.getServerCores());
+            }
             if (config.isProgressive() && config.getProgressiveStages() != null) {
                 System.out.println("  Stages:           " + config.getProgressiveStages());
             }
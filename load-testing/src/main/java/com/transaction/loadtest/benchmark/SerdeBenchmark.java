@@ -0,0 +1,131 @@
+package com.transaction.loadtest.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.transaction.loadtest.generator.TransactionGenerator;
+import com.transaction.models.FraudAlert;
+import com.transaction.models.PaymentConfirmation;
+import com.transaction.models.Transaction;
+import com.transaction.models.serde.BinaryCodec;
+import com.transaction.models.serde.FraudAlertCodec;
+import com.transaction.models.serde.PaymentConfirmationCodec;
+import com.transaction.models.serde.TransactionCodec;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compares the JSON path used by Spring's JsonSerializer/JsonDeserializer with the binary codecs:
+ * bytes per message and ns/op for serialize and deserialize.
+ *
+ * <pre>java -cp load-tester.jar com.transaction.loadtest.benchmark.SerdeBenchmark [iterations]</pre>
+ */
+public class SerdeBenchmark {
+
+    private static final int SAMPLES = 1024;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Same features Spring Kafka enables on its JSON serde
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        TransactionGenerator generator = new TransactionGenerator();
+        List<Transaction> transactions = new ArrayList<>(SAMPLES);
+        List<FraudAlert> alerts = new ArrayList<>(SAMPLES);
+        List<PaymentConfirmation> confirmations = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            Transaction transaction = generator.generate();
+            transactions.add(transaction);
+            alerts.add(alertFor(transaction));
+            confirmations.add(confirmationFor(transaction));
+        }
+
+        System.out.println("=".repeat(80));
+        System.out.printf("  SERDE BENCHMARK (%,d iterations, best of %d rounds)%n", iterations, ROUNDS);
+        System.out.println("=".repeat(80));
+        System.out.printf("%-20s %-7s %10s %14s %14s%n", "Model", "Format", "bytes/msg", "serialize ns", "deserialize ns");
+
+        compare("Transaction", transactions, Transaction.class, TransactionCodec.INSTANCE, objectMapper, iterations);
+        compare("FraudAlert", alerts, FraudAlert.class, FraudAlertCodec.INSTANCE, objectMapper, iterations);
+        compare("PaymentConfirmation", confirmations, PaymentConfirmation.class,
+                PaymentConfirmationCodec.INSTANCE, objectMapper, iterations);
+    }
+
+    private static <T> void compare(String name, List<T> samples, Class<T> type, BinaryCodec<T> codec,
+                                    ObjectMapper objectMapper, int iterations) throws Exception {
+        List<byte[]> json = new ArrayList<>(samples.size());
+        List<byte[]> binary = new ArrayList<>(samples.size());
+        for (T sample : samples) {
+            json.add(objectMapper.writeValueAsBytes(sample));
+            binary.add(codec.encode(sample));
+        }
+
+        report(name, "json", averageSize(json),
+                measure(iterations, i -> objectMapper.writeValueAsBytes(samples.get(i)).length),
+                measure(iterations, i -> objectMapper.readValue(json.get(i), type).hashCode()));
+        report(name, "binary", averageSize(binary),
+                measure(iterations, i -> codec.encode(samples.get(i)).length),
+                measure(iterations, i -> codec.decode(binary.get(i)).hashCode()));
+    }
+
+    private static double measure(int iterations, Operation operation) throws Exception {
+        long best = Long.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += operation.run(i & (SAMPLES - 1));
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Keeps the JIT from discarding the loop body
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) best / iterations;
+    }
+
+    private static double averageSize(List<byte[]> encoded) {
+        return encoded.stream().mapToInt(bytes -> bytes.length).average().orElse(0);
+    }
+
+    private static void report(String name, String format, double bytes, double serializeNanos, double deserializeNanos) {
+        System.out.printf("%-20s %-7s %10.1f %14.1f %14.1f%n", name, format, bytes, serializeNanos, deserializeNanos);
+    }
+
+    private static FraudAlert alertFor(Transaction transaction) {
+        return FraudAlert.builder()
+                .alertId(UUID.randomUUID())
+                .transactionId(transaction.getTransactionId())
+                .userId(transaction.getUserId())
+                .reason(FraudAlert.FraudReason.HIGH_AMOUNT)
+                .description("Transaction amount " + transaction.getAmount() + " exceeds threshold")
+                .riskLevel(FraudAlert.RiskLevel.MEDIUM)
+                .detectedAt(Instant.now())
+                .triggeredRules(List.of("HIGH_AMOUNT"))
+                .build();
+    }
+
+    private static PaymentConfirmation confirmationFor(Transaction transaction) {
+        return PaymentConfirmation.builder()
+                .confirmationId(UUID.randomUUID())
+                .transactionId(transaction.getTransactionId())
+                .userId(transaction.getUserId())
+                .status(Transaction.TransactionStatus.COMPLETED)
+                .processorReferenceId("PRC-" + transaction.getTransactionId().toString().substring(0, 8))
+                .processedAt(Instant.now())
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        int run(int sample) throws Exception;
+    }
+}
@@ -12,4 +12,5 @@ public class LoadTestConfig {
     private int warmupSeconds;
     private boolean progressive;
     private String progressiveStages;
+    private int serverCores;
 }
@@ -13,6 +13,7 @@ public class LoadTestMetrics {
     private final AtomicLong failedRequests = new AtomicLong(0);
     private final ConcurrentSkipListMap<Long, Long> latencies = new ConcurrentSkipListMap<>();
     private final AtomicLong latencySequence = new AtomicLong(0);
+    private volatile long startNanos = System.nanoTime();
 
     public void recordSuccess(long latencyMs) {
         totalRequests.incrementAndGet();
@@ -30,9 +31,11 @@ public class LoadTestMetrics {
         long total = totalRequests.get();
         long successful = successfulRequests.get();
         long failed = failedRequests.get();
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        double throughput = elapsedSeconds > 0 ? successful / elapsedSeconds : 0;
 
         if (latencies.isEmpty()) {
-            return new MetricsStats(total, successful, failed, 0, 0, 0, 0, 0, 0);
+            return new MetricsStats(total, successful, failed, 0, 0, 0, 0, 0, 0, throughput);
         }
 
         List<Long> latencyList = new ArrayList<>(latencies.values());
@@ -47,7 +50,7 @@ public class LoadTestMetrics {
         long p95 = getPercentile(latencyList, 95);
         long p99 = getPercentile(latencyList, 99);
 
-        return new MetricsStats(total, successful, failed, min, max, avg, p50, p95, p99);
+        return new MetricsStats(total, successful, failed, min, max, avg, p50, p95, p99, throughput);
     }
 
     private long getPercentile(List<Long> sortedList, int percentile) {
@@ -65,6 +68,7 @@ public class LoadTestMetrics {
         failedRequests.set(0);
         latencies.clear();
         latencySequence.set(0);
+        startNanos = System.nanoTime();
     }
 
     public static class MetricsStats {
@@ -77,10 +81,11 @@ public class LoadTestMetrics {
         public final long p50Latency;
         public final long p95Latency;
         public final long p99Latency;
+        public final double throughput;
 
         public MetricsStats(long totalRequests, long successfulRequests, long failedRequests,
                            long minLatency, long maxLatency, double avgLatency,
-                           long p50Latency, long p95Latency, long p99Latency) {
+                           long p50Latency, long p95Latency, long p99Latency, double throughput) {
             this.totalRequests = totalRequests;
             this.successfulRequests = successfulRequests;
             this.failedRequests = failedRequests;
@@ -90,6 +95,7 @@ public class LoadTestMetrics {
             this.p50Latency = p50Latency;
             this.p95Latency = p95Latency;
             this.p99Latency = p99Latency;
+            this.throughput = throughput;
         }
 
         public double getSuccessRate() {
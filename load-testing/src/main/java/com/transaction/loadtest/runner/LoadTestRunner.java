@@ -208,12 +208,13 @@ public class LoadTestRunner {
     private void printRealtimeStats() {
         LoadTestMetrics.MetricsStats stats = metrics.getStats();
 
-        System.out.printf("[Stats] Total: %d | Success: %d (%.2f%%) | Failed: %d | " +
+        System.out.printf("[Stats] Total: %d | Success: %d (%.2f%%) | Failed: %d | Throughput: %.0f req/s | " +
                         "Latency (ms) - Min: %d | Avg: %.2f | p50: %d | p95: %d | p99: %d | Max: %d%n",
                 stats.totalRequests,
                 stats.successfulRequests,
                 stats.getSuccessRate(),
                 stats.failedRequests,
+                stats.throughput,
                 stats.minLatency,
                 stats.avgLatency,
                 stats.p50Latency,
@@ -234,6 +235,11 @@ public class LoadTestRunner {
         System.out.println("Successful:          " + stats.successfulRequests +
                          String.format(" (%.2f%%)", stats.getSuccessRate()));
         System.out.println("Failed:              " + stats.failedRequests);
+        System.out.println("Throughput:          " + String.format("%.2f req/s", stats.throughput));
+        if (config.getServerCores() > 0) {
+            System.out.println("Throughput per core: " +
+                             String.format("%.2f req/s", stats.throughput / config.getServerCores()));
+        }
         System.out.println();
         System.out.println("Latency (ms):");
         System.out.println("  Min:               " + stats.minLatency);
@@ -1,6 +1,8 @@
 package com.transaction.analytics.config;
 
 import com.transaction.models.Transaction;
+import com.transaction.models.serde.TransactionCodec;
+import com.transaction.models.serde.WireFormatDeserializer;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -34,12 +36,12 @@ public class KafkaConsumerConfig {
         config.put(ConsumerConfig.GROUP_ID_CONFIG, "analytics-group");
         config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
-        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, Transaction.class.getName());
 
-        return new DefaultKafkaConsumerFactory<>(config);
+        // Accepts binary and JSON records so producers can switch formats independently
+        return new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(),
+                new WireFormatDeserializer<>(TransactionCodec.INSTANCE, new JsonDeserializer<>()));
     }
 
     @Bean
@@ -0,0 +1,67 @@
+package com.transaction.analytics.consumer;
+
+import com.transaction.analytics.service.AnalyticsBuffer;
+import com.transaction.models.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "analytics.consumer.mode", havingValue = "buffered")
+public class BufferedTransactionConsumer extends AbstractConsumerSeekAware {
+
+    private final AnalyticsBuffer analyticsBuffer;
+
+    @KafkaListener(topics = "transactions", groupId = "analytics-group")
+    public void consumeTransaction(Transaction transaction,
+                                   @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                   @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+                                   @Header(KafkaHeaders.OFFSET) long offset) {
+        try {
+            analyticsBuffer.add(partition, offset, transaction);
+        } catch (Exception e) {
+            log.error("Error buffering transaction {}: {}", transaction.getTransactionId(), e.getMessage(), e);
+        }
+
+        // A fenced flush dropped records this pod had read; re-read them from the stored mark
+        long rewind = analyticsBuffer.takeRewind(partition);
+        if (rewind >= 0) {
+            ConsumerSeekCallback callback = getSeekCallbackFor(new TopicPartition(topic, partition));
+            if (callback != null) {
+                log.warn("Rewinding partition {} to offset {}", partition, rewind);
+                callback.seek(topic, partition, rewind);
+            }
+        }
+    }
+
+    // Redis, not Kafka, knows which records the aggregates already include
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        for (TopicPartition partition : assignments.keySet()) {
+            long highWater = analyticsBuffer.assign(partition.partition());
+            if (highWater >= 0) {
+                callback.seek(partition.topic(), partition.partition(), highWater + 1);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        super.onPartitionsRevoked(partitions);
+        for (TopicPartition partition : partitions) {
+            analyticsBuffer.revoke(partition.partition());
+        }
+    }
+}
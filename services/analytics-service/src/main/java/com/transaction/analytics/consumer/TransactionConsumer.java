@@ -4,12 +4,14 @@ import com.transaction.analytics.service.AnalyticsService;
 import com.transaction.models.Transaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "analytics.consumer.mode", havingValue = "direct", matchIfMissing = true)
 public class TransactionConsumer {
 
     private final AnalyticsService analyticsService;
@@ -0,0 +1,118 @@
+package com.transaction.analytics.controller;
+
+import com.transaction.analytics.service.AmountDistribution;
+import com.transaction.analytics.service.AmountQuantiles;
+import com.transaction.analytics.service.Resolution;
+import com.transaction.analytics.service.TimeSeriesPoint;
+import com.transaction.analytics.service.TimeSeriesStore;
+import com.transaction.analytics.service.TopMerchants;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    // Points returned when the range is left open
+    private static final int DEFAULT_POINTS = 60;
+
+    private final TimeSeriesStore timeSeriesStore;
+    private final TopMerchants topMerchants;
+    private final AmountDistribution amountDistribution;
+
+    @GetMapping("/timeseries")
+    public ResponseEntity<Map<String, Object>> timeSeries(
+            @RequestParam(name = "resolution", defaultValue = "minute") String resolution,
+            @RequestParam(name = "from", required = false) Instant from,
+            @RequestParam(name = "to", required = false) Instant to) {
+        Resolution bucket;
+        try {
+            bucket = Resolution.parse(resolution);
+        } catch (IllegalArgumentException e) {
+            return badRequest("Unknown resolution '" + resolution + "'; use second, minute, hour or day");
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minusSeconds(DEFAULT_POINTS * bucket.bucketSeconds());
+        if (!start.isBefore(end)) {
+            return badRequest("'from' must be before 'to'");
+        }
+
+        List<TimeSeriesPoint> points;
+        try {
+            points = timeSeriesStore.range(bucket, start, end);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        return ResponseEntity.ok(Map.of(
+                "resolution", bucket.name().toLowerCase(Locale.ROOT),
+                "from", start,
+                "to", end,
+                "points", points));
+    }
+
+    @GetMapping("/top-merchants")
+    public ResponseEntity<Map<String, Object>> topMerchants(
+            @RequestParam(name = "window", defaultValue = "hour") String window,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        TopMerchants.Window span;
+        try {
+            span = TopMerchants.Window.parse(window);
+        } catch (IllegalArgumentException e) {
+            return badRequest("Unknown window '" + window + "'; use minute, hour or day");
+        }
+        if (limit < 1 || limit > topMerchants.capacity()) {
+            return badRequest("'limit' must be between 1 and " + topMerchants.capacity());
+        }
+        return ResponseEntity.ok(Map.of(
+                "window", span.name().toLowerCase(Locale.ROOT),
+                "merchants", topMerchants.top(span, limit)));
+    }
+
+    @GetMapping("/amount-quantiles")
+    public ResponseEntity<Map<String, Object>> amountQuantiles(
+            @RequestParam(name = "currency") String currency,
+            @RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "from", required = false) Instant from,
+            @RequestParam(name = "to", required = false) Instant to,
+            @RequestParam(name = "q", defaultValue = "0.5,0.95,0.99") double[] quantiles) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofHours(1));
+        if (!start.isBefore(end)) {
+            return badRequest("'from' must be before 'to'");
+        }
+        for (double q : quantiles) {
+            if (!(q >= 0 && q <= 1)) {
+                return badRequest("Quantiles must be between 0 and 1");
+            }
+        }
+
+        AmountQuantiles result;
+        try {
+            result = amountDistribution.quantiles(currency, category, start, end, quantiles);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        return ResponseEntity.ok(Map.of(
+                "currency", result.currency(),
+                "category", result.category(),
+                "from", start,
+                "to", end,
+                "transactions", result.transactions(),
+                "quantiles", result.quantiles()));
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest(String message) {
+        return ResponseEntity.badRequest().body(Map.of("status", "ERROR", "message", message));
+    }
+}
@@ -0,0 +1,187 @@
+package com.transaction.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Distribution of transaction amounts per minute, by currency and merchant category, as {@link DDSketch}es.
+ * <p>
+ * Each minute's sketch is the hash {@code analytics:amounts:<currency>:<category>:<minute>}, one field per
+ * non-empty bin plus {@code z} for zero amounts. Merging sketches is adding their bins, so every consumer
+ * thread and pod merges into it with HINCRBY in the same pipeline or transaction as the other aggregates, and
+ * a query over any window merges the minutes' hashes into one sketch. Category {@code *} holds all of a
+ * currency's categories. A hash has at most about 1,600 fields, and expires {@code retention-hours} after
+ * its minute.
+ * <p>
+ * The merchant category comes from the client unless the gateway's enrichment filled it in, so only the
+ * {@code categories} configured here get sketches of their own; any other is counted as {@code OTHER}.
+ */
+@Slf4j
+@Service
+public class AmountDistribution {
+
+    static final String KEY_PREFIX = "analytics:amounts:";
+    static final String ZERO_FIELD = "z";
+    public static final String ALL_CATEGORIES = "*";
+    static final String UNKNOWN_CATEGORY = "UNKNOWN";
+    static final String OTHER_CATEGORY = "OTHER";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration retention;
+    private final int maxMinutes;
+    private final Set<String> categories;
+    // Keys of the newest minute of the last write whose expiry is set; guarded by this
+    private final Set<String> expiring = new HashSet<>();
+    private long expiringMinute = Long.MIN_VALUE;
+
+    public AmountDistribution(RedisTemplate<String, Object> redisTemplate,
+                              @Value("${analytics.amounts.retention-hours:168}") long retentionHours,
+                              @Value("${analytics.amounts.max-minutes:1440}") int maxMinutes,
+                              @Value("${analytics.amounts.categories:RETAIL,FOOD,TRAVEL,ENTERTAINMENT,UTILITIES,HEALTHCARE,"
+                                      + "EDUCATION,AUTOMOTIVE,SERVICES,GAMBLING,CRYPTOCURRENCY}") List<String> categories) {
+        this.redisTemplate = redisTemplate;
+        this.retention = Duration.ofHours(retentionHours);
+        this.maxMinutes = maxMinutes;
+        this.categories = new HashSet<>();
+        for (String category : categories) {
+            if (!category.isBlank()) {
+                this.categories.add(category.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+    }
+
+    // One of the configured categories, UNKNOWN or OTHER, so the number of keys does not depend on what clients send
+    String category(String name) {
+        if (name == null || name.isBlank()) {
+            return UNKNOWN_CATEGORY;
+        }
+        String normalized = name.trim().toUpperCase(Locale.ROOT);
+        return categories.contains(normalized) ? normalized : OTHER_CATEGORY;
+    }
+
+    static String dimension(String currency, String category) {
+        return currency + ":" + category;
+    }
+
+    /**
+     * Queues the delta's bin increments on {@code redis}, typically a pipeline or transaction the caller
+     * executes. If that execution fails, the caller must {@link #forgetExpiries()} so the next write sets them.
+     */
+    void write(RedisOperations<String, Object> redis, AmountSketchDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        rememberNewest(Collections.max(delta.minutes.keySet()));
+        HashOperations<String, Object, Object> hashes = redis.opsForHash();
+        delta.minutes.forEach((minute, sketches) -> sketches.forEach((dimension, sketch) -> {
+            String key = KEY_PREFIX + dimension + ":" + minute;
+            sketch.bins().forEach((index, count) -> hashes.increment(key, Integer.toString(index), count[0]));
+            if (sketch.zeroCount() > 0) {
+                hashes.increment(key, ZERO_FIELD, sketch.zeroCount());
+            }
+            if (needsExpiry(key, minute)) {
+                redis.expireAt(key, Instant.ofEpochSecond(minute + 60).plus(retention));
+            }
+        }));
+    }
+
+    synchronized void forgetExpiries() {
+        expiring.clear();
+        expiringMinute = Long.MIN_VALUE;
+    }
+
+    /**
+     * Amount quantiles of one currency, and optionally one merchant category, over the minutes from the one
+     * containing {@code from} up to, not including, {@code to}.
+     *
+     * @throws IllegalArgumentException if the range holds more than {@code max-minutes} minutes
+     */
+    public AmountQuantiles quantiles(String currency, String category, Instant from, Instant to, double... quantiles) {
+        String code = MinorUnits.currency(currency);
+        String name = category != null ? category(category) : ALL_CATEGORIES;
+        long first = Math.floorDiv(from.getEpochSecond(), 60) * 60;
+        long end = to.getEpochSecond();
+        long minutes = Math.max(0, (end - first + 59) / 60);
+        if (minutes > maxMinutes) {
+            throw new IllegalArgumentException("Range spans " + minutes + " minutes; at most " + maxMinutes
+                    + " are merged");
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (long minute = first; minute < end; minute += 60) {
+            keys.add(KEY_PREFIX + dimension(code, name) + ":" + minute);
+        }
+        DDSketch sketch = new DDSketch();
+        if (!keys.isEmpty()) {
+            List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    keys.forEach(key -> redis.opsForHash().entries(key));
+                    return null;
+                }
+            });
+            for (Object hash : hashes) {
+                if (hash instanceof Map<?, ?> bins) {
+                    bins.forEach((field, count) -> read(sketch, field.toString(), count));
+                }
+            }
+        }
+
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        if (!sketch.isEmpty()) {
+            int scale = MinorUnits.scale(code);
+            for (double q : quantiles) {
+                values.put("p" + BigDecimal.valueOf(q).movePointRight(2).stripTrailingZeros().toPlainString(),
+                        BigDecimal.valueOf(sketch.quantile(q)).setScale(scale, RoundingMode.HALF_UP));
+            }
+        }
+        return new AmountQuantiles(code, name, sketch.count(), values);
+    }
+
+    // The last write's newest minute rather than the newest ever, so an outlier ahead of the others costs one more
+    // EXPIRE per key, not one on every write after it
+    private synchronized void rememberNewest(long minute) {
+        if (minute != expiringMinute) {
+            expiring.clear();
+            expiringMinute = minute;
+        }
+    }
+
+    private synchronized boolean needsExpiry(String key, long minute) {
+        // Other minutes only get late records, rare enough to set the expiry every time
+        return minute != expiringMinute || expiring.add(key);
+    }
+
+    private static void read(DDSketch sketch, String field, Object count) {
+        try {
+            long weight = Long.parseLong(count.toString());
+            if (ZERO_FIELD.equals(field)) {
+                sketch.addZero(weight);
+            } else {
+                sketch.addBin(Integer.parseInt(field), weight);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed amount sketch bin {}={}", field, count);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.transaction.analytics.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Transaction amounts at the requested quantiles, keyed "p50", "p99.9" and so on, each within 1% of a recorded
+ * amount; empty when no transaction matched.
+ */
+public record AmountQuantiles(String currency, String category, long transactions, Map<String, BigDecimal> quantiles) {
+}
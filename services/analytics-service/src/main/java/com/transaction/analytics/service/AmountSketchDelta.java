@@ -0,0 +1,37 @@
+package com.transaction.analytics.service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+// Per-minute amount sketches by currency and merchant category not yet written to Redis; not thread-safe
+final class AmountSketchDelta {
+
+    // Minute start, then "<currency>:<category>", including each currency's all-categories sketch
+    final Map<Long, Map<String, DDSketch>> minutes = new HashMap<>();
+
+    // category as AmountDistribution.category() resolves it
+    void add(long epochSecond, String currency, String category, BigDecimal amount) {
+        if (amount == null) {
+            return;
+        }
+        double value = amount.doubleValue();
+        Map<String, DDSketch> sketches = minutes.computeIfAbsent(Math.floorDiv(epochSecond, 60) * 60,
+                minute -> new HashMap<>());
+        sketches.computeIfAbsent(AmountDistribution.dimension(currency, category),
+                d -> new DDSketch()).add(value);
+        sketches.computeIfAbsent(AmountDistribution.dimension(currency, AmountDistribution.ALL_CATEGORIES),
+                d -> new DDSketch()).add(value);
+    }
+
+    void addAll(AmountSketchDelta later) {
+        later.minutes.forEach((minute, sketches) -> {
+            Map<String, DDSketch> merged = minutes.computeIfAbsent(minute, m -> new HashMap<>());
+            sketches.forEach((dimension, sketch) -> merged.computeIfAbsent(dimension, d -> new DDSketch()).merge(sketch));
+        });
+    }
+
+    boolean isEmpty() {
+        return minutes.isEmpty();
+    }
+}
@@ -0,0 +1,282 @@
+package com.transaction.analytics.service;
+
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates transactions per partition in memory and writes the deltas to Redis every
+ * {@code flush-interval-ms}, or as soon as a partition has {@code max-records} pending.
+ * <p>
+ * A flush is one MULTI/EXEC per partition: the deltas and the partition's high-water mark, the
+ * offset of the last record they include, are applied together or not at all. On assignment the consumer
+ * seeks to the record after the stored mark, and records at or below it are skipped, so whatever Kafka has
+ * committed, a crash neither loses deltas nor applies them twice. Revoked partitions are flushed before
+ * they are handed over.
+ * <p>
+ * The transaction WATCHes the mark and only runs if it is still below the delta's first offset. A pod that
+ * lost a partition without a revoke, e.g. after a session timeout, therefore cannot apply records the new
+ * owner has already written; its delta is dropped. If the mark stops short of what this pod has read, the
+ * records after it were in the dropped delta, so the partition is rewound to the record after the mark.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "analytics.consumer.mode", havingValue = "buffered")
+public class AnalyticsBuffer {
+
+    static final String HIGH_WATER_KEY = "analytics:offsets:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TimeSeriesStore timeSeriesStore;
+    private final TopMerchants topMerchants;
+    private final AmountDistribution amountDistribution;
+    private final String highWaterPrefix;
+    private final int maxRecords;
+    private final Map<Integer, Partition> partitions = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+    private final Counter flushedRecords;
+    private final Counter failedFlushes;
+    private final Counter replayed;
+    private final Counter fencedFlushes;
+
+    public AnalyticsBuffer(RedisTemplate<String, Object> redisTemplate,
+                           TimeSeriesStore timeSeriesStore,
+                           TopMerchants topMerchants,
+                           AmountDistribution amountDistribution,
+                           MeterRegistry meterRegistry,
+                           @Value("${spring.kafka.consumer.group-id:analytics-group}") String groupId,
+                           @Value("${analytics.buffer.max-records:10000}") int maxRecords) {
+        this.redisTemplate = redisTemplate;
+        this.timeSeriesStore = timeSeriesStore;
+        this.topMerchants = topMerchants;
+        this.amountDistribution = amountDistribution;
+        this.highWaterPrefix = HIGH_WATER_KEY + groupId + ":";
+        this.maxRecords = Math.max(1, maxRecords);
+        this.flushTimer = Timer.builder("analytics.flush.duration")
+                .description("Time to write one partition's buffered deltas to Redis")
+                .register(meterRegistry);
+        this.flushedRecords = Counter.builder("analytics.flush.records")
+                .description("Transactions written to Redis by buffered flushes")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("analytics.flush.failures")
+                .description("Flushes that failed and were kept for the next attempt")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("analytics.replayed")
+                .description("Redelivered transactions skipped because Redis already has them")
+                .register(meterRegistry);
+        this.fencedFlushes = Counter.builder("analytics.flush.fenced")
+                .description("Flushes dropped because the high-water mark already covered them")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reads the partition's high-water mark and starts buffering it afresh.
+     *
+     * @return offset of the last record already in Redis, or -1 if none is
+     */
+    public long assign(int partition) {
+        Object stored = redisTemplate.opsForValue().get(highWaterPrefix + partition);
+        long highWater = stored != null ? Long.parseLong(stored.toString()) : -1;
+        partitions.put(partition, new Partition(partition, highWater));
+        return highWater;
+    }
+
+    public void revoke(int partition) {
+        Partition revoked = partitions.remove(partition);
+        if (revoked != null) {
+            flush(revoked);
+        }
+    }
+
+    public void add(int partition, long offset, Transaction transaction) {
+        Partition buffer = partitions.get(partition);
+        if (buffer == null) {
+            assign(partition);
+            buffer = partitions.get(partition);
+        }
+        String category = amountDistribution.category(transaction.getMerchantCategory());
+        boolean full;
+        synchronized (buffer) {
+            if (buffer.rewindFrom >= 0) {
+                if (offset > buffer.rewindFrom) {
+                    // Already fetched before the rewind; delivered again after it
+                    return;
+                }
+                buffer.rewindFrom = -1;
+            }
+            if (offset <= buffer.lastOffset) {
+                replayed.increment();
+                return;
+            }
+            buffer.pending.add(offset, transaction, category);
+            buffer.lastOffset = offset;
+            full = buffer.pending.transactions >= maxRecords;
+        }
+        if (transaction.getTimestamp() != null) {
+            topMerchants.record(transaction.getMerchant(), EventTime.epochSecond(transaction.getTimestamp()));
+        }
+        if (full) {
+            flush(buffer);
+        }
+    }
+
+    /**
+     * Returns the offset the consumer must seek the partition back to after a fenced flush, once.
+     *
+     * @return offset to seek to, or -1 if the partition need not move
+     */
+    public long takeRewind(int partition) {
+        Partition buffer = partitions.get(partition);
+        if (buffer == null) {
+            return -1;
+        }
+        synchronized (buffer) {
+            long seekTo = buffer.seekTo;
+            buffer.seekTo = -1;
+            return seekTo;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.buffer.flush-interval-ms:1000}")
+    public void flushAll() {
+        for (Partition buffer : partitions.values()) {
+            flush(buffer);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+
+    private void flush(Partition buffer) {
+        // One flush per partition at a time, so high-water marks reach Redis in order
+        synchronized (buffer.flushLock) {
+            PartitionDelta delta;
+            synchronized (buffer) {
+                if (buffer.pending.isEmpty()) {
+                    return;
+                }
+                delta = buffer.pending;
+                buffer.pending = new PartitionDelta();
+            }
+            long start = System.nanoTime();
+            long fencedAt;
+            try {
+                fencedAt = write(buffer.partition, delta);
+            } catch (DataAccessException e) {
+                failedFlushes.increment();
+                timeSeriesStore.forgetExpiries();
+                amountDistribution.forgetExpiries();
+                log.error("Failed to flush {} buffered transactions of partition {}; retrying with the next flush",
+                        delta.transactions, buffer.partition, e);
+                synchronized (buffer) {
+                    delta.addAll(buffer.pending);
+                    buffer.pending = delta;
+                }
+                return;
+            }
+            if (fencedAt >= 0) {
+                fence(buffer, delta, fencedAt);
+                return;
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushedRecords.increment(delta.transactions);
+            log.debug("Flushed {} transactions of partition {} up to offset {}",
+                    delta.transactions, buffer.partition, delta.lastOffset);
+        }
+    }
+
+    private void fence(Partition buffer, PartitionDelta delta, long highWater) {
+        fencedFlushes.increment();
+        synchronized (buffer) {
+            // Whatever is still pending was read after the dropped delta and is redone from the mark as well
+            buffer.pending = new PartitionDelta();
+            if (highWater < buffer.lastOffset) {
+                buffer.rewindFrom = buffer.lastOffset;
+                buffer.seekTo = highWater + 1;
+            }
+            buffer.lastOffset = highWater;
+        }
+        log.warn("Dropped {} buffered transactions of partition {} from offset {}: high-water mark is already {}",
+                delta.transactions, buffer.partition, delta.firstOffset, highWater);
+    }
+
+    // Returns -1 once the delta is applied, or the stored mark that already covers its first record
+    private long write(int partition, PartitionDelta delta) {
+        String highWaterKey = highWaterPrefix + partition;
+        Long fencedAt = redisTemplate.execute(new SessionCallback<Long>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Long execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                ValueOperations<String, Object> values = redis.opsForValue();
+                while (true) {
+                    redis.watch(highWaterKey);
+                    Object stored = values.get(highWaterKey);
+                    long highWater = stored != null ? Long.parseLong(stored.toString()) : -1;
+                    if (highWater >= delta.firstOffset) {
+                        redis.unwatch();
+                        return highWater;
+                    }
+                    if (!apply(redis, highWaterKey, delta).isEmpty()) {
+                        return -1L;
+                    }
+                    // The mark moved between WATCH and EXEC; nothing was applied, so check it again
+                    timeSeriesStore.forgetExpiries();
+                    amountDistribution.forgetExpiries();
+                }
+            }
+        });
+        return fencedAt != null ? fencedAt : -1;
+    }
+
+    private List<Object> apply(RedisOperations<String, Object> redis, String highWaterKey, PartitionDelta delta) {
+        ValueOperations<String, Object> values = redis.opsForValue();
+        redis.multi();
+        values.increment(AnalyticsService.TOTAL_TRANSACTIONS_KEY, delta.transactions);
+        delta.currencies.forEach((currency, totals) -> {
+            redis.opsForHash().increment(AnalyticsService.CURRENCY_TRANSACTIONS_KEY, currency, totals[0]);
+            redis.opsForHash().increment(AnalyticsService.AMOUNT_MINOR_KEY, currency, totals[1]);
+        });
+        timeSeriesStore.write(redis, delta.series);
+        amountDistribution.write(redis, delta.amounts);
+        values.set(highWaterKey, Long.toString(delta.lastOffset));
+        // Empty when the watched mark changed and the transaction was discarded
+        return redis.exec();
+    }
+
+    private static final class Partition {
+
+        final int partition;
+        final Object flushLock = new Object();
+        // All guarded by the partition itself
+        PartitionDelta pending = new PartitionDelta();
+        long lastOffset;
+        // After a fenced flush: records above rewindFrom are skipped until the consumer has sought to seekTo
+        long rewindFrom = -1;
+        long seekTo = -1;
+
+        Partition(int partition, long highWater) {
+            this.partition = partition;
+            this.lastOffset = highWater;
+        }
+    }
+}
@@ -3,12 +3,16 @@ package com.transaction.analytics.service;
 import com.transaction.models.Transaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Slf4j
 @Service
@@ -16,78 +20,101 @@ import java.time.Instant;
 public class AnalyticsService {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final TimeSeriesStore timeSeriesStore;
+    private final TopMerchants topMerchants;
+    private final AmountDistribution amountDistribution;
 
-    private static final String TOTAL_TRANSACTIONS_KEY = "analytics:total_transactions";
-    private static final String TOTAL_AMOUNT_KEY = "analytics:total_amount";
-    private static final String TRANSACTIONS_PER_SECOND_KEY = "analytics:transactions_per_second:";
-    private static final String TOP_MERCHANTS_KEY = "analytics:top_merchants";
+    static final String TOTAL_TRANSACTIONS_KEY = "analytics:total_transactions";
+    // Hashes keyed by currency code: amounts in the currency's minor units, and transaction counts
+    static final String AMOUNT_MINOR_KEY = "analytics:amount_minor";
+    static final String CURRENCY_TRANSACTIONS_KEY = "analytics:transactions_by_currency";
 
     public void processTransaction(Transaction transaction) {
         log.info("Processing transaction for analytics: {}", transaction.getTransactionId());
 
-        // Update total transaction count
-        redisTemplate.opsForValue().increment(TOTAL_TRANSACTIONS_KEY, 1);
-
-        // Update total amount
-        String currentAmountStr = (String) redisTemplate.opsForValue().get(TOTAL_AMOUNT_KEY);
-        BigDecimal currentAmount = currentAmountStr != null
-            ? new BigDecimal(currentAmountStr)
-            : BigDecimal.ZERO;
-        BigDecimal newAmount = currentAmount.add(transaction.getAmount());
-        redisTemplate.opsForValue().set(TOTAL_AMOUNT_KEY, newAmount.toString());
-
-        // Update transactions per second (using epoch second as key)
-        long epochSecond = transaction.getTimestamp().getEpochSecond();
-        String tpsKey = TRANSACTIONS_PER_SECOND_KEY + epochSecond;
-        redisTemplate.opsForValue().increment(tpsKey, 1);
-        // Set expiry to 1 hour for TPS keys
-        redisTemplate.expire(tpsKey, java.time.Duration.ofHours(1));
-
-        // Update average amount
-        updateAverageAmount();
-
-        // Update top merchants
-        redisTemplate.opsForHash().increment(
-            TOP_MERCHANTS_KEY,
-            transaction.getMerchant(),
-            1
-        );
+        String currency = MinorUnits.currency(transaction.getCurrency());
+        long amountMinor = MinorUnits.toMinor(transaction.getAmount(), currency);
+
+        long second = EventTime.epochSecond(transaction.getTimestamp());
+        TimeSeriesDelta series = new TimeSeriesDelta();
+        series.add(second, currency, amountMinor);
+        AmountSketchDelta amounts = new AmountSketchDelta();
+        amounts.add(second, currency, amountDistribution.category(transaction.getMerchantCategory()),
+                transaction.getAmount());
+
+        // Every update is an atomic increment, sent in one round trip
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    redis.opsForValue().increment(TOTAL_TRANSACTIONS_KEY, 1);
+                    redis.opsForHash().increment(AMOUNT_MINOR_KEY, currency, amountMinor);
+                    redis.opsForHash().increment(CURRENCY_TRANSACTIONS_KEY, currency, 1);
+                    timeSeriesStore.write(redis, series);
+                    amountDistribution.write(redis, amounts);
+                    return null;
+                }
+            });
+        } catch (DataAccessException e) {
+            timeSeriesStore.forgetExpiries();
+            amountDistribution.forgetExpiries();
+            throw e;
+        }
+
+        topMerchants.record(transaction.getMerchant(), second);
 
         log.debug("Analytics updated for transaction: {}", transaction.getTransactionId());
     }
 
-    private void updateAverageAmount() {
-        String totalTransactionsStr = (String) redisTemplate.opsForValue().get(TOTAL_TRANSACTIONS_KEY);
-        String totalAmountStr = (String) redisTemplate.opsForValue().get(TOTAL_AMOUNT_KEY);
-
-        if (totalTransactionsStr != null && totalAmountStr != null) {
-            long totalTransactions = Long.parseLong(totalTransactionsStr);
-            BigDecimal totalAmount = new BigDecimal(totalAmountStr);
-
-            if (totalTransactions > 0) {
-                BigDecimal averageAmount = totalAmount.divide(
-                    BigDecimal.valueOf(totalTransactions),
-                    2,
-                    RoundingMode.HALF_UP
-                );
-                redisTemplate.opsForValue().set("analytics:average_amount", averageAmount.toString());
-                log.debug("Updated average amount: {}", averageAmount);
-            }
-        }
+    public Long getTotalTransactions() {
+        Object value = redisTemplate.opsForValue().get(TOTAL_TRANSACTIONS_KEY);
+        return value != null ? Long.parseLong(value.toString()) : 0L;
     }
 
-    public Long getTotalTransactions() {
-        String value = (String) redisTemplate.opsForValue().get(TOTAL_TRANSACTIONS_KEY);
-        return value != null ? Long.parseLong(value) : 0L;
+    /**
+     * Total per currency, in the currency's own units.
+     */
+    public Map<String, BigDecimal> getTotalAmounts() {
+        Map<String, BigDecimal> totals = new TreeMap<>();
+        redisTemplate.opsForHash().entries(AMOUNT_MINOR_KEY).forEach((currency, minor) -> totals.put(
+                currency.toString(), MinorUnits.fromMinor(Long.parseLong(minor.toString()), currency.toString())));
+        return totals;
+    }
+
+    public BigDecimal getTotalAmount(String currency) {
+        String code = MinorUnits.currency(currency);
+        return MinorUnits.fromMinor(hashLong(AMOUNT_MINOR_KEY, code), code);
     }
 
+    // Face values of all currencies added up, as the single total has always been reported
     public BigDecimal getTotalAmount() {
-        String value = (String) redisTemplate.opsForValue().get(TOTAL_AMOUNT_KEY);
-        return value != null ? new BigDecimal(value) : BigDecimal.ZERO;
+        return getTotalAmounts().values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public BigDecimal getAverageAmount(String currency) {
+        String code = MinorUnits.currency(currency);
+        return average(hashLong(AMOUNT_MINOR_KEY, code), hashLong(CURRENCY_TRANSACTIONS_KEY, code),
+                MinorUnits.scale(code));
     }
 
     public BigDecimal getAverageAmount() {
-        String value = (String) redisTemplate.opsForValue().get("analytics:average_amount");
-        return value != null ? new BigDecimal(value) : BigDecimal.ZERO;
+        long transactions = getTotalTransactions();
+        return transactions > 0
+                ? getTotalAmount().divide(BigDecimal.valueOf(transactions), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+    }
+
+    private long hashLong(String key, String field) {
+        Object value = redisTemplate.opsForHash().get(key, field);
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+
+    private static BigDecimal average(long amountMinor, long transactions, int scale) {
+        if (transactions <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return BigDecimal.valueOf(amountMinor, scale).divide(BigDecimal.valueOf(transactions), scale, RoundingMode.HALF_UP);
     }
 }
@@ -0,0 +1,97 @@
+package com.transaction.analytics.service;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * DDSketch quantile summary of positive amounts with 1% relative accuracy.
+ * <p>
+ * A value lands in bin {@code ceil(log_gamma(value))}, gamma = 1.01 / 0.99, so any quantile is returned within 1%
+ * of an amount that was actually recorded. Because the bins are fixed, two sketches merge by adding counts bin
+ * by bin, which is what lets Redis merge them with HINCRBY. Amounts are clamped to [0.01, 10^12], so a sketch
+ * never holds more than about 1,600 bins however much it has seen; zero and negative amounts are counted apart.
+ * Not thread-safe.
+ */
+final class DDSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    static final int MIN_INDEX = index(0.01);
+    static final int MAX_INDEX = index(1e12);
+
+    private final NavigableMap<Integer, long[]> bins = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+
+    static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    // Midpoint of the bin, within the relative accuracy of anything in it
+    static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    void add(double value) {
+        if (value > 0) {
+            addBin(index(value), 1);
+        } else {
+            addZero(1);
+        }
+    }
+
+    void addBin(int index, long weight) {
+        int clamped = Math.max(MIN_INDEX, Math.min(MAX_INDEX, index));
+        bins.computeIfAbsent(clamped, i -> new long[1])[0] += weight;
+        count += weight;
+    }
+
+    void addZero(long weight) {
+        zeroCount += weight;
+        count += weight;
+    }
+
+    void merge(DDSketch other) {
+        other.bins.forEach((index, weight) -> addBin(index, weight[0]));
+        addZero(other.zeroCount);
+    }
+
+    /**
+     * @return the amount at quantile {@code q} in [0, 1], or NaN if the sketch is empty
+     */
+    double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0, Math.min(1, q)) * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (Map.Entry<Integer, long[]> bin : bins.entrySet()) {
+            seen += bin.getValue()[0];
+            if (seen > rank) {
+                return value(bin.getKey());
+            }
+        }
+        return value(bins.lastKey());
+    }
+
+    Map<Integer, long[]> bins() {
+        return bins;
+    }
+
+    long zeroCount() {
+        return zeroCount;
+    }
+
+    long count() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+}
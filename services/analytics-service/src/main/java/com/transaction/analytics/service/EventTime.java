@@ -0,0 +1,25 @@
+package com.transaction.analytics.service;
+
+import java.time.Instant;
+
+/**
+ * The second a transaction is aggregated under. Its timestamp is the client's and only checked for presence, so
+ * one more than {@value #MAX_AHEAD_SECONDS}s past ingest counts at ingest instead: otherwise a single record
+ * dated years ahead would open buckets, and keys, no query reaches until then.
+ */
+final class EventTime {
+
+    static final long MAX_AHEAD_SECONDS = 300;
+
+    private EventTime() {
+    }
+
+    static long epochSecond(Instant timestamp) {
+        return epochSecond(timestamp, Instant.now().getEpochSecond());
+    }
+
+    static long epochSecond(Instant timestamp, long ingestSecond) {
+        long second = timestamp.getEpochSecond();
+        return second > ingestSecond + MAX_AHEAD_SECONDS ? ingestSecond : second;
+    }
+}
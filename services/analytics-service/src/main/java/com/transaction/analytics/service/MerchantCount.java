@@ -0,0 +1,7 @@
+package com.transaction.analytics.service;
+
+/**
+ * A merchant and its estimated transaction count in a window; the estimate never undercounts.
+ */
+public record MerchantCount(String merchant, long count) {
+}
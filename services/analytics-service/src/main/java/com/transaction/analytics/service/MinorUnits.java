@@ -0,0 +1,63 @@
+package com.transaction.analytics.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Money as whole minor units of its currency (cents for USD, yen for JPY, fils for BHD), so that totals are
+ * plain integers Redis can add atomically. Currencies the JDK does not know are counted in hundredths.
+ */
+final class MinorUnits {
+
+    static final String UNKNOWN_CURRENCY = "XXX";
+
+    private static final int DEFAULT_SCALE = 2;
+    private static final Map<String, Integer> SCALES = new ConcurrentHashMap<>();
+
+    private MinorUnits() {
+    }
+
+    // Keeps the set of currencies, and so of hash fields, bounded whatever producers send
+    static String currency(String code) {
+        if (code == null) {
+            return UNKNOWN_CURRENCY;
+        }
+        String normalized = code.trim().toUpperCase(Locale.ROOT);
+        if (normalized.length() != 3) {
+            return UNKNOWN_CURRENCY;
+        }
+        for (int i = 0; i < 3; i++) {
+            char c = normalized.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return UNKNOWN_CURRENCY;
+            }
+        }
+        return normalized;
+    }
+
+    static long toMinor(BigDecimal amount, String currency) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.movePointRight(scale(currency)).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    static BigDecimal fromMinor(long minor, String currency) {
+        return BigDecimal.valueOf(minor, scale(currency));
+    }
+
+    static int scale(String currency) {
+        return SCALES.computeIfAbsent(currency, code -> {
+            try {
+                int digits = Currency.getInstance(code).getDefaultFractionDigits();
+                return digits >= 0 ? digits : DEFAULT_SCALE;
+            } catch (IllegalArgumentException e) {
+                return DEFAULT_SCALE;
+            }
+        });
+    }
+}
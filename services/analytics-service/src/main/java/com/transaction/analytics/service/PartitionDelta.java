@@ -0,0 +1,56 @@
+package com.transaction.analytics.service;
+
+import com.transaction.models.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// What one partition's transactions since the last flush add to the aggregates; guarded by its owner
+final class PartitionDelta {
+
+    long transactions;
+    // Per currency: transaction count and amount in minor units
+    final Map<String, long[]> currencies = new HashMap<>();
+    final TimeSeriesDelta series = new TimeSeriesDelta();
+    final AmountSketchDelta amounts = new AmountSketchDelta();
+    long firstOffset = -1;
+    long lastOffset = -1;
+
+    void add(long offset, Transaction transaction, String category) {
+        if (firstOffset < 0 || offset < firstOffset) {
+            firstOffset = offset;
+        }
+        transactions++;
+        String currency = MinorUnits.currency(transaction.getCurrency());
+        long[] totals = currencies.computeIfAbsent(currency, c -> new long[2]);
+        totals[0]++;
+        long amountMinor = MinorUnits.toMinor(transaction.getAmount(), currency);
+        totals[1] += amountMinor;
+        if (transaction.getTimestamp() != null) {
+            long second = EventTime.epochSecond(transaction.getTimestamp());
+            series.add(second, currency, amountMinor);
+            amounts.add(second, currency, category, transaction.getAmount());
+        }
+        lastOffset = Math.max(lastOffset, offset);
+    }
+
+    // Folds a later delta into this one, e.g. records that arrived while this one failed to flush
+    void addAll(PartitionDelta later) {
+        transactions += later.transactions;
+        later.currencies.forEach((currency, totals) -> {
+            long[] merged = currencies.computeIfAbsent(currency, c -> new long[2]);
+            merged[0] += totals[0];
+            merged[1] += totals[1];
+        });
+        series.addAll(later.series);
+        amounts.addAll(later.amounts);
+        if (firstOffset < 0 || (later.firstOffset >= 0 && later.firstOffset < firstOffset)) {
+            firstOffset = later.firstOffset;
+        }
+        lastOffset = Math.max(lastOffset, later.lastOffset);
+    }
+
+    boolean isEmpty() {
+        return transactions == 0;
+    }
+}
@@ -0,0 +1,48 @@
+package com.transaction.analytics.service;
+
+import java.util.Locale;
+
+/**
+ * Bucket width of a time series, and how many consecutive buckets share one Redis hash.
+ */
+public enum Resolution {
+
+    SECOND(1, 60),
+    MINUTE(60, 60),
+    HOUR(3_600, 24),
+    DAY(86_400, 32);
+
+    private final long bucketSeconds;
+    private final long hashSeconds;
+
+    Resolution(long bucketSeconds, int bucketsPerHash) {
+        this.bucketSeconds = bucketSeconds;
+        this.hashSeconds = bucketSeconds * bucketsPerHash;
+    }
+
+    public long bucketSeconds() {
+        return bucketSeconds;
+    }
+
+    long hashSeconds() {
+        return hashSeconds;
+    }
+
+    long bucketStart(long epochSecond) {
+        return Math.floorDiv(epochSecond, bucketSeconds) * bucketSeconds;
+    }
+
+    // Start of the span stored in one hash
+    long hashStart(long epochSecond) {
+        return Math.floorDiv(epochSecond, hashSeconds) * hashSeconds;
+    }
+
+    // Index of the bucket within its hash
+    int slot(long epochSecond) {
+        return (int) ((epochSecond - hashStart(epochSecond)) / bucketSeconds);
+    }
+
+    public static Resolution parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,108 @@
+package com.transaction.analytics.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Space-Saving heavy-hitter summary: counts for at most {@code capacity} items, kept in a min-heap so the
+ * smallest can be evicted in O(log capacity). A new item replaces the minimum and inherits its count, so
+ * counts overestimate by at most the evicted minimum while every item more frequent than
+ * total / capacity is guaranteed to be present. Not thread-safe.
+ */
+final class SpaceSaving {
+
+    private final String[] items;
+    private final long[] counts;
+    private final Map<String, Integer> positions;
+    private int size;
+
+    SpaceSaving(int capacity) {
+        this.items = new String[capacity];
+        this.counts = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    void add(String item, long weight) {
+        Integer position = positions.get(item);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+        } else if (size < items.length) {
+            items[size] = item;
+            counts[size] = weight;
+            positions.put(item, size);
+            siftUp(size++);
+        } else {
+            positions.remove(items[0]);
+            items[0] = item;
+            counts[0] += weight;
+            positions.put(item, 0);
+            siftDown(0);
+        }
+    }
+
+    void addAll(SpaceSaving other) {
+        other.forEach(this::add);
+    }
+
+    void forEach(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(items[i], counts[i]);
+        }
+    }
+
+    long count(String item) {
+        Integer position = positions.get(item);
+        return position != null ? counts[position] : 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String item = items[a];
+        long count = counts[a];
+        items[a] = items[b];
+        counts[a] = counts[b];
+        items[b] = item;
+        counts[b] = count;
+        positions.put(items[a], a);
+        positions.put(items[b], b);
+    }
+}
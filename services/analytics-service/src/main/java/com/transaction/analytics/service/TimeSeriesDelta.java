@@ -0,0 +1,46 @@
+package com.transaction.analytics.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Per-second transaction counts and per-currency amounts not yet written to the time series; not thread-safe
+final class TimeSeriesDelta {
+
+    final Map<Long, Bucket> seconds = new HashMap<>();
+
+    void add(long epochSecond, String currency, long amountMinor) {
+        Bucket bucket = seconds.computeIfAbsent(epochSecond, second -> new Bucket());
+        bucket.transactions++;
+        bucket.amounts.computeIfAbsent(currency, c -> new long[1])[0] += amountMinor;
+    }
+
+    void addAll(TimeSeriesDelta later) {
+        later.seconds.forEach((second, bucket) -> seconds.computeIfAbsent(second, s -> new Bucket()).addAll(bucket));
+    }
+
+    // The same counts summed into buckets of the given resolution, keyed by bucket start
+    Map<Long, Bucket> rollUp(Resolution resolution) {
+        if (resolution == Resolution.SECOND) {
+            return seconds;
+        }
+        Map<Long, Bucket> buckets = new HashMap<>();
+        seconds.forEach((second, bucket) ->
+                buckets.computeIfAbsent(resolution.bucketStart(second), start -> new Bucket()).addAll(bucket));
+        return buckets;
+    }
+
+    boolean isEmpty() {
+        return seconds.isEmpty();
+    }
+
+    static final class Bucket {
+
+        long transactions;
+        final Map<String, long[]> amounts = new HashMap<>();
+
+        void addAll(Bucket other) {
+            transactions += other.transactions;
+            other.amounts.forEach((currency, amount) -> amounts.computeIfAbsent(currency, c -> new long[1])[0] += amount[0]);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.transaction.analytics.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One bucket of a time series: transactions in it, their mean rate, and their volume per currency.
+ */
+public record TimeSeriesPoint(Instant timestamp, long transactions, double tps, Map<String, BigDecimal> volume) {
+}
@@ -0,0 +1,181 @@
+package com.transaction.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transaction counts and per-currency volume at second, minute, hour and day resolution.
+ * <p>
+ * Every resolution is written at ingest, so rollups are exact and need no background job. Consecutive buckets
+ * share one hash, {@code analytics:ts:<resolution>:<start of span>}, whose field {@code <slot>} holds the count
+ * and {@code <slot>:<currency>} the amount in minor units. Each hash expires at the end of its span plus the
+ * resolution's retention; the expiry is absolute, so it is set once per hash rather than on every write, and
+ * the number of live keys stays at roughly retention / span per resolution.
+ */
+@Slf4j
+@Service
+public class TimeSeriesStore {
+
+    static final String KEY_PREFIX = "analytics:ts:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Map<Resolution, Duration> retention = new EnumMap<>(Resolution.class);
+    private final int maxPoints;
+    // Per resolution, the newest hash of the last write; only that one's expiry is not set again
+    private final AtomicLongArray expiring = new AtomicLongArray(Resolution.values().length);
+
+    public TimeSeriesStore(RedisTemplate<String, Object> redisTemplate,
+                           @Value("${analytics.timeseries.second.retention-minutes:60}") long secondRetentionMinutes,
+                           @Value("${analytics.timeseries.minute.retention-hours:168}") long minuteRetentionHours,
+                           @Value("${analytics.timeseries.hour.retention-days:90}") long hourRetentionDays,
+                           @Value("${analytics.timeseries.day.retention-days:730}") long dayRetentionDays,
+                           @Value("${analytics.timeseries.max-points:1440}") int maxPoints) {
+        this.redisTemplate = redisTemplate;
+        this.retention.put(Resolution.SECOND, Duration.ofMinutes(secondRetentionMinutes));
+        this.retention.put(Resolution.MINUTE, Duration.ofHours(minuteRetentionHours));
+        this.retention.put(Resolution.HOUR, Duration.ofDays(hourRetentionDays));
+        this.retention.put(Resolution.DAY, Duration.ofDays(dayRetentionDays));
+        this.maxPoints = maxPoints;
+        forgetExpiries();
+    }
+
+    /**
+     * Queues the delta's increments on {@code redis}, typically a pipeline or transaction the caller executes.
+     * If that execution fails, the caller must {@link #forgetExpiries()} so the next write sets them again.
+     */
+    void write(RedisOperations<String, Object> redis, TimeSeriesDelta delta) {
+        HashOperations<String, Object, Object> hashes = redis.opsForHash();
+        for (Resolution resolution : Resolution.values()) {
+            TreeSet<Long> spans = new TreeSet<>();
+            delta.rollUp(resolution).forEach((start, bucket) -> {
+                long span = resolution.hashStart(start);
+                String key = key(resolution, span);
+                int slot = resolution.slot(start);
+                hashes.increment(key, Integer.toString(slot), bucket.transactions);
+                bucket.amounts.forEach((currency, amount) -> {
+                    if (amount[0] != 0) {
+                        hashes.increment(key, slot + ":" + currency, amount[0]);
+                    }
+                });
+                spans.add(span);
+            });
+            if (spans.isEmpty()) {
+                continue;
+            }
+            // Only late records reach older spans. The last write's newest span is remembered rather than the
+            // newest ever, so an outlier ahead of the others costs one more EXPIRE, not one on every write after it
+            long newest = spans.last();
+            for (long span : spans.headSet(newest)) {
+                redis.expireAt(key(resolution, span), expiry(resolution, span));
+            }
+            if (expiring.getAndSet(resolution.ordinal(), newest) != newest) {
+                redis.expireAt(key(resolution, newest), expiry(resolution, newest));
+            }
+        }
+    }
+
+    void forgetExpiries() {
+        for (int i = 0; i < expiring.length(); i++) {
+            expiring.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Buckets of the given resolution from the one containing {@code from} up to, not including, {@code to}.
+     * Buckets without transactions are returned as zeros, and so are those past retention.
+     *
+     * @throws IllegalArgumentException if the range holds more than {@code max-points} buckets
+     */
+    public List<TimeSeriesPoint> range(Resolution resolution, Instant from, Instant to) {
+        long first = resolution.bucketStart(from.getEpochSecond());
+        long end = to.getEpochSecond();
+        if (end <= first) {
+            return List.of();
+        }
+        long points = (end - first + resolution.bucketSeconds() - 1) / resolution.bucketSeconds();
+        if (points > maxPoints) {
+            throw new IllegalArgumentException("Range spans " + points + " "
+                    + resolution.name().toLowerCase(Locale.ROOT) + " buckets; at most " + maxPoints + " are returned");
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (long span = resolution.hashStart(first); span < end; span += resolution.hashSeconds()) {
+            keys.add(key(resolution, span));
+        }
+        List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                keys.forEach(key -> redis.opsForHash().entries(key));
+                return null;
+            }
+        });
+
+        Map<Long, long[]> counts = new HashMap<>();
+        Map<Long, Map<String, BigDecimal>> volumes = new HashMap<>();
+        long span = resolution.hashStart(first);
+        for (Object hash : hashes) {
+            if (hash instanceof Map<?, ?> fields) {
+                long spanStart = span;
+                fields.forEach((field, value) -> read(resolution, spanStart, field.toString(), value, counts, volumes));
+            }
+            span += resolution.hashSeconds();
+        }
+
+        List<TimeSeriesPoint> series = new ArrayList<>((int) points);
+        for (long bucket = first; bucket < end; bucket += resolution.bucketSeconds()) {
+            long[] count = counts.get(bucket);
+            long transactions = count != null ? count[0] : 0;
+            series.add(new TimeSeriesPoint(Instant.ofEpochSecond(bucket), transactions,
+                    (double) transactions / resolution.bucketSeconds(),
+                    volumes.getOrDefault(bucket, Map.of())));
+        }
+        return series;
+    }
+
+    private static void read(Resolution resolution, long span, String field, Object value,
+                             Map<Long, long[]> counts, Map<Long, Map<String, BigDecimal>> volumes) {
+        try {
+            int separator = field.indexOf(':');
+            long bucket = span + Long.parseLong(separator < 0 ? field : field.substring(0, separator))
+                    * resolution.bucketSeconds();
+            long number = Long.parseLong(value.toString());
+            if (separator < 0) {
+                counts.computeIfAbsent(bucket, b -> new long[1])[0] += number;
+            } else {
+                String currency = field.substring(separator + 1);
+                volumes.computeIfAbsent(bucket, b -> new TreeMap<>())
+                        .merge(currency, MinorUnits.fromMinor(number, currency), BigDecimal::add);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed time-series field {}={} in {}", field, value, key(resolution, span));
+        }
+    }
+
+    private Instant expiry(Resolution resolution, long span) {
+        return Instant.ofEpochSecond(span + resolution.hashSeconds()).plus(retention.get(resolution));
+    }
+
+    static String key(Resolution resolution, long span) {
+        return KEY_PREFIX + resolution.name().toLowerCase(Locale.ROOT) + ":" + span;
+    }
+}
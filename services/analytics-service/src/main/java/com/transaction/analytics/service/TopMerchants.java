@@ -0,0 +1,189 @@
+package com.transaction.analytics.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Most frequent merchants over the last minute, hour and day.
+ * <p>
+ * Each instance counts merchants in {@link SpaceSaving} summaries of {@code capacity} entries, one per ten
+ * seconds of transaction time, and every {@code flush-interval-ms} adds them to sorted sets in Redis, where
+ * the counts of all instances sum. Each window is split into buckets (10 s for the minute, 5 min for the hour,
+ * 1 h for the day) whose sorted set is trimmed back to {@code capacity} members after every flush, so memory
+ * is fixed in both places. A query unions the window's buckets into a cached set, refreshed every few
+ * seconds, and reads its top K with one ZREVRANGE.
+ */
+@Slf4j
+@Service
+public class TopMerchants {
+
+    static final String KEY_PREFIX = "analytics:top_merchants:";
+    // In-memory summaries cover the finest bucket of any window
+    private static final long SUMMARY_SECONDS = 10;
+
+    public enum Window {
+
+        MINUTE(60, 10, 1),
+        HOUR(3_600, 300, 10),
+        DAY(86_400, 3_600, 60);
+
+        private final long seconds;
+        private final long bucketSeconds;
+        private final Duration cached;
+
+        Window(long seconds, long bucketSeconds, long cachedSeconds) {
+            this.seconds = seconds;
+            this.bucketSeconds = bucketSeconds;
+            this.cached = Duration.ofSeconds(cachedSeconds);
+        }
+
+        long bucketStart(long epochSecond) {
+            return Math.floorDiv(epochSecond, bucketSeconds) * bucketSeconds;
+        }
+
+        String key() {
+            return KEY_PREFIX + name().toLowerCase(Locale.ROOT);
+        }
+
+        String key(long bucketStart) {
+            return key() + ":" + bucketStart;
+        }
+
+        public static Window parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int capacity;
+    // Summaries by the start of their ten seconds; guarded by this
+    private Map<Long, SpaceSaving> pending = new HashMap<>();
+
+    public TopMerchants(RedisTemplate<String, Object> redisTemplate,
+                        @Value("${analytics.top-merchants.capacity:100}") int capacity) {
+        this.redisTemplate = redisTemplate;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized void record(String merchant, long epochSecond) {
+        if (merchant == null) {
+            return;
+        }
+        long summary = Math.floorDiv(epochSecond, SUMMARY_SECONDS) * SUMMARY_SECONDS;
+        pending.computeIfAbsent(summary, start -> new SpaceSaving(capacity)).add(merchant, 1);
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.top-merchants.flush-interval-ms:1000}")
+    public void flush() {
+        Map<Long, SpaceSaving> summaries;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            summaries = pending;
+            pending = new HashMap<>();
+        }
+        try {
+            write(summaries);
+        } catch (DataAccessException e) {
+            log.error("Failed to flush {} top-merchant summaries; retrying with the next flush", summaries.size(), e);
+            synchronized (this) {
+                summaries.forEach((start, summary) -> pending.merge(start, summary, (later, failed) -> {
+                    failed.addAll(later);
+                    return failed;
+                }));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public List<MerchantCount> top(Window window, int k) {
+        return top(window, k, Instant.now());
+    }
+
+    List<MerchantCount> top(Window window, int k, Instant now) {
+        String merged = window.key();
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(merged))) {
+            merge(window, now.getEpochSecond());
+        }
+        Set<TypedTuple<Object>> top = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(merged, 0, Math.min(k, capacity) - 1);
+        List<MerchantCount> merchants = new ArrayList<>();
+        if (top != null) {
+            for (TypedTuple<Object> entry : top) {
+                double score = entry.getScore() != null ? entry.getScore() : 0;
+                merchants.add(new MerchantCount(String.valueOf(entry.getValue()), Math.round(score)));
+            }
+        }
+        return merchants;
+    }
+
+    private void write(Map<Long, SpaceSaving> summaries) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                ZSetOperations<String, Object> sets = redis.opsForZSet();
+                summaries.forEach((start, summary) -> {
+                    for (Window window : Window.values()) {
+                        long bucket = window.bucketStart(start);
+                        String key = window.key(bucket);
+                        summary.forEach((merchant, count) -> sets.incrementScore(key, merchant, count));
+                        sets.removeRange(key, 0, -capacity - 1L);
+                        redis.expireAt(key, Instant.ofEpochSecond(bucket + window.bucketSeconds + window.seconds));
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    // Unions the buckets covering the window up to now into the window's cached set
+    private void merge(Window window, long now) {
+        long current = window.bucketStart(now);
+        List<String> buckets = new ArrayList<>();
+        long first = current - window.seconds + window.bucketSeconds;
+        for (long start = first; start <= current; start += window.bucketSeconds) {
+            buckets.add(window.key(start));
+        }
+        String merged = window.key();
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                redis.opsForZSet().unionAndStore(buckets.get(0), buckets.subList(1, buckets.size()), merged);
+                redis.opsForZSet().removeRange(merged, 0, -capacity - 1L);
+                redis.expire(merged, window.cached);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package com.transaction.analytics.controller;
+
+import com.transaction.analytics.service.AmountDistribution;
+import com.transaction.analytics.service.AmountQuantiles;
+import com.transaction.analytics.service.MerchantCount;
+import com.transaction.analytics.service.Resolution;
+import com.transaction.analytics.service.TimeSeriesPoint;
+import com.transaction.analytics.service.TimeSeriesStore;
+import com.transaction.analytics.service.TopMerchants;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AnalyticsController.class)
+class AnalyticsControllerTest {
+
+    private static final Instant FROM = Instant.parse("2024-05-01T12:00:00Z");
+    private static final Instant TO = Instant.parse("2024-05-01T12:02:00Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TimeSeriesStore timeSeriesStore;
+
+    @MockBean
+    private TopMerchants topMerchants;
+
+    @MockBean
+    private AmountDistribution amountDistribution;
+
+    @Test
+    void shouldReturnTimeSeries() throws Exception {
+        when(timeSeriesStore.range(Resolution.MINUTE, FROM, TO)).thenReturn(List.of(
+                new TimeSeriesPoint(FROM, 120, 2.0, Map.of("USD", new BigDecimal("1500.00"))),
+                new TimeSeriesPoint(FROM.plusSeconds(60), 0, 0.0, Map.of())));
+
+        mockMvc.perform(get("/api/v1/analytics/timeseries")
+                        .param("resolution", "minute")
+                        .param("from", FROM.toString())
+                        .param("to", TO.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resolution").value("minute"))
+                .andExpect(jsonPath("$.points.length()").value(2))
+                .andExpect(jsonPath("$.points[0].transactions").value(120))
+                .andExpect(jsonPath("$.points[0].tps").value(2.0))
+                .andExpect(jsonPath("$.points[0].volume.USD").value(1500.00));
+    }
+
+    @Test
+    void shouldRejectUnknownResolution() throws Exception {
+        mockMvc.perform(get("/api/v1/analytics/timeseries").param("resolution", "week"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("ERROR"));
+
+        verify(timeSeriesStore, never()).range(any(), any(), any());
+    }
+
+    @Test
+    void shouldRejectRangeOverMaxPoints() throws Exception {
+        when(timeSeriesStore.range(Resolution.SECOND, FROM, TO))
+                .thenThrow(new IllegalArgumentException("Range spans too many buckets"));
+
+        mockMvc.perform(get("/api/v1/analytics/timeseries")
+                        .param("resolution", "second")
+                        .param("from", FROM.toString())
+                        .param("to", TO.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Range spans too many buckets"));
+    }
+
+    @Test
+    void shouldReturnTopMerchants() throws Exception {
+        when(topMerchants.capacity()).thenReturn(100);
+        when(topMerchants.top(TopMerchants.Window.DAY, 2)).thenReturn(List.of(
+                new MerchantCount("Shop A", 900), new MerchantCount("Shop B", 450)));
+
+        mockMvc.perform(get("/api/v1/analytics/top-merchants").param("window", "day").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.window").value("day"))
+                .andExpect(jsonPath("$.merchants[0].merchant").value("Shop A"))
+                .andExpect(jsonPath("$.merchants[0].count").value(900))
+                .andExpect(jsonPath("$.merchants[1].merchant").value("Shop B"));
+    }
+
+    @Test
+    void shouldRejectTopMerchantsLimitOverCapacity() throws Exception {
+        when(topMerchants.capacity()).thenReturn(100);
+
+        mockMvc.perform(get("/api/v1/analytics/top-merchants").param("window", "minute").param("limit", "101"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/analytics/top-merchants").param("window", "week"))
+                .andExpect(status().isBadRequest());
+
+        verify(topMerchants, never()).top(any(), anyInt());
+    }
+
+    @Test
+    void shouldReturnAmountQuantiles() throws Exception {
+        when(amountDistribution.quantiles(eq("USD"), eq("RETAIL"), eq(FROM), eq(TO), aryEq(new double[]{0.5, 0.99})))
+                .thenReturn(new AmountQuantiles("USD", "RETAIL", 1200,
+                        Map.of("p50", new BigDecimal("42.10"), "p99", new BigDecimal("980.00"))));
+
+        mockMvc.perform(get("/api/v1/analytics/amount-quantiles")
+                        .param("currency", "USD")
+                        .param("category", "RETAIL")
+                        .param("from", FROM.toString())
+                        .param("to", TO.toString())
+                        .param("q", "0.5,0.99"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions").value(1200))
+                .andExpect(jsonPath("$.quantiles.p50").value(42.10))
+                .andExpect(jsonPath("$.quantiles.p99").value(980.00));
+    }
+
+    @Test
+    void shouldRejectQuantilesOutsideUnitInterval() throws Exception {
+        mockMvc.perform(get("/api/v1/analytics/amount-quantiles").param("currency", "USD").param("q", "0.5,99"))
+                .andExpect(status().isBadRequest());
+
+        verify(amountDistribution, never()).quantiles(any(), any(), any(), any(), any(double[].class));
+    }
+}
@@ -0,0 +1,172 @@
+package com.transaction.analytics.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AmountDistributionTest {
+
+    private static final long MINUTE = Instant.parse("2024-05-01T12:00:00Z").getEpochSecond();
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisOperations<String, Object> redis;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashes;
+
+    private AmountDistribution distribution;
+
+    @BeforeEach
+    void setUp() {
+        when(redis.opsForHash()).thenReturn(hashes);
+        distribution = new AmountDistribution(redisTemplate, 168, 60, List.of("RETAIL", "TRAVEL"));
+    }
+
+    @Test
+    void shouldEstimateQuantilesWithinRelativeAccuracy() {
+        DDSketch sketch = new DDSketch();
+        for (int amount = 1; amount <= 10_000; amount++) {
+            sketch.add(amount);
+        }
+
+        assertThat(sketch.quantile(0.5)).isCloseTo(5_000, within(50.0));
+        assertThat(sketch.quantile(0.99)).isCloseTo(9_900, within(99.0));
+        assertThat(sketch.quantile(0)).isCloseTo(1, within(0.02));
+        // Memory depends on the range of amounts, not on how many were added
+        assertThat(sketch.bins().size()).isLessThan(500);
+    }
+
+    @Test
+    void shouldMergeSketchesBinByBin() {
+        DDSketch low = new DDSketch();
+        DDSketch high = new DDSketch();
+        DDSketch all = new DDSketch();
+        for (int amount = 1; amount <= 1_000; amount++) {
+            (amount % 2 == 0 ? low : high).add(amount);
+            all.add(amount);
+        }
+        low.add(0);
+        all.add(0);
+
+        low.merge(high);
+
+        assertThat(low.count()).isEqualTo(all.count());
+        assertThat(low.bins().keySet()).isEqualTo(all.bins().keySet());
+        assertThat(low.quantile(0.95)).isEqualTo(all.quantile(0.95));
+        assertThat(low.quantile(0)).isZero();
+    }
+
+    @Test
+    void shouldWriteBinsForCategoryAndCurrency() {
+        AmountSketchDelta delta = new AmountSketchDelta();
+        delta.add(MINUTE + 5, "USD", distribution.category(" retail"), new BigDecimal("100.00"));
+        delta.add(MINUTE + 6, "USD", distribution.category("RETAIL"), new BigDecimal("100.00"));
+        delta.add(MINUTE + 7, "USD", distribution.category("not a category!"), BigDecimal.ZERO);
+
+        distribution.write(redis, delta);
+        distribution.write(redis, delta);
+
+        String bin = Integer.toString(DDSketch.index(100.0));
+        verify(hashes, times(2)).increment("analytics:amounts:USD:RETAIL:" + MINUTE, bin, 2L);
+        verify(hashes, times(2)).increment("analytics:amounts:USD:*:" + MINUTE, bin, 2L);
+        verify(hashes, times(2)).increment("analytics:amounts:USD:*:" + MINUTE, "z", 1L);
+        verify(hashes, times(2)).increment("analytics:amounts:USD:OTHER:" + MINUTE, "z", 1L);
+        // Expiry is set once per key
+        verify(redis).expireAt("analytics:amounts:USD:RETAIL:" + MINUTE,
+                Instant.ofEpochSecond(MINUTE + 60).plus(Duration.ofHours(168)));
+        verify(redis, times(3)).expireAt(anyString(), any(Instant.class));
+
+        distribution.forgetExpiries();
+        distribution.write(redis, delta);
+        verify(redis, times(6)).expireAt(anyString(), any(Instant.class));
+    }
+
+    @Test
+    void shouldCountUnlistedCategoriesAsOther() {
+        assertThat(distribution.category("Travel")).isEqualTo("TRAVEL");
+        assertThat(distribution.category("TRAVEL_2")).isEqualTo("OTHER");
+        assertThat(distribution.category(" ")).isEqualTo("UNKNOWN");
+    }
+
+    @Test
+    void shouldSetExpiryOncePerKeyAfterAFutureDatedWrite() {
+        AmountSketchDelta future = new AmountSketchDelta();
+        future.add(MINUTE + 365L * 86400, "USD", "RETAIL", BigDecimal.TEN);
+        distribution.write(redis, future);
+        for (int i = 0; i < 3; i++) {
+            AmountSketchDelta delta = new AmountSketchDelta();
+            delta.add(MINUTE + i, "USD", "RETAIL", BigDecimal.TEN);
+            distribution.write(redis, delta);
+        }
+
+        // Two keys for the future minute, two for the current one, then none
+        verify(redis, times(4)).expireAt(anyString(), any(Instant.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMergeMinutesIntoQuantiles() {
+        Map<Object, Object> first = new HashMap<>();
+        first.put(Integer.toString(DDSketch.index(10.0)), "98");
+        first.put("z", "1");
+        Map<Object, Object> second = Map.of(Integer.toString(DDSketch.index(1_000.0)), "1");
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(redis);
+            return List.of(first, Map.of(), second);
+        });
+
+        AmountQuantiles quantiles = distribution.quantiles("usd", "Retail", Instant.ofEpochSecond(MINUTE + 30),
+                Instant.ofEpochSecond(MINUTE + 150), 0.5, 0.995, 1, 0);
+
+        verify(hashes).entries("analytics:amounts:USD:RETAIL:" + MINUTE);
+        verify(hashes).entries("analytics:amounts:USD:RETAIL:" + (MINUTE + 120));
+        assertThat(quantiles.currency()).isEqualTo("USD");
+        assertThat(quantiles.category()).isEqualTo("RETAIL");
+        assertThat(quantiles.transactions()).isEqualTo(100);
+        assertThat(quantiles.quantiles()).containsOnlyKeys("p50", "p99.5", "p100", "p0");
+        assertThat(quantiles.quantiles().get("p50").doubleValue()).isCloseTo(10.0, within(0.1));
+        assertThat(quantiles.quantiles().get("p99.5").doubleValue()).isCloseTo(10.0, within(0.1));
+        assertThat(quantiles.quantiles().get("p100").doubleValue()).isCloseTo(1_000.0, within(10.0));
+        assertThat(quantiles.quantiles().get("p0")).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(quantiles.quantiles().get("p50").scale()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRejectRangesOverMaxMinutes() {
+        Instant to = Instant.ofEpochSecond(MINUTE);
+
+        assertThatThrownBy(() -> distribution.quantiles("USD", null, to.minus(Duration.ofHours(2)), to, 0.5))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        AmountQuantiles empty = distribution.quantiles("USD", null, to.minus(Duration.ofMinutes(5)), to, 0.5);
+        assertThat(empty.category()).isEqualTo("*");
+        assertThat(empty.transactions()).isZero();
+        assertThat(empty.quantiles()).isEmpty();
+    }
+}
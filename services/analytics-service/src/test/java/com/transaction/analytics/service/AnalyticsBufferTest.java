@@ -0,0 +1,281 @@
+package com.transaction.analytics.service;
+
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AnalyticsBufferTest {
+
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:00Z");
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private RedisOperations<String, Object> session;
+
+    @Mock
+    private ValueOperations<String, Object> sessionValues;
+
+    @Mock
+    private HashOperations<String, Object, Object> sessionHashes;
+
+    @Mock
+    private TopMerchants topMerchants;
+
+    private TimeSeriesStore timeSeriesStore;
+    private AmountDistribution amountDistribution;
+    private SimpleMeterRegistry meterRegistry;
+    private AnalyticsBuffer buffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(session.opsForValue()).thenReturn(sessionValues);
+        when(session.opsForHash()).thenReturn(sessionHashes);
+        when(redisTemplate.execute(any(SessionCallback.class))).thenAnswer(invocation ->
+                invocation.<SessionCallback<Object>>getArgument(0).execute(session));
+        when(session.exec()).thenReturn(List.of("OK"));
+        timeSeriesStore = new TimeSeriesStore(redisTemplate, 60, 168, 90, 730, 1440);
+        amountDistribution = new AmountDistribution(redisTemplate, 168, 1440, List.of("RETAIL"));
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new AnalyticsBuffer(redisTemplate, timeSeriesStore, topMerchants, amountDistribution, meterRegistry, "analytics-group", 1000);
+    }
+
+    @Test
+    void shouldWriteAggregatedDeltasAndHighWaterMarkInOneTransaction() {
+        buffer.assign(0);
+        buffer.add(0, 10, transaction("Shop A", "100.00", NOW));
+        buffer.add(0, 11, transaction("Shop A", "50.50", NOW));
+        buffer.add(0, 12, transaction("Shop B", "0.50", NOW.plusSeconds(1)));
+
+        verify(redisTemplate, never()).execute(any(SessionCallback.class));
+        buffer.flushAll();
+
+        InOrder inOrder = inOrder(session, sessionValues);
+        inOrder.verify(session).watch("analytics:offsets:analytics-group:0");
+        inOrder.verify(sessionValues).get("analytics:offsets:analytics-group:0");
+        inOrder.verify(session).multi();
+        inOrder.verify(sessionValues).increment("analytics:total_transactions", 3L);
+        inOrder.verify(sessionValues).set("analytics:offsets:analytics-group:0", "12");
+        inOrder.verify(session).exec();
+        verify(sessionHashes).increment("analytics:amount_minor", "USD", 15100L);
+        verify(sessionHashes).increment("analytics:transactions_by_currency", "USD", 3L);
+        verify(sessionHashes).increment("analytics:ts:second:" + NOW.getEpochSecond(), "0", 2L);
+        verify(sessionHashes).increment("analytics:ts:second:" + NOW.getEpochSecond(), "1", 1L);
+        verify(sessionHashes).increment("analytics:ts:second:" + NOW.getEpochSecond(), "0:USD", 15050L);
+        verify(sessionHashes).increment("analytics:ts:minute:" + NOW.getEpochSecond(), "0", 3L);
+        verify(sessionHashes).increment("analytics:ts:minute:" + NOW.getEpochSecond(), "0:USD", 15100L);
+        verify(session, times(4)).expireAt(startsWith("analytics:ts:"), any(Instant.class));
+        verify(sessionHashes).increment("analytics:amounts:USD:*:" + NOW.getEpochSecond(),
+                Integer.toString(DDSketch.index(100.0)), 1L);
+        verify(sessionHashes).increment("analytics:amounts:USD:UNKNOWN:" + NOW.getEpochSecond(),
+                Integer.toString(DDSketch.index(0.5)), 1L);
+        verify(topMerchants, times(2)).record("Shop A", NOW.getEpochSecond());
+        verify(topMerchants).record("Shop B", NOW.getEpochSecond() + 1);
+        assertThat(meterRegistry.get("analytics.flush.records").counter().count()).isEqualTo(3.0);
+
+        buffer.flushAll();
+        verify(redisTemplate, times(1)).execute(any(SessionCallback.class));
+
+        buffer.add(0, 13, transaction("Shop A", "1.00", NOW.plusSeconds(2)));
+        buffer.flushAll();
+        verify(sessionHashes).increment("analytics:ts:second:" + NOW.getEpochSecond(), "2", 1L);
+        verify(session, times(4)).expireAt(startsWith("analytics:ts:"), any(Instant.class));
+    }
+
+    @Test
+    void shouldCountRecordsDatedFarAheadAtIngestTime() {
+        long ahead = Instant.now().plus(Duration.ofDays(365)).getEpochSecond();
+        buffer.assign(0);
+        buffer.add(0, 0, transaction("Shop A", "10.00", Instant.ofEpochSecond(ahead)));
+        buffer.flushAll();
+
+        verify(sessionHashes).increment(startsWith("analytics:ts:second:"), anyString(), eq(1L));
+        verify(sessionHashes, never()).increment(eq("analytics:ts:second:" + Resolution.SECOND.hashStart(ahead)),
+                anyString(), anyLong());
+        verify(sessionHashes, never()).increment(eq("analytics:amounts:USD:*:" + Math.floorDiv(ahead, 60) * 60),
+                anyString(), anyLong());
+        verify(topMerchants, never()).record("Shop A", ahead);
+    }
+
+    @Test
+    void shouldAggregateEachCurrencyInItsOwnMinorUnits() {
+        buffer.assign(0);
+        buffer.add(0, 0, transaction("Shop A", "0.10", NOW));
+        buffer.add(0, 1, transaction("Shop A", "0.20", NOW));
+        buffer.add(0, 2, transaction("Shop A", "1500", "jpy", NOW));
+        buffer.add(0, 3, transaction("Shop A", "1.005", "BHD", NOW));
+        buffer.flushAll();
+
+        verify(sessionHashes).increment("analytics:amount_minor", "USD", 30L);
+        verify(sessionHashes).increment("analytics:amount_minor", "JPY", 1500L);
+        verify(sessionHashes).increment("analytics:amount_minor", "BHD", 1005L);
+        verify(sessionHashes).increment("analytics:transactions_by_currency", "USD", 2L);
+        verify(sessionHashes).increment("analytics:transactions_by_currency", "JPY", 1L);
+    }
+
+    @Test
+    void shouldSkipRecordsAlreadyInRedis() {
+        when(valueOperations.get("analytics:offsets:analytics-group:3")).thenReturn("41");
+
+        assertThat(buffer.assign(3)).isEqualTo(41);
+        buffer.add(3, 40, transaction("Shop A", "10.00", NOW));
+        buffer.add(3, 41, transaction("Shop A", "10.00", NOW));
+        buffer.add(3, 42, transaction("Shop A", "10.00", NOW));
+        buffer.flushAll();
+
+        verify(sessionValues).increment("analytics:total_transactions", 1L);
+        verify(sessionValues).set("analytics:offsets:analytics-group:3", "42");
+        assertThat(meterRegistry.get("analytics.replayed").counter().count()).isEqualTo(2.0);
+        verify(topMerchants, times(1)).record(anyString(), anyLong());
+    }
+
+    @Test
+    void shouldFlushPartitionOnceItHoldsMaxRecords() {
+        AnalyticsBuffer small = new AnalyticsBuffer(redisTemplate, timeSeriesStore, topMerchants, amountDistribution, meterRegistry, "analytics-group", 2);
+        small.assign(1);
+
+        small.add(1, 0, transaction("Shop A", "1.00", NOW));
+        verify(redisTemplate, never()).execute(any(SessionCallback.class));
+        small.add(1, 1, transaction("Shop A", "1.00", NOW));
+
+        verify(sessionValues).increment("analytics:total_transactions", 2L);
+    }
+
+    @Test
+    void shouldKeepDeltasWhenFlushFails() {
+        buffer.assign(0);
+        buffer.add(0, 0, transaction("Shop A", "1.00", NOW));
+        doThrow(new RedisConnectionFailureException("down")).doReturn(List.of("OK")).when(session).exec();
+
+        buffer.flushAll();
+        buffer.add(0, 1, transaction("Shop A", "1.00", NOW));
+        buffer.flushAll();
+
+        verify(sessionValues).increment("analytics:total_transactions", 2L);
+        verify(sessionValues).set("analytics:offsets:analytics-group:0", "1");
+        assertThat(meterRegistry.get("analytics.flush.failures").counter().count()).isEqualTo(1.0);
+        // The failed transaction's expiries are set again
+        verify(session, times(8)).expireAt(startsWith("analytics:ts:"), any(Instant.class));
+    }
+
+    @Test
+    void shouldFlushRevokedPartition() {
+        buffer.assign(2);
+        buffer.add(2, 7, transaction("Shop A", "1.00", NOW));
+
+        buffer.revoke(2);
+
+        verify(sessionValues).set("analytics:offsets:analytics-group:2", "7");
+    }
+
+    @Test
+    void shouldDropStaleFlushOfPartitionTakenOverByAnotherPod() {
+        buffer.assign(0);
+        buffer.add(0, 10, transaction("Shop A", "1.00", NOW));
+        buffer.add(0, 11, transaction("Shop A", "1.00", NOW));
+        // The new owner has flushed past everything this pod still holds
+        when(sessionValues.get("analytics:offsets:analytics-group:0")).thenReturn("15");
+
+        buffer.flushAll();
+
+        verify(session).unwatch();
+        verify(session, never()).multi();
+        verify(sessionValues, never()).increment(anyString(), anyLong());
+        verify(sessionValues, never()).set(anyString(), any());
+        assertThat(meterRegistry.get("analytics.flush.fenced").counter().count()).isEqualTo(1.0);
+        assertThat(buffer.takeRewind(0)).isEqualTo(-1);
+
+        buffer.add(0, 12, transaction("Shop A", "1.00", NOW));
+        buffer.flushAll();
+        verify(session, never()).multi();
+    }
+
+    @Test
+    void shouldRewindToTheMarkWhenAFencedFlushDroppedNewerRecords() {
+        buffer.assign(0);
+        for (long offset = 10; offset <= 14; offset++) {
+            buffer.add(0, offset, transaction("Shop A", "1.00", NOW));
+        }
+        // The previous owner flushed 10..11 after this pod had read the mark at assignment
+        when(sessionValues.get("analytics:offsets:analytics-group:0")).thenReturn("11");
+
+        buffer.flushAll();
+
+        verify(session, never()).multi();
+        assertThat(buffer.takeRewind(0)).isEqualTo(12);
+        assertThat(buffer.takeRewind(0)).isEqualTo(-1);
+
+        // Fetched before the seek, so redelivered after it
+        buffer.add(0, 15, transaction("Shop A", "1.00", NOW));
+        buffer.add(0, 12, transaction("Shop A", "1.00", NOW));
+        buffer.add(0, 13, transaction("Shop A", "1.00", NOW));
+        buffer.add(0, 14, transaction("Shop A", "1.00", NOW));
+        buffer.add(0, 15, transaction("Shop A", "1.00", NOW));
+        buffer.flushAll();
+
+        verify(sessionValues).increment("analytics:total_transactions", 4L);
+        verify(sessionValues).set("analytics:offsets:analytics-group:0", "15");
+    }
+
+    @Test
+    void shouldCheckTheMarkAgainWhenItChangesDuringTheTransaction() {
+        buffer.assign(0);
+        buffer.add(0, 10, transaction("Shop A", "1.00", NOW));
+        when(sessionValues.get("analytics:offsets:analytics-group:0")).thenReturn(null, "10");
+        // EXEC answers an empty result when the watched key was written by someone else
+        when(session.exec()).thenReturn(List.of());
+
+        buffer.flushAll();
+
+        verify(session, times(2)).watch("analytics:offsets:analytics-group:0");
+        verify(session, times(1)).multi();
+        assertThat(meterRegistry.get("analytics.flush.fenced").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("analytics.flush.records").counter().count()).isZero();
+    }
+
+    private static Transaction transaction(String merchant, String amount, Instant timestamp) {
+        return transaction(merchant, amount, "USD", timestamp);
+    }
+
+    private static Transaction transaction(String merchant, String amount, String currency, Instant timestamp) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal(amount))
+                .currency(currency)
+                .merchant(merchant)
+                .timestamp(timestamp)
+                .build();
+    }
+}
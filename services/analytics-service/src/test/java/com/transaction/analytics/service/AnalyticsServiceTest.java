@@ -9,16 +9,22 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
 
 import java.math.BigDecimal;
-import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -35,38 +41,82 @@ class AnalyticsServiceTest {
     @Mock
     private HashOperations<String, Object, Object> hashOperations;
 
+    @Mock
+    private RedisOperations<String, Object> pipeline;
+
+    @Mock
+    private ValueOperations<String, Object> pipelineValues;
+
+    @Mock
+    private HashOperations<String, Object, Object> pipelineHashes;
+
+    @Mock
+    private TimeSeriesStore timeSeriesStore;
+
+    @Mock
+    private TopMerchants topMerchants;
+
+    @Mock
+    private AmountDistribution amountDistribution;
+
     @InjectMocks
     private AnalyticsService analyticsService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(pipeline.opsForValue()).thenReturn(pipelineValues);
+        when(pipeline.opsForHash()).thenReturn(pipelineHashes);
+        when(amountDistribution.category("RETAIL")).thenReturn("RETAIL");
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipeline);
+            return List.of();
+        });
     }
 
     @Test
     void shouldProcessTransactionAndUpdateMetrics() {
         Transaction transaction = buildValidTransaction();
 
-        // Mock existing values
-        when(valueOperations.get("analytics:total_amount")).thenReturn("100.00");
-        when(valueOperations.get("analytics:total_transactions")).thenReturn("5");
-
         analyticsService.processTransaction(transaction);
 
+        // All updates go out in one pipelined round trip
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+
         // Verify total transactions incremented
-        verify(valueOperations, times(1)).increment("analytics:total_transactions", 1);
+        verify(pipelineValues, times(1)).increment("analytics:total_transactions", 1);
+
+        // Verify amount added in minor units of its currency
+        verify(pipelineHashes, times(1)).increment("analytics:amount_minor", "USD", 14999L);
+        verify(pipelineHashes, times(1)).increment("analytics:transactions_by_currency", "USD", 1L);
 
-        // Verify total amount updated
-        verify(valueOperations, atLeastOnce()).get("analytics:total_amount");
-        verify(valueOperations, times(1)).set(eq("analytics:total_amount"), anyString());
+        // Verify time series updated in the same round trip
+        verify(timeSeriesStore, times(1)).write(eq(pipeline), argThat(delta ->
+                delta.seconds.get(transaction.getTimestamp().getEpochSecond()).transactions == 1));
 
-        // Verify TPS key updated
-        verify(valueOperations, times(1)).increment(startsWith("analytics:transactions_per_second:"), eq(1L));
-        verify(redisTemplate, times(1)).expire(startsWith("analytics:transactions_per_second:"), any(Duration.class));
+        // Verify the amount lands in its currency and category sketches
+        verify(amountDistribution, times(1)).write(eq(pipeline), argThat(delta -> delta.minutes.values().stream()
+                .allMatch(sketches -> sketches.keySet().equals(Set.of("USD:RETAIL", "USD:*")))));
 
         // Verify top merchants updated
-        verify(hashOperations, times(1)).increment("analytics:top_merchants", transaction.getMerchant(), 1);
+        verify(topMerchants, times(1)).record(transaction.getMerchant(), transaction.getTimestamp().getEpochSecond());
+
+        // No read-modify-write of any total
+        verifyNoInteractions(valueOperations, hashOperations);
+    }
+
+    @Test
+    void shouldResetTimeSeriesExpiriesWhenWriteFails() {
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThatThrownBy(() -> analyticsService.processTransaction(buildValidTransaction()))
+                .isInstanceOf(RedisConnectionFailureException.class);
+
+        verify(timeSeriesStore).forgetExpiries();
+        verify(amountDistribution).forgetExpiries();
     }
 
     @Test
@@ -89,7 +139,7 @@ class AnalyticsServiceTest {
 
     @Test
     void shouldGetTotalAmount() {
-        when(valueOperations.get("analytics:total_amount")).thenReturn("12345.67");
+        when(hashOperations.entries("analytics:amount_minor")).thenReturn(Map.of("USD", "1234567"));
 
         BigDecimal total = analyticsService.getTotalAmount();
 
@@ -97,26 +147,47 @@ class AnalyticsServiceTest {
     }
 
     @Test
-    void shouldGetAverageAmount() {
-        when(valueOperations.get("analytics:average_amount")).thenReturn("123.45");
+    void shouldGetTotalAmountsPerCurrency() {
+        when(hashOperations.entries("analytics:amount_minor")).thenReturn(Map.of("USD", "1050", "JPY", "1500"));
+
+        assertThat(analyticsService.getTotalAmounts())
+                .containsEntry("USD", new BigDecimal("10.50"))
+                .containsEntry("JPY", new BigDecimal("1500"));
+        assertThat(analyticsService.getTotalAmount()).isEqualByComparingTo(new BigDecimal("1510.50"));
+    }
+
+    @Test
+    void shouldComputeAverageAmountOnRead() {
+        when(hashOperations.entries("analytics:amount_minor")).thenReturn(Map.of("USD", "37035"));
+        when(valueOperations.get("analytics:total_transactions")).thenReturn("3");
 
         BigDecimal average = analyticsService.getAverageAmount();
 
         assertThat(average).isEqualByComparingTo(new BigDecimal("123.45"));
     }
 
+    @Test
+    void shouldComputeAverageAmountPerCurrency() {
+        when(hashOperations.get("analytics:amount_minor", "USD")).thenReturn("1000");
+        when(hashOperations.get("analytics:transactions_by_currency", "USD")).thenReturn("3");
+
+        assertThat(analyticsService.getAverageAmount("usd")).isEqualByComparingTo(new BigDecimal("3.33"));
+        assertThat(analyticsService.getAverageAmount("EUR")).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
     @Test
     void shouldHandleFirstTransaction() {
         Transaction transaction = buildValidTransaction();
+        transaction.setCurrency(null);
 
-        when(valueOperations.get("analytics:total_amount")).thenReturn(null);
         when(valueOperations.get("analytics:total_transactions")).thenReturn(null);
 
         analyticsService.processTransaction(transaction);
 
-        // Should handle null values gracefully
-        verify(valueOperations, times(1)).increment("analytics:total_transactions", 1);
-        verify(valueOperations, times(1)).set(eq("analytics:total_amount"), anyString());
+        // Should handle missing values gracefully
+        verify(pipelineValues, times(1)).increment("analytics:total_transactions", 1);
+        verify(pipelineHashes, times(1)).increment("analytics:amount_minor", "XXX", 14999L);
+        assertThat(analyticsService.getAverageAmount()).isEqualByComparingTo(BigDecimal.ZERO);
     }
 
     private Transaction buildValidTransaction() {
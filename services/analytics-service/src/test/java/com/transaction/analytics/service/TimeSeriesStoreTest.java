@@ -0,0 +1,142 @@
+package com.transaction.analytics.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TimeSeriesStoreTest {
+
+    // 12:59:59, the last second of an hour
+    private static final long HOUR_END = Instant.parse("2024-05-01T12:59:59Z").getEpochSecond();
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisOperations<String, Object> redis;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashes;
+
+    private TimeSeriesStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(redis.opsForHash()).thenReturn(hashes);
+        store = new TimeSeriesStore(redisTemplate, 60, 168, 90, 730, 100);
+    }
+
+    @Test
+    void shouldRollUpEverySecondIntoEachResolution() {
+        TimeSeriesDelta delta = new TimeSeriesDelta();
+        delta.add(HOUR_END, "USD", 1000);
+        delta.add(HOUR_END, "EUR", 250);
+        delta.add(HOUR_END + 1, "USD", 500);
+
+        store.write(redis, delta);
+
+        verify(hashes).increment("analytics:ts:second:" + (HOUR_END - 59), "59", 2L);
+        verify(hashes).increment("analytics:ts:second:" + (HOUR_END - 59), "59:EUR", 250L);
+        verify(hashes).increment("analytics:ts:second:" + (HOUR_END + 1), "0", 1L);
+        verify(hashes).increment("analytics:ts:minute:" + (HOUR_END - 3599), "59", 2L);
+        verify(hashes).increment("analytics:ts:minute:" + (HOUR_END + 1), "0", 1L);
+        verify(hashes).increment(eq("analytics:ts:hour:" + (HOUR_END - 12 * 3600 - 3599)), eq("12"), eq(2L));
+        verify(hashes).increment(eq("analytics:ts:hour:" + (HOUR_END - 12 * 3600 - 3599)), eq("13:USD"), eq(500L));
+        verify(hashes).increment(startsWith("analytics:ts:day:"), anyString(), eq(3L));
+        verify(hashes).increment(startsWith("analytics:ts:day:"), endsWith(":USD"), eq(1500L));
+
+        // Each hash expires once its span and the resolution's retention are over
+        verify(redis).expireAt("analytics:ts:second:" + (HOUR_END - 59),
+                Instant.ofEpochSecond(HOUR_END + 1).plus(Duration.ofMinutes(60)));
+        verify(redis).expireAt("analytics:ts:minute:" + (HOUR_END + 1),
+                Instant.ofEpochSecond(HOUR_END + 1 + 3600).plus(Duration.ofHours(168)));
+        verify(redis, times(6)).expireAt(anyString(), any(Instant.class));
+    }
+
+    @Test
+    void shouldSetExpiryOncePerHash() {
+        for (int i = 0; i < 3; i++) {
+            TimeSeriesDelta delta = new TimeSeriesDelta();
+            delta.add(HOUR_END + 1 + i, "USD", 100);
+            store.write(redis, delta);
+        }
+        verify(redis, times(4)).expireAt(anyString(), any(Instant.class));
+
+        store.forgetExpiries();
+        TimeSeriesDelta retry = new TimeSeriesDelta();
+        retry.add(HOUR_END + 10, "USD", 100);
+        store.write(redis, retry);
+        verify(redis, times(8)).expireAt(anyString(), any(Instant.class));
+    }
+
+    @Test
+    void shouldSetExpiryOncePerHashAfterAFutureDatedWrite() {
+        TimeSeriesDelta future = new TimeSeriesDelta();
+        future.add(HOUR_END + 365L * 86400, "USD", 100);
+        store.write(redis, future);
+        for (int i = 0; i < 3; i++) {
+            TimeSeriesDelta delta = new TimeSeriesDelta();
+            delta.add(HOUR_END + 1 + i, "USD", 100);
+            store.write(redis, delta);
+        }
+
+        // Four for the future hashes, four for the current ones, then none
+        verify(redis, times(8)).expireAt(anyString(), any(Instant.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReadRangeFillingEmptyBuckets() {
+        long start = HOUR_END - 1;
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(redis);
+            return List.of(
+                    Map.of("58", "4", "58:USD", "1000", "58:JPY", "300", "59", "1"),
+                    Map.of("1", "2", "1:USD", "25"));
+        });
+
+        List<TimeSeriesPoint> points = store.range(Resolution.SECOND,
+                Instant.ofEpochSecond(start), Instant.ofEpochSecond(start + 4));
+
+        verify(hashes).entries("analytics:ts:second:" + (HOUR_END - 59));
+        verify(hashes).entries("analytics:ts:second:" + (HOUR_END + 1));
+        assertThat(points).extracting(TimeSeriesPoint::transactions).containsExactly(4L, 1L, 0L, 2L);
+        assertThat(points.get(0).timestamp()).isEqualTo(Instant.ofEpochSecond(start));
+        assertThat(points.get(0).tps()).isEqualTo(4.0);
+        assertThat(points.get(0).volume())
+                .containsEntry("USD", new BigDecimal("10.00"))
+                .containsEntry("JPY", new BigDecimal("300"));
+        assertThat(points.get(2).volume()).isEmpty();
+        assertThat(points.get(3).volume()).containsEntry("USD", new BigDecimal("0.25"));
+    }
+
+    @Test
+    void shouldRejectRangesOverMaxPoints() {
+        Instant to = Instant.ofEpochSecond(HOUR_END);
+
+        assertThatThrownBy(() -> store.range(Resolution.MINUTE, to.minus(Duration.ofHours(3)), to))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.range(Resolution.HOUR, to.minus(Duration.ofHours(3)), to)).hasSize(4);
+    }
+}
@@ -0,0 +1,146 @@
+package com.transaction.analytics.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TopMerchantsTest {
+
+    private static final long NOW = Instant.parse("2024-05-01T12:00:00Z").getEpochSecond();
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    @Mock
+    private RedisOperations<String, Object> pipeline;
+
+    @Mock
+    private ZSetOperations<String, Object> pipelineSets;
+
+    private TopMerchants topMerchants;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(pipeline.opsForZSet()).thenReturn(pipelineSets);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipeline);
+            return List.of();
+        });
+        topMerchants = new TopMerchants(redisTemplate, 3);
+    }
+
+    @Test
+    void shouldKeepHeavyHittersInFixedSpace() {
+        SpaceSaving summary = new SpaceSaving(6);
+        for (int i = 0; i < 100; i++) {
+            summary.add("Shop A", 1);
+            if (i % 2 == 0) {
+                summary.add("Shop B", 1);
+            }
+            summary.add("Rare " + i, 1);
+        }
+
+        assertThat(summary.size()).isEqualTo(6);
+        // Anything above total / capacity is kept; counts never undercount, and overcount by at most that
+        assertThat(summary.count("Shop A")).isBetween(100L, 100L + 250 / 6);
+        assertThat(summary.count("Shop B")).isBetween(50L, 50L + 250 / 6);
+    }
+
+    @Test
+    void shouldAddSummariesToEveryWindowBucket() {
+        topMerchants.record("Shop A", NOW + 1);
+        topMerchants.record("Shop A", NOW + 2);
+        topMerchants.record("Shop B", NOW + 3);
+        topMerchants.record(null, NOW + 3);
+
+        topMerchants.flush();
+
+        verify(pipelineSets).incrementScore("analytics:top_merchants:minute:" + NOW, "Shop A", 2.0);
+        verify(pipelineSets).incrementScore("analytics:top_merchants:hour:" + NOW, "Shop A", 2.0);
+        verify(pipelineSets).incrementScore("analytics:top_merchants:day:" + NOW, "Shop B", 1.0);
+        verify(pipelineSets).removeRange("analytics:top_merchants:minute:" + NOW, 0, -4);
+        verify(pipeline).expireAt("analytics:top_merchants:minute:" + NOW, Instant.ofEpochSecond(NOW + 70));
+        verify(pipeline).expireAt("analytics:top_merchants:day:" + NOW, Instant.ofEpochSecond(NOW + 90_000));
+
+        topMerchants.flush();
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void shouldKeepSummariesWhenFlushFails() {
+        topMerchants.record("Shop A", NOW);
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenAnswer(invocation -> {
+                    invocation.<SessionCallback<Object>>getArgument(0).execute(pipeline);
+                    return List.of();
+                });
+
+        topMerchants.flush();
+        topMerchants.record("Shop A", NOW);
+        topMerchants.flush();
+
+        verify(pipelineSets).incrementScore("analytics:top_merchants:minute:" + NOW, "Shop A", 2.0);
+    }
+
+    @Test
+    void shouldMergeWindowBucketsAndReadTopK() {
+        Set<TypedTuple<Object>> top = new LinkedHashSet<>();
+        top.add(new DefaultTypedTuple<>("Shop A", 900.0));
+        top.add(new DefaultTypedTuple<>("Shop B", 450.0));
+        when(redisTemplate.hasKey("analytics:top_merchants:hour")).thenReturn(false);
+        when(zSetOperations.reverseRangeWithScores("analytics:top_merchants:hour", 0, 1)).thenReturn(top);
+
+        List<MerchantCount> merchants = topMerchants.top(TopMerchants.Window.HOUR, 2, Instant.ofEpochSecond(NOW + 30));
+
+        List<String> buckets = new ArrayList<>();
+        for (long start = NOW - 3_300; start < NOW; start += 300) {
+            buckets.add("analytics:top_merchants:hour:" + start);
+        }
+        buckets.add("analytics:top_merchants:hour:" + NOW);
+        verify(pipelineSets).unionAndStore(buckets.get(0), buckets.subList(1, 12), "analytics:top_merchants:hour");
+        verify(pipelineSets).removeRange("analytics:top_merchants:hour", 0, -4);
+        verify(pipeline).expire("analytics:top_merchants:hour", Duration.ofSeconds(10));
+        assertThat(merchants).containsExactly(new MerchantCount("Shop A", 900), new MerchantCount("Shop B", 450));
+    }
+
+    @Test
+    void shouldReadCachedMergeWithoutRecomputing() {
+        when(redisTemplate.hasKey("analytics:top_merchants:minute")).thenReturn(true);
+
+        // More than capacity is never asked of Redis
+        topMerchants.top(TopMerchants.Window.MINUTE, 10, Instant.ofEpochSecond(NOW));
+
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+        verify(zSetOperations).reverseRangeWithScores("analytics:top_merchants:minute", 0, 2);
+    }
+}
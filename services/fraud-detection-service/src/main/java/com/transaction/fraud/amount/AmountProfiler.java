@@ -0,0 +1,318 @@
+package com.transaction.fraud.amount;
+
+import com.transaction.fraud.util.Hashing;
+import com.transaction.fraud.util.LongIntOpenHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * What a usual amount looks like for each user, as a streaming mean and mean absolute deviation.
+ * <p>
+ * Both are exponentially weighted moving averages with weight {@code 2^-alpha-shift}, kept in fixed point
+ * ({@value #SCALE_BITS} fractional bits) over base-currency hundredths, so an update is two shifts and an
+ * add. A user's limit is {@code mean + deviations * max(deviation, mean * min-deviation-ratio)}, and never
+ * below {@code min-amount}; the floor on the deviation keeps a user who always pays the same from being
+ * flagged for paying a little more. Amounts above the limit are added to the averages at the limit, so a
+ * run of large fraudulent amounts cannot teach the profile that they are normal.
+ * <p>
+ * Storage follows the velocity tracker: sharded flat primitive arrays behind a {@link LongIntOpenHashMap},
+ * {@value #BYTES_PER_USER} bytes per user plus the index, with users idle for {@code retention-days} reclaimed.
+ * As with the location sketches, {@link com.transaction.fraud.state.UserProfileStore} persists each user's
+ * statistics with their profile and restores them when the partition is assigned.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AmountProfiler {
+
+    /** Returned by {@link #limitAndRecord} and {@link #limit} while the user has too little history for a limit. */
+    public static final long NO_LIMIT = -1;
+
+    static final int BYTES_PER_USER = 8 + 8 + 8 + 4 + 4;
+
+    private static final int SCALE_BITS = 8;
+    // 5.5 billion in base currency: leaves room for the fixed-point multiplications below
+    private static final long MAX_AMOUNT = Long.MAX_VALUE >> 24;
+    private static final long EPOCH_SECONDS = 1_700_000_000L;
+
+    private final MeterRegistry meterRegistry;
+
+    private Shard[] shards;
+    private long deviationsFixed;
+    private long minDeviationRatioFixed;
+    private long minAmountMinor;
+    private Counter untracked;
+
+    @Value("${fraud.amount.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fraud.amount.alpha-shift:4}")
+    private int alphaShift;
+
+    @Value("${fraud.amount.min-history:5}")
+    private int minHistory;
+
+    @Value("${fraud.amount.deviations:6}")
+    private double deviations;
+
+    @Value("${fraud.amount.min-deviation-ratio:0.25}")
+    private double minDeviationRatio;
+
+    @Value("${fraud.amount.min-amount:100.00}")
+    private BigDecimal minAmount;
+
+    @Value("${fraud.amount.retention-days:180}")
+    private int retentionDays;
+
+    @Value("${fraud.amount.max-users:10000000}")
+    private int maxUsers;
+
+    @Value("${fraud.amount.shards:64}")
+    private int shardCount;
+
+    @PostConstruct
+    public void init() {
+        if (alphaShift < 1 || alphaShift > 16) {
+            throw new IllegalStateException("fraud.amount.alpha-shift must be between 1 and 16");
+        }
+        deviationsFixed = Math.round(deviations * (1 << SCALE_BITS));
+        minDeviationRatioFixed = Math.round(minDeviationRatio * (1 << SCALE_BITS));
+        minAmountMinor = minAmount.movePointRight(2).longValue();
+
+        int count = Integer.highestOneBit(Math.max(1, shardCount) * 2 - 1);
+        int usersPerShard = Math.max(16, maxUsers / count);
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(usersPerShard);
+        }
+
+        untracked = Counter.builder("fraud.amount.untracked")
+                .description("Transactions of new users not profiled because every shard slot was in use")
+                .register(meterRegistry);
+        Gauge.builder("fraud.amount.users", this, AmountProfiler::profiledUsers)
+                .description("Users with an amount profile")
+                .register(meterRegistry);
+
+        log.info("Amount profiler: {} shards x {} users, limit mean + {} x deviation after {} transactions",
+                count, usersPerShard, deviations, minHistory);
+    }
+
+    /**
+     * Returns the user's limit from their history so far, then adds the amount to it.
+     *
+     * @param amountMinor amount in base-currency hundredths
+     * @return the limit in base-currency hundredths, or {@link #NO_LIMIT} while history is too short
+     */
+    public long limitAndRecord(String userId, long amountMinor, Instant timestamp) {
+        if (!enabled || userId == null) {
+            return NO_LIMIT;
+        }
+        long key = Hashing.hash64(userId);
+        int seconds = toEpochSeconds(timestamp);
+        long amount = Math.max(0, Math.min(amountMinor, MAX_AMOUNT));
+
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.slotFor(key, seconds - retentionDays * 86_400);
+            if (slot < 0) {
+                untracked.increment();
+                return NO_LIMIT;
+            }
+            long limit = shard.counts[slot] >= minHistory ? limit(shard, slot) : NO_LIMIT;
+            shard.add(slot, limit == NO_LIMIT ? amount : Math.min(amount, limit), seconds, alphaShift);
+            return limit;
+        }
+    }
+
+    /**
+     * Returns the user's limit like {@link #limitAndRecord}, from their history as it stands, without adding
+     * to it or taking a slot for a new user.
+     */
+    public long limit(String userId) {
+        if (!enabled || userId == null) {
+            return NO_LIMIT;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.index.get(key);
+            return slot >= 0 && shard.counts[slot] >= minHistory ? limit(shard, slot) : NO_LIMIT;
+        }
+    }
+
+    /**
+     * @return the user's statistics as they stand, or {@code null} if there are none
+     */
+    public AmountStats export(String userId) {
+        if (!enabled || userId == null) {
+            return null;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.index.get(key);
+            return slot >= 0
+                    ? new AmountStats(shard.means[slot], shard.deviations[slot], shard.counts[slot], shard.lastSeen[slot])
+                    : null;
+        }
+    }
+
+    // Replaces whatever is held for the user with statistics persisted earlier
+    public void restore(String userId, AmountStats stats) {
+        if (!enabled || userId == null || stats == null) {
+            return;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.slotFor(key, toEpochSeconds(Instant.now()) - retentionDays * 86_400);
+            if (slot < 0) {
+                untracked.increment();
+                return;
+            }
+            shard.means[slot] = stats.mean();
+            shard.deviations[slot] = stats.deviation();
+            shard.counts[slot] = Math.max(0, stats.count());
+            // Never 0, which marks a free slot
+            shard.lastSeen[slot] = Math.max(1, stats.lastSeen());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.amount.sweep-interval-ms:3600000}")
+    public void evictIdle() {
+        int idleBefore = toEpochSeconds(Instant.now()) - retentionDays * 86_400;
+        int evicted = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                evicted += shard.evictIdle(idleBefore);
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted amount profiles of {} idle users", evicted);
+        }
+    }
+
+    int profiledUsers() {
+        int users = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                users += shard.index.size();
+            }
+        }
+        return users;
+    }
+
+    private Shard shardFor(long key) {
+        return shards[(int) (key >>> 40) & (shards.length - 1)];
+    }
+
+    private long limit(Shard shard, int slot) {
+        long mean = shard.means[slot];
+        long deviation = Math.max(shard.deviations[slot], (mean * minDeviationRatioFixed) >> SCALE_BITS);
+        long limit = (mean + ((deviation * deviationsFixed) >> SCALE_BITS)) >> SCALE_BITS;
+        return Math.max(minAmountMinor, limit);
+    }
+
+    // Plus one so that 0 marks a free slot
+    private static int toEpochSeconds(Instant timestamp) {
+        long seconds = (timestamp != null ? timestamp.getEpochSecond() : Instant.now().getEpochSecond()) - EPOCH_SECONDS;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds + 1));
+    }
+
+    private static final class Shard {
+
+        private static final int INITIAL_USERS = 1024;
+
+        final int maxUsers;
+        final LongIntOpenHashMap index;
+
+        long[] keys;
+        long[] means;
+        long[] deviations;
+        int[] counts;
+        int[] lastSeen;
+
+        int allocated;
+        int[] free;
+        int freeCount;
+
+        Shard(int maxUsers) {
+            this.maxUsers = maxUsers;
+            int initial = Math.min(INITIAL_USERS, maxUsers);
+            this.index = new LongIntOpenHashMap(initial, -1);
+            resize(initial);
+            this.free = new int[16];
+        }
+
+        int slotFor(long key, int idleBefore) {
+            int slot = index.get(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (freeCount == 0 && allocated == keys.length) {
+                if (keys.length < maxUsers) {
+                    resize((int) Math.min(maxUsers, (long) keys.length << 1));
+                } else if (evictIdle(idleBefore) == 0) {
+                    return -1;
+                }
+            }
+            slot = freeCount > 0 ? free[--freeCount] : allocated++;
+            keys[slot] = key;
+            means[slot] = 0;
+            deviations[slot] = 0;
+            counts[slot] = 0;
+            index.put(key, slot);
+            return slot;
+        }
+
+        void add(int slot, long amount, int seconds, int alphaShift) {
+            long value = amount << SCALE_BITS;
+            if (counts[slot] == 0) {
+                means[slot] = value;
+            } else {
+                long mean = means[slot];
+                deviations[slot] += (Math.abs(value - mean) - deviations[slot]) >> alphaShift;
+                means[slot] = mean + ((value - mean) >> alphaShift);
+            }
+            if (counts[slot] < Integer.MAX_VALUE) {
+                counts[slot]++;
+            }
+            lastSeen[slot] = Math.max(lastSeen[slot], seconds);
+        }
+
+        int evictIdle(int idleBefore) {
+            int evicted = 0;
+            for (int slot = 0; slot < allocated; slot++) {
+                if (lastSeen[slot] != 0 && lastSeen[slot] <= idleBefore) {
+                    index.remove(keys[slot]);
+                    lastSeen[slot] = 0;
+                    if (freeCount == free.length) {
+                        free = Arrays.copyOf(free, free.length << 1);
+                    }
+                    free[freeCount++] = slot;
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        private void resize(int users) {
+            keys = keys == null ? new long[users] : Arrays.copyOf(keys, users);
+            means = means == null ? new long[users] : Arrays.copyOf(means, users);
+            deviations = deviations == null ? new long[users] : Arrays.copyOf(deviations, users);
+            counts = counts == null ? new int[users] : Arrays.copyOf(counts, users);
+            lastSeen = lastSeen == null ? new int[users] : Arrays.copyOf(lastSeen, users);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.transaction.fraud.amount;
+
+/**
+ * One user's amount statistics as {@link AmountProfiler} holds them, so they can be persisted with the user's
+ * profile and handed back when their partition moves. {@code mean} and {@code deviation} are base-currency
+ * hundredths in the profiler's fixed point; {@code lastSeen} is in the profiler's epoch seconds.
+ */
+public record AmountStats(long mean, long deviation, int count, int lastSeen) {
+}
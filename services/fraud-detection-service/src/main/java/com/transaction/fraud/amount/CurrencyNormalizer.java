@@ -0,0 +1,105 @@
+package com.transaction.fraud.amount;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Converts amounts to hundredths of the base currency, so rules compare plain {@code long}s.
+ * <p>
+ * Rates are per major unit, held as fixed-point millionths in a table indexed by the three letters of the
+ * ISO code: a lookup is arithmetic on the code's chars, with no map or string allocation. A currency without
+ * a configured rate is taken at par, which is how every amount was compared before rates existed.
+ */
+@Slf4j
+@Component
+public class CurrencyNormalizer {
+
+    static final long RATE_SCALE = 1_000_000;
+
+    private static final int NO_RATE = 0;
+
+    private final long[] rates = new long[26 * 26 * 26];
+
+    @Value("${fraud.amount.base-currency:USD}")
+    private String baseCurrency;
+
+    @Value("${fraud.amount.rates:}")
+    private String configuredRates;
+
+    @PostConstruct
+    public void init() {
+        Arrays.fill(rates, NO_RATE);
+        int loaded = 0;
+        for (String entry : configuredRates.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            int index = separator > 0 ? index(entry.substring(0, separator).trim()) : -1;
+            if (index < 0) {
+                throw new IllegalStateException("fraud.amount.rates: expected CODE=rate, got '" + entry.trim() + "'");
+            }
+            BigDecimal rate = new BigDecimal(entry.substring(separator + 1).trim());
+            if (rate.signum() <= 0) {
+                throw new IllegalStateException("fraud.amount.rates: rate for " + entry.trim() + " must be positive");
+            }
+            rates[index] = rate.movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            loaded++;
+        }
+        int base = index(baseCurrency);
+        if (base >= 0) {
+            rates[base] = RATE_SCALE;
+        }
+        log.info("Amounts normalized to {} with {} configured rates", baseCurrency, loaded);
+    }
+
+    /**
+     * @return the amount in hundredths of the base currency, saturating at {@link Long#MAX_VALUE}; 0 for no amount
+     */
+    public long toBaseMinor(BigDecimal amount, String currency) {
+        if (amount == null) {
+            return 0;
+        }
+        return toBaseMinor(amount.movePointRight(2).longValue(), currency);
+    }
+
+    public long toBaseMinor(long hundredths, String currency) {
+        int index = index(currency);
+        long rate = index >= 0 ? rates[index] : NO_RATE;
+        if (rate == NO_RATE || rate == RATE_SCALE) {
+            return hundredths;
+        }
+        long high = Math.multiplyHigh(hundredths, rate);
+        long low = hundredths * rate;
+        if (high != (low >> 63)) {
+            return hundredths < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return low / RATE_SCALE;
+    }
+
+    public String baseCurrency() {
+        return baseCurrency;
+    }
+
+    // Case-insensitive; -1 unless exactly three ASCII letters
+    private static int index(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < 3; i++) {
+            int letter = (code.charAt(i) | 0x20) - 'a';
+            if (letter < 0 || letter >= 26) {
+                return -1;
+            }
+            index = index * 26 + letter;
+        }
+        return index;
+    }
+}
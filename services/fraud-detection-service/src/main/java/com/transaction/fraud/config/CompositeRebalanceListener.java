@@ -0,0 +1,32 @@
+package com.transaction.fraud.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.List;
+
+// Containers take a single listener; this one calls each delegate in order
+class CompositeRebalanceListener implements ConsumerRebalanceListener {
+
+    private final List<ConsumerRebalanceListener> delegates;
+
+    CompositeRebalanceListener(List<ConsumerRebalanceListener> delegates) {
+        this.delegates = List.copyOf(delegates);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        delegates.forEach(delegate -> delegate.onPartitionsRevoked(partitions));
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        delegates.forEach(delegate -> delegate.onPartitionsAssigned(partitions));
+    }
+
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        delegates.forEach(delegate -> delegate.onPartitionsLost(partitions));
+    }
+}
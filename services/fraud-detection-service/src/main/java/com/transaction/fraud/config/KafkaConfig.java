@@ -1,10 +1,21 @@
 package com.transaction.fraud.config;
 
+import com.transaction.fraud.service.AlertCoalescer;
+import com.transaction.fraud.state.UserProfileStore;
 import com.transaction.models.FraudAlert;
 import com.transaction.models.Transaction;
+import com.transaction.models.serde.BinarySerializer;
+import com.transaction.models.serde.FraudAlertCodec;
+import com.transaction.models.serde.TransactionCodec;
+import com.transaction.models.serde.WireFormat;
+import com.transaction.models.serde.WireFormatDeserializer;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,10 +25,12 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @EnableKafka
@@ -33,41 +46,103 @@ public class KafkaConfig {
     @Value("${kafka.topic.transactions:transactions}")
     private String transactionsTopic;
 
+    @Value("${kafka.wire-format:json}")
+    private String wireFormat;
+
+    @Value("${kafka.topic.profile-changelog:fraud-user-profiles-changelog}")
+    private String profileChangelogTopic;
+
     // Consumer Configuration
     @Bean
     public ConsumerFactory<String, Transaction> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
         props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1048576);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, Transaction.class.getName());
-        return new DefaultKafkaConsumerFactory<>(props);
+        // Accepts binary and JSON records so producers can switch formats independently
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new WireFormatDeserializer<>(TransactionCodec.INSTANCE, new JsonDeserializer<>()));
+    }
+
+    // Pending coalesced alerts go out before profiles are snapshotted and the partitions handed over;
+    // profiles of newly assigned partitions are restored before their first record is delivered
+    @Bean
+    public ConsumerRebalanceListener transactionsRebalanceListener(AlertCoalescer alertCoalescer,
+                                                                   UserProfileStore profileStore) {
+        return new CompositeRebalanceListener(List.of(alertCoalescer, profileStore));
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, Transaction> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, Transaction> kafkaListenerContainerFactory(
+            ConsumerRebalanceListener transactionsRebalanceListener) {
         ConcurrentKafkaListenerContainerFactory<String, Transaction> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
         factory.setConcurrency(6);
+        factory.getContainerProperties().setConsumerRebalanceListener(transactionsRebalanceListener);
         return factory;
     }
 
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Transaction> batchKafkaListenerContainerFactory(
+            ConsumerRebalanceListener transactionsRebalanceListener) {
+        ConcurrentKafkaListenerContainerFactory<String, Transaction> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(6);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.getContainerProperties().setConsumerRebalanceListener(transactionsRebalanceListener);
+        return factory;
+    }
+
+    // Changelog of the partition-local user profiles; read back without a group when partitions are assigned
+    @Bean
+    public ConsumerFactory<String, byte[]> profileChangelogConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5000);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer());
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> profileChangelogTemplate() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(configProps,
+                new StringSerializer(), new ByteArraySerializer()));
+    }
+
+    @Bean
+    public NewTopic profileChangelogTopic() {
+        // Same partition count as the transactions topic: changelog partition N belongs to transactions partition N
+        return TopicBuilder.name(profileChangelogTopic)
+                .partitions(6)
+                .replicas(1)
+                .compact()
+                .build();
+    }
+
     // Producer Configuration
     @Bean
     public ProducerFactory<String, FraudAlert> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "1");
         configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
-        return new DefaultKafkaProducerFactory<>(configProps);
+
+        Serializer<FraudAlert> valueSerializer = WireFormat.of(wireFormat) == WireFormat.BINARY
+                ? new BinarySerializer<>(FraudAlertCodec.INSTANCE)
+                : new JsonSerializer<>();
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
     }
 
     @Bean
@@ -0,0 +1,41 @@
+package com.transaction.fraud.consumer;
+
+import com.transaction.fraud.service.FraudBatchService;
+import com.transaction.fraud.state.UserProfileStore;
+import com.transaction.models.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.consumer.mode", havingValue = "batch")
+public class TransactionBatchConsumer {
+
+    private final FraudBatchService fraudBatchService;
+    private final UserProfileStore profileStore;
+
+    // The whole poll in one call; offsets are committed once it returns
+    @KafkaListener(
+            topics = "${kafka.topic.transactions}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory"
+    )
+    public void consume(List<Transaction> transactions,
+                        @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions) {
+        log.debug("Consumed batch of {} transactions", transactions.size());
+        fraudBatchService.analyzeBatch(transactions);
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i) != null) {
+                profileStore.update(partitions.get(i), transactions.get(i));
+            }
+        }
+    }
+}
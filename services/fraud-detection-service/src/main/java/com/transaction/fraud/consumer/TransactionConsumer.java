@@ -1,28 +1,35 @@
 package com.transaction.fraud.consumer;
 
 import com.transaction.fraud.service.FraudDetectionService;
+import com.transaction.fraud.state.UserProfileStore;
 import com.transaction.models.Transaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.consumer.mode", havingValue = "record", matchIfMissing = true)
 public class TransactionConsumer {
 
     private final FraudDetectionService fraudDetectionService;
+    private final UserProfileStore profileStore;
 
     @KafkaListener(
             topics = "${kafka.topic.transactions}",
             groupId = "${spring.kafka.consumer.group-id}",
             containerFactory = "kafkaListenerContainerFactory"
     )
-    public void consume(Transaction transaction) {
+    public void consume(Transaction transaction, @Header(KafkaHeaders.RECEIVED_PARTITION) int partition) {
         try {
             log.debug("Consumed transaction: {}", transaction.getTransactionId());
             fraudDetectionService.analyzeTransaction(transaction);
+            profileStore.update(partition, transaction);
         } catch (Exception e) {
             log.error("Error processing transaction: {}", transaction.getTransactionId(), e);
             // In production, implement DLQ (Dead Letter Queue) here
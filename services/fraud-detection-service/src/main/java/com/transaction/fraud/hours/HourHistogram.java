@@ -0,0 +1,35 @@
+package com.transaction.fraud.hours;
+
+import java.util.Arrays;
+
+/**
+ * One user's hour-of-day histogram as {@link HourOfDayProfiler} holds it, so it can be persisted with the
+ * user's profile and handed back when their partition moves. Weights are as of {@code lastHour}, hours since
+ * the profiler's epoch plus one; decay resumes from there.
+ */
+public record HourHistogram(int lastHour, float total, float[] buckets) {
+
+    public HourHistogram {
+        if (buckets.length != HourOfDayProfiler.HOURS) {
+            throw new IllegalArgumentException("Hour histogram needs " + HourOfDayProfiler.HOURS + " buckets");
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HourHistogram that
+                && lastHour == that.lastHour
+                && Float.compare(total, that.total) == 0
+                && Arrays.equals(buckets, that.buckets);
+    }
+
+    @Override
+    public int hashCode() {
+        return (lastHour * 31 + Float.hashCode(total)) * 31 + Arrays.hashCode(buckets);
+    }
+
+    @Override
+    public String toString() {
+        return "HourHistogram[lastHour=" + lastHour + ", total=" + total + "]";
+    }
+}
@@ -0,0 +1,451 @@
+package com.transaction.fraud.hours;
+
+import com.transaction.fraud.util.Hashing;
+import com.transaction.fraud.util.LongIntOpenHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When in the day (UTC) each user usually transacts, as a decaying 24-bucket histogram.
+ * <p>
+ * Histograms are fixed-size records in memory-mapped files, one file per shard, sized for the shard's
+ * {@code max-users} up front; the file is sparse, so only pages of records in use take memory, and none of
+ * it is on the heap. The on-heap part is a {@link LongIntOpenHashMap} from the user's id hash to their
+ * record, rebuilt from the files on startup. A file written with another layout or capacity is discarded
+ * and the shard starts empty.
+ * <p>
+ * The files are a cache local to the instance, like the location sketches on the heap: the durable copy is
+ * the user's profile, which {@link com.transaction.fraud.state.UserProfileStore} persists through
+ * {@link #export} and puts back with {@link #restore} when the user's partition is assigned. Without a
+ * persistent volume for {@code dir} a restarted instance starts with empty files and is refilled from there.
+ * <p>
+ * Record: {@code key (long), lastHour (int, hours since 2023-11-14, plus one; 0 = free), total (float),
+ * buckets (24 floats)}. Weights halve every {@code half-life-days}, applied when the user is next seen.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HourOfDayProfiler {
+
+    static final int HOURS = 24;
+    static final int RECORD_SIZE = 8 + 4 + 4 + HOURS * 4;
+
+    private static final int MAGIC = 0x46484831; // "FHH1"
+    // 2: keys hashed with the full fmix64 finalizer
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int ALLOCATED_OFFSET = 16;
+    private static final long EPOCH_SECONDS = 1_700_000_000L;
+
+    private final MeterRegistry meterRegistry;
+
+    private Shard[] shards;
+    private double halfLifeHours;
+    private Counter untracked;
+
+    @Value("${fraud.hours.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fraud.hours.dir:${java.io.tmpdir}/fraud-hours}")
+    private Path dir;
+
+    @Value("${fraud.hours.half-life-days:60}")
+    private double halfLifeDays;
+
+    @Value("${fraud.hours.min-history:20}")
+    private double minHistory;
+
+    @Value("${fraud.hours.retention-days:180}")
+    private int retentionDays;
+
+    @Value("${fraud.hours.max-users:10000000}")
+    private int maxUsers;
+
+    @Value("${fraud.hours.shards:64}")
+    private int shardCount;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (halfLifeDays <= 0) {
+            throw new IllegalStateException("fraud.hours.half-life-days must be positive");
+        }
+        halfLifeHours = halfLifeDays * 24;
+
+        int count = Integer.highestOneBit(Math.max(1, shardCount) * 2 - 1);
+        int usersPerShard = Math.max(16, maxUsers / count);
+        if ((long) usersPerShard * RECORD_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("fraud.hours.max-users too large for " + count + " shards");
+        }
+
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        shards = new Shard[count];
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            shards[i] = Shard.open(dir.resolve("hours-" + i + ".bin"), usersPerShard);
+            restored += shards[i].index.size();
+        }
+
+        untracked = Counter.builder("fraud.hours.untracked")
+                .description("Transactions of new users not profiled because every shard slot was in use")
+                .register(meterRegistry);
+        Gauge.builder("fraud.hours.users", this, HourOfDayProfiler::profiledUsers)
+                .description("Users with an hour-of-day profile")
+                .register(meterRegistry);
+        Gauge.builder("fraud.hours.mapped", this, HourOfDayProfiler::usedBytes)
+                .description("Memory-mapped bytes holding hour-of-day profiles in use")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("Hour-of-day profiler: {} shards x {} users in {}, restored {} profiles in {} ms",
+                count, usersPerShard, dir, restored, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Scores the transaction's hour against the user's profile so far, then adds it to the profile.
+     *
+     * @return the share of the user's activity in that hour and the two next to it (neighbours at half weight),
+     *         or 1 when there is too little history to say
+     */
+    public double shareAndRecord(String userId, Instant timestamp) {
+        if (!enabled || userId == null) {
+            return 1;
+        }
+        long key = Hashing.hash64(userId);
+        Instant at = timestamp != null ? timestamp : Instant.now();
+        int hour = toEpochHours(at);
+        int hourOfDay = (int) ((at.getEpochSecond() / 3600) % HOURS);
+
+        Shard shard = shards[(int) (key >>> 40) & (shards.length - 1)];
+        synchronized (shard) {
+            int record = shard.recordFor(key, hour - retentionDays * 24);
+            if (record < 0) {
+                untracked.increment();
+                return 1;
+            }
+            shard.decay(record, hour, halfLifeHours);
+            double share = shard.total(record) >= minHistory ? shard.share(record, hourOfDay) : 1;
+            shard.add(record, hourOfDay);
+            return share;
+        }
+    }
+
+    /**
+     * Scores the hour like {@link #shareAndRecord} against the profile as it stands, without adding to it
+     * or taking a record for a new user.
+     */
+    public double share(String userId, Instant timestamp) {
+        if (!enabled || userId == null) {
+            return 1;
+        }
+        long key = Hashing.hash64(userId);
+        Instant at = timestamp != null ? timestamp : Instant.now();
+        int hour = toEpochHours(at);
+        int hourOfDay = (int) ((at.getEpochSecond() / 3600) % HOURS);
+
+        Shard shard = shards[(int) (key >>> 40) & (shards.length - 1)];
+        synchronized (shard) {
+            int record = shard.index.get(key);
+            // Decay scales every bucket alike, so only the history threshold needs the decayed total
+            return record >= 0 && shard.decayedTotal(record, hour, halfLifeHours) >= minHistory
+                    ? shard.share(record, hourOfDay) : 1;
+        }
+    }
+
+    /**
+     * @return the user's histogram as it stands, or {@code null} if they have none
+     */
+    public HourHistogram export(String userId) {
+        if (!enabled || userId == null) {
+            return null;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shards[(int) (key >>> 40) & (shards.length - 1)];
+        synchronized (shard) {
+            int record = shard.index.get(key);
+            return record >= 0 ? shard.export(record) : null;
+        }
+    }
+
+    // Replaces whatever is held for the user with a histogram persisted earlier
+    public void restore(String userId, HourHistogram histogram) {
+        if (!enabled || userId == null || histogram == null) {
+            return;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shards[(int) (key >>> 40) & (shards.length - 1)];
+        synchronized (shard) {
+            int record = shard.recordFor(key, toEpochHours(Instant.now()) - retentionDays * 24);
+            if (record < 0) {
+                untracked.increment();
+                return;
+            }
+            shard.restore(record, histogram);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.hours.sweep-interval-ms:3600000}")
+    public void evictIdle() {
+        if (!enabled) {
+            return;
+        }
+        int idleBefore = toEpochHours(Instant.now()) - retentionDays * 24;
+        int evicted = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                evicted += shard.evictIdle(idleBefore);
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted hour-of-day profiles of {} idle users", evicted);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.hours.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.buffer.force();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    int profiledUsers() {
+        int users = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                users += shard.index.size();
+            }
+        }
+        return users;
+    }
+
+    long usedBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                bytes += HEADER_SIZE + (long) shard.allocated * RECORD_SIZE;
+            }
+        }
+        return bytes;
+    }
+
+    // Plus one so that a zeroed record reads as free
+    private static int toEpochHours(Instant timestamp) {
+        long seconds = timestamp.getEpochSecond() - EPOCH_SECONDS;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds / 3600 + 1));
+    }
+
+    private static final class Shard {
+
+        final MappedByteBuffer buffer;
+        final int capacity;
+        final LongIntOpenHashMap index;
+
+        int allocated;
+        int[] free = new int[16];
+        int freeCount;
+
+        private Shard(MappedByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.index = new LongIntOpenHashMap(1024, -1);
+        }
+
+        static Shard open(Path path, int capacity) throws IOException {
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            boolean compatible = false;
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    compatible = channel.size() == size && channel.read(header, 0) == HEADER_SIZE
+                            && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                            && header.getInt(8) == RECORD_SIZE && header.getInt(12) == capacity;
+                }
+                if (!compatible) {
+                    log.warn("Discarding hour-of-day profiles in {}: written with another layout or capacity", path);
+                    Files.delete(path);
+                }
+            }
+
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping outlives the channel; the file stays sparse until records are written
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            Shard shard = new Shard(buffer, capacity);
+            if (compatible) {
+                shard.rebuildIndex();
+            } else {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, RECORD_SIZE);
+                buffer.putInt(12, capacity);
+                buffer.putInt(ALLOCATED_OFFSET, 0);
+            }
+            return shard;
+        }
+
+        private void rebuildIndex() {
+            allocated = Math.min(capacity, buffer.getInt(ALLOCATED_OFFSET));
+            for (int record = 0; record < allocated; record++) {
+                if (lastHour(record) == 0) {
+                    release(record);
+                } else {
+                    index.put(key(record), record);
+                }
+            }
+        }
+
+        int recordFor(long key, int idleBefore) {
+            int record = index.get(key);
+            if (record >= 0) {
+                return record;
+            }
+            if (freeCount == 0 && allocated == capacity && evictIdle(idleBefore) == 0) {
+                return -1;
+            }
+            if (freeCount > 0) {
+                record = free[--freeCount];
+            } else {
+                record = allocated++;
+                buffer.putInt(ALLOCATED_OFFSET, allocated);
+            }
+            int offset = offset(record);
+            buffer.putLong(offset, key);
+            buffer.putInt(offset + 8, 0);
+            for (int i = offset + 12; i < offset + RECORD_SIZE; i += 4) {
+                buffer.putFloat(i, 0);
+            }
+            index.put(key, record);
+            return record;
+        }
+
+        // Out-of-order events do not decay; the profile stays at the newest hour seen
+        void decay(int record, int hour, double halfLifeHours) {
+            int offset = offset(record);
+            int last = buffer.getInt(offset + 8);
+            if (hour <= last) {
+                return;
+            }
+            buffer.putInt(offset + 8, hour);
+            float total = buffer.getFloat(offset + 12);
+            if (last == 0 || total == 0) {
+                return;
+            }
+            float factor = (float) Math.pow(0.5, (hour - last) / halfLifeHours);
+            for (int i = offset + 12; i < offset + RECORD_SIZE; i += 4) {
+                buffer.putFloat(i, buffer.getFloat(i) * factor);
+            }
+        }
+
+        float total(int record) {
+            return buffer.getFloat(offset(record) + 12);
+        }
+
+        float decayedTotal(int record, int hour, double halfLifeHours) {
+            int last = lastHour(record);
+            float total = total(record);
+            return hour <= last ? total : total * (float) Math.pow(0.5, (hour - last) / halfLifeHours);
+        }
+
+        double share(int record, int hourOfDay) {
+            float weight = bucket(record, hourOfDay)
+                    + 0.5f * (bucket(record, (hourOfDay + HOURS - 1) % HOURS) + bucket(record, (hourOfDay + 1) % HOURS));
+            return weight / (2 * total(record));
+        }
+
+        void add(int record, int hourOfDay) {
+            int offset = offset(record);
+            buffer.putFloat(offset + 12, buffer.getFloat(offset + 12) + 1);
+            int bucket = offset + 16 + hourOfDay * 4;
+            buffer.putFloat(bucket, buffer.getFloat(bucket) + 1);
+        }
+
+        HourHistogram export(int record) {
+            float[] buckets = new float[HOURS];
+            for (int hourOfDay = 0; hourOfDay < HOURS; hourOfDay++) {
+                buckets[hourOfDay] = bucket(record, hourOfDay);
+            }
+            return new HourHistogram(lastHour(record), total(record), buckets);
+        }
+
+        void restore(int record, HourHistogram histogram) {
+            int offset = offset(record);
+            // Never 0, which marks a free record
+            buffer.putInt(offset + 8, Math.max(1, histogram.lastHour()));
+            buffer.putFloat(offset + 12, histogram.total());
+            for (int hourOfDay = 0; hourOfDay < HOURS; hourOfDay++) {
+                buffer.putFloat(offset + 16 + hourOfDay * 4, histogram.buckets()[hourOfDay]);
+            }
+        }
+
+        int evictIdle(int idleBefore) {
+            int evicted = 0;
+            for (int record = 0; record < allocated; record++) {
+                int last = lastHour(record);
+                if (last != 0 && last <= idleBefore) {
+                    index.remove(key(record));
+                    buffer.putInt(offset(record) + 8, 0);
+                    release(record);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        private void release(int record) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, free.length << 1);
+            }
+            free[freeCount++] = record;
+        }
+
+        private float bucket(int record, int hourOfDay) {
+            return buffer.getFloat(offset(record) + 16 + hourOfDay * 4);
+        }
+
+        private long key(int record) {
+            return buffer.getLong(offset(record));
+        }
+
+        private int lastHour(int record) {
+            return buffer.getInt(offset(record) + 8);
+        }
+
+        private static int offset(int record) {
+            return HEADER_SIZE + record * RECORD_SIZE;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.transaction.fraud.location;
+
+import com.transaction.fraud.util.Hashing;
+import com.transaction.fraud.util.LongIntOpenHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Where each user usually transacts, and how rare a given location is for them.
+ * <p>
+ * Every user gets a fixed-size sketch: the {@value #COUNTRIES} heaviest countries and {@value #CITIES} heaviest
+ * cities, as 32-bit name hashes with a weight, plus the user's total weight. Weights halve every
+ * {@code half-life-days}, applied lazily when the user is next seen, so old habits fade. A location outside a
+ * full top-k replaces the lightest one and inherits its weight plus one (Space-Saving), which can only overstate
+ * how familiar a location is, never flag a usual one.
+ * <p>
+ * As in the velocity tracker, sketches live in flat shard-wide primitive arrays indexed through a
+ * {@link LongIntOpenHashMap}, so there is no per-user object for the collector to trace: about
+ * {@value #BYTES_PER_USER} bytes per user plus the index. Users idle for longer than {@code retention-days}
+ * are reclaimed by the periodic sweep, or by a full shard before it refuses a new user.
+ * <p>
+ * The arrays are a cache: {@link com.transaction.fraud.state.UserProfileStore} persists each user's sketch with
+ * their profile through {@link #export} and puts it back with {@link #restore} when the user's partition is
+ * assigned, so history survives restarts and rebalances.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocationProfiler {
+
+    static final int COUNTRIES = 4;
+    static final int CITIES = 4;
+    static final int BYTES_PER_USER = 8 + 4 + 4 + (COUNTRIES + CITIES) * 8;
+
+    // Rarity weighs the country far above the city: a new city at home is mostly harmless
+    private static final float COUNTRY_SHARE_WEIGHT = 0.8f;
+
+    // Hours since 2023-11-14, as in the velocity tracker's epoch
+    private static final long EPOCH_SECONDS = 1_700_000_000L;
+
+    private final MeterRegistry meterRegistry;
+
+    private Shard[] shards;
+    private double halfLifeHours;
+    private Counter untracked;
+
+    @Value("${fraud.location.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fraud.location.half-life-days:30}")
+    private double halfLifeDays;
+
+    @Value("${fraud.location.min-history:5}")
+    private double minHistory;
+
+    @Value("${fraud.location.retention-days:180}")
+    private int retentionDays;
+
+    @Value("${fraud.location.max-users:10000000}")
+    private int maxUsers;
+
+    @Value("${fraud.location.shards:64}")
+    private int shardCount;
+
+    @PostConstruct
+    public void init() {
+        if (halfLifeDays <= 0) {
+            throw new IllegalStateException("fraud.location.half-life-days must be positive");
+        }
+        halfLifeHours = halfLifeDays * 24;
+
+        int count = Integer.highestOneBit(Math.max(1, shardCount) * 2 - 1);
+        int usersPerShard = Math.max(16, maxUsers / count);
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(usersPerShard);
+        }
+
+        untracked = Counter.builder("fraud.location.untracked")
+                .description("Transactions of new users not profiled because every shard slot was in use")
+                .register(meterRegistry);
+        Gauge.builder("fraud.location.users", this, LocationProfiler::profiledUsers)
+                .description("Users with a location profile")
+                .register(meterRegistry);
+        Gauge.builder("fraud.location.memory", this, LocationProfiler::allocatedBytes)
+                .description("Heap allocated for location profiles and their index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("Location profiler: {} shards x {} users, {} bytes per user, half-life {} days",
+                count, usersPerShard, BYTES_PER_USER, halfLifeDays);
+    }
+
+    /**
+     * Scores the location against the user's profile so far, then adds it to the profile.
+     *
+     * @return rarity between 0 (where the user always transacts) and 1 (never seen there), or 0 when there
+     *         is no signal: no country, a country of {@code UNKNOWN}, or too little history for this user
+     */
+    public double scoreAndRecord(String userId, String country, String city, Instant timestamp) {
+        int countryKey = locationKey(country, null);
+        if (!enabled || userId == null || countryKey == 0) {
+            return 0;
+        }
+        int cityKey = locationKey(city, country);
+        long key = Hashing.hash64(userId);
+        int hour = toEpochHours(timestamp);
+
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.slotFor(key, hour - retentionDays * 24);
+            if (slot < 0) {
+                untracked.increment();
+                return 0;
+            }
+            shard.decay(slot, hour, halfLifeHours);
+            double rarity = shard.totals[slot] >= minHistory ? shard.rarity(slot, countryKey, cityKey) : 0;
+            shard.add(slot, countryKey, cityKey);
+            return rarity;
+        }
+    }
+
+    /**
+     * Scores the location like {@link #scoreAndRecord} against the profile as it stands, without adding to
+     * it or taking a slot for a new user.
+     */
+    public double score(String userId, String country, String city, Instant timestamp) {
+        int countryKey = locationKey(country, null);
+        if (!enabled || userId == null || countryKey == 0) {
+            return 0;
+        }
+        int cityKey = locationKey(city, country);
+        long key = Hashing.hash64(userId);
+        int hour = toEpochHours(timestamp);
+
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.index.get(key);
+            // Decay scales every weight alike, so only the history threshold needs the decayed total
+            if (slot < 0 || shard.decayedTotal(slot, hour, halfLifeHours) < minHistory) {
+                return 0;
+            }
+            return shard.rarity(slot, countryKey, cityKey);
+        }
+    }
+
+    /**
+     * @return the user's sketch as it stands, or {@code null} if they have none
+     */
+    public LocationSketch export(String userId) {
+        if (!enabled || userId == null) {
+            return null;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.index.get(key);
+            return slot >= 0 ? shard.export(slot) : null;
+        }
+    }
+
+    // Replaces whatever is held for the user with a sketch persisted earlier
+    public void restore(String userId, LocationSketch sketch) {
+        if (!enabled || userId == null || sketch == null) {
+            return;
+        }
+        long key = Hashing.hash64(userId);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            int slot = shard.slotFor(key, toEpochHours(Instant.now()) - retentionDays * 24);
+            if (slot < 0) {
+                untracked.increment();
+                return;
+            }
+            shard.restore(slot, sketch);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.location.sweep-interval-ms:3600000}")
+    public void evictIdle() {
+        int idleBefore = toEpochHours(Instant.now()) - retentionDays * 24;
+        int evicted = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                evicted += shard.evictIdle(idleBefore);
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted location profiles of {} idle users", evicted);
+        }
+    }
+
+    int profiledUsers() {
+        int users = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                users += shard.index.size();
+            }
+        }
+        return users;
+    }
+
+    long allocatedBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                bytes += (long) shard.keys.length * BYTES_PER_USER + (long) shard.index.capacity() * 12;
+            }
+        }
+        return bytes;
+    }
+
+    private Shard shardFor(long key) {
+        return shards[(int) (key >>> 40) & (shards.length - 1)];
+    }
+
+    /**
+     * Case- and whitespace-insensitive 32-bit hash, never 0; 0 when the name carries no location.
+     * A city is hashed together with its country so that same-named cities stay apart.
+     */
+    static int locationKey(String name, String country) {
+        if (name == null || name.isBlank() || name.trim().equalsIgnoreCase("UNKNOWN")) {
+            return 0;
+        }
+        String qualified = country != null ? country.trim() + '\u0000' + name.trim() : name.trim();
+        int key = (int) Hashing.hash64(qualified.toUpperCase());
+        return key != 0 ? key : 1;
+    }
+
+    private static int toEpochHours(Instant timestamp) {
+        long seconds = (timestamp != null ? timestamp.getEpochSecond() : Instant.now().getEpochSecond()) - EPOCH_SECONDS;
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, seconds / 3600));
+    }
+
+    private static final class Shard {
+
+        private static final int INITIAL_USERS = 1024;
+        private static final int FREE = -1;
+
+        final int maxUsers;
+        final LongIntOpenHashMap index;
+
+        long[] keys;
+        int[] lastHour;
+        float[] totals;
+        int[] countryKeys;
+        float[] countryWeights;
+        int[] cityKeys;
+        float[] cityWeights;
+
+        int allocated;
+        int[] free;
+        int freeCount;
+
+        Shard(int maxUsers) {
+            this.maxUsers = maxUsers;
+            int initial = Math.min(INITIAL_USERS, maxUsers);
+            this.index = new LongIntOpenHashMap(initial, -1);
+            resize(initial);
+            this.free = new int[16];
+        }
+
+        int slotFor(long key, int idleBefore) {
+            int slot = index.get(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (freeCount == 0 && allocated == keys.length) {
+                if (keys.length < maxUsers) {
+                    resize((int) Math.min(maxUsers, (long) keys.length << 1));
+                } else if (evictIdle(idleBefore) == 0) {
+                    return -1;
+                }
+            }
+            slot = freeCount > 0 ? free[--freeCount] : allocated++;
+            keys[slot] = key;
+            lastHour[slot] = 0;
+            totals[slot] = 0;
+            Arrays.fill(countryKeys, slot * COUNTRIES, (slot + 1) * COUNTRIES, 0);
+            Arrays.fill(countryWeights, slot * COUNTRIES, (slot + 1) * COUNTRIES, 0);
+            Arrays.fill(cityKeys, slot * CITIES, (slot + 1) * CITIES, 0);
+            Arrays.fill(cityWeights, slot * CITIES, (slot + 1) * CITIES, 0);
+            index.put(key, slot);
+            return slot;
+        }
+
+        // Out-of-order events do not decay; the profile stays at the newest hour seen
+        void decay(int slot, int hour, double halfLifeHours) {
+            int elapsed = hour - lastHour[slot];
+            if (elapsed <= 0) {
+                return;
+            }
+            lastHour[slot] = hour;
+            if (totals[slot] == 0) {
+                return;
+            }
+            float factor = (float) Math.pow(0.5, elapsed / halfLifeHours);
+            totals[slot] *= factor;
+            scale(countryWeights, slot * COUNTRIES, COUNTRIES, factor);
+            scale(cityWeights, slot * CITIES, CITIES, factor);
+        }
+
+        float decayedTotal(int slot, int hour, double halfLifeHours) {
+            int elapsed = hour - lastHour[slot];
+            return elapsed <= 0 ? totals[slot] : totals[slot] * (float) Math.pow(0.5, elapsed / halfLifeHours);
+        }
+
+        double rarity(int slot, int countryKey, int cityKey) {
+            float total = totals[slot];
+            float countryShare = weight(countryKeys, countryWeights, slot * COUNTRIES, COUNTRIES, countryKey) / total;
+            float cityShare = cityKey != 0
+                    ? weight(cityKeys, cityWeights, slot * CITIES, CITIES, cityKey) / total
+                    : countryShare;
+            float familiarity = COUNTRY_SHARE_WEIGHT * countryShare + (1 - COUNTRY_SHARE_WEIGHT) * cityShare;
+            return Math.max(0, Math.min(1, 1 - familiarity));
+        }
+
+        void add(int slot, int countryKey, int cityKey) {
+            totals[slot] += 1;
+            increment(countryKeys, countryWeights, slot * COUNTRIES, COUNTRIES, countryKey);
+            if (cityKey != 0) {
+                increment(cityKeys, cityWeights, slot * CITIES, CITIES, cityKey);
+            }
+        }
+
+        LocationSketch export(int slot) {
+            return new LocationSketch(lastHour[slot], totals[slot],
+                    Arrays.copyOfRange(countryKeys, slot * COUNTRIES, (slot + 1) * COUNTRIES),
+                    Arrays.copyOfRange(countryWeights, slot * COUNTRIES, (slot + 1) * COUNTRIES),
+                    Arrays.copyOfRange(cityKeys, slot * CITIES, (slot + 1) * CITIES),
+                    Arrays.copyOfRange(cityWeights, slot * CITIES, (slot + 1) * CITIES));
+        }
+
+        void restore(int slot, LocationSketch sketch) {
+            lastHour[slot] = Math.max(0, sketch.lastHour());
+            totals[slot] = sketch.total();
+            copy(sketch.countryKeys(), sketch.countryWeights(), countryKeys, countryWeights, slot * COUNTRIES, COUNTRIES);
+            copy(sketch.cityKeys(), sketch.cityWeights(), cityKeys, cityWeights, slot * CITIES, CITIES);
+        }
+
+        int evictIdle(int idleBefore) {
+            int evicted = 0;
+            for (int slot = 0; slot < allocated; slot++) {
+                if (lastHour[slot] != FREE && lastHour[slot] <= idleBefore) {
+                    index.remove(keys[slot]);
+                    lastHour[slot] = FREE;
+                    if (freeCount == free.length) {
+                        free = Arrays.copyOf(free, free.length << 1);
+                    }
+                    free[freeCount++] = slot;
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        private static float weight(int[] keys, float[] weights, int base, int k, int key) {
+            for (int i = base; i < base + k; i++) {
+                if (keys[i] == key) {
+                    return weights[i];
+                }
+            }
+            return 0;
+        }
+
+        private static void increment(int[] keys, float[] weights, int base, int k, int key) {
+            int lightest = base;
+            for (int i = base; i < base + k; i++) {
+                if (keys[i] == key) {
+                    weights[i] += 1;
+                    return;
+                }
+                if (keys[i] == 0) {
+                    keys[i] = key;
+                    weights[i] = 1;
+                    return;
+                }
+                if (weights[i] < weights[lightest]) {
+                    lightest = i;
+                }
+            }
+            keys[lightest] = key;
+            weights[lightest] += 1;
+        }
+
+        // A sketch persisted with a larger k keeps its heaviest entries
+        private static void copy(int[] fromKeys, float[] fromWeights, int[] keys, float[] weights, int base, int k) {
+            Arrays.fill(keys, base, base + k, 0);
+            Arrays.fill(weights, base, base + k, 0);
+            for (int i = 0; i < fromKeys.length; i++) {
+                if (fromKeys[i] == 0) {
+                    continue;
+                }
+                int target = base;
+                for (int j = base; j < base + k && keys[target] != 0; j++) {
+                    if (keys[j] == 0 || weights[j] < weights[target]) {
+                        target = j;
+                    }
+                }
+                if (keys[target] == 0 || weights[target] < fromWeights[i]) {
+                    keys[target] = fromKeys[i];
+                    weights[target] = fromWeights[i];
+                }
+            }
+        }
+
+        private static void scale(float[] weights, int base, int k, float factor) {
+            for (int i = base; i < base + k; i++) {
+                weights[i] *= factor;
+            }
+        }
+
+        private void resize(int users) {
+            keys = keys == null ? new long[users] : Arrays.copyOf(keys, users);
+            lastHour = lastHour == null ? new int[users] : Arrays.copyOf(lastHour, users);
+            totals = totals == null ? new float[users] : Arrays.copyOf(totals, users);
+            countryKeys = countryKeys == null ? new int[users * COUNTRIES] : Arrays.copyOf(countryKeys, users * COUNTRIES);
+            countryWeights = countryWeights == null
+                    ? new float[users * COUNTRIES] : Arrays.copyOf(countryWeights, users * COUNTRIES);
+            cityKeys = cityKeys == null ? new int[users * CITIES] : Arrays.copyOf(cityKeys, users * CITIES);
+            cityWeights = cityWeights == null ? new float[users * CITIES] : Arrays.copyOf(cityWeights, users * CITIES);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.transaction.fraud.location;
+
+import java.util.Arrays;
+
+/**
+ * One user's location profile as {@link LocationProfiler} holds it, so it can be persisted with the user's
+ * profile and handed back when their partition moves. Weights are as of {@code lastHour}, hours since the
+ * profiler's epoch; decay resumes from there. Unused entries have key 0.
+ */
+public record LocationSketch(int lastHour,
+                             float total,
+                             int[] countryKeys,
+                             float[] countryWeights,
+                             int[] cityKeys,
+                             float[] cityWeights) {
+
+    public LocationSketch {
+        if (countryKeys.length != countryWeights.length || cityKeys.length != cityWeights.length) {
+            throw new IllegalArgumentException("Location sketch keys and weights differ in length");
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LocationSketch that
+                && lastHour == that.lastHour
+                && Float.compare(total, that.total) == 0
+                && Arrays.equals(countryKeys, that.countryKeys)
+                && Arrays.equals(countryWeights, that.countryWeights)
+                && Arrays.equals(cityKeys, that.cityKeys)
+                && Arrays.equals(cityWeights, that.cityWeights);
+    }
+
+    @Override
+    public int hashCode() {
+        return (lastHour * 31 + Float.hashCode(total)) * 31 + Arrays.hashCode(countryKeys);
+    }
+
+    @Override
+    public String toString() {
+        return "LocationSketch[lastHour=" + lastHour + ", total=" + total
+                + ", countries=" + Arrays.toString(countryKeys) + "]";
+    }
+}
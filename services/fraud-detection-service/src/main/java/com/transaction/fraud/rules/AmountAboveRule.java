@@ -0,0 +1,24 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.models.Transaction;
+
+import java.math.BigDecimal;
+
+// Threshold in the base currency; compared as base-currency hundredths
+final class AmountAboveRule implements FraudRule {
+
+    private final CurrencyNormalizer currencyNormalizer;
+    private final long thresholdMinor;
+
+    AmountAboveRule(CurrencyNormalizer currencyNormalizer, BigDecimal threshold) {
+        this.currencyNormalizer = currencyNormalizer;
+        this.thresholdMinor = threshold.movePointRight(2).longValue();
+    }
+
+    @Override
+    public boolean evaluate(Transaction transaction) {
+        return transaction.getAmount() != null
+                && currencyNormalizer.toBaseMinor(transaction.getAmount(), transaction.getCurrency()) > thresholdMinor;
+    }
+}
@@ -0,0 +1,48 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.models.Transaction;
+
+import java.math.BigDecimal;
+
+/**
+ * Fires on amounts above the user's own limit, learned by {@link AmountProfiler}. Until a user has enough
+ * history the fixed threshold (base currency) applies instead. Profile tuning lives in fraud.amount.*.
+ */
+final class AmountOutlierRule implements FraudRule {
+
+    private final AmountProfiler amountProfiler;
+    private final CurrencyNormalizer currencyNormalizer;
+    private final long coldStartThresholdMinor;
+    private final boolean recording;
+
+    AmountOutlierRule(AmountProfiler amountProfiler, CurrencyNormalizer currencyNormalizer, BigDecimal threshold,
+                      boolean recording) {
+        this.amountProfiler = amountProfiler;
+        this.currencyNormalizer = currencyNormalizer;
+        this.coldStartThresholdMinor = threshold.movePointRight(2).longValue();
+        this.recording = recording;
+    }
+
+    @Override
+    public boolean evaluate(Transaction transaction) {
+        if (transaction.getAmount() == null) {
+            return false;
+        }
+        long amount = currencyNormalizer.toBaseMinor(transaction.getAmount(), transaction.getCurrency());
+        long limit = recording
+                ? amountProfiler.limitAndRecord(transaction.getUserId(), amount, transaction.getTimestamp())
+                : amountProfiler.limit(transaction.getUserId());
+        return amount > (limit == AmountProfiler.NO_LIMIT ? coldStartThresholdMinor : limit);
+    }
+
+    @Override
+    public void observe(Transaction transaction) {
+        if (recording && transaction.getAmount() != null) {
+            amountProfiler.limitAndRecord(transaction.getUserId(),
+                    currencyNormalizer.toBaseMinor(transaction.getAmount(), transaction.getCurrency()),
+                    transaction.getTimestamp());
+        }
+    }
+}
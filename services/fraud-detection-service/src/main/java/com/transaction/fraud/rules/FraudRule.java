@@ -0,0 +1,16 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.Transaction;
+
+/**
+ * A fraud check. Name, risk level and reason come from the rule's entry in the rules file,
+ * so an implementation only decides whether the transaction matches.
+ */
+public interface FraudRule {
+
+    boolean evaluate(Transaction transaction);
+
+    // Called instead of evaluate() when the plan short-circuits; stateful rules still record the transaction
+    default void observe(Transaction transaction) {
+    }
+}
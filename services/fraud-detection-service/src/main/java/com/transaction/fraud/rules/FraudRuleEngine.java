@@ -0,0 +1,121 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.FraudAlert.RiskLevel;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the rule set declared in {@code fraud.rules.location}.
+ * <p>
+ * The file is compiled into a {@link RulePlan} and published through an {@link AtomicReference}:
+ * consumers read the current plan once per transaction and never wait on a reload. A changed file is
+ * picked up on the next refresh; a file that fails to parse or compile leaves the running plan in place.
+ * Between reloads the plan is periodically re-ordered on measured rule cost and hit rate.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FraudRuleEngine {
+
+    private final RuleFactory ruleFactory;
+    private final MeterRegistry meterRegistry;
+    private final ResourceLoader resourceLoader;
+
+    private final AtomicReference<RulePlan> plan = new AtomicReference<>();
+    private long loadedLastModified = Long.MIN_VALUE;
+
+    @Value("${fraud.rules.location:classpath:fraud-rules.yml}")
+    private String location;
+
+    @Value("${fraud.rules.short-circuit-at:CRITICAL}")
+    private RiskLevel shortCircuitAt;
+
+    @PostConstruct
+    public void init() {
+        if (!reloadIfModified()) {
+            throw new IllegalStateException("No valid fraud rule set at " + location);
+        }
+    }
+
+    public RuleEvaluation evaluate(Transaction transaction) {
+        return plan.get().evaluate(transaction);
+    }
+
+    public RulePlan currentPlan() {
+        return plan.get();
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.rules.refresh-interval-ms:10000}")
+    public synchronized void refresh() {
+        if (reloadIfModified()) {
+            return;
+        }
+        RulePlan current = plan.get();
+        RulePlan reordered = current.reordered();
+        if (reordered != current) {
+            plan.set(reordered);
+            log.info("Fraud rule plan re-ordered: {}", reordered);
+        }
+    }
+
+    synchronized boolean reloadIfModified() {
+        Resource resource = resourceLoader.getResource(location);
+        try {
+            long lastModified = lastModified(resource);
+            if (lastModified == loadedLastModified) {
+                return false;
+            }
+            RulePlan compiled = RulePlan.compile(read(resource), ruleFactory, meterRegistry, shortCircuitAt);
+            plan.set(compiled);
+            loadedLastModified = lastModified;
+            log.info("Fraud rule set loaded from {}: {}", location, compiled);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            if (plan.get() == null) {
+                log.error("Failed to load fraud rules from {}", location, e);
+            } else {
+                log.error("Failed to reload fraud rules from {}; keeping {}", location, plan.get(), e);
+            }
+            return false;
+        }
+    }
+
+    static List<RuleDefinition> read(Resource resource) throws IOException {
+        Binder binder = new Binder(ConfigurationPropertySources.from(
+                new YamlPropertySourceLoader().load(resource.getDescription(), resource)));
+        List<RuleDefinition> definitions = binder.bind("rules", Bindable.listOf(RuleDefinition.class))
+                .orElse(List.of());
+        if (definitions.isEmpty()) {
+            throw new IllegalArgumentException("No rules declared in " + resource.getDescription());
+        }
+        return definitions;
+    }
+
+    static long lastModified(Resource resource) throws IOException {
+        if (!resource.exists()) {
+            throw new IOException(resource.getDescription() + " does not exist");
+        }
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            // No timestamp (e.g. inside a jar): load once, then keep
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.models.Transaction;
+
+// Fires when the location is at least minRarity unusual for this user; profile tuning lives in fraud.location.*
+final class LocationRarityRule implements FraudRule {
+
+    private final LocationProfiler locationProfiler;
+    private final double minRarity;
+    private final boolean recording;
+
+    LocationRarityRule(LocationProfiler locationProfiler, double minRarity, boolean recording) {
+        this.locationProfiler = locationProfiler;
+        this.minRarity = minRarity;
+        this.recording = recording;
+    }
+
+    @Override
+    public boolean evaluate(Transaction transaction) {
+        return score(transaction) >= minRarity;
+    }
+
+    @Override
+    public void observe(Transaction transaction) {
+        if (recording) {
+            score(transaction);
+        }
+    }
+
+    private double score(Transaction transaction) {
+        Transaction.Location location = transaction.getLocation();
+        if (location == null) {
+            return 0;
+        }
+        return recording
+                ? locationProfiler.scoreAndRecord(transaction.getUserId(), location.getCountry(), location.getCity(),
+                        transaction.getTimestamp())
+                : locationProfiler.score(transaction.getUserId(), location.getCountry(), location.getCity(),
+                        transaction.getTimestamp());
+    }
+}
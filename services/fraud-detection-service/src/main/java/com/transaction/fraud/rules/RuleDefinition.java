@@ -0,0 +1,37 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.FraudAlert.FraudReason;
+import com.transaction.models.FraudAlert.RiskLevel;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// One entry under "rules" in the rules file
+@Data
+public class RuleDefinition {
+
+    private String name;
+    private RuleType type;
+    private boolean enabled = true;
+    private RiskLevel riskLevel;
+    private FraudReason reason;
+    private Long costNanos;
+    private RuleTier tier = RuleTier.FAST;
+
+    // AMOUNT_ABOVE; AMOUNT_OUTLIER until the user has history. In the base currency
+    private BigDecimal threshold;
+
+    // MERCHANT_CATEGORY
+    private List<String> categories = new ArrayList<>();
+
+    // COUNTRY
+    private List<String> countries = new ArrayList<>();
+
+    // LOCATION_RARITY, between 0 (always fires) and 1 (only never-seen locations)
+    private Double minRarity;
+
+    // HOUR_OF_DAY, share of the user's activity around the hour at or below which the rule fires
+    private Double maxShare;
+}
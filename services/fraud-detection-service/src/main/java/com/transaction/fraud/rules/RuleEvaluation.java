@@ -0,0 +1,36 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.FraudAlert.FraudReason;
+import com.transaction.models.FraudAlert.RiskLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of running the plan on one transaction. {@code primaryReason} is that of the highest-risk
+ * rule that fired, the earliest in plan order on a tie; it is {@code null} when nothing fired.
+ */
+public record RuleEvaluation(List<String> triggeredRules, RiskLevel riskLevel, FraudReason primaryReason) {
+
+    static final RuleEvaluation CLEAN = new RuleEvaluation(List.of(), RiskLevel.LOW, null);
+
+    public boolean triggered() {
+        return !triggeredRules.isEmpty();
+    }
+
+    // Adds the outcome of rules that ran after these; on a risk level tie the earlier reason stays primary
+    public RuleEvaluation merge(RuleEvaluation later) {
+        if (!later.triggered()) {
+            return this;
+        }
+        if (!triggered()) {
+            return later;
+        }
+        List<String> rules = new ArrayList<>(triggeredRules.size() + later.triggeredRules.size());
+        rules.addAll(triggeredRules);
+        rules.addAll(later.triggeredRules);
+        return later.riskLevel.compareTo(riskLevel) > 0
+                ? new RuleEvaluation(rules, later.riskLevel, later.primaryReason)
+                : new RuleEvaluation(rules, riskLevel, primaryReason);
+    }
+}
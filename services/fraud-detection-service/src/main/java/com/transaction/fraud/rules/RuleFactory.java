@@ -0,0 +1,69 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.fraud.velocity.VelocityTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class RuleFactory {
+
+    private final VelocityTracker velocityTracker;
+    private final LocationProfiler locationProfiler;
+    private final HourOfDayProfiler hourOfDayProfiler;
+    private final AmountProfiler amountProfiler;
+    private final CurrencyNormalizer currencyNormalizer;
+
+    /**
+     * @param recording whether stateful rules add the transaction to their profile; a rule that does not
+     *                  scores it against the profile as it stands
+     */
+    public FraudRule create(RuleDefinition definition, boolean recording) {
+        return switch (definition.getType()) {
+            case AMOUNT_ABOVE -> new AmountAboveRule(currencyNormalizer, requireThreshold(definition));
+            case AMOUNT_OUTLIER -> new AmountOutlierRule(amountProfiler, currencyNormalizer,
+                    requireThreshold(definition), recording);
+            case MERCHANT_CATEGORY -> ValueInListRule.merchantCategory(
+                    requireValues(definition, definition.getCategories(), "categories"));
+            case COUNTRY -> ValueInListRule.country(
+                    requireValues(definition, definition.getCountries(), "countries"));
+            case LOCATION_RARITY -> {
+                Double minRarity = definition.getMinRarity();
+                if (minRarity == null || minRarity <= 0 || minRarity > 1) {
+                    throw new IllegalArgumentException("Rule " + definition.getName() + " needs a min-rarity in (0, 1]");
+                }
+                yield new LocationRarityRule(locationProfiler, minRarity, recording);
+            }
+            case HOUR_OF_DAY -> {
+                Double maxShare = definition.getMaxShare();
+                if (maxShare == null || maxShare < 0 || maxShare >= 1) {
+                    throw new IllegalArgumentException("Rule " + definition.getName() + " needs a max-share in [0, 1)");
+                }
+                yield new UnusualHourRule(hourOfDayProfiler, maxShare, recording);
+            }
+            case VELOCITY -> new VelocityRule(velocityTracker, currencyNormalizer, recording);
+        };
+    }
+
+    private static BigDecimal requireThreshold(RuleDefinition definition) {
+        if (definition.getThreshold() == null) {
+            throw new IllegalArgumentException("Rule " + definition.getName() + " needs a threshold");
+        }
+        return definition.getThreshold();
+    }
+
+    private static List<String> requireValues(RuleDefinition definition, List<String> values,
+                                                         String property) {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("Rule " + definition.getName() + " needs " + property);
+        }
+        return values;
+    }
+}
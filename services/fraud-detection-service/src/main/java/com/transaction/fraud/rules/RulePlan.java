@@ -0,0 +1,222 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.FraudAlert.FraudReason;
+import com.transaction.models.FraudAlert.RiskLevel;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An immutable, ordered rule set.
+ * <p>
+ * Rules run highest risk level first, and within a level by expected hits per nanosecond, so the
+ * plan reaches {@code shortCircuitAt} as cheaply as possible. From there no rule can raise the
+ * risk level any further: the remaining rules are only {@link FraudRule#observe observed}.
+ * Until a rule has been timed {@value #MIN_SAMPLES} times its declared cost stands in for the
+ * measured one; {@link #reordered()} re-sorts on the latest measurements.
+ * <p>
+ * Rules are split by {@link RuleTier}: {@link #evaluateFast} runs the FAST rules and {@link #evaluateDeep}
+ * the DEEP ones, each tier in the order above, with the deep tier starting from the risk level the fast
+ * tier reached. {@link #evaluate} runs both in turn.
+ * <p>
+ * A recording plan holds at most one enabled rule of each {@link RuleType#stateful() stateful} type: each of
+ * those records the transaction into a shared profile, so a second one would count every transaction twice.
+ * A plan compiled without recording only reads the profiles, and may hold several.
+ */
+public final class RulePlan {
+
+    static final long MIN_SAMPLES = 1000;
+
+    private final PlannedRule[] fast;
+    private final PlannedRule[] deep;
+    private final RiskLevel shortCircuitAt;
+
+    private RulePlan(PlannedRule[] fast, PlannedRule[] deep, RiskLevel shortCircuitAt) {
+        this.fast = fast;
+        this.deep = deep;
+        this.shortCircuitAt = shortCircuitAt;
+    }
+
+    public static RulePlan compile(List<RuleDefinition> definitions, RuleFactory ruleFactory,
+                                   MeterRegistry meterRegistry, RiskLevel shortCircuitAt) {
+        return compile(definitions, ruleFactory, meterRegistry, shortCircuitAt, "fraud.rule", true);
+    }
+
+    // Per-rule meters are named <metricPrefix>.evaluation, .hits and .skipped; see RuleFactory#create for recording
+    public static RulePlan compile(List<RuleDefinition> definitions, RuleFactory ruleFactory,
+                                   MeterRegistry meterRegistry, RiskLevel shortCircuitAt, String metricPrefix,
+                                   boolean recording) {
+        List<PlannedRule> planned = new ArrayList<>(definitions.size());
+        Set<RuleType> recordingTypes = EnumSet.noneOf(RuleType.class);
+        for (RuleDefinition definition : definitions) {
+            if (!definition.isEnabled()) {
+                continue;
+            }
+            if (definition.getName() == null || definition.getType() == null || definition.getRiskLevel() == null) {
+                throw new IllegalArgumentException("Every rule needs a name, type and risk-level: " + definition);
+            }
+            if (planned.stream().anyMatch(rule -> rule.name.equals(definition.getName()))) {
+                throw new IllegalArgumentException("Duplicate rule name " + definition.getName());
+            }
+            if (recording && definition.getType().stateful() && !recordingTypes.add(definition.getType())) {
+                throw new IllegalArgumentException("Rule " + definition.getName() + " is a second "
+                        + definition.getType() + " rule; it would record every transaction into the same profile again");
+            }
+            planned.add(new PlannedRule(definition, ruleFactory.create(definition, recording), meterRegistry,
+                    metricPrefix));
+        }
+        return new RulePlan(
+                sorted(planned.stream().filter(rule -> rule.tier == RuleTier.FAST).toArray(PlannedRule[]::new)),
+                sorted(planned.stream().filter(rule -> rule.tier == RuleTier.DEEP).toArray(PlannedRule[]::new)),
+                shortCircuitAt);
+    }
+
+    public RuleEvaluation evaluate(Transaction transaction) {
+        RuleEvaluation fastEvaluation = evaluateFast(transaction);
+        return fastEvaluation.merge(evaluateDeep(transaction, fastEvaluation));
+    }
+
+    public RuleEvaluation evaluateFast(Transaction transaction) {
+        return evaluate(fast, transaction, RiskLevel.LOW);
+    }
+
+    // Only the deep rules' outcome; merge it into the fast one for the verdict
+    public RuleEvaluation evaluateDeep(Transaction transaction, RuleEvaluation fastEvaluation) {
+        return evaluate(deep, transaction, fastEvaluation.riskLevel());
+    }
+
+    public boolean hasDeepRules() {
+        return deep.length > 0;
+    }
+
+    public RulePlan reordered() {
+        PlannedRule[] resortedFast = sorted(fast.clone());
+        PlannedRule[] resortedDeep = sorted(deep.clone());
+        return Arrays.equals(resortedFast, fast) && Arrays.equals(resortedDeep, deep)
+                ? this : new RulePlan(resortedFast, resortedDeep, shortCircuitAt);
+    }
+
+    public List<String> ruleNames() {
+        return Stream.concat(Arrays.stream(fast), Arrays.stream(deep)).map(rule -> rule.name).toList();
+    }
+
+    @Override
+    public String toString() {
+        String plan = describe(fast);
+        return deep.length == 0 ? plan : plan + " | deep: " + describe(deep);
+    }
+
+    private RuleEvaluation evaluate(PlannedRule[] rules, Transaction transaction, RiskLevel reached) {
+        List<String> triggered = null;
+        RiskLevel riskLevel = RiskLevel.LOW;
+        FraudReason primaryReason = null;
+
+        for (PlannedRule rule : rules) {
+            if (reached.compareTo(shortCircuitAt) >= 0) {
+                rule.observe(transaction);
+                continue;
+            }
+            if (rule.evaluate(transaction)) {
+                if (triggered == null) {
+                    triggered = new ArrayList<>(4);
+                }
+                triggered.add(rule.name);
+                if (primaryReason == null || rule.riskLevel.compareTo(riskLevel) > 0) {
+                    riskLevel = rule.riskLevel;
+                    primaryReason = rule.reason;
+                }
+                if (riskLevel.compareTo(reached) > 0) {
+                    reached = riskLevel;
+                }
+            }
+        }
+        return triggered == null ? RuleEvaluation.CLEAN : new RuleEvaluation(triggered, riskLevel, primaryReason);
+    }
+
+    private static String describe(PlannedRule[] rules) {
+        return Arrays.stream(rules)
+                .map(rule -> rule.name + "(" + rule.riskLevel + ")")
+                .collect(Collectors.joining(" -> "));
+    }
+
+    private static PlannedRule[] sorted(PlannedRule[] rules) {
+        // Snapshot the scores first: live meters keep moving while the sort compares them
+        for (int i = 0; i < rules.length; i++) {
+            rules[i].score = rules[i].hitsPerNanosecond();
+        }
+        Arrays.sort(rules, Comparator.<PlannedRule, RiskLevel>comparing(rule -> rule.riskLevel).reversed()
+                .thenComparing(Comparator.comparingDouble((PlannedRule rule) -> rule.score).reversed()));
+        return rules;
+    }
+
+    private static final class PlannedRule {
+
+        final String name;
+        final RiskLevel riskLevel;
+        final FraudReason reason;
+        final RuleTier tier;
+        final long declaredCostNanos;
+        final FraudRule rule;
+        final Timer evaluations;
+        final Counter hits;
+        final Counter skipped;
+        // Only written and read while sorting, which the engine serialises
+        double score;
+
+        PlannedRule(RuleDefinition definition, FraudRule rule, MeterRegistry meterRegistry, String metricPrefix) {
+            this.name = definition.getName();
+            this.riskLevel = definition.getRiskLevel();
+            this.reason = definition.getReason() != null ? definition.getReason() : definition.getType().defaultReason();
+            this.tier = definition.getTier() != null ? definition.getTier() : RuleTier.FAST;
+            this.declaredCostNanos = definition.getCostNanos() != null
+                    ? definition.getCostNanos() : definition.getType().defaultCostNanos();
+            this.rule = rule;
+            // Same name, same meters: counts carry across reloads
+            this.evaluations = Timer.builder(metricPrefix + ".evaluation")
+                    .description("Time spent evaluating a fraud rule")
+                    .tag("rule", name)
+                    .register(meterRegistry);
+            this.hits = Counter.builder(metricPrefix + ".hits")
+                    .description("Transactions a fraud rule fired on")
+                    .tag("rule", name)
+                    .register(meterRegistry);
+            this.skipped = Counter.builder(metricPrefix + ".skipped")
+                    .description("Evaluations skipped because the risk level could not rise any further")
+                    .tag("rule", name)
+                    .register(meterRegistry);
+        }
+
+        boolean evaluate(Transaction transaction) {
+            long start = System.nanoTime();
+            boolean hit = rule.evaluate(transaction);
+            evaluations.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (hit) {
+                hits.increment();
+            }
+            return hit;
+        }
+
+        void observe(Transaction transaction) {
+            skipped.increment();
+            rule.observe(transaction);
+        }
+
+        double hitsPerNanosecond() {
+            long count = evaluations.count();
+            double hitRate = (hits.count() + 1) / (count + 2);
+            double cost = count >= MIN_SAMPLES ? evaluations.mean(TimeUnit.NANOSECONDS) : declaredCostNanos;
+            return hitRate / Math.max(1, cost);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.transaction.fraud.rules;
+
+/**
+ * Where a rule runs. FAST rules run inline on the consumer thread; DEEP rules run on a bounded pool
+ * against a per-transaction deadline, and a transaction whose deep rules miss it gets a provisional verdict.
+ */
+public enum RuleTier {
+    FAST,
+    DEEP
+}
@@ -0,0 +1,38 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.FraudAlert.FraudReason;
+
+public enum RuleType {
+
+    AMOUNT_ABOVE(FraudReason.HIGH_AMOUNT, 20, false),
+    AMOUNT_OUTLIER(FraudReason.HIGH_AMOUNT, 80, true),
+    MERCHANT_CATEGORY(FraudReason.SUSPICIOUS_MERCHANT, 30, false),
+    COUNTRY(FraudReason.GEO_ANOMALY, 30, false),
+    LOCATION_RARITY(FraudReason.GEO_ANOMALY, 120, true),
+    HOUR_OF_DAY(FraudReason.UNUSUAL_TIME, 120, true),
+    VELOCITY(FraudReason.HIGH_FREQUENCY, 150, true);
+
+    private final FraudReason defaultReason;
+    private final long defaultCostNanos;
+    private final boolean stateful;
+
+    RuleType(FraudReason defaultReason, long defaultCostNanos, boolean stateful) {
+        this.defaultReason = defaultReason;
+        this.defaultCostNanos = defaultCostNanos;
+        this.stateful = stateful;
+    }
+
+    public FraudReason defaultReason() {
+        return defaultReason;
+    }
+
+    // Planning estimate until the rule has been timed often enough
+    public long defaultCostNanos() {
+        return defaultCostNanos;
+    }
+
+    // Evaluating the rule records the transaction into a per-user profile
+    public boolean stateful() {
+        return stateful;
+    }
+}
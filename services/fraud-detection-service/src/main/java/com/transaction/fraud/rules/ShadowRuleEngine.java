@@ -0,0 +1,191 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.FraudAlert.RiskLevel;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a candidate rule set from {@code fraud.rules.shadow.location} next to the active one, on a
+ * {@code sample-rate} share of live transactions, and only measures it: its alerts are never published.
+ * <p>
+ * The candidate runs on its own small pool; when that is full the sample is dropped rather than queued,
+ * so the consumer never waits on it. Per-rule timings and hits are under {@code fraud.shadow.rule.*},
+ * the candidate's cost per transaction under {@code fraud.shadow.evaluation}, and how its verdicts compare
+ * with the active set's under {@code fraud.shadow.verdicts}, tagged by outcome. Like the active set, the
+ * candidate is reloaded when its file changes; one that fails to load leaves the previous candidate running.
+ * <p>
+ * Candidates are compiled without recording: their stateful rules score against the shared per-user
+ * profiles that the active set builds, and never add to them. The candidate runs after the active set has
+ * recorded the transaction, so a velocity window matches the active set's, while location, hour and amount
+ * scores see the transaction itself as history and come out slightly less unusual. A stateful type that the
+ * active set does not use has no profile to read, and its candidate rule never fires.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShadowRuleEngine {
+
+    private final RuleFactory ruleFactory;
+    private final MeterRegistry meterRegistry;
+    private final ResourceLoader resourceLoader;
+
+    private final AtomicReference<RulePlan> plan = new AtomicReference<>();
+    private long loadedLastModified = Long.MIN_VALUE;
+    private ThreadPoolExecutor executor;
+    private Timer evaluation;
+    private Counter bothFlagged;
+    private Counter neitherFlagged;
+    private Counter shadowOnly;
+    private Counter activeOnly;
+    private Counter dropped;
+
+    @Value("${fraud.rules.shadow.location:}")
+    private String location;
+
+    @Value("${fraud.rules.shadow.sample-rate:0.05}")
+    private double sampleRate;
+
+    @Value("${fraud.rules.shadow.threads:1}")
+    private int threads;
+
+    @Value("${fraud.rules.shadow.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${fraud.rules.short-circuit-at:CRITICAL}")
+    private RiskLevel shortCircuitAt;
+
+    @PostConstruct
+    public void init() {
+        if (location == null || location.isBlank()) {
+            log.info("Shadow rule evaluation off: no fraud.rules.shadow.location");
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fraud-shadow-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        evaluation = Timer.builder("fraud.shadow.evaluation")
+                .description("Time the candidate rule set takes on a transaction")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        bothFlagged = verdicts("both");
+        neitherFlagged = verdicts("neither");
+        shadowOnly = verdicts("shadow_only");
+        activeOnly = verdicts("active_only");
+        dropped = Counter.builder("fraud.shadow.dropped")
+                .description("Sampled transactions not evaluated because the shadow pool was full")
+                .register(meterRegistry);
+
+        if (!reloadIfModified()) {
+            log.warn("Shadow rule evaluation waits for a valid candidate rule set at {}", location);
+        }
+    }
+
+    /**
+     * Hands a transaction and the active set's final verdict to the candidate, if it is sampled.
+     * Never blocks.
+     */
+    public void submit(Transaction transaction, RuleEvaluation active) {
+        if (executor == null || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        RulePlan candidate = plan.get();
+        if (candidate == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> compare(candidate, transaction, active));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    public RulePlan currentPlan() {
+        return plan.get();
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.rules.refresh-interval-ms:10000}")
+    public synchronized void refresh() {
+        if (executor == null || reloadIfModified()) {
+            return;
+        }
+        RulePlan current = plan.get();
+        if (current != null) {
+            plan.compareAndSet(current, current.reordered());
+        }
+    }
+
+    synchronized boolean reloadIfModified() {
+        Resource resource = resourceLoader.getResource(location);
+        try {
+            long lastModified = FraudRuleEngine.lastModified(resource);
+            if (lastModified == loadedLastModified) {
+                return false;
+            }
+            List<RuleDefinition> definitions = FraudRuleEngine.read(resource);
+            RulePlan compiled = RulePlan.compile(definitions, ruleFactory, meterRegistry, shortCircuitAt,
+                    "fraud.shadow.rule", false);
+            plan.set(compiled);
+            loadedLastModified = lastModified;
+            log.info("Shadow fraud rule set loaded from {}, sampling {}: {}", location, sampleRate, compiled);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load shadow fraud rules from {}; keeping {}", location, plan.get(), e);
+            return false;
+        }
+    }
+
+    private void compare(RulePlan candidate, Transaction transaction, RuleEvaluation active) {
+        long start = System.nanoTime();
+        RuleEvaluation shadow = candidate.evaluate(transaction);
+        evaluation.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (shadow.triggered()) {
+            (active.triggered() ? bothFlagged : shadowOnly).increment();
+        } else {
+            (active.triggered() ? activeOnly : neitherFlagged).increment();
+        }
+    }
+
+    private Counter verdicts(String outcome) {
+        return Counter.builder("fraud.shadow.verdicts")
+                .description("Sampled transactions by whether the active and the candidate rule set flagged them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
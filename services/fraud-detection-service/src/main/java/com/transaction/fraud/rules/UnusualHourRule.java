@@ -0,0 +1,36 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.models.Transaction;
+
+// Fires when at most maxShare of the user's activity falls around this hour; profile tuning lives in fraud.hours.*
+final class UnusualHourRule implements FraudRule {
+
+    private final HourOfDayProfiler hourOfDayProfiler;
+    private final double maxShare;
+    private final boolean recording;
+
+    UnusualHourRule(HourOfDayProfiler hourOfDayProfiler, double maxShare, boolean recording) {
+        this.hourOfDayProfiler = hourOfDayProfiler;
+        this.maxShare = maxShare;
+        this.recording = recording;
+    }
+
+    @Override
+    public boolean evaluate(Transaction transaction) {
+        return share(transaction) <= maxShare;
+    }
+
+    @Override
+    public void observe(Transaction transaction) {
+        if (recording) {
+            share(transaction);
+        }
+    }
+
+    private double share(Transaction transaction) {
+        return recording
+                ? hourOfDayProfiler.shareAndRecord(transaction.getUserId(), transaction.getTimestamp())
+                : hourOfDayProfiler.share(transaction.getUserId(), transaction.getTimestamp());
+    }
+}
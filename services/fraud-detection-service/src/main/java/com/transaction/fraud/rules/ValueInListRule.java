@@ -0,0 +1,42 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.models.Transaction;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Case-insensitive membership test; rule lists are short enough that a scan beats hashing an upper-cased copy
+final class ValueInListRule implements FraudRule {
+
+    private final Function<Transaction, String> field;
+    private final String[] values;
+
+    ValueInListRule(Function<Transaction, String> field, List<String> values) {
+        this.field = field;
+        this.values = values.toArray(String[]::new);
+    }
+
+    static ValueInListRule merchantCategory(List<String> categories) {
+        return new ValueInListRule(Transaction::getMerchantCategory, categories);
+    }
+
+    static ValueInListRule country(List<String> countries) {
+        return new ValueInListRule(
+                transaction -> transaction.getLocation() != null ? transaction.getLocation().getCountry() : null,
+                countries);
+    }
+
+    @Override
+    public boolean evaluate(Transaction transaction) {
+        String value = field.apply(transaction);
+        if (value == null) {
+            return false;
+        }
+        for (String candidate : values) {
+            if (candidate.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.fraud.velocity.VelocityTracker;
+import com.transaction.models.Transaction;
+
+// Limits live in fraud.velocity.*, where they also size the tracker's rings; amounts are summed in the base currency
+final class VelocityRule implements FraudRule {
+
+    private final VelocityTracker velocityTracker;
+    private final CurrencyNormalizer currencyNormalizer;
+    private final boolean recording;
+
+    VelocityRule(VelocityTracker velocityTracker, CurrencyNormalizer currencyNormalizer, boolean recording) {
+        this.velocityTracker = velocityTracker;
+        this.currencyNormalizer = currencyNormalizer;
+        this.recording = recording;
+    }
+
+    @Override
+    public boolean evaluate(Transaction transaction) {
+        return recording
+                ? record(transaction).exceeded()
+                : velocityTracker.peek(transaction.getUserId(), transaction.getTimestamp()).exceeded();
+    }
+
+    @Override
+    public void observe(Transaction transaction) {
+        if (recording) {
+            record(transaction);
+        }
+    }
+
+    private VelocityTracker.Window record(Transaction transaction) {
+        return velocityTracker.record(transaction.getUserId(), transaction.getTimestamp(),
+                currencyNormalizer.toBaseMinor(transaction.getAmount(), transaction.getCurrency()));
+    }
+}
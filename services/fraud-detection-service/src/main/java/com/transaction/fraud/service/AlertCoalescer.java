@@ -0,0 +1,241 @@
+package com.transaction.fraud.service;
+
+import com.transaction.models.FraudAlert;
+import com.transaction.models.FraudAlert.RiskLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Folds the alerts of one user and reason within {@code window-ms} into a single alert, in front of
+ * {@link FraudAlertProducerService}.
+ * <p>
+ * The first alert is published at once and opens a window; later ones only add their transaction id,
+ * triggered rules and risk level to it. When the window closes, and only if anything was added, a summary
+ * goes out under the first alert's {@code alertId}, superseding it: the peak risk level, every rule seen,
+ * the transaction ids (up to {@code max-transaction-ids}) and the number of alerts it stands for. A
+ * CRITICAL alert closes its window at once, so escalation never waits. At most {@code max-windows} are
+ * open; past that the oldest is closed early. Open windows are closed on shutdown and when the consumer
+ * loses partitions, so no alert is held by an instance that no longer owns the user.
+ * <p>
+ * Every user and reason is therefore alerted on before the consumer commits the transaction that raised it.
+ * What an open window holds is not: the consumer commits those transactions too, so if the instance dies
+ * before the window closes, the summary is lost and the first alert stands with its own transaction only.
+ * <p>
+ * The final verdict that follows a provisional alert folds into the same window without counting its
+ * transaction twice; the coalesced alert is provisional only while every alert in it is.
+ * <p>
+ * A window of 0 turns coalescing off: every alert is published as it comes.
+ */
+@Slf4j
+@Service
+public class AlertCoalescer implements ConsumerRebalanceListener {
+
+    private final FraudAlertProducerService alertProducerService;
+    private final long windowMs;
+    private final int maxWindows;
+    private final int maxTransactionIds;
+    private final Map<WindowKey, Window> windows = new LinkedHashMap<>();
+    private final Counter coalesced;
+
+    public AlertCoalescer(FraudAlertProducerService alertProducerService,
+                          MeterRegistry meterRegistry,
+                          @Value("${fraud.alerts.coalesce.window-ms:30000}") long windowMs,
+                          @Value("${fraud.alerts.coalesce.max-windows:100000}") int maxWindows,
+                          @Value("${fraud.alerts.coalesce.max-transaction-ids:100}") int maxTransactionIds) {
+        this.alertProducerService = alertProducerService;
+        this.windowMs = Math.max(0, windowMs);
+        this.maxWindows = Math.max(1, maxWindows);
+        this.maxTransactionIds = Math.max(1, maxTransactionIds);
+        this.coalesced = Counter.builder("fraud.alerts.coalesced")
+                .description("Alerts folded into an earlier alert of the same user and reason")
+                .register(meterRegistry);
+        Gauge.builder("fraud.alerts.windows", this, AlertCoalescer::openWindows)
+                .description("Coalescing windows waiting to publish")
+                .register(meterRegistry);
+    }
+
+    // Record mode: whatever is due goes out one by one
+    public void submit(FraudAlert alert) {
+        for (FraudAlert due : coalesce(List.of(alert))) {
+            alertProducerService.sendAlert(due);
+        }
+    }
+
+    // Batch mode: whatever is due goes out with a single flush
+    public void submitAll(List<FraudAlert> alerts) {
+        alertProducerService.sendAlerts(coalesce(alerts));
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.alerts.coalesce.flush-interval-ms:1000}")
+    public void flushExpired() {
+        long now = System.currentTimeMillis();
+        List<FraudAlert> due = new ArrayList<>();
+        synchronized (windows) {
+            Iterator<Window> open = windows.values().iterator();
+            while (open.hasNext()) {
+                Window window = open.next();
+                // Opened in order, so the first window still open ends the scan
+                if (window.closesAt > now) {
+                    break;
+                }
+                open.remove();
+                window.closeInto(due);
+            }
+        }
+        alertProducerService.sendAlerts(due);
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        List<FraudAlert> due;
+        synchronized (windows) {
+            due = new ArrayList<>(windows.size());
+            for (Window window : windows.values()) {
+                window.closeInto(due);
+            }
+            windows.clear();
+        }
+        if (!due.isEmpty()) {
+            log.info("Publishing {} coalesced fraud alerts before their windows were due", due.size());
+        }
+        alertProducerService.sendAlerts(due);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        if (!partitions.isEmpty()) {
+            flushAll();
+        }
+    }
+
+    int openWindows() {
+        synchronized (windows) {
+            return windows.size();
+        }
+    }
+
+    private List<FraudAlert> coalesce(List<FraudAlert> alerts) {
+        if (windowMs == 0) {
+            return alerts;
+        }
+        long now = System.currentTimeMillis();
+        List<FraudAlert> due = new ArrayList<>();
+        synchronized (windows) {
+            for (FraudAlert alert : alerts) {
+                WindowKey key = new WindowKey(alert.getUserId(), alert.getReason());
+                Window window = windows.get(key);
+                if (window == null) {
+                    if (alert.getRiskLevel() == RiskLevel.CRITICAL) {
+                        due.add(new Window(alert, now, maxTransactionIds).toAlert());
+                        continue;
+                    }
+                    if (windows.size() >= maxWindows) {
+                        Iterator<Window> oldest = windows.values().iterator();
+                        oldest.next().closeInto(due);
+                        oldest.remove();
+                    }
+                    windows.put(key, new Window(alert, now + windowMs, maxTransactionIds));
+                    due.add(alert);
+                    continue;
+                }
+                window.add(alert);
+                window.folded = true;
+                coalesced.increment();
+                if (alert.getRiskLevel() == RiskLevel.CRITICAL) {
+                    windows.remove(key);
+                    window.closeInto(due);
+                }
+            }
+        }
+        return due;
+    }
+
+    private record WindowKey(String userId, FraudAlert.FraudReason reason) {
+    }
+
+    private static final class Window {
+
+        final FraudAlert first;
+        final long closesAt;
+        final int maxTransactionIds;
+        final List<UUID> transactionIds = new ArrayList<>();
+        final Set<String> triggeredRules = new LinkedHashSet<>();
+        RiskLevel peakRiskLevel;
+        int occurrences;
+        boolean provisional = true;
+        // Whether anything was added after the first alert, which went out on its own
+        boolean folded;
+
+        Window(FraudAlert first, long closesAt, int maxTransactionIds) {
+            this.first = first;
+            this.closesAt = closesAt;
+            this.maxTransactionIds = maxTransactionIds;
+            add(first);
+        }
+
+        void add(FraudAlert alert) {
+            UUID transactionId = alert.getTransactionId();
+            if (transactionId == null || !transactionIds.contains(transactionId)) {
+                occurrences++;
+                if (transactionId != null && transactionIds.size() < maxTransactionIds) {
+                    transactionIds.add(transactionId);
+                }
+            }
+            provisional &= Boolean.TRUE.equals(alert.getProvisional());
+            if (alert.getTriggeredRules() != null) {
+                triggeredRules.addAll(alert.getTriggeredRules());
+            }
+            if (peakRiskLevel == null
+                    || (alert.getRiskLevel() != null && alert.getRiskLevel().compareTo(peakRiskLevel) > 0)) {
+                peakRiskLevel = alert.getRiskLevel();
+            }
+        }
+
+        void closeInto(List<FraudAlert> due) {
+            if (folded) {
+                due.add(toAlert());
+            }
+        }
+
+        FraudAlert toAlert() {
+            List<String> rules = List.copyOf(triggeredRules);
+            return FraudAlert.builder()
+                    .alertId(first.getAlertId())
+                    .transactionId(first.getTransactionId())
+                    .userId(first.getUserId())
+                    .reason(first.getReason())
+                    .description(occurrences == 1
+                            ? first.getDescription()
+                            : String.format("Fraud detected: %s (%d transactions)", String.join(", ", rules), occurrences))
+                    .riskLevel(peakRiskLevel)
+                    .detectedAt(first.getDetectedAt())
+                    .triggeredRules(rules)
+                    .relatedTransactionIds(List.copyOf(transactionIds))
+                    .occurrenceCount(occurrences)
+                    .provisional(provisional ? Boolean.TRUE : null)
+                    .build();
+        }
+    }
+}
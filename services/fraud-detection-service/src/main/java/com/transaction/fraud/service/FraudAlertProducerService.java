@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -31,4 +33,23 @@ public class FraudAlertProducerService {
             log.error("Error sending fraud alert to Kafka", e);
         }
     }
+
+    /**
+     * Hands all alerts to the producer, then flushes once so they are on their way before the
+     * consumer commits the batch that raised them. Alerts still open in {@link AlertCoalescer}
+     * windows are not among them; see there for what a crash loses.
+     */
+    public void sendAlerts(List<FraudAlert> alerts) {
+        if (alerts.isEmpty()) {
+            return;
+        }
+        for (FraudAlert alert : alerts) {
+            sendAlert(alert);
+        }
+        try {
+            kafkaTemplate.flush();
+        } catch (Exception e) {
+            log.error("Error flushing {} fraud alerts to Kafka", alerts.size(), e);
+        }
+    }
 }
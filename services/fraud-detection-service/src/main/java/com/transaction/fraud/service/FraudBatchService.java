@@ -0,0 +1,135 @@
+package com.transaction.fraud.service;
+
+import com.transaction.models.FraudAlert;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a whole poll at once; the alerts that are due after coalescing go out with a single flush.
+ * <p>
+ * Large batches are split by {@code userId} over a bounded pool shared by all consumer threads, so one
+ * user's transactions are still evaluated in poll order on one thread and per-user rule state sees them
+ * in sequence. When the pool is saturated the consumer thread runs the work itself, which slows the
+ * poll loop instead of queueing without bound.
+ */
+@Slf4j
+@Service
+public class FraudBatchService {
+
+    private final FraudDetectionService fraudDetectionService;
+    private final AlertCoalescer alertCoalescer;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final int parallelThreshold;
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+
+    public FraudBatchService(FraudDetectionService fraudDetectionService,
+                             AlertCoalescer alertCoalescer,
+                             MeterRegistry meterRegistry,
+                             @Value("${fraud.consumer.batch.parallelism:0}") int parallelism,
+                             @Value("${fraud.consumer.batch.parallel-threshold:64}") int parallelThreshold) {
+        this.fraudDetectionService = fraudDetectionService;
+        this.alertCoalescer = alertCoalescer;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.parallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fraud-eval-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.batchTimer = Timer.builder("fraud.batch.duration")
+                .description("Time to evaluate a polled batch and publish its alerts")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("fraud.batch.size")
+                .description("Transactions per polled batch")
+                .register(meterRegistry);
+    }
+
+    public void analyzeBatch(List<Transaction> transactions) {
+        long start = System.nanoTime();
+        batchSize.record(transactions.size());
+
+        int partitions = Math.min(parallelism, (transactions.size() + parallelThreshold - 1) / parallelThreshold);
+        List<FraudAlert> alerts = partitions <= 1
+                ? evaluate(transactions)
+                : evaluateInParallel(transactions, partitions);
+
+        alertCoalescer.submitAll(alerts);
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Fraud batch processed: {} transactions, {} alerts", transactions.size(), alerts.size());
+    }
+
+    private List<FraudAlert> evaluateInParallel(List<Transaction> transactions, int partitions) {
+        List<List<Transaction>> byUser = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            byUser.add(new ArrayList<>(transactions.size() / partitions + 1));
+        }
+        for (Transaction transaction : transactions) {
+            if (transaction != null) {
+                byUser.get(partitionOf(transaction, partitions)).add(transaction);
+            }
+        }
+
+        List<CompletableFuture<List<FraudAlert>>> futures = new ArrayList<>(partitions - 1);
+        for (int i = 1; i < partitions; i++) {
+            List<Transaction> partition = byUser.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> evaluate(partition), executor));
+        }
+        // The consumer thread takes the first share rather than idling until the others finish
+        List<FraudAlert> alerts = new ArrayList<>(evaluate(byUser.get(0)));
+        for (CompletableFuture<List<FraudAlert>> future : futures) {
+            alerts.addAll(future.join());
+        }
+        return alerts;
+    }
+
+    private List<FraudAlert> evaluate(List<Transaction> transactions) {
+        List<FraudAlert> alerts = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (transaction == null) {
+                continue;
+            }
+            try {
+                FraudAlert alert = fraudDetectionService.evaluate(transaction);
+                if (alert != null) {
+                    alerts.add(alert);
+                }
+            } catch (Exception e) {
+                log.error("Error processing transaction: {}", transaction.getTransactionId(), e);
+            }
+        }
+        return alerts;
+    }
+
+    private static int partitionOf(Transaction transaction, int partitions) {
+        String userId = transaction.getUserId();
+        int hash = userId != null ? userId.hashCode() : 0;
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % partitions;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
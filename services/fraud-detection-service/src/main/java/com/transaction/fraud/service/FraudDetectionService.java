@@ -1,85 +1,214 @@
 package com.transaction.fraud.service;
 
+import com.transaction.fraud.rules.FraudRuleEngine;
+import com.transaction.fraud.rules.RuleEvaluation;
+import com.transaction.fraud.rules.RulePlan;
+import com.transaction.fraud.rules.ShadowRuleEngine;
 import com.transaction.models.FraudAlert;
 import com.transaction.models.Transaction;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Turns the rule plan's verdict into an alert, within a latency budget.
+ * <p>
+ * FAST rules run inline. DEEP rules run on a bounded pool while the caller waits at most until
+ * {@code deadline-ms} after the transaction's evaluation started. If they have not finished by then, the
+ * fast verdict goes out as a provisional alert (nothing, if it is clean) and the deep rules keep running:
+ * once they finish, the full verdict is published under the same {@code alertId} with {@code provisional}
+ * unset. A slow deep rule therefore costs the consumer at most the deadline.
+ * <p>
+ * The transaction's offset is committed with the provisional verdict, not the final one, so a final verdict
+ * still pending when the instance dies is never produced: nothing replays the transaction. A graceful
+ * shutdown gives the deep rules a few seconds to finish first; {@code fraud.tier.deep.pending} counts the
+ * verdicts outstanding. Consumers must treat a provisional alert as possibly the last word on its transaction.
+ * <p>
+ * When the pool is full the deep rules run on the caller instead, so every transaction is still seen by the
+ * stateful deep rules and gets a full verdict; the consumer slows down until the pool drains.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class FraudDetectionService {
 
-    private final FraudAlertProducerService alertProducerService;
+    private final AlertCoalescer alertCoalescer;
+    private final FraudRuleEngine ruleEngine;
+    private final ShadowRuleEngine shadowRuleEngine;
+    private final ThreadPoolExecutor deepExecutor;
+    private final long deadlineNanos;
+    private final Timer fastLatency;
+    private final Timer deepLatency;
+    private final Counter deadlineMissed;
+    private final Counter deepRejected;
+    private final AtomicInteger pendingFinal = new AtomicInteger();
 
-    private static final BigDecimal HIGH_AMOUNT_THRESHOLD = new BigDecimal("1000.00");
+    public FraudDetectionService(AlertCoalescer alertCoalescer,
+                                 FraudRuleEngine ruleEngine,
+                                 ShadowRuleEngine shadowRuleEngine,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${fraud.rules.deep.threads:0}") int threads,
+                                 @Value("${fraud.rules.deep.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${fraud.rules.deep.deadline-ms:50}") long deadlineMs) {
+        this.alertCoalescer = alertCoalescer;
+        this.ruleEngine = ruleEngine;
+        this.shadowRuleEngine = shadowRuleEngine;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, deadlineMs));
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.deepExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fraud-deep-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.fastLatency = tierLatency("fast", meterRegistry);
+        this.deepLatency = tierLatency("deep", meterRegistry);
+        this.deadlineMissed = Counter.builder("fraud.tier.deadline.missed")
+                .description("Transactions whose deep-tier rules did not finish within the deadline")
+                .register(meterRegistry);
+        this.deepRejected = Counter.builder("fraud.tier.deep.rejected")
+                .description("Transactions whose deep-tier rules ran on the caller because the pool was full")
+                .register(meterRegistry);
+        Gauge.builder("fraud.tier.deep.pending", pendingFinal, AtomicInteger::get)
+                .description("Provisional verdicts whose final verdict has not been submitted yet")
+                .register(meterRegistry);
+    }
 
     public void analyzeTransaction(Transaction transaction) {
+        FraudAlert alert = evaluate(transaction);
+        if (alert != null) {
+            alertCoalescer.submit(alert);
+        }
+    }
+
+    /**
+     * Runs the rule set and returns the alert to publish, or {@code null} if the transaction is clean
+     * as far as the rules that finished in time can tell.
+     */
+    public FraudAlert evaluate(Transaction transaction) {
         log.debug("Analyzing transaction: {}", transaction.getTransactionId());
+        long start = System.nanoTime();
 
-        List<String> triggeredRules = new ArrayList<>();
-        FraudAlert.RiskLevel riskLevel = FraudAlert.RiskLevel.LOW;
-        FraudAlert.FraudReason primaryReason = null;
+        RulePlan plan = ruleEngine.currentPlan();
+        RuleEvaluation fast = plan.evaluateFast(transaction);
+        fastLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!plan.hasDeepRules()) {
+            return verdict(transaction, fast, UUID.randomUUID());
+        }
 
-        // Rule 1: High amount check
-        if (transaction.getAmount().compareTo(HIGH_AMOUNT_THRESHOLD) > 0) {
-            triggeredRules.add("HIGH_AMOUNT");
-            riskLevel = FraudAlert.RiskLevel.MEDIUM;
-            primaryReason = FraudAlert.FraudReason.HIGH_AMOUNT;
+        CompletableFuture<RuleEvaluation> deep;
+        try {
+            deep = CompletableFuture.supplyAsync(() -> evaluateDeep(plan, transaction, fast), deepExecutor);
+        } catch (RejectedExecutionException e) {
+            deepRejected.increment();
+            log.debug("Deep-tier pool full, running deep rules inline for transaction: {}",
+                    transaction.getTransactionId());
+            try {
+                return verdict(transaction, fast.merge(evaluateDeep(plan, transaction, fast)), UUID.randomUUID());
+            } catch (RuntimeException failure) {
+                log.error("Deep-tier rules failed for transaction: {}", transaction.getTransactionId(), failure);
+                return verdict(transaction, fast, UUID.randomUUID());
+            }
         }
 
-        // Rule 2: Suspicious merchant categories
-        if (isSuspiciousMerchantCategory(transaction.getMerchantCategory())) {
-            triggeredRules.add("SUSPICIOUS_MERCHANT");
-            riskLevel = FraudAlert.RiskLevel.HIGH;
-            primaryReason = FraudAlert.FraudReason.SUSPICIOUS_MERCHANT;
+        try {
+            RuleEvaluation deepEvaluation = deep.get(deadlineNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            return verdict(transaction, fast.merge(deepEvaluation), UUID.randomUUID());
+        } catch (TimeoutException e) {
+            deadlineMissed.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Deep-tier rules failed for transaction: {}", transaction.getTransactionId(), e.getCause());
+            return verdict(transaction, fast, UUID.randomUUID());
         }
 
-        // Rule 3: Geo anomaly (simplified)
-        if (isGeoAnomaly(transaction.getLocation())) {
-            triggeredRules.add("GEO_ANOMALY");
-            riskLevel = FraudAlert.RiskLevel.HIGH;
-            primaryReason = FraudAlert.FraudReason.GEO_ANOMALY;
+        UUID alertId = UUID.randomUUID();
+        pendingFinal.incrementAndGet();
+        deep.whenComplete((deepEvaluation, failure) -> {
+            pendingFinal.decrementAndGet();
+            if (failure != null) {
+                log.error("Deep-tier rules failed after the deadline; the provisional verdict stands "
+                        + "for transaction: {}", transaction.getTransactionId(), failure);
+                return;
+            }
+            FraudAlert verdict = verdict(transaction, fast.merge(deepEvaluation), alertId);
+            if (verdict != null) {
+                alertCoalescer.submit(verdict);
+            }
+        });
+        return toAlert(transaction, fast, alertId, true);
+    }
+
+    private RuleEvaluation evaluateDeep(RulePlan plan, Transaction transaction, RuleEvaluation fast) {
+        long start = System.nanoTime();
+        try {
+            return plan.evaluateDeep(transaction, fast);
+        } finally {
+            deepLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        // If fraud detected, publish alert
-        if (!triggeredRules.isEmpty()) {
-            FraudAlert alert = FraudAlert.builder()
-                    .alertId(UUID.randomUUID())
-                    .transactionId(transaction.getTransactionId())
-                    .userId(transaction.getUserId())
-                    .reason(primaryReason)
-                    .description(String.format("Fraud detected: %s", String.join(", ", triggeredRules)))
-                    .riskLevel(riskLevel)
-                    .detectedAt(Instant.now())
-                    .triggeredRules(triggeredRules)
-                    .build();
-
-            alertProducerService.sendAlert(alert);
-            log.warn("Fraud alert generated for transaction: {} (Risk: {})",
-                    transaction.getTransactionId(), riskLevel);
-        } else {
+    // The active set's final word on the transaction, which the shadow rule set is compared against
+    private FraudAlert verdict(Transaction transaction, RuleEvaluation evaluation, UUID alertId) {
+        shadowRuleEngine.submit(transaction, evaluation);
+        return toAlert(transaction, evaluation, alertId, false);
+    }
+
+    private static FraudAlert toAlert(Transaction transaction, RuleEvaluation evaluation, UUID alertId,
+                                      boolean provisional) {
+        if (!evaluation.triggered()) {
             log.debug("Transaction passed fraud checks: {}", transaction.getTransactionId());
+            return null;
         }
+
+        log.warn("Fraud alert generated for transaction: {} (Risk: {}{})",
+                transaction.getTransactionId(), evaluation.riskLevel(), provisional ? ", provisional" : "");
+        return FraudAlert.builder()
+                .alertId(alertId)
+                .transactionId(transaction.getTransactionId())
+                .userId(transaction.getUserId())
+                .reason(evaluation.primaryReason())
+                .description(String.format("Fraud detected: %s", String.join(", ", evaluation.triggeredRules())))
+                .riskLevel(evaluation.riskLevel())
+                .detectedAt(Instant.now())
+                .triggeredRules(evaluation.triggeredRules())
+                .provisional(provisional ? Boolean.TRUE : null)
+                .build();
     }
 
-    private boolean isSuspiciousMerchantCategory(String category) {
-        if (category == null) return false;
-        // Simplified logic - can be extended
-        return category.equalsIgnoreCase("GAMBLING") ||
-               category.equalsIgnoreCase("CRYPTOCURRENCY");
+    private static Timer tierLatency(String tier, MeterRegistry meterRegistry) {
+        return Timer.builder("fraud.tier.latency")
+                .description("Time to run one tier of the rule plan on a transaction")
+                .tag("tier", tier)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    private boolean isGeoAnomaly(Transaction.Location location) {
-        if (location == null) return false;
-        // Simplified logic - in reality would check against user's typical locations
-        return "UNKNOWN".equals(location.getCountry());
+    // Lets deep rules still running publish their verdicts before the coalescer's final flush
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        deepExecutor.shutdown();
+        deepExecutor.awaitTermination(5, TimeUnit.SECONDS);
     }
 }
@@ -0,0 +1,100 @@
+package com.transaction.fraud.state;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * One partition's profiles as of a changelog offset:
+ * {@code magic, version, changelogOffset, count, (userId, profile)*, crc32}.
+ * Written to a temporary file and renamed into place, so a crash leaves either the old or the new snapshot.
+ */
+@Slf4j
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x46505331; // "FPS1"
+    private static final int VERSION = 1;
+
+    record Snapshot(long changelogOffset, Map<String, UserProfile> profiles) {
+    }
+
+    private SnapshotFile() {
+    }
+
+    static void write(Path path, long changelogOffset, Map<String, UserProfile> profiles) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temp), crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(changelogOffset);
+            out.writeInt(profiles.size());
+            for (Map.Entry<String, UserProfile> entry : profiles.entrySet()) {
+                byte[] userId = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                if (userId.length > 0xFFFF) {
+                    throw new IOException("userId too long for a snapshot: " + userId.length + " bytes");
+                }
+                byte[] profile = entry.getValue().encode();
+                out.writeShort(userId.length);
+                out.write(userId);
+                out.writeShort(profile.length);
+                out.write(profile);
+            }
+            // Flushed first so the checksum has seen exactly the body
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the snapshot, or {@code null} if there is none or it is unreadable
+     */
+    static Snapshot read(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 1 << 16), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("not a profile snapshot");
+            }
+            long changelogOffset = in.readLong();
+            int count = in.readInt();
+            Map<String, UserProfile> profiles = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+            for (int i = 0; i < count; i++) {
+                String userId = new String(in.readNBytes(in.readUnsignedShort()), StandardCharsets.UTF_8);
+                byte[] profile = in.readNBytes(in.readUnsignedShort());
+                profiles.put(userId, UserProfile.decode(profile));
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            return new Snapshot(changelogOffset, profiles);
+        } catch (EOFException e) {
+            log.warn("Ignoring truncated profile snapshot {}", path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable profile snapshot {}: {}", path, e.getMessage());
+        }
+        return null;
+    }
+}
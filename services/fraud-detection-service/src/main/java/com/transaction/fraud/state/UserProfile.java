@@ -0,0 +1,158 @@
+package com.transaction.fraud.state;
+
+import com.transaction.fraud.amount.AmountStats;
+import com.transaction.fraud.hours.HourHistogram;
+import com.transaction.fraud.location.LocationSketch;
+import com.transaction.models.Transaction;
+import com.transaction.models.serde.BinaryReader;
+import com.transaction.models.serde.BinaryWriter;
+
+import java.time.Instant;
+
+/**
+ * A user's transaction history, condensed. Immutable: every update yields a new instance, so a
+ * snapshot can read profiles while the consumer keeps updating them.
+ * <p>
+ * {@code amount}, {@code location} and {@code hours} are the {@link com.transaction.fraud.amount.AmountProfiler}
+ * statistics, {@link com.transaction.fraud.location.LocationProfiler} sketch and
+ * {@link com.transaction.fraud.hours.HourOfDayProfiler} histogram as of the last changelog flush, or
+ * {@code null} while the user has none.
+ */
+public record UserProfile(long transactions,
+                          long firstSeenEpochSecond,
+                          long lastSeenEpochSecond,
+                          AmountStats amount,
+                          LocationSketch location,
+                          HourHistogram hours) {
+
+    // Sketches persisted with more entries than this are rejected as corrupt
+    static final int MAX_SKETCH_ENTRIES = 64;
+
+    // 1: counts and first/last seen, then the amount statistics, location sketch and hour histogram, each
+    // behind a presence byte. A record with any other version is rejected
+    private static final int VERSION = 1;
+
+    public static final UserProfile EMPTY = new UserProfile(0, 0, 0, null, null, null);
+
+    public UserProfile updatedWith(Transaction transaction) {
+        long seen = transaction.getTimestamp() != null
+                ? transaction.getTimestamp().getEpochSecond() : Instant.now().getEpochSecond();
+        return new UserProfile(
+                transactions + 1,
+                transactions == 0 ? seen : Math.min(firstSeenEpochSecond, seen),
+                Math.max(lastSeenEpochSecond, seen),
+                amount,
+                location,
+                hours);
+    }
+
+    public UserProfile withAmount(AmountStats stats) {
+        return stats == null || stats.equals(amount) ? this
+                : new UserProfile(transactions, firstSeenEpochSecond, lastSeenEpochSecond, stats, location, hours);
+    }
+
+    public UserProfile withLocation(LocationSketch sketch) {
+        return sketch == null || sketch.equals(location) ? this
+                : new UserProfile(transactions, firstSeenEpochSecond, lastSeenEpochSecond, amount, sketch, hours);
+    }
+
+    public UserProfile withHours(HourHistogram histogram) {
+        return histogram == null || histogram.equals(hours) ? this
+                : new UserProfile(transactions, firstSeenEpochSecond, lastSeenEpochSecond, amount, location,
+                        histogram);
+    }
+
+    public byte[] encode() {
+        BinaryWriter writer = new BinaryWriter(128);
+        writer.writeByte(VERSION);
+        writer.writeVarLong(transactions);
+        writer.writeVarLong(firstSeenEpochSecond);
+        writer.writeVarLong(lastSeenEpochSecond);
+        writer.writeByte(amount != null ? 1 : 0);
+        if (amount != null) {
+            writer.writeZigZagLong(amount.mean());
+            writer.writeZigZagLong(amount.deviation());
+            writer.writeVarInt(amount.count());
+            writer.writeVarInt(amount.lastSeen());
+        }
+        writer.writeByte(location != null ? 1 : 0);
+        if (location != null) {
+            writer.writeVarInt(location.lastHour());
+            writer.writeVarInt(Float.floatToIntBits(location.total()));
+            writeEntries(writer, location.countryKeys(), location.countryWeights());
+            writeEntries(writer, location.cityKeys(), location.cityWeights());
+        }
+        writer.writeByte(hours != null ? 1 : 0);
+        if (hours != null) {
+            writer.writeVarInt(hours.lastHour());
+            writer.writeVarInt(Float.floatToIntBits(hours.total()));
+            writer.writeVarInt(hours.buckets().length);
+            for (float bucket : hours.buckets()) {
+                writer.writeVarInt(Float.floatToIntBits(bucket));
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public static UserProfile decode(byte[] data) {
+        BinaryReader reader = new BinaryReader(data);
+        int version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported user profile version " + version);
+        }
+        long transactions = reader.readVarLong();
+        long firstSeen = reader.readVarLong();
+        long lastSeen = reader.readVarLong();
+        AmountStats amount = null;
+        if (reader.readByte() == 1) {
+            amount = new AmountStats(reader.readZigZagLong(), reader.readZigZagLong(), reader.readVarInt(),
+                    reader.readVarInt());
+        }
+        LocationSketch location = null;
+        if (reader.readByte() == 1) {
+            int lastHour = reader.readVarInt();
+            float weight = Float.intBitsToFloat(reader.readVarInt());
+            int[] countryKeys = new int[readLength(reader)];
+            float[] countryWeights = readEntries(reader, countryKeys);
+            int[] cityKeys = new int[readLength(reader)];
+            float[] cityWeights = readEntries(reader, cityKeys);
+            location = new LocationSketch(lastHour, weight, countryKeys, countryWeights, cityKeys, cityWeights);
+        }
+        HourHistogram hours = null;
+        if (reader.readByte() == 1) {
+            int lastHour = reader.readVarInt();
+            float total = Float.intBitsToFloat(reader.readVarInt());
+            float[] buckets = new float[readLength(reader)];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = Float.intBitsToFloat(reader.readVarInt());
+            }
+            hours = new HourHistogram(lastHour, total, buckets);
+        }
+        return new UserProfile(transactions, firstSeen, lastSeen, amount, location, hours);
+    }
+
+    private static void writeEntries(BinaryWriter writer, int[] keys, float[] weights) {
+        writer.writeVarInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            writer.writeVarInt(keys[i]);
+            writer.writeVarInt(Float.floatToIntBits(weights[i]));
+        }
+    }
+
+    private static float[] readEntries(BinaryReader reader, int[] keys) {
+        float[] weights = new float[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = reader.readVarInt();
+            weights[i] = Float.intBitsToFloat(reader.readVarInt());
+        }
+        return weights;
+    }
+
+    private static int readLength(BinaryReader reader) {
+        int length = reader.readVarInt();
+        if (length > MAX_SKETCH_ENTRIES) {
+            throw new IllegalArgumentException("Too many entries in user profile: " + length);
+        }
+        return length;
+    }
+}
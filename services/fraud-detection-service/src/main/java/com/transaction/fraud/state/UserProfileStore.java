@@ -0,0 +1,300 @@
+package com.transaction.fraud.state;
+
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user profiles, held for the transaction partitions this instance consumes.
+ * <p>
+ * The compacted changelog topic is the durable copy: changed profiles are written to the changelog
+ * partition with the same number as their transaction partition, coalesced per flush interval. Each
+ * partition is also snapshotted to a local file together with the highest changelog offset it covers.
+ * When a partition is assigned, its newest snapshot is loaded and only the changelog after that offset is
+ * replayed, before the consumer receives any of its transactions. Without a snapshot the whole changelog
+ * partition is read; compaction keeps that to one record per user, not the full history.
+ * <p>
+ * Changelog records carry whole profiles, so replaying one that a snapshot already reflects is harmless.
+ * <p>
+ * Profiles also carry the per-user state the rules learn on the heap. It is copied from the profilers when a
+ * changed profile is flushed, and handed back to them when the partition is restored, so a user whose partition
+ * moves keeps the history their rules have built up.
+ */
+@Slf4j
+@Component
+public class UserProfileStore implements ConsumerRebalanceListener {
+
+    private final KafkaTemplate<String, byte[]> changelogTemplate;
+    private final ConsumerFactory<String, byte[]> changelogConsumerFactory;
+    private final LocationProfiler locationProfiler;
+    private final AmountProfiler amountProfiler;
+    private final HourOfDayProfiler hourOfDayProfiler;
+    private final Map<Integer, PartitionState> partitions = new ConcurrentHashMap<>();
+    private final Timer restoreTimer;
+    private final Counter restoredRecords;
+
+    @Value("${fraud.state.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fraud.state.dir:${java.io.tmpdir}/fraud-state}")
+    private Path stateDir;
+
+    @Value("${kafka.topic.transactions:transactions}")
+    private String transactionsTopic;
+
+    @Value("${kafka.topic.profile-changelog:fraud-user-profiles-changelog}")
+    private String changelogTopic;
+
+    @Value("${fraud.state.restore-timeout-ms:60000}")
+    private long restoreTimeoutMs;
+
+    public UserProfileStore(KafkaTemplate<String, byte[]> changelogTemplate,
+                            ConsumerFactory<String, byte[]> changelogConsumerFactory,
+                            LocationProfiler locationProfiler,
+                            AmountProfiler amountProfiler,
+                            HourOfDayProfiler hourOfDayProfiler,
+                            MeterRegistry meterRegistry) {
+        this.changelogTemplate = changelogTemplate;
+        this.changelogConsumerFactory = changelogConsumerFactory;
+        this.locationProfiler = locationProfiler;
+        this.amountProfiler = amountProfiler;
+        this.hourOfDayProfiler = hourOfDayProfiler;
+        this.restoreTimer = Timer.builder("fraud.state.restore")
+                .description("Time to restore a partition's user profiles on assignment")
+                .register(meterRegistry);
+        this.restoredRecords = Counter.builder("fraud.state.restored.records")
+                .description("Changelog records replayed during restores")
+                .register(meterRegistry);
+        Gauge.builder("fraud.state.profiles", partitions,
+                        states -> states.values().stream().mapToInt(state -> state.profiles.size()).sum())
+                .description("User profiles held for assigned partitions")
+                .register(meterRegistry);
+    }
+
+    UserProfile get(int partition, String userId) {
+        PartitionState state = partitions.get(partition);
+        UserProfile profile = state != null ? state.profiles.get(userId) : null;
+        return profile != null ? profile : UserProfile.EMPTY;
+    }
+
+    public void update(int partition, Transaction transaction) {
+        if (!enabled || transaction.getUserId() == null) {
+            return;
+        }
+        PartitionState state = partitions.computeIfAbsent(partition, PartitionState::new);
+        state.profiles.compute(transaction.getUserId(),
+                (userId, profile) -> (profile != null ? profile : UserProfile.EMPTY).updatedWith(transaction));
+        state.dirty.add(transaction.getUserId());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> assigned) {
+        if (!enabled) {
+            return;
+        }
+        for (TopicPartition partition : assigned) {
+            if (partition.topic().equals(transactionsTopic) && !partitions.containsKey(partition.partition())) {
+                PartitionState state = restore(partition.partition());
+                partitions.put(partition.partition(), state);
+                state.profiles.forEach((userId, profile) -> {
+                    locationProfiler.restore(userId, profile.location());
+                    amountProfiler.restore(userId, profile.amount());
+                    hourOfDayProfiler.restore(userId, profile.hours());
+                });
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> revoked) {
+        for (TopicPartition partition : revoked) {
+            if (!partition.topic().equals(transactionsTopic)) {
+                continue;
+            }
+            PartitionState state = partitions.remove(partition.partition());
+            if (state != null) {
+                snapshot(state);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> lost) {
+        // Another instance may already own them: drop without writing to their changelog
+        for (TopicPartition partition : lost) {
+            if (partition.topic().equals(transactionsTopic)) {
+                partitions.remove(partition.partition());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.state.changelog-flush-interval-ms:1000}")
+    public void flushChangelog() {
+        for (PartitionState state : partitions.values()) {
+            flush(state);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.state.snapshot-interval-ms:60000}")
+    public void snapshotAll() {
+        for (PartitionState state : partitions.values()) {
+            snapshot(state);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshotAll();
+    }
+
+    PartitionState restore(int partition) {
+        long start = System.nanoTime();
+        Path path = snapshotPath(partition);
+        SnapshotFile.Snapshot snapshot = SnapshotFile.read(path);
+        TopicPartition changelogPartition = new TopicPartition(changelogTopic, partition);
+
+        Map<String, UserProfile> profiles = new HashMap<>();
+        long replayed = 0;
+        long endOffset;
+        try (Consumer<String, byte[]> consumer = changelogConsumerFactory.createConsumer()) {
+            consumer.assign(List.of(changelogPartition));
+            long beginningOffset = consumer.beginningOffsets(List.of(changelogPartition)).get(changelogPartition);
+            endOffset = consumer.endOffsets(List.of(changelogPartition)).get(changelogPartition);
+
+            long from = beginningOffset;
+            if (snapshot != null && snapshot.changelogOffset() < endOffset) {
+                profiles.putAll(snapshot.profiles());
+                from = Math.max(beginningOffset, snapshot.changelogOffset() + 1);
+            } else if (snapshot != null) {
+                log.warn("Profile snapshot for partition {} is ahead of the changelog (offset {} >= end {}); replaying all",
+                        partition, snapshot.changelogOffset(), endOffset);
+            }
+            consumer.seek(changelogPartition, from);
+
+            long deadline = System.currentTimeMillis() + restoreTimeoutMs;
+            while (consumer.position(changelogPartition) < endOffset) {
+                if (System.currentTimeMillis() > deadline) {
+                    log.error("Restore of partition {} timed out at offset {} of {}; continuing with partial profiles",
+                            partition, consumer.position(changelogPartition), endOffset);
+                    break;
+                }
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(200))) {
+                    if (record.value() == null) {
+                        profiles.remove(record.key());
+                    } else {
+                        profiles.put(record.key(), UserProfile.decode(record.value()));
+                    }
+                    replayed++;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Better stale profiles than a consumer that cannot take its partitions
+            log.error("Failed to read profile changelog for partition {}; using the local snapshot only", partition, e);
+            profiles.clear();
+            if (snapshot != null) {
+                profiles.putAll(snapshot.profiles());
+            }
+            endOffset = snapshot != null ? snapshot.changelogOffset() + 1 : 0;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        restoreTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        restoredRecords.increment(replayed);
+        log.info("Restored {} user profiles for partition {} in {} ms ({} from snapshot, {} changelog records)",
+                profiles.size(), partition, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                snapshot != null ? snapshot.profiles().size() : 0, replayed);
+
+        PartitionState state = new PartitionState(partition, profiles);
+        state.changelogOffset.set(endOffset - 1);
+        return state;
+    }
+
+    private void flush(PartitionState state) {
+        Iterator<String> dirty = state.dirty.iterator();
+        while (dirty.hasNext()) {
+            String userId = dirty.next();
+            dirty.remove();
+            UserProfile profile = state.profiles.computeIfPresent(userId,
+                    (id, current) -> current.withLocation(locationProfiler.export(id))
+                            .withAmount(amountProfiler.export(id))
+                            .withHours(hourOfDayProfiler.export(id)));
+            if (profile == null) {
+                continue;
+            }
+            changelogTemplate.send(changelogTopic, state.partition, userId, profile.encode())
+                    .whenComplete((result, ex) -> {
+                        if (ex == null) {
+                            state.changelogOffset.accumulateAndGet(result.getRecordMetadata().offset(), Math::max);
+                        } else {
+                            // Still the newest state: the next flush retries it
+                            state.dirty.add(userId);
+                            log.warn("Failed to write profile changelog for partition {}: {}",
+                                    state.partition, ex.getMessage());
+                        }
+                    });
+        }
+    }
+
+    private void snapshot(PartitionState state) {
+        synchronized (state) {
+            flush(state);
+            try {
+                // Every flushed record is acknowledged, so the offset below covers the snapshot's contents
+                changelogTemplate.flush();
+                SnapshotFile.write(snapshotPath(state.partition), state.changelogOffset.get(), Map.copyOf(state.profiles));
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to snapshot user profiles for partition {}", state.partition, e);
+            }
+        }
+    }
+
+    private Path snapshotPath(int partition) {
+        return stateDir.resolve(transactionsTopic + "-" + partition + ".snapshot");
+    }
+
+    static final class PartitionState {
+
+        final int partition;
+        final Map<String, UserProfile> profiles;
+        final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        final AtomicLong changelogOffset = new AtomicLong(-1);
+
+        PartitionState(int partition) {
+            this(partition, Map.of());
+        }
+
+        PartitionState(int partition, Map<String, UserProfile> profiles) {
+            this.partition = partition;
+            this.profiles = new ConcurrentHashMap<>(profiles);
+        }
+    }
+}
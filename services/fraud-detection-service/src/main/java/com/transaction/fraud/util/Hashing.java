@@ -0,0 +1,24 @@
+package com.transaction.fraud.util;
+
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * 64-bit FNV-1a over the string's chars, finished with murmur3's fmix64. FNV-1a alone leaves the last chars
+     * in the low bits only; the finalizer spreads every input bit over the high bits that pick a shard.
+     */
+    public static long hash64(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
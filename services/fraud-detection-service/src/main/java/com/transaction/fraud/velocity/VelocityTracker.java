@@ -0,0 +1,314 @@
+package com.transaction.fraud.velocity;
+
+import com.transaction.fraud.util.Hashing;
+import com.transaction.fraud.util.LongIntOpenHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Per-user sliding window of recent transactions: how many, and how much, in the last {@code window-seconds}.
+ * Amounts and {@code max-amount} are in the base currency of {@link com.transaction.fraud.amount.CurrencyNormalizer}.
+ * <p>
+ * Users are spread over independently locked shards. Within a shard, a {@link LongIntOpenHashMap} maps the
+ * user's 64-bit id hash to a slot, and every slot owns a fixed ring of {@code max-transactions + 1} entries
+ * (epoch seconds and amount in minor units, both {@code int}) in flat shard-wide arrays, plus a running sum.
+ * Recording expires entries from the head of the ring before appending, so each entry is added and removed
+ * once. A full ring drops its oldest entry; by then the count limit has been exceeded, so neither the
+ * verdict nor the amount within the count limit is affected.
+ * <p>
+ * A user idle for longer than the window has nothing left in it, so their slot is reclaimed by the periodic
+ * sweep, or by a full shard before it refuses a new user. Heap is bounded by {@code max-users}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VelocityTracker {
+
+    // Entry times are stored as int seconds from this epoch (2023-11-14), good until 2091
+    private static final long EPOCH_SECONDS = 1_700_000_000L;
+
+    private final MeterRegistry meterRegistry;
+
+    private Shard[] shards;
+    private int ringSize;
+    private long maxAmountMinor;
+    private Counter untracked;
+
+    @Value("${fraud.velocity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fraud.velocity.window-seconds:60}")
+    private int windowSeconds;
+
+    @Value("${fraud.velocity.max-transactions:10}")
+    private int maxTransactions;
+
+    @Value("${fraud.velocity.max-amount:10000.00}")
+    private BigDecimal maxAmount;
+
+    @Value("${fraud.velocity.max-users:10000000}")
+    private int maxUsers;
+
+    @Value("${fraud.velocity.shards:64}")
+    private int shardCount;
+
+    public record Window(int transactions, long amountMinorUnits, boolean exceeded) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (maxTransactions < 1 || maxTransactions > 126) {
+            throw new IllegalStateException("fraud.velocity.max-transactions must be between 1 and 126");
+        }
+        ringSize = maxTransactions + 1;
+        maxAmountMinor = maxAmount.movePointRight(2).longValue();
+
+        int count = Integer.highestOneBit(Math.max(1, shardCount) * 2 - 1);
+        int usersPerShard = Math.max(16, maxUsers / count);
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(ringSize, usersPerShard);
+        }
+
+        untracked = Counter.builder("fraud.velocity.untracked")
+                .description("Transactions of new users not tracked because every shard slot was in use")
+                .register(meterRegistry);
+        Gauge.builder("fraud.velocity.users", this, VelocityTracker::trackedUsers)
+                .description("Users with velocity state")
+                .register(meterRegistry);
+
+        log.info("Velocity tracker: {} shards x {} users, {} transactions / {} in {}s",
+                count, usersPerShard, maxTransactions, maxAmount, windowSeconds);
+    }
+
+    /**
+     * Adds the transaction to the user's window and returns the window including it.
+     *
+     * @param amountMinor amount in base-currency hundredths, so that one window sums amounts in any currency
+     */
+    public Window record(String userId, Instant timestamp, long amountMinor) {
+        if (!enabled || userId == null) {
+            return new Window(1, amountMinor, false);
+        }
+        // Two users colliding on all 64 bits would share a window; at 10M users the odds are below 1 in 10^5
+        long key = Hashing.hash64(userId);
+        int seconds = toEpochSeconds(timestamp);
+        int amountEntry = (int) Math.min(Integer.MAX_VALUE, Math.max(0, amountMinor));
+
+        Shard shard = shards[(int) (key >>> 40) & (shards.length - 1)];
+        int transactions;
+        long sum;
+        synchronized (shard) {
+            int slot = shard.slotFor(key, seconds - windowSeconds);
+            if (slot < 0) {
+                untracked.increment();
+                transactions = 1;
+                sum = amountEntry;
+            } else {
+                shard.add(slot, seconds, amountEntry, windowSeconds);
+                transactions = shard.count[slot];
+                sum = shard.sums[slot];
+            }
+        }
+        return new Window(transactions, sum,
+                transactions > maxTransactions || sum > maxAmountMinor);
+    }
+
+    /**
+     * Returns the user's window as it stands at the transaction's time, without adding the transaction
+     * or taking a slot for a new user.
+     */
+    public Window peek(String userId, Instant timestamp) {
+        if (!enabled || userId == null) {
+            return new Window(0, 0, false);
+        }
+        long key = Hashing.hash64(userId);
+        int seconds = toEpochSeconds(timestamp);
+
+        Shard shard = shards[(int) (key >>> 40) & (shards.length - 1)];
+        int transactions = 0;
+        long sum = 0;
+        synchronized (shard) {
+            int slot = shard.index.get(key);
+            if (slot >= 0) {
+                int expired = shard.expired(slot, seconds, windowSeconds);
+                transactions = shard.count[slot] - expired;
+                sum = shard.sums[slot] - shard.oldestAmounts(slot, expired);
+            }
+        }
+        return new Window(transactions, sum,
+                transactions > maxTransactions || sum > maxAmountMinor);
+    }
+
+    @Scheduled(fixedDelayString = "${fraud.velocity.sweep-interval-ms:30000}")
+    public void evictIdle() {
+        int idleBefore = toEpochSeconds(Instant.now()) - windowSeconds;
+        int evicted = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                evicted += shard.evictIdle(idleBefore);
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted velocity state of {} idle users", evicted);
+        }
+    }
+
+    int trackedUsers() {
+        int users = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                users += shard.index.size();
+            }
+        }
+        return users;
+    }
+
+    private static int toEpochSeconds(Instant timestamp) {
+        long seconds = (timestamp != null ? timestamp.getEpochSecond() : Instant.now().getEpochSecond()) - EPOCH_SECONDS;
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    private static final class Shard {
+
+        private static final int INITIAL_USERS = 1024;
+
+        final int ringSize;
+        final int maxUsers;
+        final LongIntOpenHashMap index;
+
+        long[] keys;
+        int[] times;
+        int[] amounts;
+        byte[] head;
+        byte[] count;
+        int[] newest;
+        long[] sums;
+
+        int allocated;
+        int[] free;
+        int freeCount;
+
+        Shard(int ringSize, int maxUsers) {
+            this.ringSize = ringSize;
+            this.maxUsers = maxUsers;
+            int initial = Math.min(INITIAL_USERS, maxUsers);
+            this.index = new LongIntOpenHashMap(initial, -1);
+            resize(initial);
+            this.free = new int[16];
+        }
+
+        int slotFor(long key, int idleBefore) {
+            int slot = index.get(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (freeCount == 0 && allocated == keys.length) {
+                if (keys.length < maxUsers) {
+                    resize((int) Math.min(maxUsers, (long) keys.length << 1));
+                } else if (evictIdle(idleBefore) == 0) {
+                    return -1;
+                }
+            }
+            slot = freeCount > 0 ? free[--freeCount] : allocated++;
+            keys[slot] = key;
+            head[slot] = 0;
+            count[slot] = 0;
+            newest[slot] = 0;
+            sums[slot] = 0;
+            index.put(key, slot);
+            return slot;
+        }
+
+        void add(int slot, int seconds, int amount, int windowSeconds) {
+            int base = slot * ringSize;
+            int h = head[slot];
+            int c = count[slot];
+            long sum = sums[slot];
+
+            // Out-of-order events are placed at the newest time seen so the ring stays sorted
+            int time = Math.max(seconds, newest[slot]);
+            int expireAtOrBefore = time - windowSeconds;
+            while (c > 0 && times[base + h] <= expireAtOrBefore) {
+                sum -= amounts[base + h];
+                h = h + 1 == ringSize ? 0 : h + 1;
+                c--;
+            }
+            if (c == ringSize) {
+                sum -= amounts[base + h];
+                h = h + 1 == ringSize ? 0 : h + 1;
+                c--;
+            }
+
+            int tail = h + c;
+            if (tail >= ringSize) {
+                tail -= ringSize;
+            }
+            times[base + tail] = time;
+            amounts[base + tail] = amount;
+
+            head[slot] = (byte) h;
+            count[slot] = (byte) (c + 1);
+            newest[slot] = time;
+            sums[slot] = sum + amount;
+        }
+
+        // How many entries from the head of the ring a record at these seconds would expire
+        int expired(int slot, int seconds, int windowSeconds) {
+            int base = slot * ringSize;
+            int expireAtOrBefore = Math.max(seconds, newest[slot]) - windowSeconds;
+            int expired = 0;
+            for (int i = head[slot]; expired < count[slot] && times[base + i] <= expireAtOrBefore;
+                 i = i + 1 == ringSize ? 0 : i + 1) {
+                expired++;
+            }
+            return expired;
+        }
+
+        long oldestAmounts(int slot, int entries) {
+            int base = slot * ringSize;
+            long sum = 0;
+            for (int n = 0, i = head[slot]; n < entries; n++, i = i + 1 == ringSize ? 0 : i + 1) {
+                sum += amounts[base + i];
+            }
+            return sum;
+        }
+
+        int evictIdle(int idleBefore) {
+            int evicted = 0;
+            for (int slot = 0; slot < allocated; slot++) {
+                if (count[slot] > 0 && newest[slot] <= idleBefore) {
+                    index.remove(keys[slot]);
+                    count[slot] = 0;
+                    if (freeCount == free.length) {
+                        free = Arrays.copyOf(free, free.length << 1);
+                    }
+                    free[freeCount++] = slot;
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        private void resize(int users) {
+            keys = keys == null ? new long[users] : Arrays.copyOf(keys, users);
+            times = times == null ? new int[users * ringSize] : Arrays.copyOf(times, users * ringSize);
+            amounts = amounts == null ? new int[users * ringSize] : Arrays.copyOf(amounts, users * ringSize);
+            head = head == null ? new byte[users] : Arrays.copyOf(head, users);
+            count = count == null ? new byte[users] : Arrays.copyOf(count, users);
+            newest = newest == null ? new int[users] : Arrays.copyOf(newest, users);
+            sums = sums == null ? new long[users] : Arrays.copyOf(sums, users);
+        }
+    }
+}
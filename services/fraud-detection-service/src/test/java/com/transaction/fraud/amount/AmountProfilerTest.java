@@ -0,0 +1,111 @@
+package com.transaction.fraud.amount;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AmountProfilerTest {
+
+    private static final Instant NOW = Instant.now();
+
+    private AmountProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        profiler = profiler(1000);
+    }
+
+    @Test
+    void shouldHaveNoLimitUntilEnoughHistory() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(profiler.limitAndRecord("user_1", 5_000, NOW)).isEqualTo(AmountProfiler.NO_LIMIT);
+        }
+
+        assertThat(profiler.limitAndRecord("user_1", 5_000, NOW)).isPositive();
+        assertThat(profiler.limitAndRecord("user_2", 5_000, NOW)).isEqualTo(AmountProfiler.NO_LIMIT);
+    }
+
+    @Test
+    void shouldFloorDeviationAndLimitForSteadyAmounts() {
+        for (int i = 0; i < 10; i++) {
+            profiler.limitAndRecord("steady", 200_000, NOW);
+            profiler.limitAndRecord("tiny", 500, NOW);
+        }
+
+        // mean 2000.00 + 6 x (25% of the mean)
+        assertThat(profiler.limitAndRecord("steady", 200_000, NOW)).isEqualTo(500_000);
+        // min-amount 100.00
+        assertThat(profiler.limitAndRecord("tiny", 500, NOW)).isEqualTo(10_000);
+    }
+
+    @Test
+    void shouldReadLimitWithoutRecording() {
+        for (int i = 0; i < 10; i++) {
+            profiler.limitAndRecord("steady", 200_000, NOW);
+        }
+
+        assertThat(profiler.limit("steady")).isEqualTo(500_000);
+        assertThat(profiler.limit("steady")).isEqualTo(500_000);
+        assertThat(profiler.limit("new_user")).isEqualTo(AmountProfiler.NO_LIMIT);
+        assertThat(profiler.profiledUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldWidenLimitForUsersWithVaryingAmounts() {
+        for (int i = 0; i < 40; i++) {
+            profiler.limitAndRecord("steady", 10_000, NOW);
+            profiler.limitAndRecord("varied", i % 2 == 0 ? 2_000 : 18_000, NOW);
+        }
+
+        assertThat(profiler.limitAndRecord("varied", 10_000, NOW))
+                .isGreaterThan(profiler.limitAndRecord("steady", 10_000, NOW));
+    }
+
+    @Test
+    void shouldNotLearnFromOutliers() {
+        for (int i = 0; i < 10; i++) {
+            profiler.limitAndRecord("user_1", 10_000, NOW);
+        }
+        long limit = profiler.limitAndRecord("user_1", 10_000, NOW);
+
+        for (int i = 0; i < 20; i++) {
+            profiler.limitAndRecord("user_1", 100_000_000, NOW);
+        }
+
+        assertThat(profiler.limitAndRecord("user_1", 10_000, NOW)).isLessThan(100_000_000).isGreaterThan(limit);
+    }
+
+    @Test
+    void shouldEvictIdleUsersWhenShardIsFull() {
+        AmountProfiler small = profiler(16);
+        for (int i = 0; i < 16; i++) {
+            small.limitAndRecord("user_" + i, 1_000, NOW.minus(Duration.ofDays(365)));
+        }
+
+        small.limitAndRecord("user_new", 1_000, NOW);
+
+        assertThat(small.profiledUsers()).isEqualTo(1);
+    }
+
+    private static AmountProfiler profiler(int maxUsers) {
+        AmountProfiler profiler = new AmountProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "alphaShift", 4);
+        ReflectionTestUtils.setField(profiler, "minHistory", 5);
+        ReflectionTestUtils.setField(profiler, "deviations", 6.0);
+        ReflectionTestUtils.setField(profiler, "minDeviationRatio", 0.25);
+        ReflectionTestUtils.setField(profiler, "minAmount", new BigDecimal("100.00"));
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", maxUsers);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+}
@@ -0,0 +1,56 @@
+package com.transaction.fraud.amount;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CurrencyNormalizerTest {
+
+    private CurrencyNormalizer normalizer;
+
+    @BeforeEach
+    void setUp() {
+        normalizer = normalizer("EUR=1.08, rub=0.011,JPY=0.0067");
+    }
+
+    @Test
+    void shouldConvertToBaseCurrencyHundredths() {
+        assertThat(normalizer.toBaseMinor(new BigDecimal("100.00"), "USD")).isEqualTo(10_000);
+        assertThat(normalizer.toBaseMinor(new BigDecimal("100.00"), "EUR")).isEqualTo(10_800);
+        assertThat(normalizer.toBaseMinor(new BigDecimal("50000"), "RUB")).isEqualTo(55_000);
+        assertThat(normalizer.toBaseMinor(new BigDecimal("1000"), "jpy")).isEqualTo(670);
+    }
+
+    @Test
+    void shouldTakeUnknownCurrenciesAtPar() {
+        assertThat(normalizer.toBaseMinor(new BigDecimal("12.34"), "XYZ")).isEqualTo(1_234);
+        assertThat(normalizer.toBaseMinor(new BigDecimal("12.34"), null)).isEqualTo(1_234);
+        assertThat(normalizer.toBaseMinor(null, "EUR")).isZero();
+    }
+
+    @Test
+    void shouldSaturateInsteadOfOverflowing() {
+        CurrencyNormalizer inflated = normalizer("ABC=1000000");
+
+        assertThat(inflated.toBaseMinor(Long.MAX_VALUE / 2, "ABC")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void shouldRejectMalformedRates() {
+        assertThatThrownBy(() -> normalizer("EURO=1.08")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> normalizer("EUR=0")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static CurrencyNormalizer normalizer(String rates) {
+        CurrencyNormalizer normalizer = new CurrencyNormalizer();
+        ReflectionTestUtils.setField(normalizer, "baseCurrency", "USD");
+        ReflectionTestUtils.setField(normalizer, "configuredRates", rates);
+        normalizer.init();
+        return normalizer;
+    }
+}
@@ -0,0 +1,135 @@
+package com.transaction.fraud.hours;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HourOfDayProfilerTest {
+
+    // Midnight UTC yesterday; history is laid out over the weeks before
+    private static final Instant MIDNIGHT = Instant.now().truncatedTo(ChronoUnit.DAYS).minus(Duration.ofDays(1));
+
+    @TempDir
+    Path dir;
+
+    private HourOfDayProfiler profiler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        profiler = profiler(1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        profiler.close();
+    }
+
+    @Test
+    void shouldReportNoSignalUntilUserHasEnoughHistory() {
+        for (int day = 29; day >= 11; day--) {
+            assertThat(profiler.shareAndRecord("user_1", at(day, 14))).isEqualTo(1);
+        }
+        for (int day = 10; day >= 0; day--) {
+            profiler.shareAndRecord("user_1", at(day, 14));
+        }
+
+        assertThat(profiler.shareAndRecord("user_1", at(0, 3))).isZero();
+        assertThat(profiler.shareAndRecord("user_2", at(0, 3))).isEqualTo(1);
+    }
+
+    @Test
+    void shouldGiveUsualAndNeighbouringHoursTheirShare() {
+        for (int day = 30; day >= 1; day--) {
+            profiler.shareAndRecord("user_1", at(day, 9));
+            profiler.shareAndRecord("user_1", at(day, 18));
+        }
+
+        assertThat(profiler.shareAndRecord("user_1", at(0, 9))).isCloseTo(0.25, within(0.01));
+        assertThat(profiler.shareAndRecord("user_1", at(0, 19))).isGreaterThan(0.1);
+        assertThat(profiler.shareAndRecord("user_1", at(0, 2))).isZero();
+    }
+
+    @Test
+    void shouldScoreHourWithoutRecording() {
+        for (int day = 30; day >= 1; day--) {
+            profiler.shareAndRecord("user_1", at(day, 9));
+            profiler.shareAndRecord("user_1", at(day, 18));
+        }
+
+        assertThat(profiler.share("user_1", at(0, 2))).isZero();
+        assertThat(profiler.share("user_1", at(0, 2))).isZero();
+        assertThat(profiler.share("user_1", at(0, 9))).isCloseTo(0.25, within(0.01));
+        assertThat(profiler.share("user_2", at(0, 2))).isEqualTo(1);
+        assertThat(profiler.profiledUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRestoreProfilesFromMappedFilesAfterRestart() throws IOException {
+        for (int day = 30; day >= 1; day--) {
+            profiler.shareAndRecord("user_1", at(day, 9));
+        }
+        profiler.close();
+
+        HourOfDayProfiler restarted = profiler(1000);
+
+        assertThat(restarted.profiledUsers()).isEqualTo(1);
+        assertThat(restarted.shareAndRecord("user_1", at(0, 3))).isZero();
+        assertThat(restarted.shareAndRecord("user_1", at(0, 9))).isGreaterThan(0.4);
+        restarted.close();
+    }
+
+    @Test
+    void shouldStartEmptyWhenFilesWereWrittenForAnotherCapacity() throws IOException {
+        profiler.shareAndRecord("user_1", at(1, 9));
+        profiler.close();
+
+        HourOfDayProfiler resized = profiler(2000);
+
+        assertThat(resized.profiledUsers()).isZero();
+        assertThat(resized.shareAndRecord("user_1", at(0, 9))).isEqualTo(1);
+        resized.close();
+    }
+
+    @Test
+    void shouldReuseRecordsOfIdleUsersWhenShardIsFull() throws IOException {
+        HourOfDayProfiler small = profiler(16);
+        for (int i = 0; i < 16; i++) {
+            small.shareAndRecord("user_" + i, at(365, 9));
+        }
+
+        small.shareAndRecord("user_new", at(0, 9));
+
+        assertThat(small.profiledUsers()).isEqualTo(1);
+        assertThat(small.usedBytes()).isEqualTo(32 + 16L * HourOfDayProfiler.RECORD_SIZE);
+        small.close();
+    }
+
+    private static Instant at(int daysAgo, int hourOfDay) {
+        return MIDNIGHT.minus(Duration.ofDays(daysAgo)).plus(Duration.ofHours(hourOfDay));
+    }
+
+    private HourOfDayProfiler profiler(int maxUsers) throws IOException {
+        HourOfDayProfiler profiler = new HourOfDayProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "dir", dir);
+        ReflectionTestUtils.setField(profiler, "halfLifeDays", 60.0);
+        ReflectionTestUtils.setField(profiler, "minHistory", 20.0);
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", maxUsers);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+}
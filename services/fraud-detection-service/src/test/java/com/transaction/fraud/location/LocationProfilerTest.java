@@ -0,0 +1,135 @@
+package com.transaction.fraud.location;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LocationProfilerTest {
+
+    private static final Instant NOW = Instant.now();
+
+    private LocationProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        profiler = profiler(1000);
+    }
+
+    @Test
+    void shouldScoreOnlyOnceUserHasEnoughHistory() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(profiler.scoreAndRecord("user_1", "US", "New York", NOW)).isZero();
+        }
+        profiler.scoreAndRecord("user_1", "US", "New York", NOW);
+
+        assertThat(profiler.scoreAndRecord("user_1", "US", "New York", NOW)).isCloseTo(0, within(1e-6));
+        assertThat(profiler.scoreAndRecord("user_1", "RU", "Moscow", NOW)).isCloseTo(1, within(1e-6));
+        assertThat(profiler.scoreAndRecord("user_2", "RU", "Moscow", NOW)).isZero();
+    }
+
+    @Test
+    void shouldScoreNewCityInHomeCountryFarBelowNewCountry() {
+        for (int i = 0; i < 10; i++) {
+            profiler.scoreAndRecord("user_1", "US", "New York", NOW);
+        }
+
+        double newCity = profiler.scoreAndRecord("user_1", "us", "Boston", NOW);
+        double newCountry = profiler.scoreAndRecord("user_1", "CA", "Toronto", NOW);
+
+        assertThat(newCity).isCloseTo(0.2, within(1e-3));
+        assertThat(newCountry).isGreaterThan(0.9);
+    }
+
+    @Test
+    void shouldScoreWithoutRecording() {
+        for (int i = 0; i < 10; i++) {
+            profiler.scoreAndRecord("user_1", "US", "New York", NOW);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(profiler.score("user_1", "CA", "Toronto", NOW)).isCloseTo(1, within(1e-6));
+        }
+        assertThat(profiler.scoreAndRecord("user_1", "CA", "Toronto", NOW)).isCloseTo(1, within(1e-6));
+        assertThat(profiler.score("user_2", "CA", "Toronto", NOW)).isZero();
+        assertThat(profiler.profiledUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldApplyHistoryThresholdToDecayedTotalWhenScoring() {
+        for (int i = 0; i < 6; i++) {
+            profiler.scoreAndRecord("user_1", "US", "New York", NOW);
+        }
+
+        assertThat(profiler.score("user_1", "CA", "Toronto", NOW)).isCloseTo(1, within(1e-6));
+        // One half-life later 6 transactions weigh 3, below min-history
+        assertThat(profiler.score("user_1", "CA", "Toronto", NOW.plus(Duration.ofDays(30)))).isZero();
+    }
+
+    @Test
+    void shouldLetOldLocationsFadeAfterMove() {
+        for (int i = 0; i < 20; i++) {
+            profiler.scoreAndRecord("user_1", "US", "New York", NOW);
+        }
+        Instant later = NOW.plus(Duration.ofDays(120));
+        for (int i = 0; i < 20; i++) {
+            profiler.scoreAndRecord("user_1", "DE", "Berlin", later);
+        }
+
+        assertThat(profiler.scoreAndRecord("user_1", "DE", "Berlin", later)).isLessThan(0.1);
+        assertThat(profiler.scoreAndRecord("user_1", "US", "New York", later)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void shouldIgnoreTransactionsWithoutKnownCountry() {
+        assertThat(profiler.scoreAndRecord("user_1", "UNKNOWN", "UNKNOWN", NOW)).isZero();
+        assertThat(profiler.scoreAndRecord("user_1", null, "Paris", NOW)).isZero();
+        assertThat(profiler.scoreAndRecord("user_1", " ", null, NOW)).isZero();
+
+        assertThat(profiler.profiledUsers()).isZero();
+    }
+
+    @Test
+    void shouldKeepFixedSizeProfilePerUser() {
+        long empty = profiler.allocatedBytes();
+        for (int i = 0; i < 50; i++) {
+            profiler.scoreAndRecord("user_1", "C" + i, "City " + i, NOW.plusSeconds(i));
+        }
+
+        assertThat(profiler.profiledUsers()).isEqualTo(1);
+        assertThat(profiler.allocatedBytes()).isEqualTo(empty);
+        // The latest country took the lightest slot, so it is still a stranger but not a never-seen one
+        assertThat(profiler.scoreAndRecord("user_1", "C49", "City 49", NOW.plusSeconds(50))).isLessThan(1);
+    }
+
+    @Test
+    void shouldEvictIdleUsersWhenShardIsFull() {
+        LocationProfiler small = profiler(16);
+        Instant longAgo = NOW.minus(Duration.ofDays(365));
+        for (int i = 0; i < 16; i++) {
+            small.scoreAndRecord("user_" + i, "US", "New York", longAgo);
+        }
+
+        small.scoreAndRecord("user_new", "US", "New York", NOW);
+
+        assertThat(small.profiledUsers()).isEqualTo(1);
+    }
+
+    private static LocationProfiler profiler(int maxUsers) {
+        LocationProfiler profiler = new LocationProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "halfLifeDays", 30.0);
+        ReflectionTestUtils.setField(profiler, "minHistory", 5.0);
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", maxUsers);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+}
@@ -0,0 +1,248 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.fraud.velocity.VelocityTracker;
+import com.transaction.models.FraudAlert.FraudReason;
+import com.transaction.models.FraudAlert.RiskLevel;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FraudRuleEngineTest {
+
+    private static final String RULES = """
+            rules:
+              - name: BIG
+                type: AMOUNT_ABOVE
+                risk-level: MEDIUM
+                threshold: 1000
+              - name: CASINO
+                type: MERCHANT_CATEGORY
+                risk-level: CRITICAL
+                categories: [gambling]
+              - name: BURST
+                type: VELOCITY
+                risk-level: HIGH
+            """;
+
+    @Mock
+    private VelocityTracker velocityTracker;
+
+    @Mock
+    private LocationProfiler locationProfiler;
+
+    @Mock
+    private HourOfDayProfiler hourOfDayProfiler;
+
+    @Mock
+    private AmountProfiler amountProfiler;
+
+    @TempDir
+    Path dir;
+
+    private Path rulesFile;
+    private SimpleMeterRegistry meterRegistry;
+    private FraudRuleEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().when(velocityTracker.record(any(), any(), anyLong()))
+                .thenReturn(new VelocityTracker.Window(1, 100, false));
+        rulesFile = dir.resolve("fraud-rules.yml");
+        Files.writeString(rulesFile, RULES);
+        meterRegistry = new SimpleMeterRegistry();
+        CurrencyNormalizer currencyNormalizer = new CurrencyNormalizer();
+        ReflectionTestUtils.setField(currencyNormalizer, "baseCurrency", "USD");
+        ReflectionTestUtils.setField(currencyNormalizer, "configuredRates", "EUR=1.08");
+        currencyNormalizer.init();
+        RuleFactory ruleFactory = new RuleFactory(velocityTracker, locationProfiler, hourOfDayProfiler, amountProfiler,
+                currencyNormalizer);
+        engine = new FraudRuleEngine(ruleFactory, meterRegistry, new DefaultResourceLoader());
+        ReflectionTestUtils.setField(engine, "location", rulesFile.toUri().toString());
+        ReflectionTestUtils.setField(engine, "shortCircuitAt", RiskLevel.CRITICAL);
+        engine.init();
+    }
+
+    @Test
+    void shouldOrderPlanByRiskLevel() {
+        assertThat(engine.currentPlan().ruleNames()).containsExactly("CASINO", "BURST", "BIG");
+    }
+
+    @Test
+    void shouldReportHighestRiskRuleAsPrimaryReason() {
+        RuleEvaluation evaluation = engine.evaluate(transaction("5000.00", "RETAIL"));
+
+        assertThat(evaluation.triggeredRules()).containsExactly("BIG");
+        assertThat(evaluation.riskLevel()).isEqualTo(RiskLevel.MEDIUM);
+        assertThat(evaluation.primaryReason()).isEqualTo(FraudReason.HIGH_AMOUNT);
+        assertThat(engine.evaluate(transaction("10.00", "RETAIL")).triggered()).isFalse();
+    }
+
+    @Test
+    void shouldShortCircuitAtMaxRiskButStillObserveStatefulRules() {
+        RuleEvaluation evaluation = engine.evaluate(transaction("5000.00", "Gambling"));
+
+        assertThat(evaluation.triggeredRules()).containsExactly("CASINO");
+        assertThat(evaluation.riskLevel()).isEqualTo(RiskLevel.CRITICAL);
+        // The velocity window still counts the transaction
+        verify(velocityTracker).record(any(), any(), anyLong());
+        assertThat(meterRegistry.get("fraud.rule.skipped").tag("rule", "BIG").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("fraud.rule.evaluation").tag("rule", "BIG").timer().count()).isZero();
+        assertThat(meterRegistry.get("fraud.rule.hits").tag("rule", "CASINO").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldSumVelocityAmountsInBaseCurrency() {
+        Transaction transaction = transaction("100.00", "RETAIL");
+        transaction.setCurrency("EUR");
+
+        engine.evaluate(transaction);
+
+        verify(velocityTracker).record(transaction.getUserId(), transaction.getTimestamp(), 10_800L);
+    }
+
+    @Test
+    void shouldSwapInChangedRuleSetAndKeepItWhenReloadFails() throws IOException {
+        write("""
+                rules:
+                  - name: BIG
+                    type: AMOUNT_ABOVE
+                    risk-level: HIGH
+                    threshold: 100
+                """, 1000);
+        engine.refresh();
+
+        RuleEvaluation evaluation = engine.evaluate(transaction("500.00", "GAMBLING"));
+        assertThat(engine.currentPlan().ruleNames()).containsExactly("BIG");
+        assertThat(evaluation.riskLevel()).isEqualTo(RiskLevel.HIGH);
+
+        write("""
+                rules:
+                  - name: BIG
+                    type: AMOUNT_ABOVE
+                    risk-level: HIGH
+                """, 2000);
+        engine.refresh();
+
+        assertThat(engine.currentPlan().ruleNames()).containsExactly("BIG");
+        assertThat(engine.evaluate(transaction("500.00", "RETAIL")).triggered()).isTrue();
+    }
+
+    @Test
+    void shouldRejectSecondRuleRecordingIntoTheSameProfile() throws IOException {
+        write(RULES + """
+                  - name: SLOW_BURST
+                    type: VELOCITY
+                    risk-level: MEDIUM
+                """, 1000);
+        engine.refresh();
+
+        assertThat(engine.currentPlan().ruleNames()).containsExactly("CASINO", "BURST", "BIG");
+        engine.evaluate(transaction("10.00", "RETAIL"));
+        verify(velocityTracker, times(1)).record(any(), any(), anyLong());
+    }
+
+    @Test
+    void shouldReorderRulesOfSameRiskByHitsPerNanosecond() throws IOException {
+        write("""
+                rules:
+                  - name: RARE
+                    type: AMOUNT_ABOVE
+                    risk-level: HIGH
+                    threshold: 1000000
+                  - name: COMMON
+                    type: MERCHANT_CATEGORY
+                    risk-level: HIGH
+                    cost-nanos: 20
+                    categories: [RETAIL]
+                """, 1000);
+        engine.refresh();
+        assertThat(engine.currentPlan().ruleNames()).containsExactly("RARE", "COMMON");
+
+        for (int i = 0; i < 100; i++) {
+            engine.evaluate(transaction("10.00", "RETAIL"));
+        }
+        engine.refresh();
+
+        assertThat(engine.currentPlan().ruleNames()).containsExactly("COMMON", "RARE");
+    }
+
+    @Test
+    void shouldRunDeepTierFromRiskLevelFastTierReached() throws IOException {
+        write("""
+                rules:
+                  - name: BIG
+                    type: AMOUNT_ABOVE
+                    risk-level: CRITICAL
+                    threshold: 1000
+                  - name: CASINO
+                    type: MERCHANT_CATEGORY
+                    risk-level: MEDIUM
+                    categories: [gambling]
+                  - name: BURST
+                    type: VELOCITY
+                    risk-level: HIGH
+                    tier: DEEP
+                """, 1000);
+        engine.refresh();
+        RulePlan plan = engine.currentPlan();
+        assertThat(plan.ruleNames()).containsExactly("BIG", "CASINO", "BURST");
+        assertThat(plan.hasDeepRules()).isTrue();
+
+        RuleEvaluation fast = plan.evaluateFast(transaction("10.00", "GAMBLING"));
+        assertThat(fast.triggeredRules()).containsExactly("CASINO");
+        verify(velocityTracker, never()).record(any(), any(), anyLong());
+        when(velocityTracker.record(any(), any(), anyLong())).thenReturn(new VelocityTracker.Window(11, 100, true));
+        RuleEvaluation deep = plan.evaluateDeep(transaction("10.00", "GAMBLING"), fast);
+        assertThat(deep.triggeredRules()).containsExactly("BURST");
+        assertThat(fast.merge(deep).riskLevel()).isEqualTo(RiskLevel.HIGH);
+
+        // Already CRITICAL: the deep rule only observes
+        RuleEvaluation critical = plan.evaluateFast(transaction("5000.00", "RETAIL"));
+        assertThat(plan.evaluateDeep(transaction("5000.00", "RETAIL"), critical).triggered()).isFalse();
+        assertThat(meterRegistry.get("fraud.rule.skipped").tag("rule", "BURST").counter().count()).isEqualTo(1.0);
+    }
+
+    private void write(String rules, long ageMillis) throws IOException {
+        Files.writeString(rulesFile, rules);
+        Files.setLastModifiedTime(rulesFile,
+                FileTime.fromMillis(Files.getLastModifiedTime(rulesFile).toMillis() + ageMillis));
+    }
+
+    private static Transaction transaction(String amount, String merchantCategory) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal(amount))
+                .currency("USD")
+                .merchant("Test Merchant")
+                .merchantCategory(merchantCategory)
+                .type(Transaction.TransactionType.PAYMENT)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,204 @@
+package com.transaction.fraud.rules;
+
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.fraud.velocity.VelocityTracker;
+import com.transaction.models.FraudAlert.FraudReason;
+import com.transaction.models.FraudAlert.RiskLevel;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShadowRuleEngineTest {
+
+    private static final RuleEvaluation FLAGGED =
+            new RuleEvaluation(List.of("HIGH_AMOUNT"), RiskLevel.MEDIUM, FraudReason.HIGH_AMOUNT);
+
+    @Mock
+    private VelocityTracker velocityTracker;
+
+    @Mock
+    private LocationProfiler locationProfiler;
+
+    @Mock
+    private HourOfDayProfiler hourOfDayProfiler;
+
+    @Mock
+    private AmountProfiler amountProfiler;
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShadowRuleEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void shouldCountCandidateHitsAndAgreementWithActiveSet() throws Exception {
+        engine = engine("""
+                rules:
+                  - name: BIG
+                    type: AMOUNT_ABOVE
+                    risk-level: MEDIUM
+                    threshold: 100
+                """);
+
+        engine.submit(transaction("500.00"), RuleEvaluation.CLEAN);
+        engine.submit(transaction("10.00"), RuleEvaluation.CLEAN);
+        engine.submit(transaction("500.00"), FLAGGED);
+        engine.submit(transaction("10.00"), FLAGGED);
+        awaitVerdicts(4);
+
+        assertThat(verdicts("shadow_only")).isEqualTo(1.0);
+        assertThat(verdicts("neither")).isEqualTo(1.0);
+        assertThat(verdicts("both")).isEqualTo(1.0);
+        assertThat(verdicts("active_only")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("fraud.shadow.rule.hits").tag("rule", "BIG").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("fraud.shadow.evaluation").timer().count()).isEqualTo(4);
+        // The active set's per-rule meters are left alone
+        assertThat(meterRegistry.find("fraud.rule.hits").counter()).isNull();
+    }
+
+    @Test
+    void shouldScoreStatefulCandidateRulesWithoutRecording() throws Exception {
+        engine = engine("""
+                rules:
+                  - name: BURST
+                    type: VELOCITY
+                    risk-level: HIGH
+                  - name: NIGHT
+                    type: HOUR_OF_DAY
+                    risk-level: MEDIUM
+                    max-share: 0.02
+                  - name: ODD_AMOUNT
+                    type: AMOUNT_OUTLIER
+                    risk-level: MEDIUM
+                    threshold: 1000
+                """);
+        when(velocityTracker.peek(eq("user_123"), any())).thenReturn(new VelocityTracker.Window(11, 500, true));
+        when(hourOfDayProfiler.share(eq("user_123"), any())).thenReturn(0.5);
+        when(amountProfiler.limit("user_123")).thenReturn(AmountProfiler.NO_LIMIT);
+
+        engine.submit(transaction("500.00"), RuleEvaluation.CLEAN);
+        awaitVerdicts(1);
+
+        assertThat(verdicts("shadow_only")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("fraud.shadow.rule.hits").tag("rule", "BURST").counter().count()).isEqualTo(1.0);
+        verify(velocityTracker, never()).record(any(), any(), anyLong());
+        verify(hourOfDayProfiler, never()).shareAndRecord(any(), any());
+        verify(amountProfiler, never()).limitAndRecord(any(), anyLong(), any());
+    }
+
+    @Test
+    void shouldAllowSeveralCandidateRulesOfOneStatefulType() throws Exception {
+        engine = engine("""
+                rules:
+                  - name: BURST
+                    type: VELOCITY
+                    risk-level: HIGH
+                  - name: SLOW_BURST
+                    type: VELOCITY
+                    risk-level: MEDIUM
+                """);
+
+        assertThat(engine.currentPlan()).isNotNull();
+        verifyNoInteractions(velocityTracker);
+    }
+
+    @Test
+    void shouldStayOffWithoutCandidate() {
+        engine = new ShadowRuleEngine(ruleFactory(), meterRegistry, new DefaultResourceLoader());
+        ReflectionTestUtils.setField(engine, "location", "");
+        engine.init();
+
+        engine.submit(transaction("500.00"), RuleEvaluation.CLEAN);
+
+        assertThat(engine.currentPlan()).isNull();
+        assertThat(meterRegistry.find("fraud.shadow.verdicts").counters()).isEmpty();
+    }
+
+    private ShadowRuleEngine engine(String rules) throws IOException {
+        Path candidate = dir.resolve("candidate-rules.yml");
+        Files.writeString(candidate, rules);
+        ShadowRuleEngine shadow = new ShadowRuleEngine(ruleFactory(), meterRegistry, new DefaultResourceLoader());
+        ReflectionTestUtils.setField(shadow, "location", candidate.toUri().toString());
+        ReflectionTestUtils.setField(shadow, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(shadow, "threads", 1);
+        ReflectionTestUtils.setField(shadow, "queueCapacity", 16);
+        ReflectionTestUtils.setField(shadow, "shortCircuitAt", RiskLevel.CRITICAL);
+        shadow.init();
+        return shadow;
+    }
+
+    private RuleFactory ruleFactory() {
+        CurrencyNormalizer currencyNormalizer = new CurrencyNormalizer();
+        ReflectionTestUtils.setField(currencyNormalizer, "baseCurrency", "USD");
+        ReflectionTestUtils.setField(currencyNormalizer, "configuredRates", "");
+        currencyNormalizer.init();
+        return new RuleFactory(velocityTracker, locationProfiler, hourOfDayProfiler, amountProfiler,
+                currencyNormalizer);
+    }
+
+    private double verdicts(String outcome) {
+        return meterRegistry.get("fraud.shadow.verdicts").tag("outcome", outcome).counter().count();
+    }
+
+    private void awaitVerdicts(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline && meterRegistry.get("fraud.shadow.verdicts").counters().stream()
+                .mapToDouble(Counter::count).sum() < expected) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Transaction transaction(String amount) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal(amount))
+                .currency("USD")
+                .merchantCategory("RETAIL")
+                .timestamp(Instant.now())
+                .build();
+    }
+}
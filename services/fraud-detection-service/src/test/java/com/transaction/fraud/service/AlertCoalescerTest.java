@@ -0,0 +1,162 @@
+package com.transaction.fraud.service;
+
+import com.transaction.models.FraudAlert;
+import com.transaction.models.FraudAlert.FraudReason;
+import com.transaction.models.FraudAlert.RiskLevel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertCoalescerTest {
+
+    @Mock
+    private FraudAlertProducerService alertProducerService;
+
+    @Test
+    void shouldPublishFirstAlertAtOnceAndOneSummaryPerUserAndReasonWhenWindowCloses() throws InterruptedException {
+        AlertCoalescer coalescer = coalescer(50, 100);
+        List<FraudAlert> raised = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            FraudAlert alert = alert("user_1", FraudReason.SUSPICIOUS_MERCHANT, i == 7 ? RiskLevel.HIGH : RiskLevel.MEDIUM);
+            raised.add(alert);
+            coalescer.submit(alert);
+        }
+        coalescer.submit(alert("user_2", FraudReason.SUSPICIOUS_MERCHANT, RiskLevel.MEDIUM));
+        coalescer.submit(alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+
+        // Each user and reason is alerted on before the transaction is committed
+        verify(alertProducerService).sendAlert(raised.get(0));
+        verify(alertProducerService, times(3)).sendAlert(any());
+        Thread.sleep(80);
+        coalescer.flushExpired();
+
+        // Only the window with more than its first alert is summarised
+        List<FraudAlert> published = published();
+        assertThat(published).hasSize(1);
+        FraudAlert merged = published.get(0);
+        assertThat(merged.getAlertId()).isEqualTo(raised.get(0).getAlertId());
+        assertThat(merged.getOccurrenceCount()).isEqualTo(200);
+        assertThat(merged.getRiskLevel()).isEqualTo(RiskLevel.HIGH);
+        assertThat(merged.getRelatedTransactionIds()).hasSize(100)
+                .startsWith(raised.get(0).getTransactionId(), raised.get(1).getTransactionId());
+        assertThat(coalescer.openWindows()).isZero();
+    }
+
+    @Test
+    void shouldEscalateCriticalAlertImmediately() {
+        AlertCoalescer coalescer = coalescer(60_000, 100);
+        coalescer.submit(alert("user_1", FraudReason.GEO_ANOMALY, RiskLevel.HIGH));
+        coalescer.submit(alert("user_1", FraudReason.GEO_ANOMALY, RiskLevel.HIGH));
+
+        coalescer.submit(alert("user_1", FraudReason.GEO_ANOMALY, RiskLevel.CRITICAL));
+
+        ArgumentCaptor<FraudAlert> alert = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(2)).sendAlert(alert.capture());
+        assertThat(alert.getAllValues().get(0).getRiskLevel()).isEqualTo(RiskLevel.HIGH);
+        assertThat(alert.getValue().getAlertId()).isEqualTo(alert.getAllValues().get(0).getAlertId());
+        assertThat(alert.getValue().getRiskLevel()).isEqualTo(RiskLevel.CRITICAL);
+        assertThat(alert.getValue().getOccurrenceCount()).isEqualTo(3);
+        assertThat(coalescer.openWindows()).isZero();
+    }
+
+    @Test
+    void shouldCloseOldestWindowWhenFull() {
+        AlertCoalescer coalescer = new AlertCoalescer(alertProducerService, new SimpleMeterRegistry(), 60_000, 2, 10);
+        FraudAlert oldest = alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM);
+        coalescer.submit(oldest);
+        coalescer.submit(alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+        coalescer.submit(alert("user_2", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+
+        coalescer.submit(alert("user_3", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+
+        ArgumentCaptor<FraudAlert> alert = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(4)).sendAlert(alert.capture());
+        assertThat(alert.getAllValues().get(2).getAlertId()).isEqualTo(oldest.getAlertId());
+        assertThat(alert.getAllValues().get(2).getOccurrenceCount()).isEqualTo(2);
+        assertThat(coalescer.openWindows()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFlushOpenWindowsWhenPartitionsAreRevoked() {
+        AlertCoalescer coalescer = coalescer(60_000, 100);
+        coalescer.submit(alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+        coalescer.submit(alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+        coalescer.submit(alert("user_2", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM));
+
+        coalescer.onPartitionsRevoked(List.of(new TopicPartition("transactions", 0)));
+
+        assertThat(published()).singleElement()
+                .satisfies(summary -> assertThat(summary.getOccurrenceCount()).isEqualTo(2));
+        assertThat(coalescer.openWindows()).isZero();
+    }
+
+    @Test
+    void shouldSummariseWhenOnlyTheFinalVerdictFollowedAProvisionalAlert() {
+        AlertCoalescer coalescer = coalescer(60_000, 100);
+        FraudAlert provisional = alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM);
+        provisional.setProvisional(true);
+        FraudAlert verdict = alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM);
+        verdict.setAlertId(provisional.getAlertId());
+        verdict.setTransactionId(provisional.getTransactionId());
+
+        coalescer.submit(provisional);
+        coalescer.submit(verdict);
+        coalescer.flushAll();
+
+        verify(alertProducerService).sendAlert(provisional);
+        assertThat(published()).singleElement().satisfies(summary -> {
+            assertThat(summary.getAlertId()).isEqualTo(provisional.getAlertId());
+            assertThat(summary.getOccurrenceCount()).isEqualTo(1);
+            assertThat(summary.getProvisional()).isNull();
+        });
+    }
+
+    @Test
+    void shouldPassAlertsThroughWhenWindowIsZero() {
+        AlertCoalescer coalescer = coalescer(0, 100);
+        FraudAlert alert = alert("user_1", FraudReason.HIGH_AMOUNT, RiskLevel.MEDIUM);
+
+        coalescer.submit(alert);
+        coalescer.submit(alert);
+
+        verify(alertProducerService, times(2)).sendAlert(alert);
+    }
+
+    private AlertCoalescer coalescer(long windowMs, int maxTransactionIds) {
+        return new AlertCoalescer(alertProducerService, new SimpleMeterRegistry(), windowMs, 1000, maxTransactionIds);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<FraudAlert> published() {
+        ArgumentCaptor<List<FraudAlert>> alerts = ArgumentCaptor.forClass(List.class);
+        verify(alertProducerService, atLeastOnce()).sendAlerts(alerts.capture());
+        return alerts.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
+    private static FraudAlert alert(String userId, FraudReason reason, RiskLevel riskLevel) {
+        return FraudAlert.builder()
+                .alertId(UUID.randomUUID())
+                .transactionId(UUID.randomUUID())
+                .userId(userId)
+                .reason(reason)
+                .riskLevel(riskLevel)
+                .description("Fraud detected: " + reason)
+                .detectedAt(Instant.now())
+                .triggeredRules(List.of(reason.name()))
+                .build();
+    }
+}
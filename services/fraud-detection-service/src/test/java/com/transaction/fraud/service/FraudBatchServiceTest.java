@@ -0,0 +1,104 @@
+package com.transaction.fraud.service;
+
+import com.transaction.models.FraudAlert;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FraudBatchServiceTest {
+
+    @Mock
+    private FraudDetectionService fraudDetectionService;
+
+    @Mock
+    private FraudAlertProducerService alertProducerService;
+
+    private FraudBatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        AlertCoalescer alertCoalescer = new AlertCoalescer(alertProducerService, new SimpleMeterRegistry(), 0, 1, 1);
+        batchService = new FraudBatchService(fraudDetectionService, alertCoalescer, new SimpleMeterRegistry(), 4, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldPublishAllAlertsOfBatchInOneCall() {
+        Transaction clean = transaction("user_1", 0);
+        Transaction suspicious = transaction("user_2", 0);
+        Transaction broken = transaction("user_3", 0);
+        FraudAlert alert = FraudAlert.builder().transactionId(suspicious.getTransactionId()).build();
+        when(fraudDetectionService.evaluate(clean)).thenReturn(null);
+        when(fraudDetectionService.evaluate(suspicious)).thenReturn(alert);
+        when(fraudDetectionService.evaluate(broken)).thenThrow(new IllegalStateException("boom"));
+
+        batchService.analyzeBatch(Arrays.asList(clean, null, suspicious, broken));
+
+        ArgumentCaptor<List<FraudAlert>> alerts = ArgumentCaptor.forClass(List.class);
+        verify(alertProducerService, times(1)).sendAlerts(alerts.capture());
+        assertThat(alerts.getValue()).containsExactly(alert);
+        verify(alertProducerService, never()).sendAlert(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldKeepEachUsersTransactionsInOrderWhenParallel() {
+        Map<String, List<Integer>> seenByUser = new ConcurrentHashMap<>();
+        when(fraudDetectionService.evaluate(any())).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            seenByUser.computeIfAbsent(transaction.getUserId(), user -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(transaction.getAmount().intValue());
+            return FraudAlert.builder().transactionId(transaction.getTransactionId()).build();
+        });
+
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(transaction("user_" + (i % 10), i));
+        }
+        batchService.analyzeBatch(batch);
+
+        ArgumentCaptor<List<FraudAlert>> alerts = ArgumentCaptor.forClass(List.class);
+        verify(alertProducerService).sendAlerts(alerts.capture());
+        assertThat(alerts.getValue()).hasSize(200);
+        assertThat(seenByUser).hasSize(10);
+        seenByUser.values().forEach(amounts -> assertThat(amounts).isSorted().hasSize(20));
+    }
+
+    private static Transaction transaction(String userId, int amount) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId(userId)
+                .amount(BigDecimal.valueOf(amount))
+                .currency("USD")
+                .merchant("Test Merchant")
+                .type(Transaction.TransactionType.PAYMENT)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -1,20 +1,36 @@
 package com.transaction.fraud.service;
 
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.fraud.rules.FraudRuleEngine;
+import com.transaction.fraud.rules.RuleFactory;
+import com.transaction.fraud.rules.ShadowRuleEngine;
+import com.transaction.fraud.velocity.VelocityTracker;
 import com.transaction.models.FraudAlert;
 import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,9 +39,40 @@ class FraudDetectionServiceTest {
     @Mock
     private FraudAlertProducerService alertProducerService;
 
-    @InjectMocks
+    @Mock
+    private VelocityTracker velocityTracker;
+
+    @Mock
+    private HourOfDayProfiler hourOfDayProfiler;
+
+    @Mock
+    private ShadowRuleEngine shadowRuleEngine;
+
+    private FraudRuleEngine ruleEngine;
+    private AlertCoalescer alertCoalescer;
     private FraudDetectionService fraudDetectionService;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(velocityTracker.record(any(), any(), anyLong()))
+                .thenReturn(new VelocityTracker.Window(1, 14999, false));
+        lenient().when(hourOfDayProfiler.shareAndRecord(any(), any())).thenReturn(0.2);
+
+        RuleFactory ruleFactory = new RuleFactory(velocityTracker, locationProfiler(), hourOfDayProfiler,
+                amountProfiler(), currencyNormalizer());
+
+        // The shipped rule set, so these tests also pin down its behaviour
+        ruleEngine = new FraudRuleEngine(ruleFactory, new SimpleMeterRegistry(),
+                new DefaultResourceLoader());
+        ReflectionTestUtils.setField(ruleEngine, "location", "classpath:fraud-rules.yml");
+        ReflectionTestUtils.setField(ruleEngine, "shortCircuitAt", FraudAlert.RiskLevel.CRITICAL);
+        ruleEngine.init();
+        // Coalescing off: every alert reaches the producer as it is raised
+        alertCoalescer = new AlertCoalescer(alertProducerService, new SimpleMeterRegistry(), 0, 1, 1);
+        fraudDetectionService = new FraudDetectionService(alertCoalescer, ruleEngine, shadowRuleEngine,
+                new SimpleMeterRegistry(), 2, 16, 5000);
+    }
+
     @Test
     void shouldNotDetectFraudForValidTransaction() {
         Transaction transaction = buildValidTransaction();
@@ -51,6 +98,59 @@ class FraudDetectionServiceTest {
         assertThat(alert.getTriggeredRules()).contains("HIGH_AMOUNT");
     }
 
+    @Test
+    void shouldFlagAmountsOnlyAboveUsersOwnLimitOnceThereIsHistory() {
+        for (int i = 0; i < 10; i++) {
+            Transaction usual = buildValidTransaction();
+            usual.setAmount(new BigDecimal("3000.00"));
+            fraudDetectionService.analyzeTransaction(usual);
+        }
+        clearInvocations(alertProducerService);
+
+        Transaction largeButUsual = buildValidTransaction();
+        largeButUsual.setAmount(new BigDecimal("5000.00"));
+        fraudDetectionService.analyzeTransaction(largeButUsual);
+
+        verify(alertProducerService, never()).sendAlert(any());
+
+        Transaction outlier = buildValidTransaction();
+        outlier.setAmount(new BigDecimal("40000.00"));
+        fraudDetectionService.analyzeTransaction(outlier);
+
+        ArgumentCaptor<FraudAlert> alertCaptor = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(1)).sendAlert(alertCaptor.capture());
+        assertThat(alertCaptor.getValue().getReason()).isEqualTo(FraudAlert.FraudReason.HIGH_AMOUNT);
+    }
+
+    @Test
+    void shouldFlagOutlierBelowFixedThresholdForSmallSpender() {
+        for (int i = 0; i < 10; i++) {
+            Transaction usual = buildValidTransaction();
+            usual.setAmount(new BigDecimal("40.00"));
+            fraudDetectionService.analyzeTransaction(usual);
+        }
+        Transaction transaction = buildValidTransaction();
+        transaction.setAmount(new BigDecimal("900.00"));
+
+        fraudDetectionService.analyzeTransaction(transaction);
+
+        ArgumentCaptor<FraudAlert> alertCaptor = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(1)).sendAlert(alertCaptor.capture());
+        assertThat(alertCaptor.getValue().getReason()).isEqualTo(FraudAlert.FraudReason.HIGH_AMOUNT);
+        assertThat(alertCaptor.getValue().getRiskLevel()).isEqualTo(FraudAlert.RiskLevel.MEDIUM);
+    }
+
+    @Test
+    void shouldCompareAmountsInBaseCurrency() {
+        Transaction transaction = buildValidTransaction();
+        transaction.setAmount(new BigDecimal("50000.00"));
+        transaction.setCurrency("RUB");
+
+        fraudDetectionService.analyzeTransaction(transaction);
+
+        verify(alertProducerService, never()).sendAlert(any());
+    }
+
     @Test
     void shouldDetectSuspiciousMerchant() {
         Transaction transaction = buildValidTransaction();
@@ -69,10 +169,13 @@ class FraudDetectionServiceTest {
 
     @Test
     void shouldDetectGeoAnomaly() {
+        for (int i = 0; i < 10; i++) {
+            fraudDetectionService.analyzeTransaction(buildValidTransaction());
+        }
         Transaction transaction = buildValidTransaction();
         transaction.setLocation(Transaction.Location.builder()
-                .country("UNKNOWN")
-                .city("UNKNOWN")
+                .country("BR")
+                .city("Sao Paulo")
                 .build());
 
         fraudDetectionService.analyzeTransaction(transaction);
@@ -86,6 +189,110 @@ class FraudDetectionServiceTest {
         assertThat(alert.getTriggeredRules()).contains("GEO_ANOMALY");
     }
 
+    @Test
+    void shouldNotTreatUnknownLocationAsGeoAnomaly() {
+        for (int i = 0; i < 10; i++) {
+            fraudDetectionService.analyzeTransaction(buildValidTransaction());
+        }
+        Transaction transaction = buildValidTransaction();
+        transaction.setLocation(Transaction.Location.builder()
+                .country("UNKNOWN")
+                .city("UNKNOWN")
+                .build());
+
+        fraudDetectionService.analyzeTransaction(transaction);
+
+        verify(alertProducerService, never()).sendAlert(any());
+    }
+
+    @Test
+    void shouldDetectUnusualTime() {
+        Transaction transaction = buildValidTransaction();
+        when(hourOfDayProfiler.shareAndRecord(transaction.getUserId(), transaction.getTimestamp())).thenReturn(0.004);
+
+        fraudDetectionService.analyzeTransaction(transaction);
+
+        ArgumentCaptor<FraudAlert> alertCaptor = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(1)).sendAlert(alertCaptor.capture());
+
+        FraudAlert alert = alertCaptor.getValue();
+        assertThat(alert.getReason()).isEqualTo(FraudAlert.FraudReason.UNUSUAL_TIME);
+        assertThat(alert.getRiskLevel()).isEqualTo(FraudAlert.RiskLevel.LOW);
+        assertThat(alert.getTriggeredRules()).containsExactly("UNUSUAL_TIME");
+    }
+
+    @Test
+    void shouldPublishProvisionalVerdictWhenDeepTierMissesDeadline() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FraudDetectionService service = new FraudDetectionService(alertCoalescer, ruleEngine, shadowRuleEngine,
+                meterRegistry, 1, 16, 20);
+        Transaction transaction = buildValidTransaction();
+        transaction.setAmount(new BigDecimal("5000.00"));
+        when(hourOfDayProfiler.shareAndRecord(transaction.getUserId(), transaction.getTimestamp()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(300);
+                    return 0.004;
+                });
+
+        service.analyzeTransaction(transaction);
+
+        ArgumentCaptor<FraudAlert> provisional = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(1)).sendAlert(provisional.capture());
+        assertThat(provisional.getValue().getProvisional()).isTrue();
+        assertThat(provisional.getValue().getTriggeredRules()).containsExactly("HIGH_AMOUNT");
+        assertThat(meterRegistry.get("fraud.tier.deep.pending").gauge().value()).isEqualTo(1.0);
+
+        ArgumentCaptor<FraudAlert> alerts = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, timeout(5000).times(2)).sendAlert(alerts.capture());
+        FraudAlert verdict = alerts.getAllValues().get(1);
+        assertThat(verdict.getAlertId()).isEqualTo(provisional.getValue().getAlertId());
+        assertThat(verdict.getProvisional()).isNull();
+        assertThat(verdict.getTriggeredRules()).containsExactly("HIGH_AMOUNT", "UNUSUAL_TIME");
+        assertThat(verdict.getRiskLevel()).isEqualTo(FraudAlert.RiskLevel.MEDIUM);
+        assertThat(meterRegistry.get("fraud.tier.deep.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldRunDeepTierOnCallerWhenPoolIsFull() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FraudDetectionService service = new FraudDetectionService(alertCoalescer, ruleEngine, shadowRuleEngine,
+                meterRegistry, 1, 1, 20);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            when(hourOfDayProfiler.shareAndRecord(eq("user_busy"), any())).thenAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return 0.2;
+            });
+            // One transaction occupies the only worker, the next fills the queue
+            for (int i = 0; i < 2; i++) {
+                Transaction busy = buildValidTransaction();
+                busy.setUserId("user_busy");
+                service.analyzeTransaction(busy);
+            }
+
+            Transaction transaction = buildValidTransaction();
+            Thread caller = Thread.currentThread();
+            AtomicReference<Thread> recordedOn = new AtomicReference<>();
+            when(hourOfDayProfiler.shareAndRecord(transaction.getUserId(), transaction.getTimestamp()))
+                    .thenAnswer(invocation -> {
+                        recordedOn.set(Thread.currentThread());
+                        return 0.004;
+                    });
+
+            service.analyzeTransaction(transaction);
+
+            assertThat(recordedOn.get()).isSameAs(caller);
+            ArgumentCaptor<FraudAlert> alertCaptor = ArgumentCaptor.forClass(FraudAlert.class);
+            verify(alertProducerService, times(1)).sendAlert(alertCaptor.capture());
+            assertThat(alertCaptor.getValue().getProvisional()).isNull();
+            assertThat(alertCaptor.getValue().getTriggeredRules()).containsExactly("UNUSUAL_TIME");
+            assertThat(meterRegistry.get("fraud.tier.deep.rejected").counter().count()).isEqualTo(1.0);
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+
     @Test
     void shouldDetectMultipleRules() {
         Transaction transaction = buildValidTransaction();
@@ -103,6 +310,58 @@ class FraudDetectionServiceTest {
         assertThat(alert.getTriggeredRules()).contains("HIGH_AMOUNT", "SUSPICIOUS_MERCHANT");
     }
 
+    @Test
+    void shouldDetectHighFrequency() {
+        Transaction transaction = buildValidTransaction();
+        when(velocityTracker.record(transaction.getUserId(), transaction.getTimestamp(), 14999L))
+                .thenReturn(new VelocityTracker.Window(11, 164989, true));
+
+        fraudDetectionService.analyzeTransaction(transaction);
+
+        ArgumentCaptor<FraudAlert> alertCaptor = ArgumentCaptor.forClass(FraudAlert.class);
+        verify(alertProducerService, times(1)).sendAlert(alertCaptor.capture());
+
+        FraudAlert alert = alertCaptor.getValue();
+        assertThat(alert.getReason()).isEqualTo(FraudAlert.FraudReason.HIGH_FREQUENCY);
+        assertThat(alert.getRiskLevel()).isEqualTo(FraudAlert.RiskLevel.HIGH);
+        assertThat(alert.getTriggeredRules()).containsExactly("HIGH_FREQUENCY");
+    }
+
+    private static LocationProfiler locationProfiler() {
+        LocationProfiler profiler = new LocationProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "halfLifeDays", 30.0);
+        ReflectionTestUtils.setField(profiler, "minHistory", 5.0);
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", 1000);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+
+    private static AmountProfiler amountProfiler() {
+        AmountProfiler profiler = new AmountProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "alphaShift", 4);
+        ReflectionTestUtils.setField(profiler, "minHistory", 5);
+        ReflectionTestUtils.setField(profiler, "deviations", 6.0);
+        ReflectionTestUtils.setField(profiler, "minDeviationRatio", 0.25);
+        ReflectionTestUtils.setField(profiler, "minAmount", new BigDecimal("100.00"));
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", 1000);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+
+    private static CurrencyNormalizer currencyNormalizer() {
+        CurrencyNormalizer normalizer = new CurrencyNormalizer();
+        ReflectionTestUtils.setField(normalizer, "baseCurrency", "USD");
+        ReflectionTestUtils.setField(normalizer, "configuredRates", "EUR=1.08,RUB=0.011");
+        normalizer.init();
+        return normalizer;
+    }
+
     private Transaction buildValidTransaction() {
         return Transaction.builder()
                 .transactionId(UUID.randomUUID())
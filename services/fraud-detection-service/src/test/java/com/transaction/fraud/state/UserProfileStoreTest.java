@@ -0,0 +1,380 @@
+package com.transaction.fraud.state;
+
+import com.transaction.fraud.amount.AmountProfiler;
+import com.transaction.fraud.amount.AmountStats;
+import com.transaction.fraud.amount.CurrencyNormalizer;
+import com.transaction.fraud.hours.HourHistogram;
+import com.transaction.fraud.hours.HourOfDayProfiler;
+import com.transaction.fraud.location.LocationProfiler;
+import com.transaction.fraud.location.LocationSketch;
+import com.transaction.fraud.rules.FraudRuleEngine;
+import com.transaction.fraud.rules.RuleFactory;
+import com.transaction.fraud.velocity.VelocityTracker;
+import com.transaction.models.FraudAlert;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserProfileStoreTest {
+
+    private static final String CHANGELOG = "fraud-user-profiles-changelog";
+    private static final TopicPartition CHANGELOG_0 = new TopicPartition(CHANGELOG, 0);
+    private static final TopicPartition TRANSACTIONS_0 = new TopicPartition("transactions", 0);
+    private static final Instant NOW = Instant.parse("2026-02-07T12:00:00Z");
+
+    @Mock
+    private KafkaTemplate<String, byte[]> changelogTemplate;
+
+    @Mock
+    private ConsumerFactory<String, byte[]> consumerFactory;
+
+    @Mock
+    private VelocityTracker velocityTracker;
+
+    @Mock
+    private HourOfDayProfiler hourOfDayProfiler;
+
+    @TempDir
+    private Path stateDir;
+
+    private final AtomicLong nextOffset = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(changelogTemplate.send(eq(CHANGELOG), anyInt(), anyString(), any(byte[].class)))
+                .thenAnswer(invocation -> {
+                    RecordMetadata metadata = new RecordMetadata(
+                            new TopicPartition(CHANGELOG, invocation.getArgument(1)),
+                            nextOffset.getAndIncrement(), 0, 0L, 0, 0);
+                    return CompletableFuture.completedFuture(new SendResult<>(
+                            new ProducerRecord<>(CHANGELOG, invocation.getArgument(2), invocation.getArgument(3)),
+                            metadata));
+                });
+    }
+
+    @Test
+    void shouldRestoreFromSnapshotAndReplayOnlyTheChangelogTail() {
+        UserProfileStore previousOwner = store();
+        previousOwner.update(0, transaction("user_1", "US"));
+        previousOwner.update(0, transaction("user_2", "DE"));
+        previousOwner.onPartitionsRevoked(List.of(TRANSACTIONS_0));
+
+        // Written to the changelog by another owner after the snapshot was taken
+        UserProfile newer = UserProfile.EMPTY
+                .updatedWith(transaction("user_1", "US"))
+                .updatedWith(transaction("user_1", "FR"));
+        MockConsumer<String, byte[]> changelog = changelog(3);
+        changelog.schedulePollTask(() -> {
+            changelog.addRecord(record(0, "user_1", new byte[]{0}));
+            changelog.addRecord(record(1, "user_2", new byte[]{0}));
+            changelog.addRecord(record(2, "user_1", newer.encode()));
+        });
+
+        UserProfileStore newOwner = store();
+        newOwner.onPartitionsAssigned(List.of(TRANSACTIONS_0));
+
+        assertThat(newOwner.get(0, "user_1")).isEqualTo(newer);
+        assertThat(newOwner.get(0, "user_2").transactions()).isEqualTo(1);
+        assertThat(newOwner.get(1, "user_1")).isEqualTo(UserProfile.EMPTY);
+    }
+
+    @Test
+    void shouldHandLocationSketchesToTheNextOwner() {
+        LocationProfiler previousProfiler = locationProfiler();
+        UserProfileStore previousOwner = store(previousProfiler, amountProfiler());
+        for (int i = 0; i < 10; i++) {
+            Transaction transaction = transaction("user_1", "US");
+            previousProfiler.scoreAndRecord("user_1", "US", "Somewhere", transaction.getTimestamp());
+            previousOwner.update(0, transaction);
+        }
+        previousOwner.onPartitionsRevoked(List.of(TRANSACTIONS_0));
+        changelog(nextOffset.get());
+
+        LocationProfiler profiler = locationProfiler();
+        UserProfileStore newOwner = store(profiler, amountProfiler());
+        newOwner.onPartitionsAssigned(List.of(TRANSACTIONS_0));
+
+        assertThat(newOwner.get(0, "user_1").location()).isEqualTo(previousProfiler.export("user_1"));
+        assertThat(profiler.scoreAndRecord("user_1", "US", "Somewhere", NOW)).isCloseTo(0, within(1e-6));
+        assertThat(profiler.scoreAndRecord("user_1", "RU", "Moscow", NOW)).isCloseTo(1, within(1e-6));
+    }
+
+    @Test
+    void shouldHandAmountStatisticsToTheNextOwner() {
+        AmountProfiler previousProfiler = amountProfiler();
+        UserProfileStore previousOwner = store(locationProfiler(), previousProfiler);
+        for (int i = 0; i < 10; i++) {
+            previousProfiler.limitAndRecord("user_1", 200_000, NOW);
+            previousOwner.update(0, transaction("user_1", "US"));
+        }
+        previousOwner.onPartitionsRevoked(List.of(TRANSACTIONS_0));
+        changelog(nextOffset.get());
+
+        AmountProfiler profiler = amountProfiler();
+        UserProfileStore newOwner = store(locationProfiler(), profiler);
+        newOwner.onPartitionsAssigned(List.of(TRANSACTIONS_0));
+
+        assertThat(newOwner.get(0, "user_1").amount()).isEqualTo(previousProfiler.export("user_1"));
+        // mean 2000.00 + 6 x (25% of the mean), not the cold-start threshold
+        assertThat(profiler.limitAndRecord("user_1", 200_000, NOW)).isEqualTo(500_000);
+    }
+
+    @Test
+    void shouldHandHourHistogramsToTheNextOwner() throws Exception {
+        HourOfDayProfiler previousProfiler = hourOfDayProfiler("previous");
+        UserProfileStore previousOwner = store(locationProfiler(), amountProfiler(), previousProfiler);
+        for (int day = 30; day >= 1; day--) {
+            previousProfiler.shareAndRecord("user_1", NOW.minus(Duration.ofDays(day)));
+            previousOwner.update(0, transaction("user_1", "US"));
+        }
+        previousOwner.onPartitionsRevoked(List.of(TRANSACTIONS_0));
+        changelog(nextOffset.get());
+
+        // A fresh pod: no files left behind by the previous owner
+        HourOfDayProfiler profiler = hourOfDayProfiler("next");
+        UserProfileStore newOwner = store(locationProfiler(), amountProfiler(), profiler);
+        newOwner.onPartitionsAssigned(List.of(TRANSACTIONS_0));
+
+        assertThat(newOwner.get(0, "user_1").hours()).isEqualTo(previousProfiler.export("user_1"));
+        assertThat(profiler.share("user_1", NOW)).isCloseTo(0.5, within(0.01));
+        assertThat(profiler.share("user_1", NOW.plus(Duration.ofHours(6)))).isZero();
+        previousProfiler.close();
+        profiler.close();
+    }
+
+    @Test
+    void shouldLetRulesSeeHistoryWrittenByThePreviousOwner() {
+        lenient().when(velocityTracker.record(any(), any(), anyLong()))
+                .thenReturn(new VelocityTracker.Window(1, 14999, false));
+        lenient().when(hourOfDayProfiler.shareAndRecord(any(), any())).thenReturn(0.2);
+
+        LocationProfiler previousLocations = locationProfiler();
+        AmountProfiler previousAmounts = amountProfiler();
+        FraudRuleEngine previousRules = ruleEngine(previousLocations, previousAmounts);
+        UserProfileStore previousOwner = store(previousLocations, previousAmounts);
+        for (int i = 0; i < 10; i++) {
+            Transaction transaction = transaction("user_1", "US");
+            assertThat(previousRules.currentPlan().evaluate(transaction).triggered()).isFalse();
+            previousOwner.update(0, transaction);
+        }
+        previousOwner.onPartitionsRevoked(List.of(TRANSACTIONS_0));
+        changelog(nextOffset.get());
+
+        LocationProfiler locations = locationProfiler();
+        AmountProfiler amounts = amountProfiler();
+        UserProfileStore newOwner = store(locations, amounts);
+        newOwner.onPartitionsAssigned(List.of(TRANSACTIONS_0));
+
+        Transaction unusual = transaction("user_1", "BR");
+        unusual.setAmount(new BigDecimal("900.00"));
+        // Cold profilers would let this through: under the 1000.00 threshold, and no location history
+        assertThat(ruleEngine(locationProfiler(), amountProfiler()).currentPlan().evaluate(unusual).triggered())
+                .isFalse();
+        assertThat(ruleEngine(locations, amounts).currentPlan().evaluate(unusual).triggeredRules())
+                .containsExactlyInAnyOrder("HIGH_AMOUNT", "GEO_ANOMALY");
+    }
+
+    @Test
+    void shouldRoundTripProfilesAndRejectOtherFormatVersions() {
+        float[] buckets = new float[24];
+        buckets[12] = 3;
+        UserProfile profile = UserProfile.EMPTY.updatedWith(transaction("user_1", "US"))
+                .withAmount(new AmountStats(7500 << 8, 2500 << 8, 3, 42))
+                .withLocation(new LocationSketch(10, 3, new int[]{7, 0}, new float[]{3, 0}, new int[]{9}, new float[]{3}))
+                .withHours(new HourHistogram(11, 3, buckets));
+
+        assertThat(UserProfile.decode(profile.encode())).isEqualTo(profile);
+        assertThat(UserProfile.decode(UserProfile.EMPTY.encode())).isEqualTo(UserProfile.EMPTY);
+
+        byte[] otherVersion = profile.encode();
+        otherVersion[0] = 2;
+        assertThatThrownBy(() -> UserProfile.decode(otherVersion))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version 2");
+    }
+
+    @Test
+    void shouldReplayWholeChangelogWhenSnapshotIsCorrupt() throws Exception {
+        Files.write(stateDir.resolve("transactions-0.snapshot"), new byte[]{1, 2, 3});
+        UserProfile profile = UserProfile.EMPTY.updatedWith(transaction("user_1", "US"));
+        MockConsumer<String, byte[]> changelog = changelog(3);
+        changelog.schedulePollTask(() -> {
+            changelog.addRecord(record(0, "user_1", profile.encode()));
+            changelog.addRecord(record(1, "user_2", profile.encode()));
+            changelog.addRecord(record(2, "user_2", null));
+        });
+
+        UserProfileStore store = store();
+        store.onPartitionsAssigned(List.of(TRANSACTIONS_0));
+
+        assertThat(store.get(0, "user_1")).isEqualTo(profile);
+        assertThat(store.get(0, "user_2")).isEqualTo(UserProfile.EMPTY);
+    }
+
+    @Test
+    void shouldWriteChangedProfilesToSameNumberedChangelogPartition() {
+        UserProfileStore store = store();
+        store.update(3, transaction("user_1", "US"));
+        store.update(3, transaction("user_1", "US"));
+
+        store.flushChangelog();
+        store.flushChangelog();
+
+        verify(changelogTemplate).send(eq(CHANGELOG), eq(3), eq("user_1"), any(byte[].class));
+        assertThat(store.get(3, "user_1").transactions()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldDropLostPartitionsWithoutWritingThem() {
+        UserProfileStore store = store();
+        store.update(0, transaction("user_1", "US"));
+
+        store.onPartitionsLost(List.of(TRANSACTIONS_0));
+
+        assertThat(store.get(0, "user_1")).isEqualTo(UserProfile.EMPTY);
+        assertThat(stateDir.resolve("transactions-0.snapshot")).doesNotExist();
+        verify(changelogTemplate, never()).send(anyString(), anyInt(), anyString(), any(byte[].class));
+    }
+
+    private UserProfileStore store() {
+        return store(locationProfiler(), amountProfiler());
+    }
+
+    private UserProfileStore store(LocationProfiler locationProfiler, AmountProfiler amountProfiler) {
+        return store(locationProfiler, amountProfiler, hourOfDayProfiler);
+    }
+
+    private UserProfileStore store(LocationProfiler locationProfiler, AmountProfiler amountProfiler,
+                                   HourOfDayProfiler hourOfDayProfiler) {
+        UserProfileStore store = new UserProfileStore(changelogTemplate, consumerFactory, locationProfiler,
+                amountProfiler, hourOfDayProfiler, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "stateDir", stateDir);
+        ReflectionTestUtils.setField(store, "transactionsTopic", "transactions");
+        ReflectionTestUtils.setField(store, "changelogTopic", CHANGELOG);
+        ReflectionTestUtils.setField(store, "restoreTimeoutMs", 5000L);
+        return store;
+    }
+
+    private FraudRuleEngine ruleEngine(LocationProfiler locationProfiler, AmountProfiler amountProfiler) {
+        CurrencyNormalizer normalizer = new CurrencyNormalizer();
+        ReflectionTestUtils.setField(normalizer, "baseCurrency", "USD");
+        ReflectionTestUtils.setField(normalizer, "configuredRates", "EUR=1.08");
+        normalizer.init();
+        RuleFactory ruleFactory = new RuleFactory(velocityTracker, locationProfiler, hourOfDayProfiler,
+                amountProfiler, normalizer);
+        FraudRuleEngine engine = new FraudRuleEngine(ruleFactory, new SimpleMeterRegistry(),
+                new DefaultResourceLoader());
+        ReflectionTestUtils.setField(engine, "location", "classpath:fraud-rules.yml");
+        ReflectionTestUtils.setField(engine, "shortCircuitAt", FraudAlert.RiskLevel.CRITICAL);
+        engine.init();
+        return engine;
+    }
+
+    private static LocationProfiler locationProfiler() {
+        LocationProfiler profiler = new LocationProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "halfLifeDays", 30.0);
+        ReflectionTestUtils.setField(profiler, "minHistory", 5.0);
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", 1000);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+
+    private HourOfDayProfiler hourOfDayProfiler(String dir) throws IOException {
+        HourOfDayProfiler profiler = new HourOfDayProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "dir", stateDir.resolve(dir));
+        ReflectionTestUtils.setField(profiler, "halfLifeDays", 60.0);
+        ReflectionTestUtils.setField(profiler, "minHistory", 20.0);
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", 1000);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+
+    private static AmountProfiler amountProfiler() {
+        AmountProfiler profiler = new AmountProfiler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "enabled", true);
+        ReflectionTestUtils.setField(profiler, "alphaShift", 4);
+        ReflectionTestUtils.setField(profiler, "minHistory", 5);
+        ReflectionTestUtils.setField(profiler, "deviations", 6.0);
+        ReflectionTestUtils.setField(profiler, "minDeviationRatio", 0.25);
+        ReflectionTestUtils.setField(profiler, "minAmount", new BigDecimal("100.00"));
+        ReflectionTestUtils.setField(profiler, "retentionDays", 180);
+        ReflectionTestUtils.setField(profiler, "maxUsers", 1000);
+        ReflectionTestUtils.setField(profiler, "shardCount", 1);
+        profiler.init();
+        return profiler;
+    }
+
+    private MockConsumer<String, byte[]> changelog(long endOffset) {
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateBeginningOffsets(Map.of(CHANGELOG_0, 0L));
+        consumer.updateEndOffsets(Map.of(CHANGELOG_0, endOffset));
+        when(consumerFactory.createConsumer()).thenReturn(consumer);
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String userId, byte[] profile) {
+        return new ConsumerRecord<>(CHANGELOG, 0, offset, userId, profile);
+    }
+
+    private static Transaction transaction(String userId, String country) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId(userId)
+                .amount(new BigDecimal("25.00"))
+                .currency("USD")
+                .merchant("Test Merchant")
+                .type(Transaction.TransactionType.PAYMENT)
+                .location(Transaction.Location.builder().city("Somewhere").country(country).build())
+                .timestamp(NOW)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.transaction.fraud.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntOpenHashMapTest {
+
+    @Test
+    void shouldPutGetAndRemoveIncludingZeroKey() {
+        LongIntOpenHashMap map = new LongIntOpenHashMap(4, -1);
+
+        assertThat(map.put(0L, 7)).isEqualTo(-1);
+        assertThat(map.put(42L, 1)).isEqualTo(-1);
+        assertThat(map.put(42L, 2)).isEqualTo(1);
+
+        assertThat(map.get(0L)).isEqualTo(7);
+        assertThat(map.get(42L)).isEqualTo(2);
+        assertThat(map.get(43L)).isEqualTo(-1);
+        assertThat(map.size()).isEqualTo(2);
+
+        assertThat(map.remove(0L)).isEqualTo(7);
+        assertThat(map.remove(42L)).isEqualTo(2);
+        assertThat(map.remove(42L)).isEqualTo(-1);
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    void shouldMatchHashMapUnderRandomChurn() {
+        LongIntOpenHashMap map = new LongIntOpenHashMap(16, -1);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(11);
+
+        // A small key space forces long probe runs, growth and back-shifting removals
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                Integer expected = reference.remove(key);
+                assertThat(map.remove(key)).isEqualTo(expected == null ? -1 : expected);
+            } else {
+                Integer expected = reference.put(key, i);
+                assertThat(map.put(key, i)).isEqualTo(expected == null ? -1 : expected);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(reference.size());
+        for (long key = -2_500; key < 2_500; key++) {
+            assertThat(map.get(key)).isEqualTo(reference.getOrDefault(key, -1));
+        }
+    }
+}
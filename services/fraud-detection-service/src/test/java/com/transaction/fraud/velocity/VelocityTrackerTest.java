@@ -0,0 +1,123 @@
+package com.transaction.fraud.velocity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VelocityTrackerTest {
+
+    private static final Instant NOW = Instant.parse("2026-02-07T12:00:00Z");
+
+    private VelocityTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = tracker(16);
+    }
+
+    @Test
+    void shouldCountTransactionsAndAmountWithinWindow() {
+        for (int i = 0; i < 3; i++) {
+            tracker.record("user_1", NOW.plusSeconds(i), 10_000L);
+        }
+
+        VelocityTracker.Window window = tracker.record("user_1", NOW.plusSeconds(3), 50L);
+
+        assertThat(window.transactions()).isEqualTo(4);
+        assertThat(window.amountMinorUnits()).isEqualTo(30050);
+        assertThat(window.exceeded()).isFalse();
+        assertThat(tracker.record("user_2", NOW, 100L).transactions()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExpireTransactionsOlderThanWindow() {
+        tracker.record("user_1", NOW, 10_000L);
+        tracker.record("user_1", NOW.plusSeconds(30), 20_000L);
+
+        VelocityTracker.Window window = tracker.record("user_1", NOW.plusSeconds(61), 500L);
+
+        assertThat(window.transactions()).isEqualTo(2);
+        assertThat(window.amountMinorUnits()).isEqualTo(20500);
+    }
+
+    @Test
+    void shouldPeekAtWindowWithoutAddingToIt() {
+        tracker.record("user_1", NOW, 10_000L);
+        tracker.record("user_1", NOW.plusSeconds(30), 995_000L);
+
+        VelocityTracker.Window window = tracker.peek("user_1", NOW.plusSeconds(40));
+        assertThat(window.transactions()).isEqualTo(2);
+        assertThat(window.amountMinorUnits()).isEqualTo(1_005_000);
+        assertThat(window.exceeded()).isTrue();
+
+        assertThat(tracker.peek("user_1", NOW.plusSeconds(61)).amountMinorUnits()).isEqualTo(995_000);
+        assertThat(tracker.peek("user_2", NOW).transactions()).isZero();
+        assertThat(tracker.record("user_1", NOW.plusSeconds(41), 100L).transactions()).isEqualTo(3);
+        assertThat(tracker.trackedUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFlagTooManyTransactions() {
+        VelocityTracker.Window window = null;
+        for (int i = 0; i <= 10; i++) {
+            window = tracker.record("user_1", NOW, 100L);
+            assertThat(window.exceeded()).isEqualTo(i == 10);
+        }
+
+        // The ring keeps max-transactions + 1 entries, so the count saturates above the limit
+        window = tracker.record("user_1", NOW, 100L);
+        assertThat(window.transactions()).isEqualTo(11);
+        assertThat(window.exceeded()).isTrue();
+    }
+
+    @Test
+    void shouldFlagTooMuchAmount() {
+        tracker.record("user_1", NOW, 900_000L);
+
+        assertThat(tracker.record("user_1", NOW.plusSeconds(1), 100_000L).exceeded()).isFalse();
+        assertThat(tracker.record("user_1", NOW.plusSeconds(2), 1L).exceeded()).isTrue();
+    }
+
+    @Test
+    void shouldReclaimIdleUsersWhenFull() {
+        // One shard of 16 users: the 17th new user fits only once the first 16 have gone idle
+        for (int i = 0; i < 16; i++) {
+            tracker.record("user_" + i, NOW, 100L);
+        }
+        tracker.record("user_0", NOW.plusSeconds(100), 100L);
+
+        tracker.record("user_new", NOW.plusSeconds(100), 100L);
+
+        assertThat(tracker.trackedUsers()).isEqualTo(2);
+        assertThat(tracker.record("user_0", NOW.plusSeconds(101), 100L).transactions()).isEqualTo(2);
+        assertThat(tracker.record("user_1", NOW.plusSeconds(101), 100L).transactions()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictUsersIdleLongerThanWindow() {
+        tracker.record("user_1", Instant.now().minusSeconds(120), 100L);
+        tracker.record("user_2", Instant.now(), 100L);
+
+        tracker.evictIdle();
+
+        assertThat(tracker.trackedUsers()).isEqualTo(1);
+    }
+
+    private static VelocityTracker tracker(int maxUsers) {
+        VelocityTracker tracker = new VelocityTracker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "windowSeconds", 60);
+        ReflectionTestUtils.setField(tracker, "maxTransactions", 10);
+        ReflectionTestUtils.setField(tracker, "maxAmount", new BigDecimal("10000.00"));
+        ReflectionTestUtils.setField(tracker, "maxUsers", maxUsers);
+        ReflectionTestUtils.setField(tracker, "shardCount", 1);
+        tracker.init();
+        return tracker;
+    }
+}
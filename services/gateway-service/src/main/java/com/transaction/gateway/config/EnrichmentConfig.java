@@ -0,0 +1,32 @@
+package com.transaction.gateway.config;
+
+import com.transaction.gateway.enrichment.GeoEnricher;
+import com.transaction.gateway.enrichment.MerchantCategoryEnricher;
+import com.transaction.gateway.enrichment.ReloadableLookup;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+@Configuration
+public class EnrichmentConfig {
+
+    @Value("${gateway.enrichment.merchant-catalog:classpath:enrichment/merchant-catalog.csv}")
+    private String merchantCatalogLocation;
+
+    @Value("${gateway.enrichment.city-country:classpath:enrichment/city-country.csv}")
+    private String cityCountryLocation;
+
+    @Bean
+    public MerchantCategoryEnricher merchantCategoryEnricher(ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        return new MerchantCategoryEnricher(new ReloadableLookup("merchant-catalog",
+                resourceLoader.getResource(merchantCatalogLocation), meterRegistry));
+    }
+
+    @Bean
+    public GeoEnricher geoEnricher(ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        return new GeoEnricher(new ReloadableLookup("city-country",
+                resourceLoader.getResource(cityCountryLocation), meterRegistry));
+    }
+}
@@ -1,8 +1,12 @@
 package com.transaction.gateway.config;
 
 import com.transaction.models.Transaction;
+import com.transaction.models.serde.BinarySerializer;
+import com.transaction.models.serde.TransactionCodec;
+import com.transaction.models.serde.WireFormat;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -25,20 +29,31 @@ public class KafkaProducerConfig {
     @Value("${kafka.topic.transactions:transactions}")
     private String transactionsTopic;
 
+    @Value("${kafka.producer.max-block-ms:10000}")
+    private long maxBlockMs;
+
+    @Value("${kafka.wire-format:json}")
+    private String wireFormat;
+
     @Bean
     public ProducerFactory<String, Transaction> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "1");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.LINGER_MS_CONFIG, 10);
         configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 1048576);
         configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
         configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 67108864);
+        // Also bounds metadata fetches, so it must cover a cold start or a leader move. Backpressure does not rely
+        // on it: TransactionProducerService sheds load at its in-flight high-water mark, below buffer.memory
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
         configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
-        return new DefaultKafkaProducerFactory<>(configProps);
+
+        Serializer<Transaction> valueSerializer = WireFormat.of(wireFormat) == WireFormat.BINARY
+                ? new BinarySerializer<>(TransactionCodec.INSTANCE)
+                : new JsonSerializer<>();
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
     }
 
     @Bean
@@ -0,0 +1,18 @@
+package com.transaction.gateway.config;
+
+import com.transaction.gateway.response.TransactionResponseConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Ahead of Jackson so single-transaction responses skip reflective serialization
+        converters.add(0, new TransactionResponseConverter());
+    }
+}
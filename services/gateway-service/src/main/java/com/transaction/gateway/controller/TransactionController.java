@@ -1,15 +1,29 @@
 package com.transaction.gateway.controller;
 
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transaction.gateway.response.TransactionResponse;
 import com.transaction.gateway.service.TransactionService;
+import com.transaction.gateway.service.TransactionStreamService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import com.transaction.models.Transaction;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -18,15 +32,98 @@ import java.util.Map;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final TransactionStreamService transactionStreamService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${gateway.batch.max-size:1000}")
+    private int maxBatchSize;
 
     @PostMapping
-    public ResponseEntity<Map<String, Object>> submitTransaction(@Valid @RequestBody Transaction transaction) {
-        Map<String, Object> response = transactionService.processTransaction(transaction);
-        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    public ResponseEntity<TransactionResponse> submitTransaction(@Valid @RequestBody Transaction transaction) {
+        TransactionResponse response = transactionService.processTransaction(transaction);
+        return toResponseEntity(response);
+    }
+
+    @PostMapping(params = "ack=broker")
+    public CompletableFuture<ResponseEntity<TransactionResponse>> submitTransactionWithBrokerAck(
+            @Valid @RequestBody Transaction transaction) {
+        return transactionService.processTransactionWithBrokerAck(transaction)
+                .thenApply(this::toResponseEntity);
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> submitBatch(@RequestBody List<Transaction> transactions) {
+        return processBatch(transactions);
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Map<String, Object>> submitNdjsonBatch(HttpServletRequest request) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        // Bound line by line from the request stream; stop one past the limit and leave the rest unread
+        try (MappingIterator<Transaction> iterator = objectMapper.readerFor(Transaction.class)
+                .readValues(request.getInputStream())) {
+            while (transactions.size() <= maxBatchSize && iterator.hasNextValue()) {
+                transactions.add(iterator.nextValue());
+            }
+        } catch (JacksonException e) {
+            log.warn("Malformed NDJSON batch: {}", e.getOriginalMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "ERROR", "message", "Malformed NDJSON body"));
+        }
+        return processBatch(transactions);
+    }
+
+    @PostMapping(path = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void submitStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Results are written per line while the upload is still being read, so the status is committed up front
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        transactionStreamService.ingest(request.getInputStream(), response.getOutputStream());
     }
 
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> health() {
         return ResponseEntity.ok(Map.of("status", "UP", "service", "gateway-service"));
     }
+
+    private ResponseEntity<TransactionResponse> toResponseEntity(TransactionResponse response) {
+        HttpStatus status = switch (response.status()) {
+            case RATE_LIMITED -> HttpStatus.TOO_MANY_REQUESTS;
+            case UNAVAILABLE -> HttpStatus.SERVICE_UNAVAILABLE;
+            default -> HttpStatus.ACCEPTED;
+        };
+        if (response.hasRetryAfter()) {
+            return ResponseEntity.status(status)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(response.retryAfterSeconds()))
+                    .body(response);
+        }
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> toResponseEntity(Map<String, Object> response) {
+        HttpStatus status = switch (String.valueOf(response.get("status"))) {
+            case "RATE_LIMITED" -> HttpStatus.TOO_MANY_REQUESTS;
+            case "UNAVAILABLE" -> HttpStatus.SERVICE_UNAVAILABLE;
+            default -> HttpStatus.ACCEPTED;
+        };
+        if (response.containsKey("retryAfterSeconds")) {
+            return ResponseEntity.status(status)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(response.get("retryAfterSeconds")))
+                    .body(response);
+        }
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> processBatch(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("status", "ERROR", "message", "Batch must contain at least one transaction"));
+        }
+        if (transactions.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("status", "ERROR", "message", "Batch exceeds " + maxBatchSize + " transactions"));
+        }
+        Map<String, Object> response = transactionService.processBatch(transactions);
+        return toResponseEntity(response);
+    }
 }
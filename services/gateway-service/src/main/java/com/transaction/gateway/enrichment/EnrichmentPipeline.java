@@ -0,0 +1,36 @@
+package com.transaction.gateway.enrichment;
+
+import com.transaction.models.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EnrichmentPipeline {
+
+    // Sorted by @Order when injected
+    private final List<TransactionEnricher> enrichers;
+
+    public void enrich(Transaction transaction) {
+        for (int i = 0; i < enrichers.size(); i++) {
+            enrichers.get(i).enrich(transaction);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.enrichment.refresh-interval-ms:30000}",
+            initialDelayString = "${gateway.enrichment.refresh-interval-ms:30000}")
+    public void refresh() {
+        for (TransactionEnricher enricher : enrichers) {
+            try {
+                enricher.refresh();
+            } catch (RuntimeException e) {
+                log.error("Failed to refresh {}", enricher.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
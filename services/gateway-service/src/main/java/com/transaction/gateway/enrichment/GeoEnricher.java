@@ -0,0 +1,37 @@
+package com.transaction.gateway.enrichment;
+
+import com.transaction.models.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Resolves a missing country from the city. A transaction without a location keeps none: a
+ * placeholder country would read downstream as an anomaly rather than as missing data.
+ */
+@Order(200)
+@RequiredArgsConstructor
+public class GeoEnricher implements TransactionEnricher {
+
+    private final ReloadableLookup cityCountryTable;
+
+    @Override
+    public void enrich(Transaction transaction) {
+        Transaction.Location location = transaction.getLocation();
+        if (location == null || location.getCity() == null || !isBlank(location.getCountry())) {
+            return;
+        }
+        String country = cityCountryTable.get(location.getCity());
+        if (country != null) {
+            location.setCountry(country);
+        }
+    }
+
+    @Override
+    public void refresh() {
+        cityCountryTable.reloadIfModified();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,145 @@
+package com.transaction.gateway.enrichment;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable case-insensitive {@code name -> value} table for reference data.
+ * <p>
+ * Keys are stored only as 64-bit hashes of the trimmed, lower-cased name in an open-addressing
+ * {@code long[]} at most half full; each slot points into a de-duplicated {@code String[]} of values.
+ * A lookup hashes the caller's {@link CharSequence} in place and probes a couple of slots, so it
+ * neither allocates nor touches a {@code String} key. Two names colliding on all 64 bits are
+ * indistinguishable, which at reference-data sizes is far below any other source of error.
+ */
+public final class LookupTable {
+
+    private static final LookupTable EMPTY = of(Map.of());
+
+    private final long[] keys;
+    private final int[] valueIndexes;
+    private final String[] values;
+    private final int mask;
+    private final int size;
+
+    private LookupTable(long[] keys, int[] valueIndexes, String[] values, int size) {
+        this.keys = keys;
+        this.valueIndexes = valueIndexes;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    public static LookupTable empty() {
+        return EMPTY;
+    }
+
+    public static LookupTable of(Map<String, String> entries) {
+        int capacity = Integer.highestOneBit(Math.max(2, entries.size()) * 2 - 1) << 1;
+        long[] keys = new long[capacity];
+        int[] valueIndexes = new int[capacity];
+        Map<String, Integer> distinctValues = new LinkedHashMap<>();
+        int mask = capacity - 1;
+        int size = 0;
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            long hash = hash(entry.getKey());
+            Integer valueIndex = distinctValues.computeIfAbsent(entry.getValue(), value -> distinctValues.size());
+            int slot = (int) hash & mask;
+            while (keys[slot] != 0 && keys[slot] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                size++;
+            }
+            keys[slot] = hash;
+            valueIndexes[slot] = valueIndex;
+        }
+        return new LookupTable(keys, valueIndexes, distinctValues.keySet().toArray(String[]::new), size);
+    }
+
+    /**
+     * Reads {@code name,value} lines. Blank lines and lines starting with {@code #} are skipped;
+     * the value is everything after the last comma, so names may contain commas. Later lines win.
+     */
+    public static LookupTable load(InputStream input) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int comma = trimmed.lastIndexOf(',');
+            String name = comma < 0 ? "" : trimmed.substring(0, comma).strip();
+            String value = comma < 0 ? "" : trimmed.substring(comma + 1).strip();
+            if (name.isEmpty() || value.isEmpty()) {
+                throw new IOException("Malformed lookup entry on line " + lineNumber + ": " + line);
+            }
+            entries.put(name, value.intern());
+        }
+        return of(entries);
+    }
+
+    /**
+     * Returns the value for {@code name}, ignoring case and surrounding whitespace, or {@code null}.
+     */
+    public String get(CharSequence name) {
+        if (name == null) {
+            return null;
+        }
+        long hash = hash(name);
+        int slot = (int) hash & mask;
+        long key;
+        while ((key = keys[slot]) != 0) {
+            if (key == hash) {
+                return values[valueIndexes[slot]];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // FNV-1a over the trimmed, lower-cased chars, finalised with the MurmurHash3 mixer; never 0
+    static long hash(CharSequence name) {
+        int start = 0;
+        int end = name.length();
+        while (start < end && Character.isWhitespace(name.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(name.charAt(end - 1))) {
+            end--;
+        }
+
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c | 0x20);
+            } else if (c >= 0x80) {
+                c = Character.toLowerCase(c);
+            }
+            h = (h ^ c) * 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,29 @@
+package com.transaction.gateway.enrichment;
+
+import com.transaction.models.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+
+// Fills a missing merchantCategory from the merchant catalog; client-supplied categories are kept
+@Order(100)
+@RequiredArgsConstructor
+public class MerchantCategoryEnricher implements TransactionEnricher {
+
+    static final String DEFAULT_CATEGORY = "GENERAL";
+
+    private final ReloadableLookup merchantCatalog;
+
+    @Override
+    public void enrich(Transaction transaction) {
+        if (transaction.getMerchantCategory() != null) {
+            return;
+        }
+        String category = merchantCatalog.get(transaction.getMerchant());
+        transaction.setMerchantCategory(category != null ? category : DEFAULT_CATEGORY);
+    }
+
+    @Override
+    public void refresh() {
+        merchantCatalog.reloadIfModified();
+    }
+}
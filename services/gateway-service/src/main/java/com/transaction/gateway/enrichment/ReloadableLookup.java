@@ -0,0 +1,106 @@
+package com.transaction.gateway.enrichment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link LookupTable} loaded from a file and replaced wholesale when the file changes.
+ * <p>
+ * Readers take whatever snapshot the volatile field holds; a reload builds the new table off to the
+ * side and publishes it with a single write, so lookups never lock or see a half-built table. A file
+ * that is missing or fails to parse leaves the current snapshot in place.
+ */
+@Slf4j
+public class ReloadableLookup {
+
+    private final String name;
+    private final Resource resource;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile LookupTable table = LookupTable.empty();
+    private long loadedLastModified = Long.MIN_VALUE;
+    private boolean reportedMissing;
+
+    public ReloadableLookup(String name, Resource resource, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.resource = resource;
+        this.hits = Counter.builder("gateway.enrichment.lookups")
+                .description("Reference data lookups during enrichment")
+                .tag("table", name)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("gateway.enrichment.lookups")
+                .description("Reference data lookups during enrichment")
+                .tag("table", name)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("gateway.enrichment.entries", this, lookup -> lookup.table.size())
+                .description("Entries in the current reference data snapshot")
+                .tag("table", name)
+                .register(meterRegistry);
+        reloadIfModified();
+    }
+
+    public String get(CharSequence key) {
+        String value = table.get(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Reloads the table when the file's modification time differs from the loaded one.
+     */
+    public synchronized boolean reloadIfModified() {
+        long lastModified;
+        try {
+            if (!resource.exists()) {
+                if (!reportedMissing) {
+                    log.warn("Enrichment table {} not found at {}; keeping {} entries", name, resource,
+                            table.size());
+                    reportedMissing = true;
+                }
+                return false;
+            }
+            reportedMissing = false;
+            lastModified = lastModified();
+            if (lastModified == loadedLastModified) {
+                return false;
+            }
+            try (InputStream input = resource.getInputStream()) {
+                table = LookupTable.load(input);
+            }
+        } catch (IOException e) {
+            log.error("Failed to load enrichment table {} from {}; keeping {} entries", name, resource,
+                    table.size(), e);
+            return false;
+        }
+
+        loadedLastModified = lastModified;
+        log.info("Loaded enrichment table {}: {} entries from {}", name, table.size(), resource);
+        return true;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    private long lastModified() {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            // In-memory and some jar resources have no timestamp: load once, then keep
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.transaction.gateway.enrichment;
+
+import com.transaction.models.Transaction;
+
+/**
+ * One stage of ingest enrichment. Stages run in {@link org.springframework.core.annotation.Order}
+ * on every accepted transaction, on the request thread, so they must not block.
+ */
+public interface TransactionEnricher {
+
+    void enrich(Transaction transaction);
+
+    // Picks up changed reference data; called periodically from the scheduler thread
+    default void refresh() {
+    }
+}
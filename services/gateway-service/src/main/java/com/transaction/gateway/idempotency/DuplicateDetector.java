@@ -0,0 +1,240 @@
+package com.transaction.gateway.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Suppresses replays of client-supplied transaction ids within {@code window-seconds}.
+ * <p>
+ * A local rotating Bloom filter answers "never seen" without I/O. Only a positive goes to Redis,
+ * where {@code idempotency:<id>} confirms it, so a Bloom false positive costs one round trip and
+ * never rejects a new transaction. Ids claimed by this pod are recorded in Redis asynchronously
+ * in pipelined batches; until then the pending set answers for them.
+ * <p>
+ * In {@code strict} mode, the default, every claim is also a synchronous {@code SET NX}, so a retry is
+ * caught whichever pod it lands on. With {@code strict} off the Bloom filter and the pending set only know
+ * this pod's ids, and other pods only see them once a flush has written them: a retry that reaches another
+ * pod within a flush interval, or any retry while Redis writes fail, is accepted again. Non-strict mode
+ * only reliably suppresses replays to the same pod. Redis failures fail open.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DuplicateDetector {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final byte[] MARKER = "1".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    // Ids released since the current flush started; a flush may have recorded them after release() deleted the key
+    private final Set<UUID> released = ConcurrentHashMap.newKeySet();
+    private RotatingBloomFilter bloomFilter;
+    private Counter duplicates;
+    private Counter bloomPositives;
+    private Counter falsePositives;
+
+    @Value("${gateway.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.idempotency.strict:true}")
+    private boolean strict;
+
+    @Value("${gateway.idempotency.window-seconds:600}")
+    private long windowSeconds;
+
+    @Value("${gateway.idempotency.bloom.memory-bytes:16777216}")
+    private long memoryBytes;
+
+    @Value("${gateway.idempotency.bloom.generations:4}")
+    private int generations;
+
+    @Value("${gateway.idempotency.bloom.expected-per-window:6000000}")
+    private long expectedPerWindow;
+
+    @Value("${gateway.idempotency.max-pending:100000}")
+    private int maxPending;
+
+    @PostConstruct
+    public void init() {
+        bloomFilter = new RotatingBloomFilter(memoryBytes, Math.max(2, generations), windowSeconds * 1000L,
+                expectedPerWindow, System.currentTimeMillis());
+
+        duplicates = Counter.builder("gateway.idempotency.duplicates")
+                .description("Submissions short-circuited as replays of an accepted transaction")
+                .register(meterRegistry);
+        bloomPositives = Counter.builder("gateway.idempotency.bloom.positives")
+                .description("Bloom filter hits that needed confirmation")
+                .register(meterRegistry);
+        falsePositives = Counter.builder("gateway.idempotency.bloom.false-positives")
+                .description("Bloom filter hits that Redis showed to be new transactions")
+                .register(meterRegistry);
+        Gauge.builder("gateway.idempotency.bloom.false-positive-rate", this, DuplicateDetector::observedFalsePositiveRate)
+                .description("Share of confirmed Bloom filter hits that were false positives")
+                .register(meterRegistry);
+        Gauge.builder("gateway.idempotency.bloom.expected-fpp", bloomFilter, RotatingBloomFilter::expectedFalsePositiveRate)
+                .description("False-positive probability implied by the current filter fill")
+                .register(meterRegistry);
+        Gauge.builder("gateway.idempotency.pending", pending, Set::size)
+                .description("Claimed ids not yet recorded in Redis")
+                .register(meterRegistry);
+
+        log.info("Idempotency filter: {} generations x {} bits, {} hash functions, {}s window, strict={}",
+                Math.max(2, generations), bloomFilter.bitsPerGeneration(), bloomFilter.hashFunctions(),
+                windowSeconds, strict);
+    }
+
+    public boolean isDuplicate(UUID transactionId) {
+        if (!enabled) {
+            return false;
+        }
+        if (pending.contains(transactionId)) {
+            duplicates.increment();
+            return true;
+        }
+        // Strict mode confirms new ids with SET NX in claim(), so a negative never needs Redis here
+        if (!bloomFilter.mightContain(transactionId)) {
+            return false;
+        }
+
+        bloomPositives.increment();
+        boolean seen = existsInRedis(transactionId);
+        if (seen) {
+            duplicates.increment();
+        } else {
+            falsePositives.increment();
+        }
+        return seen;
+    }
+
+    /**
+     * Marks the id as accepted. Returns false when another request claimed it first, in which case
+     * the caller must treat the submission as a duplicate.
+     */
+    public boolean claim(UUID transactionId) {
+        if (!enabled) {
+            return true;
+        }
+        if (!pending.add(transactionId)) {
+            duplicates.increment();
+            return false;
+        }
+        bloomFilter.put(transactionId);
+
+        if (strict) {
+            pending.remove(transactionId);
+            if (!setIfAbsent(transactionId)) {
+                duplicates.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Undoes a claim whose transaction never reached the producer, so a retry is not mistaken for a replay
+    public void release(UUID transactionId) {
+        if (!enabled) {
+            return;
+        }
+        pending.remove(transactionId);
+        released.add(transactionId);
+        // The key may already be recorded by a flush, whatever the mode
+        delete(List.of(transactionId));
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.idempotency.flush-interval-ms:100}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        bloomFilter.rotateIfDue(System.currentTimeMillis());
+        released.clear();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<UUID> batch = new ArrayList<>(pending);
+        Expiration ttl = Expiration.from(Duration.ofSeconds(windowSeconds));
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UUID id : batch) {
+                    connection.stringCommands().set(key(id), MARKER, ttl, RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+            batch.forEach(pending::remove);
+            log.debug("Recorded {} idempotency keys", batch.size());
+
+            // Released while the batch was in flight: the SET above landed after their DEL
+            List<UUID> undone = batch.stream().filter(released::contains).toList();
+            if (!undone.isEmpty()) {
+                delete(undone);
+            }
+        } catch (Exception e) {
+            log.warn("Recording {} idempotency keys in Redis failed: {}", batch.size(), e.getMessage());
+            if (pending.size() > maxPending) {
+                // isDuplicate() confirms Bloom hits in Redis, so replays of these ids will be let through
+                batch.forEach(pending::remove);
+                log.warn("Dropped {} unrecorded idempotency keys above max-pending", batch.size());
+            }
+        }
+    }
+
+    double observedFalsePositiveRate() {
+        double positives = bloomPositives.count();
+        return positives == 0 ? 0 : falsePositives.count() / positives;
+    }
+
+    private boolean existsInRedis(UUID transactionId) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + transactionId));
+        } catch (Exception e) {
+            log.warn("Idempotency lookup failed for {}: {}", transactionId, e.getMessage());
+            return false;
+        }
+    }
+
+    private void delete(List<UUID> ids) {
+        try {
+            redisTemplate.delete(ids.stream().map(id -> KEY_PREFIX + id).toList());
+        } catch (Exception e) {
+            log.warn("Failed to release {} idempotency keys: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    private boolean setIfAbsent(UUID transactionId) {
+        try {
+            Boolean set = redisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + transactionId, "1", Duration.ofSeconds(windowSeconds));
+            return !Boolean.FALSE.equals(set);
+        } catch (Exception e) {
+            log.warn("Idempotency claim failed for {}: {}", transactionId, e.getMessage());
+            return true;
+        }
+    }
+
+    private static byte[] key(UUID id) {
+        return (KEY_PREFIX + id).getBytes(StandardCharsets.UTF_8);
+    }
+}
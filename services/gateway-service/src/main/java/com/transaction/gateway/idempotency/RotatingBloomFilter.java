@@ -0,0 +1,76 @@
+package com.transaction.gateway.idempotency;
+
+import java.util.UUID;
+
+/**
+ * Time-bucketed Bloom filter: {@code generations} filters, each receiving inserts for one slice of
+ * the window. Lookups consult all of them; when a slice ends the oldest filter is cleared and
+ * becomes the current one, so entries age out after between {@code window * (generations - 1) /
+ * generations} and {@code window}.
+ */
+final class RotatingBloomFilter {
+
+    private final BloomFilter[] filters;
+    private final long sliceMillis;
+    private volatile int current;
+    private volatile long currentSlice;
+
+    RotatingBloomFilter(long memoryBytes, int generations, long windowMillis, long expectedPerWindow, long nowMillis) {
+        this.filters = new BloomFilter[generations];
+        this.sliceMillis = Math.max(1, windowMillis / generations);
+
+        long bitsPerFilter = Math.max(64, memoryBytes * 8 / generations);
+        double insertsPerFilter = Math.max(1, (double) expectedPerWindow / generations);
+        // Optimal k = (m / n) ln 2, capped because every extra probe is another cache miss
+        int hashFunctions = (int) Math.max(1, Math.min(16, Math.round(bitsPerFilter / insertsPerFilter * Math.log(2))));
+        for (int i = 0; i < generations; i++) {
+            filters[i] = new BloomFilter(bitsPerFilter, hashFunctions);
+        }
+        this.currentSlice = nowMillis / sliceMillis;
+    }
+
+    boolean mightContain(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        for (BloomFilter filter : filters) {
+            if (filter.mightContain(msb, lsb)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void put(UUID id) {
+        filters[current].put(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    synchronized void rotateIfDue(long nowMillis) {
+        long slice = nowMillis / sliceMillis;
+        long elapsed = Math.min(slice - currentSlice, filters.length);
+        for (long i = 0; i < elapsed; i++) {
+            int next = (current + 1) % filters.length;
+            filters[next].clear();
+            current = next;
+        }
+        if (elapsed > 0) {
+            currentSlice = slice;
+        }
+    }
+
+    double expectedFalsePositiveRate() {
+        // Union of independent filters: 1 - product of (1 - p_i)
+        double allMiss = 1.0;
+        for (BloomFilter filter : filters) {
+            allMiss *= 1.0 - filter.expectedFalsePositiveRate();
+        }
+        return 1.0 - allMiss;
+    }
+
+    int hashFunctions() {
+        return filters[0].hashFunctions();
+    }
+
+    long bitsPerGeneration() {
+        return filters[0].bitCount();
+    }
+}
@@ -0,0 +1,118 @@
+package com.transaction.gateway.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process rate limiting tier. Every pod spends its share of the global budget
+ * ({@code max-requests / expected-pods} per window) from per-user token buckets and
+ * reports consumed permits to Redis asynchronously. When the reconciled global count
+ * of a user crosses {@code max-requests}, the user is blocked locally until the window ends.
+ * <p>
+ * Over-admission bound: a user can exceed {@code max-requests} in a window only by what the
+ * pods admit between crossing the limit and the next reconciliation, i.e. at most
+ * {@code expected-pods} full local buckets (one extra {@code max-requests}) plus the refill
+ * of a single sync interval.
+ * While Redis is unreachable the local buckets alone keep the limit in force.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocalRateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:local:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    @Value("${ratelimit.max-requests:1000}")
+    private int maxRequests;
+
+    @Value("${ratelimit.window-seconds:60}")
+    private int windowSeconds;
+
+    @Value("${ratelimit.local.expected-pods:1}")
+    private int expectedPods;
+
+    public RateLimitDecision tryAcquire(String userId, int permits) {
+        long nowNanos = System.nanoTime();
+        TokenBucket bucket = buckets.computeIfAbsent(userId, id -> newBucket(nowNanos));
+        return bucket.tryAcquire(permits, nowNanos, System.currentTimeMillis());
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimit.local.sync-interval-ms:500}")
+    public void reconcile() {
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        long windowMillis = windowSeconds * 1000L;
+        long window = nowMillis / windowMillis;
+
+        List<String> userIds = new ArrayList<>();
+        List<TokenBucket> consumedBuckets = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        buckets.forEach((userId, bucket) -> {
+            int consumed = bucket.drainUnsyncedPermits();
+            if (consumed > 0) {
+                userIds.add(userId);
+                consumedBuckets.add(bucket);
+                deltas.add(consumed);
+            } else if (bucket.isIdle(nowNanos, nowMillis)) {
+                // Full and unblocked buckets carry no state worth keeping
+                buckets.remove(userId, bucket);
+            }
+        });
+
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < userIds.size(); i++) {
+                    incrementWindow(connection, KEY_PREFIX + userIds.get(i) + ":" + window, deltas.get(i));
+                }
+                return null;
+            });
+
+            for (int i = 0; i < userIds.size(); i++) {
+                Object total = results.get(i * 2);
+                if (total instanceof Long count && count > maxRequests) {
+                    consumedBuckets.get(i).blockUntil((window + 1) * windowMillis);
+                    log.warn("Global rate limit exceeded for user: {} (count: {})", userIds.get(i), count);
+                }
+            }
+            log.debug("Reconciled local rate limits for {} users", userIds.size());
+        } catch (Exception e) {
+            // Deltas of this round are dropped; local buckets keep enforcing the per-pod share
+            log.warn("Rate limit reconciliation with Redis failed for {} users: {}", userIds.size(), e.getMessage());
+        }
+    }
+
+    int trackedUsers() {
+        return buckets.size();
+    }
+
+    private void incrementWindow(RedisConnection connection, String key, long delta) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        connection.stringCommands().incrBy(rawKey, delta);
+        // Window keys are per window index, so refreshing the TTL never extends a window
+        connection.keyCommands().expire(rawKey, windowSeconds * 2L);
+    }
+
+    private TokenBucket newBucket(long nowNanos) {
+        double capacity = Math.max(1, maxRequests / Math.max(1, expectedPods));
+        double refillPerNano = capacity / (windowSeconds * 1_000_000_000.0);
+        return new TokenBucket(capacity, refillPerNano, nowNanos);
+    }
+}
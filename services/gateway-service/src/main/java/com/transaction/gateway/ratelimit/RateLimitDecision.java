@@ -0,0 +1,16 @@
+package com.transaction.gateway.ratelimit;
+
+public record RateLimitDecision(int requested, int granted, long remaining, long retryAfterMillis) {
+
+    public static RateLimitDecision unlimited(int permits) {
+        return new RateLimitDecision(permits, permits, -1, 0);
+    }
+
+    public boolean allowed() {
+        return granted >= requested;
+    }
+
+    public long retryAfterSeconds() {
+        return Math.max(1, (retryAfterMillis + 999) / 1000);
+    }
+}
@@ -0,0 +1,59 @@
+package com.transaction.gateway.ratelimit;
+
+class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private int unsyncedPermits;
+    private long blockedUntilMillis;
+
+    TokenBucket(double capacity, double refillPerNano, long nowNanos) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerNano;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    synchronized RateLimitDecision tryAcquire(int permits, long nowNanos, long nowMillis) {
+        if (nowMillis < blockedUntilMillis) {
+            return new RateLimitDecision(permits, 0, 0, blockedUntilMillis - nowMillis);
+        }
+        refill(nowNanos);
+        int granted = (int) Math.min(permits, Math.floor(tokens));
+        tokens -= granted;
+        unsyncedPermits += granted;
+
+        long retryAfterMillis = 0;
+        if (granted < permits) {
+            // Time until the next whole token is available
+            retryAfterMillis = (long) Math.ceil((1 - tokens) / refillPerNano / 1_000_000);
+        }
+        return new RateLimitDecision(permits, granted, (long) Math.floor(tokens), retryAfterMillis);
+    }
+
+    synchronized int drainUnsyncedPermits() {
+        int permits = unsyncedPermits;
+        unsyncedPermits = 0;
+        return permits;
+    }
+
+    synchronized void blockUntil(long millis) {
+        blockedUntilMillis = Math.max(blockedUntilMillis, millis);
+    }
+
+    synchronized boolean isIdle(long nowNanos, long nowMillis) {
+        refill(nowNanos);
+        return unsyncedPermits == 0 && tokens >= capacity && nowMillis >= blockedUntilMillis;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * refillPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
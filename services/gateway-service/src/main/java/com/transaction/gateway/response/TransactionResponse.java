@@ -0,0 +1,84 @@
+package com.transaction.gateway.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Result of a single transaction submission. Outcomes are a closed set, so their status and
+ * message are encoded once and {@link TransactionResponseConverter} writes them as raw bytes.
+ */
+@JsonPropertyOrder({"transactionId", "status", "message", "retryAfterSeconds"})
+public record TransactionResponse(
+        UUID transactionId,
+        @JsonIgnore Outcome outcome,
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT) long retryAfterSeconds) {
+
+    public enum Status {
+        ACCEPTED,
+        RATE_LIMITED,
+        UNAVAILABLE,
+        ERROR
+    }
+
+    public enum Outcome {
+        SUBMITTED(Status.ACCEPTED, "Transaction submitted for processing"),
+        ACKNOWLEDGED(Status.ACCEPTED, "Transaction acknowledged by broker"),
+        DUPLICATE(Status.ACCEPTED, "Transaction already submitted"),
+        RATE_LIMITED(Status.RATE_LIMITED, "Rate limit exceeded. Please try again later."),
+        SHEDDING_LOAD(Status.UNAVAILABLE, "Gateway is shedding load. Please try again later."),
+        FAILED(Status.ERROR, "Failed to submit transaction"),
+        NOT_ACKNOWLEDGED(Status.ERROR, "Transaction was not acknowledged by the broker");
+
+        private final Status status;
+        private final String message;
+        private final byte[] encoded;
+
+        Outcome(Status status, String message) {
+            this.status = status;
+            this.message = message;
+            // Messages are plain ASCII without characters that need JSON escaping
+            this.encoded = (",\"status\":\"" + status + "\",\"message\":\"" + message + "\"")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        public String message() {
+            return message;
+        }
+
+        byte[] encoded() {
+            return encoded;
+        }
+    }
+
+    public static TransactionResponse of(UUID transactionId, Outcome outcome) {
+        return new TransactionResponse(transactionId, outcome, 0);
+    }
+
+    public static TransactionResponse retryLater(UUID transactionId, Outcome outcome, long retryAfterSeconds) {
+        return new TransactionResponse(transactionId, outcome, retryAfterSeconds);
+    }
+
+    @JsonProperty
+    public Status status() {
+        return outcome.status();
+    }
+
+    @JsonProperty
+    public String message() {
+        return outcome.message();
+    }
+
+    @JsonIgnore
+    public boolean hasRetryAfter() {
+        return retryAfterSeconds > 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.transaction.gateway.response;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Writes {@link TransactionResponse} straight to the response stream from pre-encoded fragments,
+ * bypassing Jackson's reflective serialization. Output is identical to what Jackson produces.
+ */
+public class TransactionResponseConverter extends AbstractHttpMessageConverter<TransactionResponse> {
+
+    private static final byte[] ID_PREFIX = "{\"transactionId\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL_ID = "{\"transactionId\":null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RETRY_AFTER = ",\"retryAfterSeconds\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int UUID_LENGTH = 36;
+
+    public TransactionResponseConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TransactionResponse.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected TransactionResponse readInternal(Class<? extends TransactionResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("TransactionResponse is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(TransactionResponse response, MediaType contentType) {
+        long length = response.transactionId() != null ? ID_PREFIX.length + UUID_LENGTH + 1 : NULL_ID.length;
+        length += response.outcome().encoded().length + 1;
+        if (response.hasRetryAfter()) {
+            length += RETRY_AFTER.length + digits(response.retryAfterSeconds());
+        }
+        return length;
+    }
+
+    @Override
+    protected void writeInternal(TransactionResponse response, HttpOutputMessage outputMessage) throws IOException {
+        write(response, outputMessage.getBody());
+    }
+
+    public void write(TransactionResponse response, OutputStream out) throws IOException {
+        UUID transactionId = response.transactionId();
+        if (transactionId != null) {
+            out.write(ID_PREFIX);
+            out.write(encodeUuid(transactionId));
+            out.write('"');
+        } else {
+            out.write(NULL_ID);
+        }
+        out.write(response.outcome().encoded());
+        if (response.hasRetryAfter()) {
+            out.write(RETRY_AFTER);
+            writeDigits(response.retryAfterSeconds(), out);
+        }
+        out.write('}');
+    }
+
+    private static byte[] encodeUuid(UUID uuid) {
+        byte[] buffer = new byte[UUID_LENGTH];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        // 8-4-4-4-12 hex digits, same layout as UUID.toString()
+        hex(msb >>> 32, buffer, 0, 8);
+        buffer[8] = '-';
+        hex(msb >>> 16, buffer, 9, 4);
+        buffer[13] = '-';
+        hex(msb, buffer, 14, 4);
+        buffer[18] = '-';
+        hex(lsb >>> 48, buffer, 19, 4);
+        buffer[23] = '-';
+        hex(lsb, buffer, 24, 12);
+        return buffer;
+    }
+
+    private static void hex(long value, byte[] buffer, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static void writeDigits(long value, OutputStream out) throws IOException {
+        for (long divisor = pow10(digits(value) - 1); divisor > 0; divisor /= 10) {
+            out.write('0' + (int) (value / divisor % 10));
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
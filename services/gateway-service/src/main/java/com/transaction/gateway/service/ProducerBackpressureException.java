@@ -0,0 +1,14 @@
+package com.transaction.gateway.service;
+
+import lombok.Getter;
+
+@Getter
+public class ProducerBackpressureException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ProducerBackpressureException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
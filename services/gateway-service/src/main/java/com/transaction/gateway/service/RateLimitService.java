@@ -1,19 +1,26 @@
 package com.transaction.gateway.service;
 
+import com.transaction.gateway.ratelimit.LocalRateLimiter;
+import com.transaction.gateway.ratelimit.RateLimitDecision;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.util.List;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RateLimitService {
 
+    private static final String KEY_PREFIX = "ratelimit:gcra:";
+
     private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScript<List<Long>> rateLimitScript;
+    private final LocalRateLimiter localRateLimiter;
 
     @Value("${ratelimit.max-requests:1000}")
     private int maxRequests;
@@ -21,30 +28,39 @@ public class RateLimitService {
     @Value("${ratelimit.window-seconds:60}")
     private int windowSeconds;
 
-    public boolean allowRequest(String userId) {
-        try {
-            String key = "ratelimit:user:" + userId;
-            Long currentCount = redisTemplate.opsForValue().increment(key);
+    @Value("${ratelimit.burst:100}")
+    private int burst;
 
-            if (currentCount == null) {
-                return true;
-            }
+    @Value("${ratelimit.mode:redis}")
+    private String mode;
 
-            if (currentCount == 1) {
-                // Set expiration on first request
-                redisTemplate.expire(key, Duration.ofSeconds(windowSeconds));
-            }
+    public RateLimitDecision check(String userId, int permits) {
+        RateLimitDecision decision = "local".equalsIgnoreCase(mode)
+                ? localRateLimiter.tryAcquire(userId, permits)
+                : checkRedis(userId, permits);
 
-            if (currentCount > maxRequests) {
-                log.warn("Rate limit exceeded for user: {} (count: {})", userId, currentCount);
-                return false;
-            }
+        if (!decision.allowed()) {
+            log.warn("Rate limit exceeded for user: {} ({} of {} permits granted, retry after {} ms)",
+                    userId, decision.granted(), permits, decision.retryAfterMillis());
+        }
+        return decision;
+    }
 
-            return true;
+    private RateLimitDecision checkRedis(String userId, int permits) {
+        // One atomic GCRA evaluation: grants what fits and reports remaining burst and retry-after
+        try {
+            long emissionMicros = Math.max(1, windowSeconds * 1_000_000L / maxRequests);
+            List<Long> result = redisTemplate.execute(rateLimitScript, List.of(KEY_PREFIX + userId),
+                    String.valueOf(emissionMicros), String.valueOf(burst), String.valueOf(permits));
+
+            if (result == null || result.size() < 3) {
+                return RateLimitDecision.unlimited(permits);
+            }
+            return new RateLimitDecision(permits, result.get(0).intValue(), result.get(1), result.get(2));
         } catch (Exception e) {
             log.error("Error checking rate limit for user: {}", userId, e);
             // Fail open - allow request if Redis is down
-            return true;
+            return RateLimitDecision.unlimited(permits);
         }
     }
 }
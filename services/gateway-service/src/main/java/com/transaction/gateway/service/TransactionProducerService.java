@@ -1,38 +1,157 @@
 package com.transaction.gateway.service;
 
 import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionProducerService {
 
     private final KafkaTemplate<String, Transaction> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger inFlightRecords = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private volatile double averageRecordBytes = 512;
+    private Counter rejectedCounter;
 
     @Value("${kafka.topic.transactions}")
     private String transactionsTopic;
 
-    public void sendTransaction(Transaction transaction) {
+    @Value("${gateway.producer.max-in-flight-records:50000}")
+    private int maxInFlightRecords;
+
+    @Value("${gateway.producer.max-in-flight-bytes:50331648}")
+    private long maxInFlightBytes;
+
+    @Value("${gateway.producer.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("gateway.producer.in-flight.records", inFlightRecords, AtomicInteger::get)
+                .description("Records handed to the Kafka producer and not yet acknowledged")
+                .register(meterRegistry);
+        Gauge.builder("gateway.producer.in-flight.bytes", inFlightBytes, AtomicLong::get)
+                .description("Estimated bytes buffered in the Kafka producer")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("gateway.producer.rejected")
+                .description("Transactions shed because the producer crossed its high-water mark")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpMetadata() {
+        // Fetch topic metadata before traffic arrives: the producer waits for it inside a synchronized
+        // block, which would pin the carrier thread of the first virtual-thread requests
+        try {
+            int partitions = kafkaTemplate.partitionsFor(transactionsTopic).size();
+            log.info("Kafka metadata loaded for topic: {} ({} partitions)", transactionsTopic, partitions);
+        } catch (Exception e) {
+            log.warn("Could not preload Kafka metadata for topic: {}", transactionsTopic, e);
+        }
+    }
+
+    public boolean hasCapacity() {
+        return inFlightRecords.get() < maxInFlightRecords && inFlightBytes.get() < maxInFlightBytes;
+    }
+
+    public CompletableFuture<SendResult<String, Transaction>> sendTransaction(Transaction transaction) {
+        if (!hasCapacity()) {
+            rejectedCounter.increment();
+            throw new ProducerBackpressureException("Kafka producer is above its high-water mark", retryAfterSeconds);
+        }
         try {
-            kafkaTemplate.send(transactionsTopic, transaction.getTransactionId().toString(), transaction)
-                    .whenComplete((result, ex) -> {
-                        if (ex == null) {
-                            log.debug("Transaction sent to Kafka: {}, partition: {}, offset: {}",
-                                    transaction.getTransactionId(),
-                                    result.getRecordMetadata().partition(),
-                                    result.getRecordMetadata().offset());
-                        } else {
-                            log.error("Failed to send transaction to Kafka: {}", transaction.getTransactionId(), ex);
-                        }
-                    });
+            return send(transaction);
         } catch (Exception e) {
             log.error("Error sending transaction to Kafka", e);
             throw new RuntimeException("Failed to publish transaction", e);
         }
     }
+
+    /**
+     * How much of a batch was handed to the producer. {@code failure} is why the rest was not: {@code null}
+     * when it was shed at the high-water mark, otherwise the error that stopped the batch.
+     */
+    public record BatchResult(int sent, Exception failure) {
+    }
+
+    public BatchResult sendTransactions(List<Transaction> transactions) {
+        // Hand the whole batch to the producer back to back so linger.ms packs it into as few requests
+        // as possible. Stops at the high-water mark or at the first record the producer refuses.
+        int sent = 0;
+        try {
+            for (Transaction transaction : transactions) {
+                if (!hasCapacity()) {
+                    rejectedCounter.increment(transactions.size() - sent);
+                    log.warn("Kafka producer above its high-water mark, shedding {} of {} batch records",
+                            transactions.size() - sent, transactions.size());
+                    break;
+                }
+                send(transaction);
+                sent++;
+            }
+            log.debug("Batch of {} transactions handed to Kafka producer", sent);
+            return new BatchResult(sent, null);
+        } catch (Exception e) {
+            log.error("Error sending transaction batch to Kafka after {} of {} records", sent, transactions.size(), e);
+            return new BatchResult(sent, e);
+        }
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    private CompletableFuture<SendResult<String, Transaction>> send(Transaction transaction) {
+        long estimatedBytes = (long) averageRecordBytes;
+        inFlightRecords.incrementAndGet();
+        inFlightBytes.addAndGet(estimatedBytes);
+
+        CompletableFuture<SendResult<String, Transaction>> future;
+        try {
+            // Keyed by user: consumers keep per-user state partition-local and see a user's transactions in order
+            future = kafkaTemplate.send(transactionsTopic, transaction.getUserId(), transaction);
+        } catch (RuntimeException e) {
+            release(estimatedBytes);
+            throw e;
+        }
+
+        return future.whenComplete((result, ex) -> {
+            release(estimatedBytes);
+            if (ex == null) {
+                RecordMetadata metadata = result.getRecordMetadata();
+                // Track the real serialized size so the byte estimate follows the actual payloads
+                int recordBytes = Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize());
+                averageRecordBytes += (recordBytes - averageRecordBytes) * 0.05;
+                log.debug("Transaction sent to Kafka: {}, partition: {}, offset: {}",
+                        transaction.getTransactionId(), metadata.partition(), metadata.offset());
+            } else {
+                log.error("Failed to send transaction to Kafka: {}", transaction.getTransactionId(), ex);
+            }
+        });
+    }
+
+    private void release(long estimatedBytes) {
+        inFlightRecords.decrementAndGet();
+        inFlightBytes.addAndGet(-estimatedBytes);
+    }
 }
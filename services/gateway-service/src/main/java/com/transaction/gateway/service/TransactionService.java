@@ -1,79 +1,269 @@
 package com.transaction.gateway.service;
 
+import com.transaction.gateway.enrichment.EnrichmentPipeline;
+import com.transaction.gateway.idempotency.DuplicateDetector;
+import com.transaction.gateway.ratelimit.RateLimitDecision;
+import com.transaction.gateway.response.TransactionResponse;
+import com.transaction.gateway.response.TransactionResponse.Outcome;
 import com.transaction.models.Transaction;
-import lombok.RequiredArgsConstructor;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TransactionService {
 
     private final TransactionProducerService producerService;
     private final RateLimitService rateLimitService;
+    private final DuplicateDetector duplicateDetector;
+    private final EnrichmentPipeline enrichmentPipeline;
+    private final Validator validator;
+    private final Executor ackExecutor;
 
-    public Map<String, Object> processTransaction(Transaction transaction) {
-        try {
-            // Generate transaction ID if not provided
-            if (transaction.getTransactionId() == null) {
-                transaction.setTransactionId(UUID.randomUUID());
-            }
-
-            // Set initial status
-            if (transaction.getStatus() == null) {
-                transaction.setStatus(Transaction.TransactionStatus.PENDING);
-            }
+    // Boot's task executor, on virtual threads in the virtual-threads profile
+    public TransactionService(TransactionProducerService producerService,
+                              RateLimitService rateLimitService,
+                              DuplicateDetector duplicateDetector,
+                              EnrichmentPipeline enrichmentPipeline,
+                              Validator validator,
+                              @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                              Executor ackExecutor) {
+        this.producerService = producerService;
+        this.rateLimitService = rateLimitService;
+        this.duplicateDetector = duplicateDetector;
+        this.enrichmentPipeline = enrichmentPipeline;
+        this.validator = validator;
+        this.ackExecutor = ackExecutor;
+    }
 
-            // Check rate limit
-            if (!rateLimitService.allowRequest(transaction.getUserId())) {
-                log.warn("Rate limit exceeded for user: {}", transaction.getUserId());
-                Map<String, Object> response = new HashMap<>();
-                response.put("transactionId", transaction.getTransactionId());
-                response.put("status", "RATE_LIMITED");
-                response.put("message", "Rate limit exceeded. Please try again later.");
-                return response;
+    public TransactionResponse processTransaction(Transaction transaction) {
+        try {
+            TransactionResponse rejection = admit(transaction);
+            if (rejection != null) {
+                return rejection;
             }
 
-            // Enrich and validate transaction
-            enrichTransaction(transaction);
-
             // Publish to Kafka
             producerService.sendTransaction(transaction);
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("transactionId", transaction.getTransactionId());
-            response.put("status", "ACCEPTED");
-            response.put("message", "Transaction submitted for processing");
-
             log.info("Transaction accepted: {}", transaction.getTransactionId());
-            return response;
+            return TransactionResponse.of(transaction.getTransactionId(), Outcome.SUBMITTED);
+
+        } catch (ProducerBackpressureException e) {
+            duplicateDetector.release(transaction.getTransactionId());
+            return TransactionResponse.retryLater(transaction.getTransactionId(), Outcome.SHEDDING_LOAD,
+                    e.getRetryAfterSeconds());
+        } catch (Exception e) {
+            log.error("Error processing transaction: {}", transaction.getTransactionId(), e);
+            duplicateDetector.release(transaction.getTransactionId());
+            return TransactionResponse.of(transaction.getTransactionId(), Outcome.FAILED);
+        }
+    }
+
+    public CompletableFuture<TransactionResponse> processTransactionWithBrokerAck(Transaction transaction) {
+        // Same admission as processTransaction, but the response completes only once the broker
+        // acknowledged the record; no request thread waits for it in the meantime
+        try {
+            TransactionResponse rejection = admit(transaction);
+            if (rejection != null) {
+                return CompletableFuture.completedFuture(rejection);
+            }
+
+            // The producer completes the future on its I/O thread, which must not wait for the Redis round trip
+            // of a release: failures are answered on the ack executor
+            return producerService.sendTransaction(transaction)
+                    .thenApply(result -> {
+                        log.info("Transaction acknowledged: {}", transaction.getTransactionId());
+                        return TransactionResponse.of(transaction.getTransactionId(), Outcome.ACKNOWLEDGED);
+                    })
+                    .exceptionallyAsync(ex -> {
+                        duplicateDetector.release(transaction.getTransactionId());
+                        return TransactionResponse.of(transaction.getTransactionId(), Outcome.NOT_ACKNOWLEDGED);
+                    }, ackExecutor);
 
+        } catch (ProducerBackpressureException e) {
+            duplicateDetector.release(transaction.getTransactionId());
+            return CompletableFuture.completedFuture(TransactionResponse.retryLater(
+                    transaction.getTransactionId(), Outcome.SHEDDING_LOAD, e.getRetryAfterSeconds()));
         } catch (Exception e) {
             log.error("Error processing transaction: {}", transaction.getTransactionId(), e);
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("status", "ERROR");
-            errorResponse.put("message", "Failed to submit transaction: " + e.getMessage());
-            return errorResponse;
+            duplicateDetector.release(transaction.getTransactionId());
+            return CompletableFuture.completedFuture(
+                    TransactionResponse.of(transaction.getTransactionId(), Outcome.FAILED));
         }
     }
 
-    private void enrichTransaction(Transaction transaction) {
-        // Add enrichment logic here (e.g., geo lookup, merchant validation)
-        if (transaction.getLocation() == null) {
-            // Default location if not provided
-            transaction.setLocation(Transaction.Location.builder()
-                    .country("UNKNOWN")
-                    .city("UNKNOWN")
-                    .build());
+    private TransactionResponse admit(Transaction transaction) {
+        // Generate transaction ID if not provided; a minted ID cannot be a replay
+        boolean clientSupplied = transaction.getTransactionId() != null;
+        if (!clientSupplied) {
+            transaction.setTransactionId(UUID.randomUUID());
+        }
+
+        // Set initial status
+        if (transaction.getStatus() == null) {
+            transaction.setStatus(Transaction.TransactionStatus.PENDING);
         }
 
-        if (transaction.getMerchantCategory() == null) {
-            transaction.setMerchantCategory("GENERAL");
+        // A retry of an accepted transaction gets the original acceptance, even under load
+        if (clientSupplied && duplicateDetector.isDuplicate(transaction.getTransactionId())) {
+            return TransactionResponse.of(transaction.getTransactionId(), Outcome.DUPLICATE);
         }
+
+        // Shed load before spending rate limit budget when Kafka cannot keep up
+        if (!producerService.hasCapacity()) {
+            return TransactionResponse.retryLater(transaction.getTransactionId(), Outcome.SHEDDING_LOAD,
+                    producerService.getRetryAfterSeconds());
+        }
+
+        // Check rate limit
+        RateLimitDecision rateLimit = rateLimitService.check(transaction.getUserId(), 1);
+        if (!rateLimit.allowed()) {
+            return TransactionResponse.retryLater(transaction.getTransactionId(), Outcome.RATE_LIMITED,
+                    rateLimit.retryAfterSeconds());
+        }
+
+        // Claim last, so rejected submissions can be retried under the same ID
+        if (clientSupplied && !duplicateDetector.claim(transaction.getTransactionId())) {
+            return TransactionResponse.of(transaction.getTransactionId(), Outcome.DUPLICATE);
+        }
+
+        // Fill in merchant category and country from reference data
+        enrichmentPipeline.enrich(transaction);
+        return null;
+    }
+
+    public Map<String, Object> processBatch(List<Transaction> transactions) {
+        if (!producerService.hasCapacity()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", Outcome.SHEDDING_LOAD.status().name());
+            response.put("message", Outcome.SHEDDING_LOAD.message());
+            response.put("retryAfterSeconds", producerService.getRetryAfterSeconds());
+            return response;
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(transactions.size());
+        Map<String, List<Integer>> validByUser = new LinkedHashMap<>();
+        int duplicates = 0;
+
+        // Validate the whole batch in one pass and group the valid items by user
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            if (transaction == null) {
+                results.add(itemResult(i, null, "INVALID", "Transaction must not be null"));
+                continue;
+            }
+            Set<ConstraintViolation<Transaction>> violations = validator.validate(transaction);
+            if (!violations.isEmpty()) {
+                results.add(itemResult(i, transaction.getTransactionId(), "INVALID", describe(violations)));
+                continue;
+            }
+            if (duplicateDetector.isDuplicate(transaction.getTransactionId())) {
+                results.add(itemResult(i, transaction.getTransactionId(), "ACCEPTED", Outcome.DUPLICATE.message()));
+                duplicates++;
+                continue;
+            }
+            if (transaction.getStatus() == null) {
+                transaction.setStatus(Transaction.TransactionStatus.PENDING);
+            }
+            results.add(null);
+            validByUser.computeIfAbsent(transaction.getUserId(), userId -> new ArrayList<>()).add(i);
+        }
+
+        // One rate limit reservation per user instead of one per transaction
+        List<Integer> acceptedIndexes = new ArrayList<>(transactions.size());
+        for (Map.Entry<String, List<Integer>> entry : validByUser.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            RateLimitDecision rateLimit = rateLimitService.check(entry.getKey(), indexes.size());
+            for (int j = 0; j < indexes.size(); j++) {
+                int index = indexes.get(j);
+                if (j < rateLimit.granted()) {
+                    acceptedIndexes.add(index);
+                } else {
+                    Map<String, Object> result = itemResult(index, transactions.get(index).getTransactionId(),
+                            "RATE_LIMITED", "Rate limit exceeded. Please try again later.");
+                    result.put("retryAfterSeconds", rateLimit.retryAfterSeconds());
+                    results.set(index, result);
+                }
+            }
+        }
+
+        acceptedIndexes.sort(null);
+        List<Integer> claimedIndexes = new ArrayList<>(acceptedIndexes.size());
+        List<Transaction> accepted = new ArrayList<>(acceptedIndexes.size());
+        for (int index : acceptedIndexes) {
+            Transaction transaction = transactions.get(index);
+            // Also catches the same ID appearing twice in one batch
+            if (!duplicateDetector.claim(transaction.getTransactionId())) {
+                results.set(index, itemResult(index, transaction.getTransactionId(), "ACCEPTED",
+                        Outcome.DUPLICATE.message()));
+                duplicates++;
+                continue;
+            }
+            enrichmentPipeline.enrich(transaction);
+            accepted.add(transaction);
+            claimedIndexes.add(index);
+        }
+
+        TransactionProducerService.BatchResult batch = producerService.sendTransactions(accepted);
+        int sent = batch.sent();
+        // Records the producer refused are errors; only records shed at the high-water mark are worth a retry later
+        Outcome unsent = batch.failure() != null ? Outcome.FAILED : Outcome.SHEDDING_LOAD;
+        for (int k = 0; k < claimedIndexes.size(); k++) {
+            int index = claimedIndexes.get(k);
+            UUID transactionId = transactions.get(index).getTransactionId();
+            if (k < sent) {
+                results.set(index, itemResult(index, transactionId, "ACCEPTED", "Transaction submitted for processing"));
+            } else {
+                duplicateDetector.release(transactionId);
+                Map<String, Object> result = itemResult(index, transactionId, unsent.status().name(), unsent.message());
+                if (unsent == Outcome.SHEDDING_LOAD) {
+                    result.put("retryAfterSeconds", producerService.getRetryAfterSeconds());
+                }
+                results.set(index, result);
+            }
+        }
+
+        // Replays of accepted transactions count as accepted: the client's intent is already satisfied
+        int acceptedCount = sent + duplicates;
+        log.info("Transaction batch processed: {} accepted ({} duplicates), {} rejected",
+                acceptedCount, duplicates, transactions.size() - acceptedCount);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("accepted", acceptedCount);
+        response.put("rejected", transactions.size() - acceptedCount);
+        response.put("results", results);
+        return response;
+    }
+
+    private Map<String, Object> itemResult(int index, UUID transactionId, String status, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("transactionId", transactionId);
+        result.put("status", status);
+        result.put("message", message);
+        return result;
+    }
+
+    static String describe(Set<ConstraintViolation<Transaction>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
     }
 }
@@ -0,0 +1,241 @@
+package com.transaction.gateway.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.transaction.gateway.response.TransactionResponse;
+import com.transaction.models.Transaction;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ingests an NDJSON upload one line at a time: each line is parsed, validated and handed to the
+ * producer before the next one is read, and its result is streamed back as an NDJSON line. Memory
+ * per upload is one read buffer plus one line buffer, whatever the body size.
+ */
+@Slf4j
+@Service
+public class TransactionStreamService {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final TransactionService transactionService;
+    private final TransactionProducerService producerService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader transactionReader;
+
+    @Value("${gateway.stream.max-line-bytes:65536}")
+    private int maxLineBytes;
+
+    @Value("${gateway.stream.flush-every:100}")
+    private int flushEvery;
+
+    @Value("${gateway.stream.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${gateway.stream.backpressure-wait-ms:5000}")
+    private long backpressureWaitMs;
+
+    public TransactionStreamService(TransactionService transactionService,
+                                    TransactionProducerService producerService,
+                                    Validator validator,
+                                    ObjectMapper objectMapper) {
+        this.transactionService = transactionService;
+        this.producerService = producerService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionReader = objectMapper.readerFor(Transaction.class);
+    }
+
+    public StreamSummary ingest(InputStream in, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            return new Ingestion(in, generator).run();
+        }
+    }
+
+    public record StreamSummary(long lines, long accepted, long rejected) {
+    }
+
+    private final class Ingestion {
+
+        private final InputStream in;
+        private final JsonGenerator generator;
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        private final byte[] lineBuffer = new byte[maxLineBytes];
+
+        private int lineLength;
+        private boolean lineTooLong;
+        private long lineNumber;
+        private long accepted;
+        private long rejected;
+        private long unflushed;
+        private long lastFlushNanos = System.nanoTime();
+
+        Ingestion(InputStream in, JsonGenerator generator) {
+            this.in = in;
+            this.generator = generator;
+        }
+
+        StreamSummary run() throws IOException {
+            int read;
+            while ((read = in.read(readBuffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (readBuffer[i] == '\n') {
+                        append(start, i - start);
+                        completeLine();
+                        start = i + 1;
+                    }
+                }
+                append(start, read - start);
+                // Let the client see progress while the upload is still arriving
+                flushIfDue();
+            }
+            if (lineLength > 0 || lineTooLong) {
+                completeLine();
+            }
+
+            generator.writeStartObject();
+            generator.writeNumberField("lines", lineNumber);
+            generator.writeNumberField("accepted", accepted);
+            generator.writeNumberField("rejected", rejected);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+
+            log.info("Transaction stream processed: {} lines, {} accepted, {} rejected", lineNumber, accepted, rejected);
+            return new StreamSummary(lineNumber, accepted, rejected);
+        }
+
+        private void append(int offset, int length) {
+            if (lineTooLong || length == 0) {
+                return;
+            }
+            if (lineLength + length > lineBuffer.length) {
+                // Drop the rest of the line instead of growing the buffer
+                lineTooLong = true;
+                return;
+            }
+            System.arraycopy(readBuffer, offset, lineBuffer, lineLength, length);
+            lineLength += length;
+        }
+
+        private void completeLine() throws IOException {
+            lineNumber++;
+            int length = lineLength;
+            if (length > 0 && lineBuffer[length - 1] == '\r') {
+                length--;
+            }
+            boolean tooLong = lineTooLong;
+            lineLength = 0;
+            lineTooLong = false;
+
+            if (tooLong) {
+                writeResult(null, "INVALID", "Line exceeds " + lineBuffer.length + " bytes", 0);
+                return;
+            }
+            if (isBlank(length)) {
+                // Keeps numbering aligned with the uploaded file but reports nothing
+                return;
+            }
+
+            Transaction transaction;
+            try {
+                transaction = transactionReader.readValue(lineBuffer, 0, length);
+            } catch (IOException e) {
+                writeResult(null, "INVALID", "Malformed JSON", 0);
+                return;
+            }
+            if (transaction == null) {
+                writeResult(null, "INVALID", "Transaction must not be null", 0);
+                return;
+            }
+
+            Set<ConstraintViolation<Transaction>> violations = validator.validate(transaction);
+            if (!violations.isEmpty()) {
+                writeResult(transaction.getTransactionId(), "INVALID", TransactionService.describe(violations), 0);
+                return;
+            }
+
+            awaitProducerCapacity();
+            TransactionResponse response = transactionService.processTransaction(transaction);
+            writeResult(response.transactionId(), response.status().name(), response.message(),
+                    response.retryAfterSeconds());
+        }
+
+        private void awaitProducerCapacity() throws IOException {
+            if (producerService.hasCapacity()) {
+                return;
+            }
+            // Stop reading the upload instead of shedding its records; TCP pushes back on the client
+            generator.flush();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backpressureWaitMs);
+            while (!producerService.hasCapacity() && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        }
+
+        private void writeResult(UUID transactionId, String status, String message, long retryAfterSeconds)
+                throws IOException {
+            if ("ACCEPTED".equals(status)) {
+                accepted++;
+            } else {
+                rejected++;
+            }
+
+            generator.writeStartObject();
+            generator.writeNumberField("line", lineNumber);
+            if (transactionId != null) {
+                generator.writeStringField("transactionId", transactionId.toString());
+            }
+            generator.writeStringField("status", status);
+            generator.writeStringField("message", message);
+            if (retryAfterSeconds > 0) {
+                generator.writeNumberField("retryAfterSeconds", retryAfterSeconds);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+
+            unflushed++;
+            if (unflushed >= flushEvery) {
+                flush();
+            }
+        }
+
+        private void flushIfDue() throws IOException {
+            if (unflushed > 0 && System.nanoTime() - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(flushIntervalMs)) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            generator.flush();
+            unflushed = 0;
+            lastFlushNanos = System.nanoTime();
+        }
+
+        private boolean isBlank(int length) {
+            for (int i = 0; i < length; i++) {
+                byte b = lineBuffer[i];
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
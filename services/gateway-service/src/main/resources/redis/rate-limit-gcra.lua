@@ -0,0 +1,33 @@
+-- Generic cell rate algorithm (GCRA) limiter, evaluated atomically in one round trip.
+-- KEYS[1]  theoretical arrival time (TAT) of the user, in microseconds
+-- ARGV[1]  emission interval in microseconds (window / max requests)
+-- ARGV[2]  burst capacity in requests
+-- ARGV[3]  requested permits
+-- Returns {granted permits, remaining burst, retry after in milliseconds}
+local emission = tonumber(ARGV[1])
+local burst = tonumber(ARGV[2])
+local permits = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local tat = tonumber(redis.call('GET', KEYS[1]))
+if tat == nil or tat < now then
+    tat = now
+end
+
+local tolerance = emission * burst
+local available = math.max(math.floor((now + tolerance - tat) / emission), 0)
+local granted = math.min(permits, available)
+
+if granted > 0 then
+    tat = tat + granted * emission
+    redis.call('SET', KEYS[1], string.format('%d', tat), 'PX', math.ceil((tat - now) / 1000))
+end
+
+local retry_after = 0
+if granted < permits then
+    retry_after = math.ceil((tat + emission - tolerance - now) / 1000)
+end
+
+return {granted, available - granted, retry_after}
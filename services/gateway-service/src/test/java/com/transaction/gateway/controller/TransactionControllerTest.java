@@ -1,7 +1,10 @@
 package com.transaction.gateway.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transaction.gateway.response.TransactionResponse;
+import com.transaction.gateway.response.TransactionResponse.Outcome;
 import com.transaction.gateway.service.TransactionService;
+import com.transaction.gateway.service.TransactionStreamService;
 import com.transaction.models.Transaction;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,19 +12,27 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(TransactionController.class)
+@WebMvcTest(controllers = TransactionController.class, properties = "gateway.batch.max-size=2")
 class TransactionControllerTest {
 
     @Autowired
@@ -33,6 +44,9 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private TransactionStreamService transactionStreamService;
+
     @Test
     void shouldReturnHealthStatus() throws Exception {
         mockMvc.perform(get("/api/v1/transactions/health"))
@@ -45,11 +59,7 @@ class TransactionControllerTest {
     void shouldAcceptValidTransaction() throws Exception {
         Transaction transaction = buildValidTransaction();
 
-        Map<String, Object> mockResponse = Map.of(
-                "transactionId", UUID.randomUUID().toString(),
-                "status", "ACCEPTED",
-                "message", "Transaction submitted for processing"
-        );
+        TransactionResponse mockResponse = TransactionResponse.of(transaction.getTransactionId(), Outcome.SUBMITTED);
 
         when(transactionService.processTransaction(any(Transaction.class)))
                 .thenReturn(mockResponse);
@@ -58,7 +68,77 @@ class TransactionControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(transaction)))
                 .andExpect(status().isAccepted())
-                .andExpect(jsonPath("$.status").value("ACCEPTED"));
+                .andExpect(content().json(objectMapper.writeValueAsString(mockResponse), true))
+                .andExpect(jsonPath("$.transactionId").value(transaction.getTransactionId().toString()))
+                .andExpect(jsonPath("$.status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.retryAfterSeconds").doesNotExist());
+    }
+
+    @Test
+    void shouldReturnTooManyRequestsWithRetryAfterWhenRateLimited() throws Exception {
+        Transaction transaction = buildValidTransaction();
+
+        when(transactionService.processTransaction(any(Transaction.class)))
+                .thenReturn(TransactionResponse.retryLater(transaction.getTransactionId(), Outcome.RATE_LIMITED, 3));
+
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transaction)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.status").value("RATE_LIMITED"))
+                .andExpect(jsonPath("$.retryAfterSeconds").value(3));
+    }
+
+    @Test
+    void shouldReturnServiceUnavailableWhenSheddingLoad() throws Exception {
+        Transaction transaction = buildValidTransaction();
+
+        when(transactionService.processTransaction(any(Transaction.class)))
+                .thenReturn(TransactionResponse.retryLater(transaction.getTransactionId(), Outcome.SHEDDING_LOAD, 1));
+
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transaction)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void shouldAnswerAfterBrokerAckWhenRequested() throws Exception {
+        Transaction transaction = buildValidTransaction();
+
+        when(transactionService.processTransactionWithBrokerAck(any(Transaction.class)))
+                .thenReturn(CompletableFuture.completedFuture(
+                        TransactionResponse.of(transaction.getTransactionId(), Outcome.ACKNOWLEDGED)));
+
+        MvcResult result = mockMvc.perform(post("/api/v1/transactions")
+                        .param("ack", "broker")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transaction)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.message").value("Transaction acknowledged by broker"));
+        verify(transactionService, never()).processTransaction(any());
+    }
+
+    @Test
+    void shouldStreamNdjsonUploadThroughStreamService() throws Exception {
+        when(transactionStreamService.ingest(any(), any())).thenAnswer(invocation -> {
+            invocation.<java.io.OutputStream>getArgument(1)
+                    .write("{\"lines\":0,\"accepted\":0,\"rejected\":0}\n".getBytes());
+            return new TransactionStreamService.StreamSummary(0, 0, 0);
+        });
+
+        mockMvc.perform(post("/api/v1/transactions/stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(objectMapper.writeValueAsString(buildValidTransaction())))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(jsonPath("$.lines").value(0));
     }
 
     @Test
@@ -72,6 +152,61 @@ class TransactionControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void shouldAcceptJsonBatch() throws Exception {
+        List<Transaction> batch = List.of(buildValidTransaction(), buildValidTransaction());
+
+        when(transactionService.processBatch(anyList()))
+                .thenReturn(Map.of("accepted", 2, "rejected", 0, "results", List.of()));
+
+        mockMvc.perform(post("/api/v1/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted").value(2));
+    }
+
+    @Test
+    void shouldAcceptNdjsonBatch() throws Exception {
+        String body = objectMapper.writeValueAsString(buildValidTransaction()) + "\n"
+                + objectMapper.writeValueAsString(buildValidTransaction()) + "\n";
+
+        when(transactionService.processBatch(anyList()))
+                .thenReturn(Map.of("accepted", 2, "rejected", 0, "results", List.of()));
+
+        mockMvc.perform(post("/api/v1/transactions/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isAccepted());
+
+        verify(transactionService).processBatch(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void shouldRejectNdjsonBatchOverLimitWithoutReadingTheRest() throws Exception {
+        String line = objectMapper.writeValueAsString(buildValidTransaction()) + "\n";
+        // The malformed tail is never parsed: the limit is hit first
+        String body = line + line + line + "{not json";
+
+        mockMvc.perform(post("/api/v1/transactions/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.message").value("Batch exceeds 2 transactions"));
+
+        verify(transactionService, never()).processBatch(anyList());
+    }
+
+    @Test
+    void shouldRejectEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        verify(transactionService, never()).processBatch(anyList());
+    }
+
     private Transaction buildValidTransaction() {
         return Transaction.builder()
                 .transactionId(UUID.randomUUID())
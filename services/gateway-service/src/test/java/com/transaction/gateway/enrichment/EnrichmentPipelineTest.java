@@ -0,0 +1,89 @@
+package com.transaction.gateway.enrichment;
+
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnrichmentPipelineTest {
+
+    private EnrichmentPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        pipeline = new EnrichmentPipeline(List.of(
+                new MerchantCategoryEnricher(lookup("merchant-catalog", "Coinbase,CRYPTOCURRENCY\n", meterRegistry)),
+                new GeoEnricher(lookup("city-country", "Berlin,Germany\n", meterRegistry))));
+    }
+
+    @Test
+    void shouldFillCategoryFromMerchantCatalog() {
+        Transaction transaction = buildTransaction("Coinbase", null);
+
+        pipeline.enrich(transaction);
+
+        assertThat(transaction.getMerchantCategory()).isEqualTo("CRYPTOCURRENCY");
+    }
+
+    @Test
+    void shouldDefaultCategoryForUnknownMerchantAndKeepSuppliedOne() {
+        Transaction unknown = buildTransaction("Corner Shop", null);
+        Transaction supplied = buildTransaction("Coinbase", null);
+        supplied.setMerchantCategory("SERVICES");
+
+        pipeline.enrich(unknown);
+        pipeline.enrich(supplied);
+
+        assertThat(unknown.getMerchantCategory()).isEqualTo("GENERAL");
+        assertThat(supplied.getMerchantCategory()).isEqualTo("SERVICES");
+    }
+
+    @Test
+    void shouldResolveCountryFromCity() {
+        Transaction resolved = buildTransaction("Coinbase", Transaction.Location.builder().city("berlin").build());
+        Transaction unresolved = buildTransaction("Coinbase", Transaction.Location.builder().city("Atlantis").build());
+
+        pipeline.enrich(resolved);
+        pipeline.enrich(unresolved);
+
+        assertThat(resolved.getLocation().getCountry()).isEqualTo("Germany");
+        assertThat(unresolved.getLocation().getCountry()).isNull();
+    }
+
+    @Test
+    void shouldNotInventLocation() {
+        Transaction transaction = buildTransaction("Coinbase", null);
+
+        pipeline.enrich(transaction);
+
+        // Downstream a placeholder country is indistinguishable from a real anomaly
+        assertThat(transaction.getLocation()).isNull();
+    }
+
+    private static ReloadableLookup lookup(String name, String entries, SimpleMeterRegistry meterRegistry) {
+        return new ReloadableLookup(name, new ByteArrayResource(entries.getBytes(StandardCharsets.UTF_8)), meterRegistry);
+    }
+
+    private static Transaction buildTransaction(String merchant, Transaction.Location location) {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal("49.99"))
+                .currency("USD")
+                .merchant(merchant)
+                .type(Transaction.TransactionType.PAYMENT)
+                .location(location)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package com.transaction.gateway.enrichment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LookupTableTest {
+
+    @Test
+    void shouldMatchIgnoringCaseAndSurroundingWhitespace() throws IOException {
+        LookupTable table = load("""
+                # merchant,category
+                Best Buy,RETAIL
+
+                McDonald's , FOOD
+                Café Rouge,FOOD
+                """);
+
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.get("best buy")).isEqualTo("RETAIL");
+        assertThat(table.get("  BEST BUY ")).isEqualTo("RETAIL");
+        assertThat(table.get("mcdonald's")).isEqualTo("FOOD");
+        assertThat(table.get("CAFÉ ROUGE")).isEqualTo("FOOD");
+        assertThat(table.get("Best Buys")).isNull();
+        assertThat(table.get(null)).isNull();
+    }
+
+    @Test
+    void shouldFindEveryEntryOfLargeTable() {
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            entries.put("merchant-" + i, "CATEGORY_" + (i % 7));
+        }
+
+        LookupTable table = LookupTable.of(entries);
+
+        assertThat(table.size()).isEqualTo(entries.size());
+        entries.forEach((name, value) -> assertThat(table.get(name)).isEqualTo(value));
+        assertThat(table.get("merchant-50000")).isNull();
+    }
+
+    @Test
+    void shouldRejectMalformedLines() {
+        assertThatThrownBy(() -> load("Amazon,RETAIL\nWalmart\n"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    void shouldSwapSnapshotOnlyWhenFileChanges(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("city-country.csv");
+        Files.writeString(file, "London,UK\n");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReloadableLookup lookup = new ReloadableLookup("city-country", new FileSystemResource(file), meterRegistry);
+
+        assertThat(lookup.get("london")).isEqualTo("UK");
+        assertThat(lookup.get("Paris")).isNull();
+        assertThat(lookup.reloadIfModified()).isFalse();
+
+        Files.writeString(file, "London,UK\nParis,France\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertThat(lookup.reloadIfModified()).isTrue();
+        assertThat(lookup.get("Paris")).isEqualTo("France");
+
+        // A broken file keeps the last good snapshot
+        Files.writeString(file, "Berlin\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        assertThat(lookup.reloadIfModified()).isFalse();
+        assertThat(lookup.size()).isEqualTo(2);
+
+        assertThat(meterRegistry.get("gateway.enrichment.lookups").tag("result", "hit").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get("gateway.enrichment.lookups").tag("result", "miss").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    private static LookupTable load(String content) throws IOException {
+        return LookupTable.load(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,169 @@
+package com.transaction.gateway.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DuplicateDetectorTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DuplicateDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        detector = new DuplicateDetector(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "windowSeconds", 600L);
+        ReflectionTestUtils.setField(detector, "memoryBytes", 1024 * 1024L);
+        ReflectionTestUtils.setField(detector, "generations", 4);
+        ReflectionTestUtils.setField(detector, "expectedPerWindow", 100_000L);
+        ReflectionTestUtils.setField(detector, "maxPending", 1000);
+        detector.init();
+    }
+
+    @Test
+    void shouldAnswerUnseenIdsWithoutRedis() {
+        assertThat(detector.isDuplicate(UUID.randomUUID())).isFalse();
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void shouldCatchReplaysBeforeTheyAreRecordedInRedis() {
+        UUID id = UUID.randomUUID();
+
+        assertThat(detector.claim(id)).isTrue();
+
+        assertThat(detector.isDuplicate(id)).isTrue();
+        assertThat(detector.claim(id)).isFalse();
+        verifyNoInteractions(redisTemplate);
+        assertThat(meterRegistry.get("gateway.idempotency.duplicates").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void shouldConfirmBloomHitsWithRedisOnceRecorded() {
+        UUID id = UUID.randomUUID();
+        detector.claim(id);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of());
+        when(redisTemplate.hasKey("idempotency:" + id)).thenReturn(true);
+
+        detector.flush();
+
+        assertThat(meterRegistry.get("gateway.idempotency.pending").gauge().value()).isZero();
+        assertThat(detector.isDuplicate(id)).isTrue();
+    }
+
+    @Test
+    void shouldCountBloomHitsUnknownToRedisAsFalsePositives() {
+        UUID id = UUID.randomUUID();
+        detector.claim(id);
+        detector.release(id);
+        when(redisTemplate.hasKey("idempotency:" + id)).thenReturn(false);
+
+        assertThat(detector.isDuplicate(id)).isFalse();
+        assertThat(meterRegistry.get("gateway.idempotency.bloom.false-positives").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("gateway.idempotency.bloom.false-positive-rate").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldForgetReleasedIdsAlreadyRecordedInRedis() {
+        Set<String> keys = fakeRedis();
+        UUID id = UUID.randomUUID();
+        detector.claim(id);
+        detector.flush();
+        assertThat(keys).containsExactly("idempotency:" + id);
+
+        detector.release(id);
+
+        assertThat(keys).isEmpty();
+        assertThat(detector.isDuplicate(id)).isFalse();
+    }
+
+    @Test
+    void shouldForgetIdsReleasedWhileTheirFlushIsInFlight() {
+        Set<String> keys = fakeRedis();
+        UUID id = UUID.randomUUID();
+        detector.claim(id);
+        doAnswer(invocation -> {
+            // The broker nacks between the batch snapshot and the pipelined SET
+            detector.release(id);
+            keys.add("idempotency:" + id);
+            return List.of();
+        }).when(redisTemplate).executePipelined(any(RedisCallback.class));
+
+        detector.flush();
+
+        assertThat(keys).isEmpty();
+        assertThat(detector.isDuplicate(id)).isFalse();
+    }
+
+    @Test
+    void shouldFailOpenWhenRedisIsDown() {
+        UUID id = UUID.randomUUID();
+        detector.claim(id);
+        detector.release(id);
+        when(redisTemplate.hasKey(anyString())).thenThrow(new IllegalStateException("down"));
+
+        assertThat(detector.isDuplicate(id)).isFalse();
+    }
+
+    @Test
+    void shouldClaimThroughRedisInStrictMode() {
+        ReflectionTestUtils.setField(detector, "strict", true);
+        UUID id = UUID.randomUUID();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("idempotency:" + id), eq("1"), any(Duration.class)))
+                .thenReturn(false);
+
+        // Claimed by another pod: the local filter has never seen it
+        assertThat(detector.claim(id)).isFalse();
+    }
+
+    // Keys the detector has recorded, as Redis would hold them
+    @SuppressWarnings("unchecked")
+    private Set<String> fakeRedis() {
+        Set<String> keys = new HashSet<>();
+        Set<UUID> pending = (Set<UUID>) ReflectionTestUtils.getField(detector, "pending");
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pending.forEach(id -> keys.add("idempotency:" + id));
+            return List.of();
+        });
+        lenient().when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> deleted = invocation.getArgument(0);
+            long removed = deleted.stream().filter(keys::remove).count();
+            return removed;
+        });
+        lenient().when(redisTemplate.hasKey(anyString()))
+                .thenAnswer(invocation -> keys.contains(invocation.<String>getArgument(0)));
+        return keys;
+    }
+}
@@ -0,0 +1,58 @@
+package com.transaction.gateway.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RotatingBloomFilterTest {
+
+    @Test
+    void shouldNeverReportInsertedIdsAsUnseen() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(64 * 1024, 4, 60_000, 50_000, 0);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            filter.put(id);
+        }
+
+        assertThat(ids).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void shouldKeepFalsePositivesNearTheExpectedRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(512 * 1024, 4, 60_000, 200_000, 0);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put(UUID.randomUUID());
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+
+        double expected = filter.expectedFalsePositiveRate();
+        assertThat(expected).isLessThan(0.01);
+        assertThat((double) falsePositives / probes).isLessThan(expected * 2 + 0.001);
+    }
+
+    @Test
+    void shouldForgetIdsOnceTheirGenerationRotatesOut() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(4096, 4, 4_000, 1_000, 0);
+        UUID id = UUID.randomUUID();
+        filter.put(id);
+
+        filter.rotateIfDue(3_000);
+        assertThat(filter.mightContain(id)).isTrue();
+
+        filter.rotateIfDue(4_000);
+        assertThat(filter.mightContain(id)).isFalse();
+    }
+}
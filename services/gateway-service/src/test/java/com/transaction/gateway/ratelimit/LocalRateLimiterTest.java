@@ -0,0 +1,81 @@
+package com.transaction.gateway.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocalRateLimiterTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @InjectMocks
+    private LocalRateLimiter localRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(localRateLimiter, "maxRequests", 10);
+        ReflectionTestUtils.setField(localRateLimiter, "windowSeconds", 60);
+        ReflectionTestUtils.setField(localRateLimiter, "expectedPods", 2);
+    }
+
+    @Test
+    void shouldGrantOnlyThePodShareOfTheBudget() {
+        assertThat(localRateLimiter.tryAcquire("user_123", 3).granted()).isEqualTo(3);
+        assertThat(localRateLimiter.tryAcquire("user_123", 3).granted()).isEqualTo(2);
+        RateLimitDecision denied = localRateLimiter.tryAcquire("user_123", 1);
+        assertThat(denied.allowed()).isFalse();
+        assertThat(denied.retryAfterMillis()).isPositive();
+
+        assertThat(localRateLimiter.tryAcquire("user_456", 1).granted()).isEqualTo(1);
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldBlockUserWhenReconciledGlobalCountExceedsLimit() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(11L, true));
+        localRateLimiter.tryAcquire("user_123", 1);
+
+        localRateLimiter.reconcile();
+
+        assertThat(localRateLimiter.tryAcquire("user_123", 1).granted()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldKeepLocalLimitsWhenRedisIsDown() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        localRateLimiter.tryAcquire("user_123", 4);
+
+        localRateLimiter.reconcile();
+
+        assertThat(localRateLimiter.tryAcquire("user_123", 5).granted()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictIdleBuckets() {
+        localRateLimiter.tryAcquire("user_123", 0);
+        assertThat(localRateLimiter.trackedUsers()).isEqualTo(1);
+
+        localRateLimiter.reconcile();
+
+        assertThat(localRateLimiter.trackedUsers()).isZero();
+        verifyNoInteractions(redisTemplate);
+    }
+}
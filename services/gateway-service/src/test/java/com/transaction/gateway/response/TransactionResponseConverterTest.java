@@ -0,0 +1,49 @@
+package com.transaction.gateway.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transaction.gateway.response.TransactionResponse.Outcome;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionResponseConverterTest {
+
+    private final TransactionResponseConverter converter = new TransactionResponseConverter();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldWriteSameJsonAsJacksonForEveryOutcome() throws Exception {
+        for (Outcome outcome : Outcome.values()) {
+            assertSameAsJackson(TransactionResponse.of(UUID.randomUUID(), outcome));
+            assertSameAsJackson(TransactionResponse.retryLater(UUID.randomUUID(), outcome, 17));
+        }
+    }
+
+    @Test
+    void shouldWriteNullTransactionId() throws Exception {
+        assertSameAsJackson(TransactionResponse.of(null, Outcome.FAILED));
+    }
+
+    @Test
+    void shouldReportExactContentLength() throws Exception {
+        TransactionResponse response = TransactionResponse.retryLater(UUID.randomUUID(), Outcome.RATE_LIMITED, 120);
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(response, MediaType.APPLICATION_JSON, message);
+
+        assertThat(message.getHeaders().getContentLength()).isEqualTo(message.getBodyAsBytes().length);
+        assertThat(message.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    private void assertSameAsJackson(TransactionResponse response) throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(response, MediaType.APPLICATION_JSON, message);
+
+        assertThat(message.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(objectMapper.writeValueAsString(response));
+    }
+}
@@ -0,0 +1,89 @@
+package com.transaction.gateway.service;
+
+import com.transaction.gateway.ratelimit.LocalRateLimiter;
+import com.transaction.gateway.ratelimit.RateLimitDecision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private RedisScript<List<Long>> rateLimitScript;
+
+    @Mock
+    private LocalRateLimiter localRateLimiter;
+
+    @InjectMocks
+    private RateLimitService rateLimitService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rateLimitService, "maxRequests", 1000);
+        ReflectionTestUtils.setField(rateLimitService, "windowSeconds", 60);
+        ReflectionTestUtils.setField(rateLimitService, "burst", 100);
+        ReflectionTestUtils.setField(rateLimitService, "mode", "redis");
+    }
+
+    @Test
+    void shouldEvaluateGcraScriptInOneCall() {
+        when(redisTemplate.execute(eq(rateLimitScript), eq(List.of("ratelimit:gcra:user_123")),
+                eq("60000"), eq("100"), eq("1")))
+                .thenReturn(List.of(1L, 99L, 0L));
+
+        RateLimitDecision decision = rateLimitService.check("user_123", 1);
+
+        assertThat(decision.allowed()).isTrue();
+        assertThat(decision.remaining()).isEqualTo(99L);
+        verify(redisTemplate, times(1)).execute(eq(rateLimitScript), anyList(), any(Object[].class));
+        verifyNoMoreInteractions(redisTemplate);
+    }
+
+    @Test
+    void shouldReturnRetryAfterWhenDenied() {
+        when(redisTemplate.execute(eq(rateLimitScript), anyList(), any(Object[].class)))
+                .thenReturn(List.of(0L, 0L, 2500L));
+
+        RateLimitDecision decision = rateLimitService.check("user_123", 1);
+
+        assertThat(decision.allowed()).isFalse();
+        assertThat(decision.retryAfterSeconds()).isEqualTo(3L);
+    }
+
+    @Test
+    void shouldFailOpenWhenRedisIsDown() {
+        when(redisTemplate.execute(eq(rateLimitScript), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        RateLimitDecision decision = rateLimitService.check("user_123", 5);
+
+        assertThat(decision.allowed()).isTrue();
+        assertThat(decision.granted()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldUseLocalBucketsInLocalMode() {
+        ReflectionTestUtils.setField(rateLimitService, "mode", "local");
+        when(localRateLimiter.tryAcquire("user_123", 1)).thenReturn(new RateLimitDecision(1, 1, 4, 0));
+
+        assertThat(rateLimitService.check("user_123", 1).allowed()).isTrue();
+        verifyNoInteractions(redisTemplate);
+    }
+}
@@ -0,0 +1,123 @@
+package com.transaction.gateway.service;
+
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionProducerServiceTest {
+
+    @Mock
+    private KafkaTemplate<String, Transaction> kafkaTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionProducerService producerService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        producerService = new TransactionProducerService(kafkaTemplate, meterRegistry);
+        ReflectionTestUtils.setField(producerService, "transactionsTopic", "transactions");
+        ReflectionTestUtils.setField(producerService, "maxInFlightRecords", 2);
+        ReflectionTestUtils.setField(producerService, "maxInFlightBytes", 1_000_000L);
+        ReflectionTestUtils.setField(producerService, "retryAfterSeconds", 1L);
+        producerService.registerMetrics();
+    }
+
+    @Test
+    void shouldRejectOnceHighWaterMarkIsReached() {
+        when(kafkaTemplate.send(anyString(), anyString(), any(Transaction.class)))
+                .thenAnswer(invocation -> new CompletableFuture<>());
+
+        producerService.sendTransaction(buildTransaction());
+        producerService.sendTransaction(buildTransaction());
+
+        assertThat(producerService.hasCapacity()).isFalse();
+        assertThatThrownBy(() -> producerService.sendTransaction(buildTransaction()))
+                .isInstanceOf(ProducerBackpressureException.class);
+        assertThat(meterRegistry.get("gateway.producer.rejected").counter().count()).isEqualTo(1.0);
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), any(Transaction.class));
+    }
+
+    @Test
+    void shouldReleaseCapacityWhenBrokerAcknowledges() {
+        CompletableFuture<SendResult<String, Transaction>> ack = new CompletableFuture<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any(Transaction.class))).thenReturn(ack);
+        Transaction transaction = buildTransaction();
+
+        CompletableFuture<SendResult<String, Transaction>> result = producerService.sendTransaction(transaction);
+        // Keyed by user so a user's transactions share a partition downstream
+        verify(kafkaTemplate).send("transactions", "user_123", transaction);
+        assertThat(meterRegistry.get("gateway.producer.in-flight.records").gauge().value()).isEqualTo(1.0);
+
+        ack.complete(new SendResult<>(new ProducerRecord<>("transactions", transaction),
+                new RecordMetadata(new TopicPartition("transactions", 0), 0, 0, 0, 36, 400)));
+
+        assertThat(result).isCompleted();
+        assertThat(meterRegistry.get("gateway.producer.in-flight.records").gauge().value()).isZero();
+        assertThat(meterRegistry.get("gateway.producer.in-flight.bytes").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldStopBatchAtHighWaterMark() {
+        when(kafkaTemplate.send(anyString(), anyString(), any(Transaction.class)))
+                .thenAnswer(invocation -> new CompletableFuture<>());
+
+        TransactionProducerService.BatchResult result =
+                producerService.sendTransactions(List.of(buildTransaction(), buildTransaction(), buildTransaction()));
+
+        assertThat(result.sent()).isEqualTo(2);
+        assertThat(result.failure()).isNull();
+        assertThat(meterRegistry.get("gateway.producer.rejected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldReturnTheErrorThatStoppedABatch() {
+        SerializationException error = new SerializationException("Cannot serialize");
+        when(kafkaTemplate.send(anyString(), anyString(), any(Transaction.class)))
+                .thenAnswer(invocation -> new CompletableFuture<>())
+                .thenThrow(error);
+
+        TransactionProducerService.BatchResult result =
+                producerService.sendTransactions(List.of(buildTransaction(), buildTransaction(), buildTransaction()));
+
+        assertThat(result.sent()).isEqualTo(1);
+        assertThat(result.failure()).isSameAs(error);
+        assertThat(meterRegistry.get("gateway.producer.rejected").counter().count()).isZero();
+        assertThat(meterRegistry.get("gateway.producer.in-flight.records").gauge().value()).isEqualTo(1.0);
+    }
+
+    private Transaction buildTransaction() {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal("149.99"))
+                .currency("USD")
+                .merchant("Test Merchant")
+                .type(Transaction.TransactionType.PAYMENT)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.transaction.gateway.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.transaction.gateway.enrichment.EnrichmentPipeline;
+import com.transaction.gateway.enrichment.GeoEnricher;
+import com.transaction.gateway.enrichment.MerchantCategoryEnricher;
+import com.transaction.gateway.enrichment.ReloadableLookup;
+import com.transaction.gateway.idempotency.DuplicateDetector;
+import com.transaction.gateway.ratelimit.RateLimitDecision;
+import com.transaction.gateway.response.TransactionResponse;
+import com.transaction.gateway.response.TransactionResponseConverter;
+import com.transaction.models.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Guards the bytes allocated per accepted submission, from admission to the encoded response body
+class TransactionServiceAllocationTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+    private static final long MAX_BYTES_PER_REQUEST = 256;
+
+    private final Logger serviceLogger = (Logger) LoggerFactory.getLogger(TransactionService.class);
+    private Level previousLevel;
+
+    @BeforeEach
+    void silenceRequestLogging() {
+        previousLevel = serviceLogger.getLevel();
+        serviceLogger.setLevel(Level.WARN);
+    }
+
+    @AfterEach
+    void restoreRequestLogging() {
+        serviceLogger.setLevel(previousLevel);
+    }
+
+    @Test
+    void shouldStayWithinAllocationBudgetPerAcceptedRequest() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        // Hand-written stubs: Mockito records every invocation and would dominate the measurement
+        CompletableFuture<SendResult<String, Transaction>> sent = CompletableFuture.completedFuture(null);
+        TransactionProducerService producerService = new TransactionProducerService(null, null) {
+            @Override
+            public boolean hasCapacity() {
+                return true;
+            }
+
+            @Override
+            public CompletableFuture<SendResult<String, Transaction>> sendTransaction(Transaction transaction) {
+                return sent;
+            }
+        };
+        RateLimitDecision allowed = RateLimitDecision.unlimited(1);
+        RateLimitService rateLimitService = new RateLimitService(null, null, null) {
+            @Override
+            public RateLimitDecision check(String userId, int permits) {
+                return allowed;
+            }
+        };
+        DuplicateDetector duplicateDetector = new DuplicateDetector(null, null) {
+            @Override
+            public boolean isDuplicate(UUID transactionId) {
+                return false;
+            }
+
+            @Override
+            public boolean claim(UUID transactionId) {
+                return true;
+            }
+        };
+        // Real lookups: enrichment runs on every request and must not add to the budget
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EnrichmentPipeline enrichmentPipeline = new EnrichmentPipeline(List.of(
+                new MerchantCategoryEnricher(lookup("merchant-catalog", "Test Merchant,RETAIL\n", meterRegistry)),
+                new GeoEnricher(lookup("city-country", "New York,USA\n", meterRegistry))));
+        TransactionService service = new TransactionService(producerService, rateLimitService, duplicateDetector,
+                enrichmentPipeline, null, Runnable::run);
+        TransactionResponseConverter converter = new TransactionResponseConverter();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        Transaction transaction = buildTransaction();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            body.reset();
+            clearEnrichment(transaction);
+            converter.write(service.processTransaction(transaction), body);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            body.reset();
+            clearEnrichment(transaction);
+            TransactionResponse response = service.processTransaction(transaction);
+            converter.write(response, body);
+        }
+        long bytesPerRequest = (threads.getCurrentThreadAllocatedBytes() - before) / MEASURED_ITERATIONS;
+
+        assertThat(body.toString()).contains("\"status\":\"ACCEPTED\"");
+        assertThat(transaction.getMerchantCategory()).isEqualTo("RETAIL");
+        assertThat(transaction.getLocation().getCountry()).isEqualTo("USA");
+        assertThat(bytesPerRequest)
+                .as("bytes allocated per accepted request")
+                .isLessThanOrEqualTo(MAX_BYTES_PER_REQUEST);
+    }
+
+    private static void clearEnrichment(Transaction transaction) {
+        transaction.setMerchantCategory(null);
+        transaction.getLocation().setCountry(null);
+    }
+
+    private static ReloadableLookup lookup(String name, String entries, SimpleMeterRegistry meterRegistry) {
+        return new ReloadableLookup(name, new ByteArrayResource(entries.getBytes(StandardCharsets.UTF_8)), meterRegistry);
+    }
+
+    private Transaction buildTransaction() {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal("149.99"))
+                .currency("USD")
+                .merchant("Test Merchant")
+                .type(Transaction.TransactionType.PAYMENT)
+                .location(Transaction.Location.builder().city("New York").build())
+                .timestamp(Instant.now())
+                .status(Transaction.TransactionStatus.PENDING)
+                .build();
+    }
+}
@@ -1,19 +1,38 @@
 package com.transaction.gateway.service;
 
+import com.transaction.gateway.enrichment.EnrichmentPipeline;
+import com.transaction.gateway.idempotency.DuplicateDetector;
+import com.transaction.gateway.ratelimit.RateLimitDecision;
+import com.transaction.gateway.response.TransactionResponse;
+import com.transaction.gateway.response.TransactionResponse.Outcome;
+import com.transaction.gateway.response.TransactionResponse.Status;
 import com.transaction.models.Transaction;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.apache.kafka.common.errors.SerializationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.SendResult;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,27 +44,45 @@ class TransactionServiceTest {
     @Mock
     private RateLimitService rateLimitService;
 
+    @Mock
+    private DuplicateDetector duplicateDetector;
+
+    @Mock
+    private EnrichmentPipeline enrichmentPipeline;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private Executor ackExecutor;
+
     @InjectMocks
     private TransactionService transactionService;
 
     @BeforeEach
     void setUp() {
         // Default: allow all requests
-        when(rateLimitService.allowRequest(anyString())).thenReturn(true);
+        lenient().when(rateLimitService.check(anyString(), eq(1))).thenReturn(RateLimitDecision.unlimited(1));
+        lenient().when(producerService.hasCapacity()).thenReturn(true);
+        lenient().when(duplicateDetector.claim(any())).thenReturn(true);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(ackExecutor).execute(any());
     }
 
     @Test
     void shouldProcessValidTransaction() {
         Transaction transaction = buildValidTransaction();
 
-        Map<String, Object> result = transactionService.processTransaction(transaction);
+        TransactionResponse result = transactionService.processTransaction(transaction);
 
         assertThat(result).isNotNull();
-        assertThat(result.get("status")).isEqualTo("ACCEPTED");
-        assertThat(result.get("transactionId")).isNotNull();
+        assertThat(result.status()).isEqualTo(Status.ACCEPTED);
+        assertThat(result.transactionId()).isNotNull();
 
         verify(producerService, times(1)).sendTransaction(any(Transaction.class));
-        verify(rateLimitService, times(1)).allowRequest(transaction.getUserId());
+        verify(rateLimitService, times(1)).check(transaction.getUserId(), 1);
     }
 
     @Test
@@ -53,43 +90,271 @@ class TransactionServiceTest {
         Transaction transaction = buildValidTransaction();
         transaction.setTransactionId(null);
 
-        Map<String, Object> result = transactionService.processTransaction(transaction);
+        TransactionResponse result = transactionService.processTransaction(transaction);
 
-        assertThat(result.get("transactionId")).isNotNull();
+        assertThat(result.transactionId()).isNotNull();
     }
 
     @Test
     void shouldRejectWhenRateLimitExceeded() {
         Transaction transaction = buildValidTransaction();
-        when(rateLimitService.allowRequest(transaction.getUserId())).thenReturn(false);
+        when(rateLimitService.check(transaction.getUserId(), 1)).thenReturn(new RateLimitDecision(1, 0, 0, 1500));
 
-        Map<String, Object> result = transactionService.processTransaction(transaction);
+        TransactionResponse result = transactionService.processTransaction(transaction);
 
-        assertThat(result.get("status")).isEqualTo("RATE_LIMITED");
+        assertThat(result.status()).isEqualTo(Status.RATE_LIMITED);
+        assertThat(result.retryAfterSeconds()).isEqualTo(2L);
         verify(producerService, never()).sendTransaction(any());
     }
 
     @Test
-    void shouldEnrichTransactionWithDefaultLocation() {
+    void shouldShedLoadBeforeRateLimitingWhenProducerIsSaturated() {
+        Transaction transaction = buildValidTransaction();
+        when(producerService.hasCapacity()).thenReturn(false);
+        when(producerService.getRetryAfterSeconds()).thenReturn(1L);
+
+        TransactionResponse result = transactionService.processTransaction(transaction);
+
+        assertThat(result.status()).isEqualTo(Status.UNAVAILABLE);
+        assertThat(result.retryAfterSeconds()).isEqualTo(1L);
+        verify(rateLimitService, never()).check(anyString(), anyInt());
+        verify(producerService, never()).sendTransaction(any());
+    }
+
+    @Test
+    void shouldReturnUnavailableWhenProducerCrossesHighWaterMark() {
+        Transaction transaction = buildValidTransaction();
+        when(producerService.sendTransaction(any(Transaction.class)))
+                .thenThrow(new ProducerBackpressureException("full", 2));
+
+        TransactionResponse result = transactionService.processTransaction(transaction);
+
+        assertThat(result.status()).isEqualTo(Status.UNAVAILABLE);
+        assertThat(result.retryAfterSeconds()).isEqualTo(2L);
+    }
+
+    @Test
+    void shouldReturnOriginalAcceptanceForReplayedTransaction() {
+        Transaction transaction = buildValidTransaction();
+        UUID transactionId = UUID.randomUUID();
+        transaction.setTransactionId(transactionId);
+        when(duplicateDetector.isDuplicate(transactionId)).thenReturn(true);
+        lenient().when(producerService.hasCapacity()).thenReturn(false);
+
+        TransactionResponse result = transactionService.processTransaction(transaction);
+
+        assertThat(result.status()).isEqualTo(Status.ACCEPTED);
+        assertThat(result.outcome()).isEqualTo(Outcome.DUPLICATE);
+        assertThat(result.transactionId()).isEqualTo(transactionId);
+        verify(rateLimitService, never()).check(anyString(), anyInt());
+        verify(producerService, never()).sendTransaction(any());
+    }
+
+    @Test
+    void shouldTreatLostClaimAsDuplicate() {
+        Transaction transaction = buildValidTransaction();
+        transaction.setTransactionId(UUID.randomUUID());
+        when(duplicateDetector.claim(transaction.getTransactionId())).thenReturn(false);
+
+        TransactionResponse result = transactionService.processTransaction(transaction);
+
+        assertThat(result.outcome()).isEqualTo(Outcome.DUPLICATE);
+        verify(producerService, never()).sendTransaction(any());
+    }
+
+    @Test
+    void shouldNotClaimRejectedTransactions() {
+        Transaction transaction = buildValidTransaction();
+        transaction.setTransactionId(UUID.randomUUID());
+        when(rateLimitService.check(transaction.getUserId(), 1)).thenReturn(new RateLimitDecision(1, 0, 0, 1000));
+
+        transactionService.processTransaction(transaction);
+
+        verify(duplicateDetector, never()).claim(any());
+    }
+
+    @Test
+    void shouldReleaseClaimWhenProducerRejects() {
+        Transaction transaction = buildValidTransaction();
+        transaction.setTransactionId(UUID.randomUUID());
+        when(producerService.sendTransaction(any(Transaction.class)))
+                .thenThrow(new ProducerBackpressureException("full", 1));
+
+        transactionService.processTransaction(transaction);
+
+        verify(duplicateDetector).claim(transaction.getTransactionId());
+        verify(duplicateDetector).release(transaction.getTransactionId());
+    }
+
+    @Test
+    void shouldSkipIdempotencyForMintedIds() {
+        Transaction transaction = buildValidTransaction();
+
+        transactionService.processTransaction(transaction);
+
+        verifyNoInteractions(duplicateDetector);
+    }
+
+    @Test
+    void shouldNotExposeExceptionDetailsOnError() {
         Transaction transaction = buildValidTransaction();
-        transaction.setLocation(null);
+        when(producerService.sendTransaction(any(Transaction.class)))
+                .thenThrow(new IllegalStateException("bootstrap broker kafka-0:9092 disconnected"));
 
-        Map<String, Object> result = transactionService.processTransaction(transaction);
+        TransactionResponse result = transactionService.processTransaction(transaction);
 
-        assertThat(result.get("status")).isEqualTo("ACCEPTED");
-        assertThat(transaction.getLocation()).isNotNull();
-        assertThat(transaction.getLocation().getCountry()).isEqualTo("UNKNOWN");
+        assertThat(result.status()).isEqualTo(Status.ERROR);
+        assertThat(result.message()).isEqualTo("Failed to submit transaction");
+        assertThat(result.transactionId()).isEqualTo(transaction.getTransactionId());
     }
 
     @Test
-    void shouldEnrichTransactionWithDefaultMerchantCategory() {
+    void shouldCompleteOnlyAfterBrokerAck() {
         Transaction transaction = buildValidTransaction();
-        transaction.setMerchantCategory(null);
+        CompletableFuture<SendResult<String, Transaction>> brokerAck = new CompletableFuture<>();
+        when(producerService.sendTransaction(any(Transaction.class))).thenReturn(brokerAck);
+
+        CompletableFuture<TransactionResponse> result = transactionService.processTransactionWithBrokerAck(transaction);
+
+        assertThat(result).isNotDone();
+        brokerAck.complete(null);
+        assertThat(result.join().status()).isEqualTo(Status.ACCEPTED);
+    }
+
+    @Test
+    void shouldReportErrorWhenBrokerAckFails() {
+        Transaction transaction = buildValidTransaction();
+        when(producerService.sendTransaction(any(Transaction.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        TransactionResponse result = transactionService.processTransactionWithBrokerAck(transaction).join();
+
+        assertThat(result.status()).isEqualTo(Status.ERROR);
+        assertThat(result.transactionId()).isEqualTo(transaction.getTransactionId());
+        // Released on the ack executor, not on the producer thread that failed the future
+        InOrder inOrder = inOrder(ackExecutor, duplicateDetector);
+        inOrder.verify(ackExecutor).execute(any());
+        inOrder.verify(duplicateDetector).release(transaction.getTransactionId());
+    }
+
+    @Test
+    void shouldEnrichAcceptedTransaction() {
+        Transaction transaction = buildValidTransaction();
+
+        TransactionResponse result = transactionService.processTransaction(transaction);
+
+        assertThat(result.status()).isEqualTo(Status.ACCEPTED);
+        verify(enrichmentPipeline).enrich(transaction);
+    }
+
+    @Test
+    void shouldNotEnrichRateLimitedTransaction() {
+        Transaction transaction = buildValidTransaction();
+        when(rateLimitService.check(transaction.getUserId(), 1)).thenReturn(new RateLimitDecision(1, 0, 0, 1000));
+
+        transactionService.processTransaction(transaction);
+
+        verifyNoInteractions(enrichmentPipeline);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldProcessBatchWithOneRateLimitCallPerUser() {
+        Transaction first = buildValidTransaction();
+        Transaction second = buildValidTransaction();
+        Transaction other = buildValidTransaction();
+        other.setUserId("user_456");
+        when(rateLimitService.check("user_123", 2)).thenReturn(new RateLimitDecision(2, 2, 0, 0));
+        when(rateLimitService.check("user_456", 1)).thenReturn(new RateLimitDecision(1, 1, 0, 0));
+        when(producerService.sendTransactions(anyList())).thenReturn(new TransactionProducerService.BatchResult(3, null));
+
+        Map<String, Object> result = transactionService.processBatch(List.of(first, second, other));
+
+        assertThat(result.get("accepted")).isEqualTo(3);
+        assertThat(result.get("rejected")).isEqualTo(0);
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("results");
+        assertThat(items).extracting(item -> item.get("status"))
+                .containsExactly("ACCEPTED", "ACCEPTED", "ACCEPTED");
+
+        verify(rateLimitService, times(1)).check("user_123", 2);
+        verify(rateLimitService, times(1)).check("user_456", 1);
+        verify(producerService, times(1)).sendTransactions(List.of(first, second, other));
+        verify(producerService, never()).sendTransaction(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReportPerItemStatusForInvalidAndRateLimitedBatchItems() {
+        Transaction invalid = buildValidTransaction();
+        Transaction allowed = buildValidTransaction();
+        Transaction limited = buildValidTransaction();
+        ConstraintViolation<Transaction> violation = mock(ConstraintViolation.class);
+        when(validator.validate(invalid)).thenReturn(Set.of(violation));
+        when(rateLimitService.check("user_123", 2)).thenReturn(new RateLimitDecision(2, 1, 0, 1000));
+        when(producerService.sendTransactions(anyList())).thenReturn(new TransactionProducerService.BatchResult(1, null));
+
+        Map<String, Object> result = transactionService.processBatch(List.of(invalid, allowed, limited));
+
+        assertThat(result.get("accepted")).isEqualTo(1);
+        assertThat(result.get("rejected")).isEqualTo(2);
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("results");
+        assertThat(items).extracting(item -> item.get("status"))
+                .containsExactly("INVALID", "ACCEPTED", "RATE_LIMITED");
+        verify(producerService, times(1)).sendTransactions(List.of(allowed));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMarkUnsentBatchItemsAsUnavailable() {
+        Transaction first = buildValidTransaction();
+        Transaction second = buildValidTransaction();
+        second.setTransactionId(UUID.randomUUID());
+        when(rateLimitService.check("user_123", 2)).thenReturn(new RateLimitDecision(2, 2, 0, 0));
+        when(producerService.sendTransactions(anyList())).thenReturn(new TransactionProducerService.BatchResult(1, null));
+
+        Map<String, Object> result = transactionService.processBatch(List.of(first, second));
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("results");
+        assertThat(items).extracting(item -> item.get("status")).containsExactly("ACCEPTED", "UNAVAILABLE");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMarkBatchItemsTheProducerRefusedAsErrors() {
+        Transaction first = buildValidTransaction();
+        Transaction second = buildValidTransaction();
+        second.setTransactionId(UUID.randomUUID());
+        when(rateLimitService.check("user_123", 2)).thenReturn(new RateLimitDecision(2, 2, 0, 0));
+        when(producerService.sendTransactions(anyList())).thenReturn(
+                new TransactionProducerService.BatchResult(1, new SerializationException("Cannot serialize")));
+
+        Map<String, Object> result = transactionService.processBatch(List.of(first, second));
+
+        assertThat(result.get("accepted")).isEqualTo(1);
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("results");
+        assertThat(items).extracting(item -> item.get("status")).containsExactly("ACCEPTED", "ERROR");
+        assertThat(items.get(1)).doesNotContainKey("retryAfterSeconds");
+        verify(duplicateDetector).release(second.getTransactionId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAnswerReplayedBatchItemsWithoutResubmitting() {
+        Transaction replayed = buildValidTransaction();
+        replayed.setTransactionId(UUID.randomUUID());
+        Transaction fresh = buildValidTransaction();
+        fresh.setTransactionId(UUID.randomUUID());
+        when(duplicateDetector.isDuplicate(replayed.getTransactionId())).thenReturn(true);
+        when(rateLimitService.check("user_123", 1)).thenReturn(RateLimitDecision.unlimited(1));
+        when(producerService.sendTransactions(anyList())).thenReturn(new TransactionProducerService.BatchResult(1, null));
 
-        Map<String, Object> result = transactionService.processTransaction(transaction);
+        Map<String, Object> result = transactionService.processBatch(List.of(replayed, fresh));
 
-        assertThat(result.get("status")).isEqualTo("ACCEPTED");
-        assertThat(transaction.getMerchantCategory()).isEqualTo("GENERAL");
+        assertThat(result.get("accepted")).isEqualTo(2);
+        List<Map<String, Object>> items = (List<Map<String, Object>>) result.get("results");
+        assertThat(items).extracting(item -> item.get("message"))
+                .containsExactly("Transaction already submitted", "Transaction submitted for processing");
+        verify(producerService).sendTransactions(List.of(fresh));
     }
 
     private Transaction buildValidTransaction() {
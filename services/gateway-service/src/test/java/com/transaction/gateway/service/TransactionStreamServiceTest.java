@@ -0,0 +1,171 @@
+package com.transaction.gateway.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.transaction.gateway.response.TransactionResponse;
+import com.transaction.gateway.response.TransactionResponse.Outcome;
+import com.transaction.models.Transaction;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionStreamServiceTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private TransactionProducerService producerService;
+
+    @Mock
+    private Validator validator;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private TransactionStreamService streamService;
+
+    @BeforeEach
+    void setUp() {
+        streamService = new TransactionStreamService(transactionService, producerService, validator, objectMapper);
+        ReflectionTestUtils.setField(streamService, "maxLineBytes", 1024);
+        ReflectionTestUtils.setField(streamService, "flushEvery", 100);
+        ReflectionTestUtils.setField(streamService, "flushIntervalMs", 200L);
+        ReflectionTestUtils.setField(streamService, "backpressureWaitMs", 50L);
+        lenient().when(producerService.hasCapacity()).thenReturn(true);
+        lenient().when(transactionService.processTransaction(any(Transaction.class)))
+                .thenAnswer(invocation -> TransactionResponse.of(
+                        invocation.<Transaction>getArgument(0).getTransactionId(), Outcome.SUBMITTED));
+    }
+
+    @Test
+    void shouldReportEveryLineAndContinuePastBadOnes() throws Exception {
+        String body = json(buildTransaction()) + "\n"
+                + "{not json\n"
+                + "\n"
+                + "{\"userId\":\"" + "x".repeat(2000) + "\"}\r\n"
+                + json(buildTransaction());
+
+        List<JsonNode> lines = ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(lines).hasSize(5);
+        assertThat(lines.subList(0, 4)).extracting(line -> line.get("status").asText())
+                .containsExactly("ACCEPTED", "INVALID", "INVALID", "ACCEPTED");
+        assertThat(lines.subList(0, 4)).extracting(line -> line.get("line").asInt())
+                .containsExactly(1, 2, 4, 5);
+        assertThat(lines.get(2).get("message").asText()).contains("exceeds 1024 bytes");
+        assertThat(lines.get(4).get("accepted").asInt()).isEqualTo(2);
+        assertThat(lines.get(4).get("rejected").asInt()).isEqualTo(2);
+        verify(transactionService, times(2)).processTransaction(any(Transaction.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRejectInvalidRecordsWithoutPublishing() throws Exception {
+        ConstraintViolation<Transaction> violation = mock(ConstraintViolation.class);
+        when(violation.getPropertyPath()).thenReturn(mock(jakarta.validation.Path.class,
+                invocation -> invocation.getMethod().getName().equals("toString") ? "amount" : null));
+        when(violation.getMessage()).thenReturn("must not be null");
+        when(validator.validate(any(Transaction.class))).thenReturn(Set.of(violation));
+
+        List<JsonNode> lines = ingest(new ByteArrayInputStream((json(buildTransaction()) + "\n").getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(lines.get(0).get("status").asText()).isEqualTo("INVALID");
+        assertThat(lines.get(0).get("message").asText()).isEqualTo("amount must not be null");
+        verify(transactionService, never()).processTransaction(any());
+    }
+
+    @Test
+    void shouldPublishRecordsBeforeTheUploadFinishes() throws Exception {
+        byte[] first = (json(buildTransaction()) + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] second = json(buildTransaction()).getBytes(StandardCharsets.UTF_8);
+        List<Integer> publishedBeforeSecondChunk = new ArrayList<>();
+
+        // Hands out the body in two chunks and records what was published in between
+        InputStream upload = new InputStream() {
+            private int chunk;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                switch (chunk++) {
+                    case 0:
+                        System.arraycopy(first, 0, buffer, offset, first.length);
+                        return first.length;
+                    case 1:
+                        publishedBeforeSecondChunk.add(mockingDetails(transactionService).getInvocations().size());
+                        System.arraycopy(second, 0, buffer, offset, second.length);
+                        return second.length;
+                    default:
+                        return -1;
+                }
+            }
+        };
+
+        List<JsonNode> lines = ingest(upload);
+
+        assertThat(publishedBeforeSecondChunk).containsExactly(1);
+        assertThat(lines).hasSize(3);
+    }
+
+    @Test
+    void shouldHoldTheUploadWhileTheProducerIsSaturated() throws Exception {
+        when(producerService.hasCapacity()).thenReturn(false, false, true);
+
+        List<JsonNode> lines = ingest(new ByteArrayInputStream(json(buildTransaction()).getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(lines.get(0).get("status").asText()).isEqualTo("ACCEPTED");
+        verify(producerService, times(3)).hasCapacity();
+    }
+
+    private List<JsonNode> ingest(InputStream upload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamService.ingest(upload, out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private String json(Transaction transaction) throws IOException {
+        return objectMapper.writeValueAsString(transaction);
+    }
+
+    private Transaction buildTransaction() {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal("149.99"))
+                .currency("USD")
+                .merchant("Test Merchant")
+                .type(Transaction.TransactionType.PAYMENT)
+                .timestamp(Instant.parse("2026-02-07T12:00:00Z"))
+                .build();
+    }
+}
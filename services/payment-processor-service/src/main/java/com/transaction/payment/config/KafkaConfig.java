@@ -2,9 +2,15 @@ package com.transaction.payment.config;
 
 import com.transaction.models.PaymentConfirmation;
 import com.transaction.models.Transaction;
+import com.transaction.models.serde.BinarySerializer;
+import com.transaction.models.serde.PaymentConfirmationCodec;
+import com.transaction.models.serde.TransactionCodec;
+import com.transaction.models.serde.WireFormat;
+import com.transaction.models.serde.WireFormatDeserializer;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,17 +41,20 @@ public class KafkaConfig {
     @Value("${kafka.topic.transactions:transactions}")
     private String transactionsTopic;
 
+    @Value("${kafka.wire-format:json}")
+    private String wireFormat;
+
     @Bean
     public ConsumerFactory<String, Transaction> consumerFactory() {
         Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ConsumerConfig.GROUP_ID_CONFIG, "payment-processor-group");
-        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, Transaction.class.getName());
 
-        return new DefaultKafkaConsumerFactory<>(config);
+        // Accepts binary and JSON records so producers can switch formats independently
+        return new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(),
+                new WireFormatDeserializer<>(TransactionCodec.INSTANCE, new JsonDeserializer<>()));
     }
 
     @Bean
@@ -62,10 +71,11 @@ public class KafkaConfig {
     public ProducerFactory<String, PaymentConfirmation> producerFactory() {
         Map<String, Object> config = new HashMap<>();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
 
-        return new DefaultKafkaProducerFactory<>(config);
+        Serializer<PaymentConfirmation> valueSerializer = WireFormat.of(wireFormat) == WireFormat.BINARY
+                ? new BinarySerializer<>(PaymentConfirmationCodec.INSTANCE)
+                : new JsonSerializer<>();
+        return new DefaultKafkaProducerFactory<>(config, new StringSerializer(), valueSerializer);
     }
 
     @Bean
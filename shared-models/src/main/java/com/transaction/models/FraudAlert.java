@@ -23,6 +23,13 @@ public class FraudAlert {
     private RiskLevel riskLevel;
     private Instant detectedAt;
     private List<String> triggeredRules;
+    // Every transaction the alert covers when several were coalesced into it, this one included; such a summary
+    // supersedes the alert with the same alertId that went out when the first of them was flagged
+    private List<UUID> relatedTransactionIds;
+    private Integer occurrenceCount;
+    // Set when deep-tier rules missed their deadline: a later alert with the same alertId is final. That alert is
+    // not guaranteed: it is lost if the fraud service stops before the deep rules finish, so this may be the last
+    private Boolean provisional;
 
     public enum FraudReason {
         HIGH_AMOUNT,
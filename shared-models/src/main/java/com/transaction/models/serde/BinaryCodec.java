@@ -0,0 +1,61 @@
+package com.transaction.models.serde;
+
+/**
+ * Versioned binary encoding of one shared model.
+ *
+ * <p>Every record starts with {@link #MAGIC}, a schema id and a schema version, followed by a
+ * varint presence bitmask and the non-null fields in declaration order. Later versions may only
+ * append fields (and bitmask bits); readers stop after the fields they know and ignore the rest.
+ * Enum constants are written by ordinal, so enums must only ever grow at the end.
+ */
+public abstract class BinaryCodec<T> {
+
+    // Never a valid first byte of a JSON document, so consumers can sniff the format
+    public static final byte MAGIC = (byte) 0xB7;
+
+    private static final int HEADER_SIZE = 3;
+
+    protected abstract byte schemaId();
+
+    protected abstract byte version();
+
+    protected abstract int estimatedSize(T value);
+
+    protected abstract void write(T value, BinaryWriter out);
+
+    protected abstract T read(BinaryReader in, int version);
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC;
+    }
+
+    public byte[] encode(T value) {
+        BinaryWriter out = new BinaryWriter(HEADER_SIZE + estimatedSize(value));
+        out.writeByte(MAGIC);
+        out.writeByte(schemaId());
+        out.writeByte(version());
+        write(value, out);
+        return out.toByteArray();
+    }
+
+    public T decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary-encoded record");
+        }
+        BinaryReader in = new BinaryReader(data);
+        in.readByte();
+        int schema = in.readByte();
+        if (schema != schemaId()) {
+            throw new IllegalArgumentException("Expected schema " + schemaId() + " but got " + schema);
+        }
+        return read(in, in.readByte());
+    }
+
+    protected static boolean isSet(long presence, int bit) {
+        return (presence & (1L << bit)) != 0;
+    }
+
+    protected static long bit(Object field, int bit) {
+        return field != null ? 1L << bit : 0L;
+    }
+}
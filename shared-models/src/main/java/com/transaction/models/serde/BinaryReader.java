@@ -0,0 +1,95 @@
+package com.transaction.models.serde;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+public final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at offset " + position);
+    }
+
+    public int readVarInt() {
+        long value = readVarLong();
+        if (value > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Varint overflows int at offset " + position);
+        }
+        return (int) value;
+    }
+
+    public long readZigZagLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readFixedLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative string length at offset " + position);
+        }
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public UUID readUuid() {
+        return new UUID(readFixedLong(), readFixedLong());
+    }
+
+    public Instant readInstant() {
+        return Instant.ofEpochSecond(readZigZagLong(), readVarInt());
+    }
+
+    public BigDecimal readDecimal() {
+        int scale = Math.toIntExact(readZigZagLong());
+        return BigDecimal.valueOf(readZigZagLong(), scale);
+    }
+
+    public <E extends Enum<E>> E readEnum(E[] values) {
+        int ordinal = readVarInt();
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Unknown ordinal " + ordinal + " for "
+                    + values.getClass().getComponentType().getSimpleName());
+        }
+        return values[ordinal];
+    }
+
+    private void require(int length) {
+        if (length > buffer.length - position) {
+            throw new IllegalArgumentException("Truncated record: needed " + length
+                    + " bytes at offset " + position + " of " + buffer.length);
+        }
+    }
+}
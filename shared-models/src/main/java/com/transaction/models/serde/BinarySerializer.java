@@ -0,0 +1,25 @@
+package com.transaction.models.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+public class BinarySerializer<T> implements Serializer<T> {
+
+    private final BinaryCodec<T> codec;
+
+    public BinarySerializer(BinaryCodec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return codec.encode(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Can't serialize record for topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.transaction.models.serde;
+
+import com.transaction.models.FraudAlert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class FraudAlertCodec extends BinaryCodec<FraudAlert> {
+
+    public static final FraudAlertCodec INSTANCE = new FraudAlertCodec();
+
+    private static final FraudAlert.FraudReason[] REASONS = FraudAlert.FraudReason.values();
+    private static final FraudAlert.RiskLevel[] RISK_LEVELS = FraudAlert.RiskLevel.values();
+
+    private FraudAlertCodec() {
+    }
+
+    @Override
+    protected byte schemaId() {
+        return 2;
+    }
+
+    @Override
+    protected byte version() {
+        return 3;
+    }
+
+    @Override
+    protected int estimatedSize(FraudAlert value) {
+        return 128 + (value.getRelatedTransactionIds() != null ? value.getRelatedTransactionIds().size() * 16 : 0);
+    }
+
+    @Override
+    protected void write(FraudAlert alert, BinaryWriter out) {
+        out.writeVarLong(bit(alert.getAlertId(), 0)
+                | bit(alert.getTransactionId(), 1)
+                | bit(alert.getUserId(), 2)
+                | bit(alert.getReason(), 3)
+                | bit(alert.getDescription(), 4)
+                | bit(alert.getRiskLevel(), 5)
+                | bit(alert.getDetectedAt(), 6)
+                | bit(alert.getTriggeredRules(), 7)
+                | bit(alert.getRelatedTransactionIds(), 8)
+                | bit(alert.getOccurrenceCount(), 9)
+                | bit(alert.getProvisional(), 10));
+
+        if (alert.getAlertId() != null) out.writeUuid(alert.getAlertId());
+        if (alert.getTransactionId() != null) out.writeUuid(alert.getTransactionId());
+        if (alert.getUserId() != null) out.writeString(alert.getUserId());
+        if (alert.getReason() != null) out.writeEnum(alert.getReason());
+        if (alert.getDescription() != null) out.writeString(alert.getDescription());
+        if (alert.getRiskLevel() != null) out.writeEnum(alert.getRiskLevel());
+        if (alert.getDetectedAt() != null) out.writeInstant(alert.getDetectedAt());
+        if (alert.getTriggeredRules() != null) {
+            out.writeVarInt(alert.getTriggeredRules().size());
+            for (String rule : alert.getTriggeredRules()) {
+                out.writeString(rule);
+            }
+        }
+        // Version 2
+        if (alert.getRelatedTransactionIds() != null) {
+            out.writeVarInt(alert.getRelatedTransactionIds().size());
+            for (UUID transactionId : alert.getRelatedTransactionIds()) {
+                out.writeUuid(transactionId);
+            }
+        }
+        if (alert.getOccurrenceCount() != null) out.writeVarInt(alert.getOccurrenceCount());
+        // Version 3
+        if (alert.getProvisional() != null) out.writeByte(alert.getProvisional() ? 1 : 0);
+    }
+
+    @Override
+    protected FraudAlert read(BinaryReader in, int version) {
+        long presence = in.readVarLong();
+        FraudAlert alert = new FraudAlert();
+
+        if (isSet(presence, 0)) alert.setAlertId(in.readUuid());
+        if (isSet(presence, 1)) alert.setTransactionId(in.readUuid());
+        if (isSet(presence, 2)) alert.setUserId(in.readString());
+        if (isSet(presence, 3)) alert.setReason(in.readEnum(REASONS));
+        if (isSet(presence, 4)) alert.setDescription(in.readString());
+        if (isSet(presence, 5)) alert.setRiskLevel(in.readEnum(RISK_LEVELS));
+        if (isSet(presence, 6)) alert.setDetectedAt(in.readInstant());
+        if (isSet(presence, 7)) {
+            int size = in.readVarInt();
+            List<String> rules = new ArrayList<>(Math.min(size, 64));
+            for (int i = 0; i < size; i++) {
+                rules.add(in.readString());
+            }
+            alert.setTriggeredRules(rules);
+        }
+        if (version < 2) {
+            return alert;
+        }
+        if (isSet(presence, 8)) {
+            int size = in.readVarInt();
+            List<UUID> transactionIds = new ArrayList<>(Math.min(size, 1024));
+            for (int i = 0; i < size; i++) {
+                transactionIds.add(in.readUuid());
+            }
+            alert.setRelatedTransactionIds(transactionIds);
+        }
+        if (isSet(presence, 9)) alert.setOccurrenceCount(in.readVarInt());
+        if (version < 3) {
+            return alert;
+        }
+        if (isSet(presence, 10)) alert.setProvisional(in.readByte() != 0);
+        return alert;
+    }
+}
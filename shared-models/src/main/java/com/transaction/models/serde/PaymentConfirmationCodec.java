@@ -0,0 +1,63 @@
+package com.transaction.models.serde;
+
+import com.transaction.models.PaymentConfirmation;
+import com.transaction.models.Transaction;
+
+public final class PaymentConfirmationCodec extends BinaryCodec<PaymentConfirmation> {
+
+    public static final PaymentConfirmationCodec INSTANCE = new PaymentConfirmationCodec();
+
+    private static final Transaction.TransactionStatus[] STATUSES = Transaction.TransactionStatus.values();
+
+    private PaymentConfirmationCodec() {
+    }
+
+    @Override
+    protected byte schemaId() {
+        return 3;
+    }
+
+    @Override
+    protected byte version() {
+        return 1;
+    }
+
+    @Override
+    protected int estimatedSize(PaymentConfirmation value) {
+        return 80;
+    }
+
+    @Override
+    protected void write(PaymentConfirmation confirmation, BinaryWriter out) {
+        out.writeVarLong(bit(confirmation.getConfirmationId(), 0)
+                | bit(confirmation.getTransactionId(), 1)
+                | bit(confirmation.getUserId(), 2)
+                | bit(confirmation.getStatus(), 3)
+                | bit(confirmation.getProcessorReferenceId(), 4)
+                | bit(confirmation.getProcessedAt(), 5)
+                | bit(confirmation.getFailureReason(), 6));
+
+        if (confirmation.getConfirmationId() != null) out.writeUuid(confirmation.getConfirmationId());
+        if (confirmation.getTransactionId() != null) out.writeUuid(confirmation.getTransactionId());
+        if (confirmation.getUserId() != null) out.writeString(confirmation.getUserId());
+        if (confirmation.getStatus() != null) out.writeEnum(confirmation.getStatus());
+        if (confirmation.getProcessorReferenceId() != null) out.writeString(confirmation.getProcessorReferenceId());
+        if (confirmation.getProcessedAt() != null) out.writeInstant(confirmation.getProcessedAt());
+        if (confirmation.getFailureReason() != null) out.writeString(confirmation.getFailureReason());
+    }
+
+    @Override
+    protected PaymentConfirmation read(BinaryReader in, int version) {
+        long presence = in.readVarLong();
+        PaymentConfirmation confirmation = new PaymentConfirmation();
+
+        if (isSet(presence, 0)) confirmation.setConfirmationId(in.readUuid());
+        if (isSet(presence, 1)) confirmation.setTransactionId(in.readUuid());
+        if (isSet(presence, 2)) confirmation.setUserId(in.readString());
+        if (isSet(presence, 3)) confirmation.setStatus(in.readEnum(STATUSES));
+        if (isSet(presence, 4)) confirmation.setProcessorReferenceId(in.readString());
+        if (isSet(presence, 5)) confirmation.setProcessedAt(in.readInstant());
+        if (isSet(presence, 6)) confirmation.setFailureReason(in.readString());
+        return confirmation;
+    }
+}
@@ -0,0 +1,83 @@
+package com.transaction.models.serde;
+
+import com.transaction.models.Transaction;
+
+public final class TransactionCodec extends BinaryCodec<Transaction> {
+
+    public static final TransactionCodec INSTANCE = new TransactionCodec();
+
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+    private static final Transaction.TransactionStatus[] STATUSES = Transaction.TransactionStatus.values();
+
+    private TransactionCodec() {
+    }
+
+    @Override
+    protected byte schemaId() {
+        return 1;
+    }
+
+    @Override
+    protected byte version() {
+        return 1;
+    }
+
+    @Override
+    protected int estimatedSize(Transaction value) {
+        return 96;
+    }
+
+    @Override
+    protected void write(Transaction tx, BinaryWriter out) {
+        Transaction.Location location = tx.getLocation();
+        out.writeVarLong(bit(tx.getTransactionId(), 0)
+                | bit(tx.getUserId(), 1)
+                | bit(tx.getAmount(), 2)
+                | bit(tx.getCurrency(), 3)
+                | bit(tx.getMerchant(), 4)
+                | bit(tx.getMerchantCategory(), 5)
+                | bit(tx.getType(), 6)
+                | bit(location, 7)
+                | bit(tx.getTimestamp(), 8)
+                | bit(tx.getStatus(), 9));
+
+        if (tx.getTransactionId() != null) out.writeUuid(tx.getTransactionId());
+        if (tx.getUserId() != null) out.writeString(tx.getUserId());
+        if (tx.getAmount() != null) out.writeDecimal(tx.getAmount());
+        if (tx.getCurrency() != null) out.writeString(tx.getCurrency());
+        if (tx.getMerchant() != null) out.writeString(tx.getMerchant());
+        if (tx.getMerchantCategory() != null) out.writeString(tx.getMerchantCategory());
+        if (tx.getType() != null) out.writeEnum(tx.getType());
+        if (location != null) {
+            out.writeVarLong(bit(location.getCountry(), 0) | bit(location.getCity(), 1));
+            if (location.getCountry() != null) out.writeString(location.getCountry());
+            if (location.getCity() != null) out.writeString(location.getCity());
+        }
+        if (tx.getTimestamp() != null) out.writeInstant(tx.getTimestamp());
+        if (tx.getStatus() != null) out.writeEnum(tx.getStatus());
+    }
+
+    @Override
+    protected Transaction read(BinaryReader in, int version) {
+        long presence = in.readVarLong();
+        Transaction tx = new Transaction();
+
+        if (isSet(presence, 0)) tx.setTransactionId(in.readUuid());
+        if (isSet(presence, 1)) tx.setUserId(in.readString());
+        if (isSet(presence, 2)) tx.setAmount(in.readDecimal());
+        if (isSet(presence, 3)) tx.setCurrency(in.readString());
+        if (isSet(presence, 4)) tx.setMerchant(in.readString());
+        if (isSet(presence, 5)) tx.setMerchantCategory(in.readString());
+        if (isSet(presence, 6)) tx.setType(in.readEnum(TYPES));
+        if (isSet(presence, 7)) {
+            long locationPresence = in.readVarLong();
+            Transaction.Location location = new Transaction.Location();
+            if (isSet(locationPresence, 0)) location.setCountry(in.readString());
+            if (isSet(locationPresence, 1)) location.setCity(in.readString());
+            tx.setLocation(location);
+        }
+        if (isSet(presence, 8)) tx.setTimestamp(in.readInstant());
+        if (isSet(presence, 9)) tx.setStatus(in.readEnum(STATUSES));
+        return tx;
+    }
+}
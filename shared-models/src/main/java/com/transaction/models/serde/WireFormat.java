@@ -0,0 +1,10 @@
+package com.transaction.models.serde;
+
+public enum WireFormat {
+    JSON,
+    BINARY;
+
+    public static WireFormat of(String value) {
+        return value == null || value.isBlank() ? JSON : valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,57 @@
+package com.transaction.models.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Reads both wire formats: records starting with {@link BinaryCodec#MAGIC} are decoded by the
+ * codec, anything else goes to the fallback (JSON) deserializer. Lets consumers upgrade before
+ * producers switch {@code kafka.wire-format}.
+ */
+public class WireFormatDeserializer<T> implements Deserializer<T> {
+
+    private final BinaryCodec<T> codec;
+    private final Deserializer<T> fallback;
+
+    public WireFormatDeserializer(BinaryCodec<T> codec, Deserializer<T> fallback) {
+        this.codec = codec;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        fallback.configure(configs, isKey);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (!BinaryCodec.isBinary(data)) {
+            return fallback.deserialize(topic, data);
+        }
+        return decode(topic, data);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        if (!BinaryCodec.isBinary(data)) {
+            return fallback.deserialize(topic, headers, data);
+        }
+        return decode(topic, data);
+    }
+
+    @Override
+    public void close() {
+        fallback.close();
+    }
+
+    private T decode(String topic, byte[] data) {
+        try {
+            return codec.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Can't deserialize binary record from topic " + topic, e);
+        }
+    }
+}
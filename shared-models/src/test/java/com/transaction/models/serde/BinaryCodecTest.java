@@ -0,0 +1,211 @@
+package com.transaction.models.serde;
+
+import com.transaction.models.FraudAlert;
+import com.transaction.models.PaymentConfirmation;
+import com.transaction.models.Transaction;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryCodecTest {
+
+    @Test
+    void shouldRoundTripTransaction() {
+        Transaction transaction = buildTransaction();
+
+        byte[] encoded = TransactionCodec.INSTANCE.encode(transaction);
+
+        assertThat(encoded[0]).isEqualTo(BinaryCodec.MAGIC);
+        assertThat(TransactionCodec.INSTANCE.decode(encoded)).isEqualTo(transaction);
+    }
+
+    @Test
+    void shouldPreserveAmountScaleAndSubSecondTimestamps() {
+        Transaction transaction = buildTransaction();
+        transaction.setAmount(new BigDecimal("-12.500"));
+        transaction.setTimestamp(Instant.parse("1969-12-31T23:59:59.123456789Z"));
+
+        Transaction decoded = TransactionCodec.INSTANCE.decode(TransactionCodec.INSTANCE.encode(transaction));
+
+        assertThat(decoded.getAmount()).isEqualTo(new BigDecimal("-12.500"));
+        assertThat(decoded.getTimestamp()).isEqualTo(transaction.getTimestamp());
+    }
+
+    @Test
+    void shouldRoundTripNullFields() {
+        Transaction transaction = Transaction.builder()
+                .userId("user_1")
+                .location(Transaction.Location.builder().city("Berlin").build())
+                .build();
+
+        assertThat(TransactionCodec.INSTANCE.decode(TransactionCodec.INSTANCE.encode(transaction)))
+                .isEqualTo(transaction);
+    }
+
+    @Test
+    void shouldRejectAmountsThatDoNotFitALong() {
+        Transaction transaction = buildTransaction();
+        transaction.setAmount(new BigDecimal("123456789012345678901234567890.00"));
+
+        assertThatThrownBy(() -> TransactionCodec.INSTANCE.encode(transaction))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldRoundTripFraudAlert() {
+        FraudAlert alert = FraudAlert.builder()
+                .alertId(UUID.randomUUID())
+                .transactionId(UUID.randomUUID())
+                .userId("user_42")
+                .reason(FraudAlert.FraudReason.GEO_ANOMALY)
+                .description("Transaction from unusual location: Tokyo, Japan")
+                .riskLevel(FraudAlert.RiskLevel.HIGH)
+                .detectedAt(Instant.now())
+                .triggeredRules(List.of("GEO_ANOMALY", "HIGH_AMOUNT"))
+                .build();
+
+        assertThat(FraudAlertCodec.INSTANCE.decode(FraudAlertCodec.INSTANCE.encode(alert))).isEqualTo(alert);
+    }
+
+    @Test
+    void shouldRoundTripCoalescedFraudAlert() {
+        UUID first = UUID.randomUUID();
+        FraudAlert alert = FraudAlert.builder()
+                .alertId(UUID.randomUUID())
+                .transactionId(first)
+                .userId("user_42")
+                .reason(FraudAlert.FraudReason.SUSPICIOUS_MERCHANT)
+                .riskLevel(FraudAlert.RiskLevel.HIGH)
+                .relatedTransactionIds(List.of(first, UUID.randomUUID(), UUID.randomUUID()))
+                .occurrenceCount(200)
+                .build();
+
+        assertThat(FraudAlertCodec.INSTANCE.decode(FraudAlertCodec.INSTANCE.encode(alert))).isEqualTo(alert);
+    }
+
+    @Test
+    void shouldRoundTripProvisionalFraudAlert() {
+        FraudAlert alert = FraudAlert.builder()
+                .alertId(UUID.randomUUID())
+                .userId("user_42")
+                .riskLevel(FraudAlert.RiskLevel.MEDIUM)
+                .provisional(true)
+                .build();
+
+        assertThat(FraudAlertCodec.INSTANCE.decode(FraudAlertCodec.INSTANCE.encode(alert))).isEqualTo(alert);
+        alert.setProvisional(false);
+        assertThat(FraudAlertCodec.INSTANCE.decode(FraudAlertCodec.INSTANCE.encode(alert))).isEqualTo(alert);
+    }
+
+    @Test
+    void shouldDecodeVersion1FraudAlert() {
+        FraudAlert alert = FraudAlert.builder()
+                .alertId(UUID.randomUUID())
+                .userId("user_42")
+                .riskLevel(FraudAlert.RiskLevel.LOW)
+                .build();
+        byte[] encoded = FraudAlertCodec.INSTANCE.encode(alert);
+        encoded[2] = 1;
+
+        assertThat(FraudAlertCodec.INSTANCE.decode(encoded)).isEqualTo(alert);
+    }
+
+    @Test
+    void shouldRoundTripPaymentConfirmation() {
+        PaymentConfirmation confirmation = PaymentConfirmation.builder()
+                .confirmationId(UUID.randomUUID())
+                .transactionId(UUID.randomUUID())
+                .userId("user_7")
+                .status(Transaction.TransactionStatus.FAILED)
+                .processorReferenceId("PRC-123456")
+                .processedAt(Instant.now())
+                .failureReason("Insufficient funds")
+                .build();
+
+        assertThat(PaymentConfirmationCodec.INSTANCE.decode(PaymentConfirmationCodec.INSTANCE.encode(confirmation)))
+                .isEqualTo(confirmation);
+    }
+
+    @Test
+    void shouldRejectRecordsOfAnotherSchema() {
+        byte[] alert = FraudAlertCodec.INSTANCE.encode(FraudAlert.builder().userId("user_1").build());
+
+        assertThatThrownBy(() -> TransactionCodec.INSTANCE.decode(alert))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("schema");
+    }
+
+    @Test
+    void shouldRejectTruncatedRecords() {
+        byte[] encoded = TransactionCodec.INSTANCE.encode(buildTransaction());
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 5);
+
+        assertThatThrownBy(() -> TransactionCodec.INSTANCE.decode(truncated))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Truncated");
+    }
+
+    @Test
+    void shouldIgnoreFieldsAppendedByNewerVersions() {
+        Transaction transaction = buildTransaction();
+        byte[] encoded = TransactionCodec.INSTANCE.encode(transaction);
+        byte[] newer = Arrays.copyOf(encoded, encoded.length + 4);
+        newer[2] = 2;
+
+        assertThat(TransactionCodec.INSTANCE.decode(newer)).isEqualTo(transaction);
+    }
+
+    @Test
+    void shouldBeSmallerThanJson() {
+        byte[] encoded = TransactionCodec.INSTANCE.encode(buildTransaction());
+
+        assertThat(encoded.length).isLessThan(100);
+    }
+
+    @Test
+    void shouldDelegateNonBinaryRecordsToFallback() {
+        Transaction fromJson = buildTransaction();
+        WireFormatDeserializer<Transaction> deserializer =
+                new WireFormatDeserializer<>(TransactionCodec.INSTANCE, (topic, data) -> fromJson);
+        Transaction binary = buildTransaction();
+
+        assertThat(deserializer.deserialize("transactions", "{\"userId\":\"user_123\"}".getBytes(StandardCharsets.UTF_8)))
+                .isSameAs(fromJson);
+        assertThat(deserializer.deserialize("transactions", new BinarySerializer<>(TransactionCodec.INSTANCE)
+                .serialize("transactions", binary)))
+                .isEqualTo(binary);
+    }
+
+    @Test
+    void shouldWrapMalformedBinaryRecordsInSerializationException() {
+        WireFormatDeserializer<Transaction> deserializer =
+                new WireFormatDeserializer<>(TransactionCodec.INSTANCE, (topic, data) -> null);
+
+        assertThatThrownBy(() -> deserializer.deserialize("transactions", new byte[]{BinaryCodec.MAGIC, 1, 1, (byte) 0xFF}))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    private Transaction buildTransaction() {
+        return Transaction.builder()
+                .transactionId(UUID.randomUUID())
+                .userId("user_123")
+                .amount(new BigDecimal("149.99"))
+                .currency("USD")
+                .merchant("Amazon")
+                .merchantCategory("RETAIL")
+                .type(Transaction.TransactionType.PAYMENT)
+                .location(Transaction.Location.builder().country("USA").city("New York").build())
+                .timestamp(Instant.parse("2026-02-07T12:00:00Z"))
+                .status(Transaction.TransactionStatus.PENDING)
+                .build();
+    }
+}